@@ -14,5 +14,13 @@ public enum LockType {
     /**
      * 重入锁
      */
-    REENTRANT
+    REENTRANT,
+    /**
+     * 读锁，多个读锁可同时持有，与写锁互斥
+     */
+    READ,
+    /**
+     * 写锁，与其他读锁、写锁互斥
+     */
+    WRITE
 }
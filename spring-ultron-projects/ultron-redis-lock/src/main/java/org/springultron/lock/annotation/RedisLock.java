@@ -11,6 +11,8 @@ import java.util.concurrent.TimeUnit;
  * <p>
  * 1. 公平锁（Fair Lock）
  * 2. 可重入锁（Reentrant Lock）
+ * 3. 读锁（Read Lock）
+ * 4. 写锁（Write Lock）
  * </p>
  *
  * @author brucewuu
@@ -43,6 +45,14 @@ public @interface RedisLock {
      */
     String params() default "";
 
+    /**
+     * 联锁参数，可选，支持 spring el，计算结果为集合或数组，每个元素生成一把锁（锁名为 key:params:元素），
+     * 所有锁按锁名排序后在同一等待时间内一起获取、一起释放
+     *
+     * @return multiParams
+     */
+    String multiParams() default "";
+
     /**
      * 等待锁超时时间，默认30
      *
@@ -51,7 +61,8 @@ public @interface RedisLock {
     long waitTime() default 30;
 
     /**
-     * 自动解锁时间，自动解锁时间一定得大于方法执行时间，否则会导致锁提前释放，默认100
+     * 自动解锁时间，自动解锁时间一定得大于方法执行时间，否则会导致锁提前释放，默认100；
+     * 小于等于0时开启看门狗自动续期，持有期间锁不会过期，节点宕机后锁在看门狗超时时间后自动释放
      *
      * @return long
      */
@@ -0,0 +1,72 @@
+package org.springultron.lock.annotation;
+
+import org.springframework.core.annotation.AliasFor;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis分布式信号量注解，限制集群内同时执行方法的调用数
+ * <p>
+ * 许可带有过期时间，持有许可的节点宕机后许可在 leaseTime 后自动归还；
+ * 等待 waitTime 后仍未获取到许可时方法不会执行，抛出 {@link org.springultron.lock.client.SemaphoreAcquireException}
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/6/3 上午10:00
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RedisSemaphore {
+    /**
+     * 信号量key，必须保持唯一性
+     *
+     * @return key
+     */
+    @AliasFor("key")
+    String value() default "";
+
+    /**
+     * 信号量key，必须保持唯一性
+     *
+     * @return key
+     */
+    @AliasFor("value")
+    String key() default "";
+
+    /**
+     * 信号量参数，可选，支持 spring el # 读取方法参数和 @ 读取 spring bean
+     *
+     * @return params
+     */
+    String params() default "";
+
+    /**
+     * 许可总数，即集群内最大并发数，仅在信号量首次创建时生效
+     *
+     * @return int
+     */
+    int permits();
+
+    /**
+     * 等待许可超时时间，超时后抛出 {@link org.springultron.lock.client.SemaphoreAcquireException}，默认30
+     *
+     * @return long
+     */
+    long waitTime() default 30;
+
+    /**
+     * 许可过期时间，过期时间一定得大于方法执行时间，否则会导致许可提前归还，默认100
+     *
+     * @return long
+     */
+    long leaseTime() default 100;
+
+    /**
+     * 时间单位，默认:秒
+     *
+     * @return TimeUnit
+     */
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+}
@@ -0,0 +1,91 @@
+package org.springultron.lock.client;
+
+import org.springframework.lang.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * 加锁执行结果，用于区分未获取到锁与业务方法返回 null，业务异常仍直接抛出
+ *
+ * @author brucewuu
+ * @date 2021/6/7 上午10:00
+ */
+public final class LockResult<T> {
+    private static final LockResult<?> NOT_ACQUIRED = new LockResult<>(false, null);
+
+    private final boolean acquired;
+    @Nullable
+    private final T value;
+
+    private LockResult(boolean acquired, @Nullable T value) {
+        this.acquired = acquired;
+        this.value = value;
+    }
+
+    /**
+     * 获取到锁并执行完成
+     *
+     * @param value 业务方法返回值
+     * @return LockResult
+     */
+    public static <T> LockResult<T> acquired(@Nullable T value) {
+        return new LockResult<>(true, value);
+    }
+
+    /**
+     * 未获取到锁，业务方法未执行
+     *
+     * @return LockResult
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> LockResult<T> notAcquired() {
+        return (LockResult<T>) NOT_ACQUIRED;
+    }
+
+    /**
+     * @return 是否获取到锁
+     */
+    public boolean isAcquired() {
+        return acquired;
+    }
+
+    /**
+     * @return 业务方法返回值，未获取到锁时为null
+     */
+    @Nullable
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * 未获取到锁时返回 other
+     */
+    @Nullable
+    public T orElse(@Nullable T other) {
+        return acquired ? value : other;
+    }
+
+    /**
+     * 未获取到锁时返回 supplier 的结果
+     */
+    @Nullable
+    public T orElseGet(Supplier<? extends T> supplier) {
+        return acquired ? value : supplier.get();
+    }
+
+    /**
+     * 未获取到锁时抛出 exceptionSupplier 提供的异常
+     */
+    @Nullable
+    public <X extends Throwable> T orElseThrow(Supplier<? extends X> exceptionSupplier) throws X {
+        if (acquired) {
+            return value;
+        }
+        throw exceptionSupplier.get();
+    }
+
+    @Override
+    public String toString() {
+        return acquired ? "LockResult[acquired, value=" + value + "]" : "LockResult[not acquired]";
+    }
+}
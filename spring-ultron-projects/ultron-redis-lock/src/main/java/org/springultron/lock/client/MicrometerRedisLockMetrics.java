@@ -0,0 +1,71 @@
+package org.springultron.lock.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springultron.lock.annotation.LockType;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Micrometer 的分布式锁指标
+ * <p>
+ * 1. redis.lock.acquire(lock, type, result=acquired/timeout/error)：加锁耗时，各 result 的次数即成功、超时、异常次数
+ * 2. redis.lock.hold(lock, type)：持有锁时长
+ * </p>
+ * <p>
+ * Timer 实例按锁名模板、锁类型、结果在首次记录时注册并缓存，之后记录时不创建新对象；并发首次注册时 registry 返回同一个 Timer。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/6/5 上午11:00
+ */
+public class MicrometerRedisLockMetrics implements RedisLockMetrics {
+    public static final String ACQUIRE_TIMER = "redis.lock.acquire";
+    public static final String HOLD_TIMER = "redis.lock.hold";
+
+    private static final LockType[] LOCK_TYPES = LockType.values();
+    private static final AcquireResult[] RESULTS = AcquireResult.values();
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer[]> acquireTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer[]> holdTimers = new ConcurrentHashMap<>();
+
+    public MicrometerRedisLockMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordAcquire(String template, LockType lockType, AcquireResult result, long waitNanos) {
+        Timer[] timers = acquireTimers.computeIfAbsent(template, k -> new Timer[LOCK_TYPES.length * RESULTS.length]);
+        int index = lockType.ordinal() * RESULTS.length + result.ordinal();
+        Timer timer = timers[index];
+        if (timer == null) {
+            timer = Timer.builder(ACQUIRE_TIMER)
+                    .tag("lock", template)
+                    .tag("type", lockType.name().toLowerCase(Locale.ROOT))
+                    .tag("result", result.name().toLowerCase(Locale.ROOT))
+                    .description("The time spent acquiring a redis lock")
+                    .register(registry);
+            timers[index] = timer;
+        }
+        timer.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordHold(String template, LockType lockType, long holdNanos) {
+        Timer[] timers = holdTimers.computeIfAbsent(template, k -> new Timer[LOCK_TYPES.length]);
+        Timer timer = timers[lockType.ordinal()];
+        if (timer == null) {
+            timer = Timer.builder(HOLD_TIMER)
+                    .tag("lock", template)
+                    .tag("type", lockType.name().toLowerCase(Locale.ROOT))
+                    .description("The time a redis lock was held")
+                    .register(registry);
+            timers[lockType.ordinal()] = timer;
+        }
+        timer.record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,63 @@
+package org.springultron.lock.client;
+
+import org.reactivestreams.Publisher;
+import org.springultron.lock.annotation.LockType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 响应式Redis分布式锁客户端
+ * <p>
+ * 锁在订阅时获取，在返回的 Publisher 完成、出错或被取消时释放，加解锁不阻塞调用线程；
+ * 未获取到锁时返回空的 Mono/Flux；每次订阅是一个独立的持有者，锁不可重入，不要在持有锁的 Publisher 内嵌套获取同一把锁
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/6/4 上午10:00
+ */
+public interface ReactiveRedisLockClient {
+    /**
+     * 获取锁并在 Mono 的生命周期内持有
+     *
+     * @param lockName  锁名
+     * @param lockType  锁类型
+     * @param waitTime  等待锁超时时间
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于 Publisher 执行时间，小于等于0时开启看门狗自动续期
+     * @param timeUnit  时间单位
+     * @param supplier  获取锁后执行的 Publisher
+     * @return Mono
+     */
+    default <T> Mono<T> lock(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, Supplier<? extends Mono<T>> supplier) {
+        return lockMany(lockName, lockType, waitTime, leaseTime, timeUnit, supplier).next();
+    }
+
+    /**
+     * 获取锁并在 Flux 的生命周期内持有
+     *
+     * @param lockName  锁名
+     * @param lockType  锁类型
+     * @param waitTime  等待锁超时时间
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于 Publisher 执行时间，小于等于0时开启看门狗自动续期
+     * @param timeUnit  时间单位
+     * @param supplier  获取锁后执行的 Publisher
+     * @return Flux
+     */
+    <T> Flux<T> lockMany(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, Supplier<? extends Publisher<T>> supplier);
+
+    /**
+     * 同时获取多把锁（联锁）并在 Flux 的生命周期内持有，锁名去重后按字典序依次获取，共用同一个等待时间
+     *
+     * @param lockNames 锁名集合
+     * @param lockType  锁类型
+     * @param waitTime  等待锁超时时间
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于 Publisher 执行时间，小于等于0时开启看门狗自动续期
+     * @param timeUnit  时间单位
+     * @param supplier  获取锁后执行的 Publisher
+     * @return Flux
+     */
+    <T> Flux<T> lockMany(Collection<String> lockNames, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, Supplier<? extends Publisher<T>> supplier);
+}
@@ -0,0 +1,193 @@
+package org.springultron.lock.client;
+
+import org.reactivestreams.Publisher;
+import org.redisson.api.RLockReactive;
+import org.redisson.api.RedissonReactiveClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springultron.lock.annotation.LockType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 响应式Redis分布式锁客户端，基于 Redisson 响应式客户端
+ * <p>
+ * 响应式流会在不同线程间切换，每次订阅生成一个随机的持有者id代替线程id，加锁和解锁使用同一个id。
+ * 因此响应式锁不可重入：在持有锁的 Publisher 内再次获取同一把锁是另一个持有者，会等待到超时后返回空
+ * </p>
+ * <p>
+ * 获取过程中被取消时释放已获取的锁；已发出的加锁请求不随取消中断，返回加锁成功后立即释放，避免锁泄漏到看门狗一直续期
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/6/4 上午10:20
+ */
+public class ReactiveRedisLockClientImpl implements ReactiveRedisLockClient {
+    private static final Logger log = LoggerFactory.getLogger(ReactiveRedisLockClientImpl.class);
+
+    private final RedissonReactiveClient redissonReactiveClient;
+    private final RedisLockMonitor monitor;
+
+    public ReactiveRedisLockClientImpl(RedissonReactiveClient redissonReactiveClient) {
+        this(redissonReactiveClient, RedisLockMonitor.NONE);
+    }
+
+    /**
+     * @param redissonReactiveClient RedissonReactiveClient
+     * @param monitor                加锁指标及慢日志
+     */
+    public ReactiveRedisLockClientImpl(RedissonReactiveClient redissonReactiveClient, RedisLockMonitor monitor) {
+        this.redissonReactiveClient = redissonReactiveClient;
+        this.monitor = monitor;
+    }
+
+    @Override
+    public <T> Flux<T> lockMany(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, Supplier<? extends Publisher<T>> supplier) {
+        return lockMany(Collections.singletonList(getLock(lockName, lockType)), lockName, lockType, waitTime, leaseTime, timeUnit, supplier);
+    }
+
+    @Override
+    public <T> Flux<T> lockMany(Collection<String> lockNames, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, Supplier<? extends Publisher<T>> supplier) {
+        Assert.notEmpty(lockNames, "lockNames must not be empty");
+        TreeSet<String> sortedNames = new TreeSet<>(lockNames);
+        List<RLockReactive> locks = new ArrayList<>(sortedNames.size());
+        for (String lockName : sortedNames) {
+            locks.add(getLock(lockName, lockType));
+        }
+        return lockMany(locks, sortedNames.first(), lockType, waitTime, leaseTime, timeUnit, supplier);
+    }
+
+    /**
+     * @param metricName 统计指标使用的锁名，联锁为排序后的第一个锁名
+     */
+    private <T> Flux<T> lockMany(List<RLockReactive> locks, String metricName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, Supplier<? extends Publisher<T>> supplier) {
+        return Flux.usingWhen(acquire(locks, metricName, lockType, waitTime, leaseTime, timeUnit),
+                holder -> holder.isAcquired(locks) ? supplier.get() : Flux.empty(),
+                this::release,
+                (holder, e) -> release(holder),
+                this::release);
+    }
+
+    /**
+     * 按顺序依次获取锁，任意一把获取失败时释放已获取的锁
+     */
+    private Mono<LockHolder> acquire(List<RLockReactive> locks, String metricName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        return Mono.defer(() -> {
+            LockHolder holder = new LockHolder(ThreadLocalRandom.current().nextLong(), metricName, lockType);
+            final long start = System.nanoTime();
+            final long deadline = start + timeUnit.toNanos(waitTime);
+            final long leaseMillis = leaseTime > 0 ? timeUnit.toMillis(leaseTime) : RedisLockClient.WATCHDOG_LEASE_TIME;
+            return Flux.fromIterable(locks)
+                    .concatMap(lock -> {
+                        long remaining = Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                        return tryLock(lock, remaining, leaseMillis, holder);
+                    })
+                    .takeUntil(locked -> !locked)
+                    .then(Mono.defer(() -> {
+                        if (holder.isAcquired(locks)) {
+                            monitor.acquired(metricName, lockType, RedisLockMetrics.AcquireResult.ACQUIRED, start);
+                            holder.acquiredAt = System.nanoTime();
+                            return Mono.just(holder);
+                        }
+                        monitor.acquired(metricName, lockType, RedisLockMetrics.AcquireResult.TIMEOUT, start);
+                        return release(holder).thenReturn(holder);
+                    }))
+                    .doOnError(e -> monitor.acquired(metricName, lockType, RedisLockMetrics.AcquireResult.ERROR, start))
+                    .doOnCancel(() -> {
+                        holder.cancelled = true;
+                        release(holder).subscribe();
+                    });
+        });
+    }
+
+    /**
+     * 加锁请求独立订阅，不随下游取消中断，取消后才返回的加锁成功立即释放
+     */
+    private Mono<Boolean> tryLock(RLockReactive lock, long waitMillis, long leaseMillis, LockHolder holder) {
+        Sinks.One<Boolean> result = Sinks.one();
+        lock.tryLock(waitMillis, leaseMillis, TimeUnit.MILLISECONDS, holder.threadId).subscribe(locked -> {
+            if (locked) {
+                holder.acquired.add(lock);
+                if (holder.cancelled) {
+                    release(holder).subscribe();
+                }
+            }
+            result.tryEmitValue(locked);
+        }, result::tryEmitError);
+        return result.asMono();
+    }
+
+    private Mono<Void> release(LockHolder holder) {
+        List<RLockReactive> acquired;
+        synchronized (holder.acquired) {
+            if (holder.acquired.isEmpty()) {
+                return Mono.empty();
+            }
+            acquired = new ArrayList<>(holder.acquired);
+            holder.acquired.clear();
+        }
+        if (holder.acquiredAt != 0L) {
+            monitor.released(holder.metricName, holder.lockType, holder.acquiredAt);
+        }
+        return Flux.fromIterable(acquired)
+                .flatMap(lock -> lock.unlock(holder.threadId)
+                        .onErrorResume(e -> {
+                            log.warn("reactive unlock failed, lockName: {}", lock.getName(), e);
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    /**
+     * 获取锁
+     *
+     * @param lockName 锁名
+     * @param lockType 锁类型
+     * @return RLockReactive
+     */
+    private RLockReactive getLock(String lockName, LockType lockType) {
+        switch (lockType) {
+            case REENTRANT:
+                return redissonReactiveClient.getLock(lockName);
+            case READ:
+                return redissonReactiveClient.getReadWriteLock(lockName).readLock();
+            case WRITE:
+                return redissonReactiveClient.getReadWriteLock(lockName).writeLock();
+            default:
+                return redissonReactiveClient.getFairLock(lockName);
+        }
+    }
+
+    /**
+     * 一次订阅持有的锁
+     */
+    private static final class LockHolder {
+        private final long threadId;
+        private final String metricName;
+        private final LockType lockType;
+        private final List<RLockReactive> acquired = Collections.synchronizedList(new ArrayList<>());
+        private volatile long acquiredAt;
+        private volatile boolean cancelled;
+
+        private LockHolder(long threadId, String metricName, LockType lockType) {
+            this.threadId = threadId;
+            this.metricName = metricName;
+            this.lockType = lockType;
+        }
+
+        private boolean isAcquired(List<RLockReactive> locks) {
+            return acquired.size() == locks.size();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.springultron.lock.client;
 import org.springultron.core.function.CheckedSupplier;
 import org.springultron.lock.annotation.LockType;
 
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -12,6 +13,11 @@ import java.util.concurrent.TimeUnit;
  * @date 2020/4/27 21:45
  */
 public interface RedisLockClient {
+    /**
+     * 看门狗自动续期：leaseTime 小于等于0时不设置固定的自动解锁时间，由 Redisson 看门狗在持有期间定时续期，
+     * 节点宕机后锁在看门狗超时时间（默认30秒）后自动释放
+     */
+    long WATCHDOG_LEASE_TIME = -1L;
     /**
      * 尝试获取锁
      *
@@ -31,32 +37,95 @@ public interface RedisLockClient {
      * @param lockName  锁名
      * @param lockType  锁类型
      * @param waitTime  等待锁超时时间
-     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间，小于等于0时开启看门狗自动续期
      * @param timeUnit  时间单位
      * @return 是否成功
      */
     boolean tryLock(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException;
 
     /**
-     * 解锁
+     * 解锁，当前线程未持有锁（如锁已过期自动释放）时只打印告警日志
      *
      * @param lockName 锁名
      * @param lockType 锁类型
      */
     void unLock(String lockName, LockType lockType);
 
+    /**
+     * 获取锁并执行方法，只在获取到锁时释放锁
+     *
+     * @param lockName  锁名
+     * @param lockType  锁类型
+     * @param waitTime  等待锁超时时间
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间，小于等于0时开启看门狗自动续期
+     * @param timeUnit  时间单位
+     * @param supplier  获取锁后的回调
+     * @return 执行结果，未获取到锁时 {@link LockResult#isAcquired()} 为false
+     */
+    <T> LockResult<T> execute(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier);
+
     /**
      * 获取锁并返回取锁后执行方法
      *
      * @param lockName  锁名
      * @param lockType  锁类型
      * @param waitTime  等待锁超时时间
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间，小于等于0时开启看门狗自动续期
+     * @param timeUnit  时间单位
+     * @param supplier  获取锁后的回调
+     * @return 返回的数据，未获取到锁时为null
+     */
+    default <T> T lock(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier) {
+        return execute(lockName, lockType, waitTime, leaseTime, timeUnit, supplier).orElse(null);
+    }
+
+    /**
+     * 尝试同时获取多把锁（联锁），锁名去重后按字典序依次获取，所有锁共用同一个等待时间，任意一把获取失败时释放已获取的锁
+     *
+     * @param lockNames 锁名集合
+     * @param lockType  锁类型
+     * @param waitTime  等待锁超时时间
      * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间
      * @param timeUnit  时间单位
+     * @return 是否全部获取成功
+     */
+    boolean tryLock(Collection<String> lockNames, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException;
+
+    /**
+     * 一次释放多把锁（联锁）
+     *
+     * @param lockNames 锁名集合
+     * @param lockType  锁类型
+     */
+    void unLock(Collection<String> lockNames, LockType lockType);
+
+    /**
+     * 同时获取多把锁（联锁）并执行方法，只在获取到锁时释放锁
+     *
+     * @param lockNames 锁名集合
+     * @param lockType  锁类型
+     * @param waitTime  等待锁超时时间
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间，小于等于0时开启看门狗自动续期
+     * @param timeUnit  时间单位
      * @param supplier  获取锁后的回调
-     * @return 返回的数据
+     * @return 执行结果，未获取到锁时 {@link LockResult#isAcquired()} 为false
+     */
+    <T> LockResult<T> execute(Collection<String> lockNames, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier);
+
+    /**
+     * 同时获取多把锁（联锁）并返回取锁后执行方法
+     *
+     * @param lockNames 锁名集合
+     * @param lockType  锁类型
+     * @param waitTime  等待锁超时时间
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间，小于等于0时开启看门狗自动续期
+     * @param timeUnit  时间单位
+     * @param supplier  获取锁后的回调
+     * @return 返回的数据，未获取到锁时为null
      */
-    <T> T lock(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier);
+    default <T> T lock(Collection<String> lockNames, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier) {
+        return execute(lockNames, lockType, waitTime, leaseTime, timeUnit, supplier).orElse(null);
+    }
 
     /**
      * 公平锁
@@ -83,4 +152,30 @@ public interface RedisLockClient {
     default <T> T reentrantLock(String lockName, long waitTime, long leaseTime, CheckedSupplier<T> supplier) {
         return lock(lockName, LockType.REENTRANT, waitTime, leaseTime, TimeUnit.SECONDS, supplier);
     }
+
+    /**
+     * 读锁，多个读锁可同时持有
+     *
+     * @param lockName  锁名
+     * @param waitTime  等待锁超时时间（单位秒）
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间（单位秒）
+     * @param supplier  获取锁后的回调
+     * @return 返回的数据
+     */
+    default <T> T readLock(String lockName, long waitTime, long leaseTime, CheckedSupplier<T> supplier) {
+        return lock(lockName, LockType.READ, waitTime, leaseTime, TimeUnit.SECONDS, supplier);
+    }
+
+    /**
+     * 写锁，与读锁、写锁互斥
+     *
+     * @param lockName  锁名
+     * @param waitTime  等待锁超时时间（单位秒）
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间（单位秒）
+     * @param supplier  获取锁后的回调
+     * @return 返回的数据
+     */
+    default <T> T writeLock(String lockName, long waitTime, long leaseTime, CheckedSupplier<T> supplier) {
+        return lock(lockName, LockType.WRITE, waitTime, leaseTime, TimeUnit.SECONDS, supplier);
+    }
 }
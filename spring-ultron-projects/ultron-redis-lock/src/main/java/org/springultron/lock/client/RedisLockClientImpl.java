@@ -2,24 +2,87 @@ package org.springultron.lock.client;
 
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springultron.core.exception.Exceptions;
 import org.springultron.core.function.CheckedSupplier;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
 import org.springultron.lock.annotation.LockType;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Redis分布式锁客户端
+ * <p>
+ * 开启本地预锁后，同一节点内竞争同一把锁的线程先在该锁名的本地锁上排队，只有本地获胜的线程才去竞争 Redis 锁，
+ * 其余线程不再各自向 Redis 发送加锁脚本和订阅解锁频道；本地锁按锁名创建、引用计数归零后移除，不同锁名之间互不影响，
+ * 与 Redis 锁同样可重入；公平锁使用公平的本地锁，保证节点内按请求顺序获取；读锁、写锁共用该锁名的本地读写锁，节点内的读线程仍可并行。
+ * </p>
+ * <p>
+ * 联锁将多个锁名去重后按字典序组成 Redisson MultiLock，所有调用方按相同顺序加锁，避免交叉等待导致死锁；联锁不经过本地预锁。
+ * </p>
+ * <p>
+ * 所有加锁都记录耗时及结果；持有时长只在 execute、lock 方法中记录，tryLock 与 unLock 分开调用时不记录。联锁以排序后的第一个锁名统计。
+ * </p>
+ * <p>
+ * execute、lock 只在获取到锁时释放锁；释放时锁已不被当前线程持有（如自动解锁时间已过）只打印告警日志，不覆盖业务结果或异常。
+ * </p>
  *
  * @author brucewuu
  * @date 2020/4/27 21:55
  */
 public class RedisLockClientImpl implements RedisLockClient {
+    private static final Logger log = LoggerFactory.getLogger(RedisLockClientImpl.class);
 
     private final RedissonClient redissonClient;
+    /**
+     * 按锁名的本地预锁，为null时不开启
+     */
+    @Nullable
+    private final Map<String, LocalLock> localLocks;
+    @Nullable
+    private final Map<String, LocalLock> localFairLocks;
+    @Nullable
+    private final Map<String, LocalLock> localReadWriteLocks;
+    private final RedisLockMonitor monitor;
 
     public RedisLockClientImpl(RedissonClient redissonClient) {
+        this(redissonClient, false);
+    }
+
+    /**
+     * @param redissonClient RedissonClient
+     * @param localLock      是否开启本地预锁
+     */
+    public RedisLockClientImpl(RedissonClient redissonClient, boolean localLock) {
+        this(redissonClient, localLock, RedisLockMonitor.NONE);
+    }
+
+    /**
+     * @param redissonClient RedissonClient
+     * @param localLock      是否开启本地预锁
+     * @param monitor        加锁指标及慢日志
+     */
+    public RedisLockClientImpl(RedissonClient redissonClient, boolean localLock, RedisLockMonitor monitor) {
         this.redissonClient = redissonClient;
+        this.monitor = monitor;
+        if (localLock) {
+            this.localLocks = new ConcurrentHashMap<>();
+            this.localFairLocks = new ConcurrentHashMap<>();
+            this.localReadWriteLocks = new ConcurrentHashMap<>();
+        } else {
+            this.localLocks = null;
+            this.localFairLocks = null;
+            this.localReadWriteLocks = null;
+        }
     }
 
     /**
@@ -35,7 +98,7 @@ public class RedisLockClientImpl implements RedisLockClient {
     @Override
     public boolean tryLock(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException {
         RLock lock = getLock(lockName, lockType);
-        return lock.tryLock(waitTime, leaseTime, timeUnit);
+        return tryLock(lock, lockName, lockType, waitTime, leaseTime, timeUnit);
     }
 
     /**
@@ -47,34 +110,230 @@ public class RedisLockClientImpl implements RedisLockClient {
     @Override
     public void unLock(String lockName, LockType lockType) {
         RLock lock = getLock(lockName, lockType);
-        lock.unlock();
+        unlock(lock, lockName, lockType);
     }
 
     /**
-     * 获取锁并返回取锁后执行方法
+     * 获取锁并执行方法，只在获取到锁时释放锁
      *
      * @param lockName  锁名
      * @param lockType  锁类型
      * @param waitTime  等待锁超时时间
-     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间
+     * @param leaseTime 自动解锁时间，小于等于0时开启看门狗自动续期
      * @param timeUnit  时间单位
      * @param supplier  获取锁后的回调
-     * @return 返回的数据
+     * @return 执行结果
      */
     @Override
-    public <T> T lock(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier) {
+    public <T> LockResult<T> execute(String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier) {
         RLock lock = getLock(lockName, lockType);
         try {
-            boolean result = lock.tryLock(waitTime, leaseTime, timeUnit);
-            if (result) {
-                return supplier.get();
+            if (!tryLock(lock, lockName, lockType, waitTime, leaseTime, timeUnit)) {
+                return LockResult.notAcquired();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.unchecked(e);
+        }
+        final long acquiredAt = System.nanoTime();
+        try {
+            return LockResult.acquired(supplier.get());
         } catch (Throwable e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             throw Exceptions.unchecked(e);
         } finally {
+            unlock(lock, lockName, lockType);
+            monitor.released(lockName, lockType, acquiredAt);
+        }
+    }
+
+    /**
+     * 尝试同时获取多把锁（联锁）
+     *
+     * @param lockNames 锁名集合
+     * @param lockType  锁类型
+     * @param waitTime  等待锁超时时间
+     * @param leaseTime 自动解锁时间，自动解锁时间一定得大于方法执行时间
+     * @param timeUnit  时间单位
+     * @return 是否全部获取成功
+     */
+    @Override
+    public boolean tryLock(Collection<String> lockNames, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException {
+        TreeSet<String> sortedNames = sortLockNames(lockNames);
+        return acquire(getMultiLock(sortedNames, lockType), null, sortedNames.first(), lockType, waitTime, leaseTime, timeUnit);
+    }
+
+    /**
+     * 一次释放多把锁（联锁）
+     *
+     * @param lockNames 锁名集合
+     * @param lockType  锁类型
+     */
+    @Override
+    public void unLock(Collection<String> lockNames, LockType lockType) {
+        TreeSet<String> sortedNames = sortLockNames(lockNames);
+        unlockRedis(getMultiLock(sortedNames, lockType), sortedNames.first(), lockType);
+    }
+
+    /**
+     * 同时获取多把锁（联锁）并执行方法，只在获取到锁时释放锁
+     *
+     * @param lockNames 锁名集合
+     * @param lockType  锁类型
+     * @param waitTime  等待锁超时时间
+     * @param leaseTime 自动解锁时间，小于等于0时开启看门狗自动续期
+     * @param timeUnit  时间单位
+     * @param supplier  获取锁后的回调
+     * @return 执行结果
+     */
+    @Override
+    public <T> LockResult<T> execute(Collection<String> lockNames, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier) {
+        TreeSet<String> sortedNames = sortLockNames(lockNames);
+        RLock lock = getMultiLock(sortedNames, lockType);
+        try {
+            if (!acquire(lock, null, sortedNames.first(), lockType, waitTime, leaseTime, timeUnit)) {
+                return LockResult.notAcquired();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.unchecked(e);
+        }
+        final long acquiredAt = System.nanoTime();
+        try {
+            return LockResult.acquired(supplier.get());
+        } catch (Throwable e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw Exceptions.unchecked(e);
+        } finally {
+            unlockRedis(lock, sortedNames.first(), lockType);
+            monitor.released(sortedNames.first(), lockType, acquiredAt);
+        }
+    }
+
+    private boolean tryLock(RLock lock, String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException {
+        if (localLocks == null) {
+            return acquire(lock, null, lockName, lockType, waitTime, leaseTime, timeUnit);
+        }
+        LocalLock localLock = retainLocalLock(lockName, lockType);
+        boolean locked = false;
+        try {
+            locked = acquire(lock, localLock.get(lockType), lockName, lockType, waitTime, leaseTime, timeUnit);
+            return locked;
+        } finally {
+            if (!locked) {
+                releaseLocalLock(lockName, lockType);
+            }
+        }
+    }
+
+    /**
+     * 获取锁并记录加锁耗时及结果，开启本地预锁时先获取本地预锁再获取 Redis 锁，本地等待的时间计入 waitTime
+     */
+    private boolean acquire(RLock lock, @Nullable Lock localLock, String lockName, LockType lockType, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException {
+        final long start = System.nanoTime();
+        RedisLockMetrics.AcquireResult result = RedisLockMetrics.AcquireResult.ERROR;
+        try {
+            long lease = leaseTime > 0 ? leaseTime : WATCHDOG_LEASE_TIME;
+            boolean locked = localLock == null
+                    ? lock.tryLock(waitTime, lease, timeUnit)
+                    : tryLock(lock, localLock, waitTime, lease, timeUnit, start);
+            result = locked ? RedisLockMetrics.AcquireResult.ACQUIRED : RedisLockMetrics.AcquireResult.TIMEOUT;
+            return locked;
+        } finally {
+            monitor.acquired(lockName, lockType, result, start);
+        }
+    }
+
+    private static boolean tryLock(RLock lock, Lock localLock, long waitTime, long leaseTime, TimeUnit timeUnit, long start) throws InterruptedException {
+        if (!localLock.tryLock(waitTime, timeUnit)) {
+            return false;
+        }
+        boolean locked = false;
+        try {
+            long remaining = Math.max(0L, timeUnit.toNanos(waitTime) - (System.nanoTime() - start));
+            locked = lock.tryLock(timeUnit.convert(remaining, TimeUnit.NANOSECONDS), leaseTime, timeUnit);
+            return locked;
+        } finally {
+            if (!locked) {
+                localLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 先释放 Redis 锁再释放本地预锁，Redis 锁已不被当前线程持有时只打印告警日志
+     */
+    private void unlock(RLock lock, String lockName, LockType lockType) {
+        try {
+            unlockRedis(lock, lockName, lockType);
+        } finally {
+            unlockLocal(lockName, lockType);
+        }
+    }
+
+    private static void unlockRedis(RLock lock, String lockName, LockType lockType) {
+        try {
             lock.unlock();
+        } catch (IllegalMonitorStateException e) {
+            log.warn("Redis lock is not held by current thread when unlocking, the lease time may have expired, lockName: {}, type: {}", lockName, lockType);
+        }
+    }
+
+    /**
+     * 当前线程持有锁名对应的本地预锁时释放一次，并释放一次引用
+     */
+    private void unlockLocal(String lockName, LockType lockType) {
+        if (localLocks == null) {
+            return;
+        }
+        LocalLock localLock = localLockMap(lockType).get(lockName);
+        if (localLock != null && localLock.isHeldByCurrentThread(lockType)) {
+            localLock.get(lockType).unlock();
+            releaseLocalLock(lockName, lockType);
+        }
+    }
+
+    /**
+     * 获取锁名对应的本地预锁并增加引用，不存在时创建
+     */
+    private LocalLock retainLocalLock(String lockName, LockType lockType) {
+        return localLockMap(lockType).compute(lockName, (name, localLock) -> {
+            if (localLock == null) {
+                localLock = new LocalLock(lockType);
+            }
+            localLock.references++;
+            return localLock;
+        });
+    }
+
+    /**
+     * 释放一次引用，引用归零时移除，与 {@link #retainLocalLock} 在同一个 key 上串行执行，移除后不会再被使用
+     */
+    private void releaseLocalLock(String lockName, LockType lockType) {
+        localLockMap(lockType).computeIfPresent(lockName, (name, localLock) -> --localLock.references == 0 ? null : localLock);
+    }
+
+    /**
+     * 本地预锁数量，用于确认引用归零的本地锁已被移除
+     */
+    int getLocalLockCount() {
+        return localLocks == null ? 0 : localLocks.size() + localFairLocks.size() + localReadWriteLocks.size();
+    }
+
+    private Map<String, LocalLock> localLockMap(LockType lockType) {
+        switch (lockType) {
+            case FAIR:
+                return localFairLocks;
+            case READ:
+            case WRITE:
+                return localReadWriteLocks;
+            default:
+                return localLocks;
         }
-        return null;
     }
 
     /**
@@ -86,11 +345,89 @@ public class RedisLockClientImpl implements RedisLockClient {
      */
     private RLock getLock(String lockName, LockType lockType) {
         RLock rLock;
-        if (lockType == LockType.REENTRANT) {
-            rLock = redissonClient.getLock(lockName);
-        } else {
-            rLock = redissonClient.getFairLock(lockName);
+        switch (lockType) {
+            case REENTRANT:
+                rLock = redissonClient.getLock(lockName);
+                break;
+            case READ:
+                rLock = redissonClient.getReadWriteLock(lockName).readLock();
+                break;
+            case WRITE:
+                rLock = redissonClient.getReadWriteLock(lockName).writeLock();
+                break;
+            default:
+                rLock = redissonClient.getFairLock(lockName);
         }
         return rLock;
     }
+
+    /**
+     * 锁名去重并排序，保证所有调用方的加锁顺序一致
+     */
+    private static TreeSet<String> sortLockNames(Collection<String> lockNames) {
+        Assert.notEmpty(lockNames, "lockNames must not be empty");
+        return new TreeSet<>(lockNames);
+    }
+
+    /**
+     * 获取联锁
+     *
+     * @param sortedNames 排序后的锁名
+     * @param lockType    锁类型
+     * @return RLock
+     */
+    private RLock getMultiLock(TreeSet<String> sortedNames, LockType lockType) {
+        RLock[] locks = new RLock[sortedNames.size()];
+        int i = 0;
+        for (String lockName : sortedNames) {
+            locks[i++] = getLock(lockName, lockType);
+        }
+        return redissonClient.getMultiLock(locks);
+    }
+
+    /**
+     * 锁名对应的本地预锁及引用计数，引用计数只在 ConcurrentHashMap 的 compute 中读写
+     */
+    private static final class LocalLock {
+        @Nullable
+        private final ReentrantLock lock;
+        @Nullable
+        private final ReentrantReadWriteLock readWriteLock;
+        private int references;
+
+        private LocalLock(LockType lockType) {
+            switch (lockType) {
+                case READ:
+                case WRITE:
+                    this.lock = null;
+                    this.readWriteLock = new ReentrantReadWriteLock();
+                    break;
+                default:
+                    this.lock = new ReentrantLock(lockType == LockType.FAIR);
+                    this.readWriteLock = null;
+            }
+        }
+
+        private Lock get(LockType lockType) {
+            switch (lockType) {
+                case READ:
+                    return readWriteLock.readLock();
+                case WRITE:
+                    return readWriteLock.writeLock();
+                default:
+                    return lock;
+            }
+        }
+
+        private boolean isHeldByCurrentThread(LockType lockType) {
+            switch (lockType) {
+                case READ:
+                    return readWriteLock.getReadHoldCount() > 0;
+                case WRITE:
+                    return readWriteLock.isWriteLockedByCurrentThread();
+                default:
+                    return lock.isHeldByCurrentThread();
+            }
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package org.springultron.lock.client;
+
+import org.springultron.lock.annotation.LockType;
+
+/**
+ * 分布式锁指标记录，按锁名模板统计，默认不记录
+ *
+ * @author brucewuu
+ * @date 2021/6/5 上午10:00
+ */
+public interface RedisLockMetrics {
+    /**
+     * 不记录任何指标
+     */
+    RedisLockMetrics NONE = new RedisLockMetrics() {
+    };
+
+    /**
+     * 记录一次加锁
+     *
+     * @param template  锁名模板
+     * @param lockType  锁类型
+     * @param result    加锁结果
+     * @param waitNanos 加锁耗时（纳秒）
+     */
+    default void recordAcquire(String template, LockType lockType, AcquireResult result, long waitNanos) {
+    }
+
+    /**
+     * 记录一次持有锁的时长
+     *
+     * @param template  锁名模板
+     * @param lockType  锁类型
+     * @param holdNanos 持有时长（纳秒）
+     */
+    default void recordHold(String template, LockType lockType, long holdNanos) {
+    }
+
+    /**
+     * 加锁结果
+     */
+    enum AcquireResult {
+        /**
+         * 获取成功
+         */
+        ACQUIRED,
+        /**
+         * 等待超时
+         */
+        TIMEOUT,
+        /**
+         * 加锁异常，如 Redis 不可用、线程被中断
+         */
+        ERROR
+    }
+}
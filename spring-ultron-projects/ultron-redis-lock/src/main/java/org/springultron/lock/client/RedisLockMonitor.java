@@ -0,0 +1,121 @@
+package org.springultron.lock.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springultron.lock.annotation.LockType;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分布式锁监控：记录加锁耗时、加锁结果、持有时长，并对超过阈值的加锁等待和持有打印告警日志
+ * <p>
+ * 指标按锁名模板聚合，避免锁名中的业务参数导致指标基数膨胀：@RedisLock 的 key 会注册为模板，
+ * 锁名依次去掉最后一段 ":xxx" 直到匹配已注册的模板；未匹配时只取第一段作为模板，
+ * 多段动态锁名（如 order:123:item:456）也只会产生一个模板，不含 ":" 的锁名本身即为模板。
+ * </p>
+ * <p>
+ * 无竞争时每次加解锁只多两次 nanoTime 及一次指标记录，模板只在记录指标或打印日志时计算。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/6/5 上午10:20
+ */
+public class RedisLockMonitor {
+    private static final Logger log = LoggerFactory.getLogger(RedisLockMonitor.class);
+    /**
+     * 不记录指标、不打印慢日志
+     */
+    public static final RedisLockMonitor NONE = new RedisLockMonitor(RedisLockMetrics.NONE, Duration.ZERO, Duration.ZERO);
+
+    private final RedisLockMetrics metrics;
+    private final long slowAcquireNanos;
+    private final long slowHoldNanos;
+    private final boolean enabled;
+    private final Set<String> templates = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param metrics              指标记录
+     * @param slowAcquireThreshold 加锁等待告警阈值，为0时不告警
+     * @param slowHoldThreshold    持有锁告警阈值，为0时不告警
+     */
+    public RedisLockMonitor(RedisLockMetrics metrics, Duration slowAcquireThreshold, Duration slowHoldThreshold) {
+        this.metrics = metrics;
+        this.slowAcquireNanos = slowAcquireThreshold.toNanos();
+        this.slowHoldNanos = slowHoldThreshold.toNanos();
+        this.enabled = metrics != RedisLockMetrics.NONE || slowAcquireNanos > 0 || slowHoldNanos > 0;
+    }
+
+    /**
+     * 注册锁名模板，如 @RedisLock 的 key
+     *
+     * @param template 锁名模板
+     */
+    public void registerTemplate(String template) {
+        if (enabled && !templates.contains(template)) {
+            templates.add(template);
+        }
+    }
+
+    /**
+     * 记录加锁
+     *
+     * @param lockName   锁名
+     * @param lockType   锁类型
+     * @param result     加锁结果
+     * @param startNanos 开始加锁时的 nanoTime
+     */
+    public void acquired(String lockName, LockType lockType, RedisLockMetrics.AcquireResult result, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        long waitNanos = System.nanoTime() - startNanos;
+        String template = template(lockName);
+        metrics.recordAcquire(template, lockType, result, waitNanos);
+        if (slowAcquireNanos > 0 && waitNanos >= slowAcquireNanos) {
+            log.warn("Slow redis lock acquire, lockName: {}, template: {}, type: {}, result: {}, wait: {}ms",
+                    lockName, template, lockType, result, waitNanos / 1000000L);
+        }
+    }
+
+    /**
+     * 记录释放锁
+     *
+     * @param lockName        锁名
+     * @param lockType        锁类型
+     * @param acquiredAtNanos 获取到锁时的 nanoTime
+     */
+    public void released(String lockName, LockType lockType, long acquiredAtNanos) {
+        if (!enabled) {
+            return;
+        }
+        long holdNanos = System.nanoTime() - acquiredAtNanos;
+        String template = template(lockName);
+        metrics.recordHold(template, lockType, holdNanos);
+        if (slowHoldNanos > 0 && holdNanos >= slowHoldNanos) {
+            log.warn("Slow redis lock hold, lockName: {}, template: {}, type: {}, hold: {}ms",
+                    lockName, template, lockType, holdNanos / 1000000L);
+        }
+    }
+
+    /**
+     * 解析锁名对应的模板
+     *
+     * @param lockName 锁名
+     * @return 模板
+     */
+    public String template(String lockName) {
+        String name = lockName;
+        int index;
+        while (!templates.contains(name) && (index = name.lastIndexOf(':')) > 0) {
+            name = name.substring(0, index);
+        }
+        if (templates.contains(name)) {
+            return name;
+        }
+        // 未注册的锁名中任意一段都可能是业务参数，只保留第一段
+        index = lockName.indexOf(':');
+        return index > 0 ? lockName.substring(0, index) : lockName;
+    }
+}
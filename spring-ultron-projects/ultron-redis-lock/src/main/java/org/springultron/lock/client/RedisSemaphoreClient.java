@@ -0,0 +1,67 @@
+package org.springultron.lock.client;
+
+import org.springframework.lang.Nullable;
+import org.springultron.core.function.CheckedSupplier;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis分布式信号量客户端，许可带有过期时间
+ *
+ * @author brucewuu
+ * @date 2021/6/3 上午10:10
+ */
+public interface RedisSemaphoreClient {
+    /**
+     * 设置许可总数，信号量已存在时不修改
+     *
+     * @param name    信号量名
+     * @param permits 许可总数
+     * @return 是否设置成功
+     */
+    boolean trySetPermits(String name, int permits);
+
+    /**
+     * 尝试获取一个许可
+     *
+     * @param name      信号量名
+     * @param permits   许可总数，信号量不存在时以此初始化
+     * @param waitTime  等待许可超时时间
+     * @param leaseTime 许可过期时间，过期后自动归还
+     * @param timeUnit  时间单位
+     * @return 许可id，获取失败时为null
+     */
+    @Nullable
+    String tryAcquire(String name, int permits, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException;
+
+    /**
+     * 归还许可
+     *
+     * @param name     信号量名
+     * @param permitId 许可id
+     * @return 是否归还成功，许可已过期时为false
+     */
+    boolean release(String name, String permitId);
+
+    /**
+     * 获取当前可用许可数
+     *
+     * @param name 信号量名
+     * @return 可用许可数
+     */
+    int availablePermits(String name);
+
+    /**
+     * 获取许可并返回取得许可后执行方法，未获取到许可时抛出 {@link SemaphoreAcquireException}
+     *
+     * @param name      信号量名
+     * @param permits   许可总数，信号量不存在时以此初始化
+     * @param waitTime  等待许可超时时间
+     * @param leaseTime 许可过期时间，过期时间一定得大于方法执行时间
+     * @param timeUnit  时间单位
+     * @param supplier  获取许可后的回调
+     * @return 返回的数据
+     * @throws SemaphoreAcquireException 等待超时仍未获取到许可，supplier 未执行
+     */
+    <T> T acquire(String name, int permits, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier);
+}
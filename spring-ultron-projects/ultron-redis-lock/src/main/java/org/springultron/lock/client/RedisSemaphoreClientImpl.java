@@ -0,0 +1,92 @@
+package org.springultron.lock.client;
+
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RedissonClient;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springultron.core.exception.Exceptions;
+import org.springultron.core.function.CheckedSupplier;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis分布式信号量客户端，基于 Redisson RPermitExpirableSemaphore
+ * <p>
+ * 每个信号量在本节点首次使用时执行一次 trySetPermits 初始化许可总数，之后获取许可不再额外访问 Redis；
+ * 获取超时时再执行一次 trySetPermits（已存在时不会覆盖），信号量在 Redis 中被删除或淘汰后可重新初始化，不会一直获取失败
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/6/3 上午10:20
+ */
+public class RedisSemaphoreClientImpl implements RedisSemaphoreClient {
+
+    private final RedissonClient redissonClient;
+    /**
+     * 本节点已初始化许可总数的信号量
+     */
+    private final Set<String> initialized = ConcurrentHashMap.newKeySet();
+
+    public RedisSemaphoreClientImpl(RedissonClient redissonClient) {
+        this.redissonClient = redissonClient;
+    }
+
+    @Override
+    public boolean trySetPermits(String name, int permits) {
+        Assert.isTrue(permits > 0, "permits must be greater than 0");
+        boolean result = redissonClient.getPermitExpirableSemaphore(name).trySetPermits(permits);
+        initialized.add(name);
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public String tryAcquire(String name, int permits, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException {
+        if (!initialized.contains(name)) {
+            trySetPermits(name, permits);
+        }
+        RPermitExpirableSemaphore semaphore = redissonClient.getPermitExpirableSemaphore(name);
+        String permitId = semaphore.tryAcquire(waitTime, leaseTime, timeUnit);
+        if (permitId == null && semaphore.trySetPermits(permits)) {
+            // 信号量已不存在，重新初始化后再尝试一次
+            permitId = semaphore.tryAcquire(0, leaseTime, timeUnit);
+        }
+        return permitId;
+    }
+
+    @Override
+    public boolean release(String name, String permitId) {
+        return redissonClient.getPermitExpirableSemaphore(name).tryRelease(permitId);
+    }
+
+    @Override
+    public int availablePermits(String name) {
+        return redissonClient.getPermitExpirableSemaphore(name).availablePermits();
+    }
+
+    @Override
+    public <T> T acquire(String name, int permits, long waitTime, long leaseTime, TimeUnit timeUnit, CheckedSupplier<T> supplier) {
+        String permitId = null;
+        try {
+            permitId = tryAcquire(name, permits, waitTime, leaseTime, timeUnit);
+            if (permitId == null) {
+                // 返回null会被 AOP 转换为基本类型时抛出 AopInvocationException，且无法与业务方法返回null区分
+                throw new SemaphoreAcquireException(name);
+            }
+            return supplier.get();
+        } catch (SemaphoreAcquireException e) {
+            throw e;
+        } catch (Throwable e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw Exceptions.unchecked(e);
+        } finally {
+            if (permitId != null) {
+                release(name, permitId);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.springultron.lock.client;
+
+import org.springultron.core.exception.ApiException;
+import org.springultron.core.result.ResultCode;
+
+/**
+ * 等待超时仍未获取到信号量许可，业务方法未执行，对应 HTTP 429 Too Many Requests
+ *
+ * @author brucewuu
+ * @date 2021/6/3 上午10:15
+ */
+public class SemaphoreAcquireException extends ApiException {
+    private static final long serialVersionUID = 4127605392213765018L;
+
+    private final String name;
+
+    public SemaphoreAcquireException(String name) {
+        super(ResultCode.TOO_MANY_REQUESTS, "Failed to acquire semaphore permit: " + name);
+        this.name = name;
+    }
+
+    /**
+     * @return 信号量名
+     */
+    public String getName() {
+        return name;
+    }
+}
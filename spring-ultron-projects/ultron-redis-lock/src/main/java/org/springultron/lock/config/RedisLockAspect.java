@@ -5,23 +5,39 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.expression.AnnotatedElementKey;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.ObjectUtils;
 import org.springultron.core.spel.UltronExpressionEvaluator;
 import org.springultron.core.utils.SpringUtils;
 import org.springultron.lock.annotation.LockType;
 import org.springultron.lock.annotation.RedisLock;
+import org.springultron.lock.client.ReactiveRedisLockClient;
 import org.springultron.lock.client.RedisLockClient;
+import org.springultron.lock.client.RedisLockMonitor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Redis分布式锁注解切面
+ * <p>
+ * 方法返回 Mono/Flux 时使用响应式客户端，锁在返回的 Publisher 被订阅时获取，在其完成、出错或被取消时释放
+ * </p>
  *
  * @author brucewuu
  * @date 2020/4/28 10:15
@@ -35,10 +51,29 @@ public class RedisLockAspect {
     private static final UltronExpressionEvaluator EVALUATOR = new UltronExpressionEvaluator();
 
     private final RedisLockClient redisLockClient;
+    @Nullable
+    private final ReactiveRedisLockClient reactiveRedisLockClient;
+    @Nullable
+    private final RedisLockMonitor redisLockMonitor;
 
-    @Autowired
     public RedisLockAspect(RedisLockClient redisLockClient) {
+        this(redisLockClient, null, null);
+    }
+
+    public RedisLockAspect(RedisLockClient redisLockClient, @Nullable ReactiveRedisLockClient reactiveRedisLockClient) {
+        this(redisLockClient, reactiveRedisLockClient, null);
+    }
+
+    /**
+     * @param redisLockClient         RedisLockClient
+     * @param reactiveRedisLockClient 响应式客户端，为null时返回 Mono/Flux 的方法也使用同步加锁
+     * @param redisLockMonitor        加锁监控，注解的 key 注册为指标的锁名模板
+     */
+    @Autowired
+    public RedisLockAspect(RedisLockClient redisLockClient, @Nullable ReactiveRedisLockClient reactiveRedisLockClient, @Nullable RedisLockMonitor redisLockMonitor) {
         this.redisLockClient = redisLockClient;
+        this.reactiveRedisLockClient = reactiveRedisLockClient;
+        this.redisLockMonitor = redisLockMonitor;
     }
 
     /**
@@ -49,6 +84,9 @@ public class RedisLockAspect {
         String lockName = redisLock.key();
         log.debug("--lockName: {}", lockName);
         Assert.hasText(lockName, "@RedisLock key must have length; it must not be null or empty");
+        if (redisLockMonitor != null) {
+            redisLockMonitor.registerTemplate(lockName);
+        }
         // el 表达式
         String lockParams = redisLock.params();
         log.debug("--lockParam: {}", lockParams);
@@ -66,9 +104,72 @@ public class RedisLockAspect {
         long waitTime = redisLock.waitTime();
         long leaseTime = redisLock.leaseTime();
         TimeUnit timeUnit = redisLock.timeUnit();
+        // 联锁
+        String multiParams = redisLock.multiParams();
+        List<String> lockKeys = null;
+        if (StringUtil.isNotBlank(multiParams)) {
+            lockKeys = evalMultiLockKeys(point, lockKey, multiParams);
+            log.debug("--lockKeys: {}", lockKeys);
+        }
+        Class<?> returnType = ((MethodSignature) point.getSignature()).getReturnType();
+        if (reactiveRedisLockClient != null && (Mono.class.isAssignableFrom(returnType) || Flux.class.isAssignableFrom(returnType))) {
+            Supplier<Flux<Object>> supplier = () -> proceedReactive(point);
+            Flux<Object> flux = lockKeys != null
+                    ? reactiveRedisLockClient.lockMany(lockKeys, lockType, waitTime, leaseTime, timeUnit, supplier)
+                    : reactiveRedisLockClient.lockMany(lockKey, lockType, waitTime, leaseTime, timeUnit, supplier);
+            return Mono.class.isAssignableFrom(returnType) ? flux.next() : flux;
+        }
+        if (lockKeys != null) {
+            return redisLockClient.lock(lockKeys, lockType, waitTime, leaseTime, timeUnit, point::proceed);
+        }
         return redisLockClient.lock(lockKey, lockType, waitTime, leaseTime, timeUnit, point::proceed);
     }
 
+    /**
+     * 获取锁后执行目标方法，同步抛出的异常转换为错误信号
+     */
+    @SuppressWarnings("unchecked")
+    private static Flux<Object> proceedReactive(ProceedingJoinPoint point) {
+        Object result;
+        try {
+            result = point.proceed();
+        } catch (Throwable e) {
+            return Flux.error(e);
+        }
+        return result == null ? Flux.empty() : Flux.from((Publisher<Object>) result);
+    }
+
+    /**
+     * 计算联锁参数表达式，结果为集合或数组时每个元素生成一个锁名
+     *
+     * @param point       ProceedingJoinPoint
+     * @param lockKey     锁名前缀
+     * @param multiParams multiParams
+     * @return 锁名集合
+     */
+    private List<String> evalMultiLockKeys(ProceedingJoinPoint point, String lockKey, String multiParams) {
+        MethodSignature ms = (MethodSignature) point.getSignature();
+        Method method = ms.getMethod();
+        Object target = point.getTarget();
+        Class<?> targetClass = target.getClass();
+        EvaluationContext context = EVALUATOR.createContext(method, point.getArgs(), target, targetClass, SpringUtils.getContext());
+        Object value = EVALUATOR.eval(multiParams, new AnnotatedElementKey(method, targetClass), context);
+        Collection<?> elements;
+        if (value instanceof Collection) {
+            elements = (Collection<?>) value;
+        } else if (ObjectUtils.isArray(value)) {
+            elements = CollectionUtils.arrayToList(value);
+        } else {
+            elements = value == null ? Collections.emptyList() : Collections.singletonList(value);
+        }
+        Assert.notEmpty(elements, "@RedisLock multiParams must evaluate to a non-empty collection or array");
+        List<String> lockKeys = new ArrayList<>(elements.size());
+        for (Object element : elements) {
+            lockKeys.add(lockKey + ":" + element);
+        }
+        return lockKeys;
+    }
+
     /**
      * 计算参数表达式
      *
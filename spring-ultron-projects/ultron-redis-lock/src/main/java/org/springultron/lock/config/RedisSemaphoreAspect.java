@@ -0,0 +1,79 @@
+package org.springultron.lock.config;
+
+import jodd.util.StringUtil;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.expression.AnnotatedElementKey;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.util.Assert;
+import org.springultron.core.spel.UltronExpressionEvaluator;
+import org.springultron.core.utils.SpringUtils;
+import org.springultron.lock.annotation.RedisSemaphore;
+import org.springultron.lock.client.RedisSemaphoreClient;
+
+import java.lang.reflect.Method;
+
+/**
+ * Redis分布式信号量注解切面
+ *
+ * @author brucewuu
+ * @date 2021/6/3 上午10:40
+ */
+@Aspect
+public class RedisSemaphoreAspect {
+    private static final Logger log = LoggerFactory.getLogger(RedisSemaphoreAspect.class);
+    /**
+     * spEl 表达式处理
+     */
+    private static final UltronExpressionEvaluator EVALUATOR = new UltronExpressionEvaluator();
+
+    private final RedisSemaphoreClient redisSemaphoreClient;
+
+    @Autowired
+    public RedisSemaphoreAspect(RedisSemaphoreClient redisSemaphoreClient) {
+        this.redisSemaphoreClient = redisSemaphoreClient;
+    }
+
+    /**
+     * AOP 环切 注解 @RedisSemaphore
+     */
+    @Around("@annotation(redisSemaphore)")
+    public Object aroundRedisSemaphore(ProceedingJoinPoint point, RedisSemaphore redisSemaphore) throws Throwable {
+        String name = redisSemaphore.key();
+        Assert.hasText(name, "@RedisSemaphore key must have length; it must not be null or empty");
+        Assert.isTrue(redisSemaphore.permits() > 0, "@RedisSemaphore permits must be greater than 0");
+        String params = redisSemaphore.params();
+        String semaphoreKey;
+        if (StringUtil.isNotBlank(params)) {
+            semaphoreKey = name + ":" + evalParam(point, params);
+        } else {
+            semaphoreKey = name;
+        }
+        log.debug("--semaphoreKey: {}", semaphoreKey);
+        return redisSemaphoreClient.acquire(semaphoreKey, redisSemaphore.permits(), redisSemaphore.waitTime(),
+                redisSemaphore.leaseTime(), redisSemaphore.timeUnit(), point::proceed);
+    }
+
+    /**
+     * 计算参数表达式
+     *
+     * @param point ProceedingJoinPoint
+     * @param param param
+     * @return 结果
+     */
+    private String evalParam(ProceedingJoinPoint point, String param) {
+        MethodSignature ms = (MethodSignature) point.getSignature();
+        Method method = ms.getMethod();
+        Object[] args = point.getArgs();
+        Object target = point.getTarget();
+        Class<?> targetClass = target.getClass();
+        EvaluationContext context = EVALUATOR.createContext(method, args, target, targetClass, SpringUtils.getContext());
+        AnnotatedElementKey elementKey = new AnnotatedElementKey(method, targetClass);
+        return EVALUATOR.evalAsText(param, elementKey, context);
+    }
+}
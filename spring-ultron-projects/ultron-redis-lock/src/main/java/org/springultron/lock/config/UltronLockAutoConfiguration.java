@@ -3,10 +3,14 @@ package org.springultron.lock.config;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -17,8 +21,15 @@ import org.springframework.util.ReflectionUtils;
 import org.springultron.core.config.UltronAutoConfiguration;
 import org.springultron.core.utils.SpringUtils;
 import org.springultron.core.utils.StringUtils;
+import org.springultron.lock.client.MicrometerRedisLockMetrics;
+import org.springultron.lock.client.ReactiveRedisLockClient;
+import org.springultron.lock.client.ReactiveRedisLockClientImpl;
 import org.springultron.lock.client.RedisLockClient;
 import org.springultron.lock.client.RedisLockClientImpl;
+import org.springultron.lock.client.RedisLockMetrics;
+import org.springultron.lock.client.RedisLockMonitor;
+import org.springultron.lock.client.RedisSemaphoreClient;
+import org.springultron.lock.client.RedisSemaphoreClientImpl;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,8 +47,8 @@ import java.util.List;
 @Configuration(proxyBeanMethods = false)
 @ConditionalOnClass(Redisson.class)
 @AutoConfigureAfter(UltronAutoConfiguration.class)
-@EnableConfigurationProperties({RedisProperties.class, RedissonProperties.class})
-@Import({RedisLockAspect.class})
+@EnableConfigurationProperties({RedisProperties.class, RedissonProperties.class, UltronLockProperties.class})
+@Import({RedisLockAspect.class, RedisSemaphoreAspect.class})
 public class UltronLockAutoConfiguration {
 
     private final RedisProperties redisProperties;
@@ -51,8 +62,27 @@ public class UltronLockAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public RedisLockClient redisLockClient(RedissonClient redisson) {
-        return new RedisLockClientImpl(redisson);
+    public RedisLockMonitor redisLockMonitor(ObjectProvider<RedisLockMetrics> redisLockMetrics, UltronLockProperties lockProperties) {
+        UltronLockProperties.SlowLog slowLog = lockProperties.getSlowLog();
+        return new RedisLockMonitor(redisLockMetrics.getIfAvailable(() -> RedisLockMetrics.NONE), slowLog.getAcquireThreshold(), slowLog.getHoldThreshold());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisLockClient redisLockClient(RedissonClient redisson, UltronLockProperties lockProperties, RedisLockMonitor redisLockMonitor) {
+        return new RedisLockClientImpl(redisson, lockProperties.getLocalLock().isEnabled(), redisLockMonitor);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ReactiveRedisLockClient reactiveRedisLockClient(RedissonClient redisson, RedisLockMonitor redisLockMonitor) {
+        return new ReactiveRedisLockClientImpl(redisson.reactive(), redisLockMonitor);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisSemaphoreClient redisSemaphoreClient(RedissonClient redisson) {
+        return new RedisSemaphoreClientImpl(redisson);
     }
 
     @SuppressWarnings({"unchecked", "ConstantConditions"})
@@ -135,6 +165,21 @@ public class UltronLockAutoConfiguration {
         return Redisson.create(config);
     }
 
+    /**
+     * 按锁名模板导出 Micrometer 指标：加锁耗时、加锁结果及持有时长
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(prefix = "ultron.lock.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class LockMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RedisLockMetrics redisLockMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+            return new MicrometerRedisLockMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        }
+    }
+
     private String[] convert(List<String> nodesObject) {
         List<String> nodes = new ArrayList<String>(nodesObject.size());
         for (String node : nodesObject) {
@@ -0,0 +1,96 @@
+package org.springultron.lock.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * ultron-redis-lock 扩展配置项
+ *
+ * @author brucewuu
+ * @date 2021/6/1 上午10:05
+ */
+@ConfigurationProperties(prefix = "ultron.lock")
+public class UltronLockProperties {
+    /**
+     * 本地预锁配置
+     */
+    private final LocalLock localLock = new LocalLock();
+    /**
+     * Micrometer 指标配置
+     */
+    private final Metrics metrics = new Metrics();
+    /**
+     * 慢加锁、慢持有告警日志配置
+     */
+    private final SlowLog slowLog = new SlowLog();
+
+    public LocalLock getLocalLock() {
+        return localLock;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public SlowLog getSlowLog() {
+        return slowLog;
+    }
+
+    public static class LocalLock {
+        /**
+         * 是否开启本地预锁：同一节点内竞争同一把锁的线程先在本地排队，只有本地获胜的线程才去竞争 Redis 锁，本地锁按锁名创建、无人使用时移除，默认：false
+         */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Metrics {
+        /**
+         * 是否按锁名模板导出加锁耗时、加锁结果及持有时长指标（redis.lock.acquire、redis.lock.hold），需引入 micrometer，默认：true
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class SlowLog {
+        /**
+         * 加锁等待超过该时长时打印告警日志，为0时不打印，默认：1s
+         */
+        private Duration acquireThreshold = Duration.ofSeconds(1);
+        /**
+         * 持有锁超过该时长时打印告警日志，为0时不打印，默认：10s
+         */
+        private Duration holdThreshold = Duration.ofSeconds(10);
+
+        public Duration getAcquireThreshold() {
+            return acquireThreshold;
+        }
+
+        public void setAcquireThreshold(Duration acquireThreshold) {
+            this.acquireThreshold = acquireThreshold;
+        }
+
+        public Duration getHoldThreshold() {
+            return holdThreshold;
+        }
+
+        public void setHoldThreshold(Duration holdThreshold) {
+            this.holdThreshold = holdThreshold;
+        }
+    }
+}
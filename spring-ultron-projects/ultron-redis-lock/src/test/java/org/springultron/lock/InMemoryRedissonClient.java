@@ -0,0 +1,474 @@
+package org.springultron.lock;
+
+import org.redisson.api.RLock;
+import org.redisson.api.RLockReactive;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RReadWriteLock;
+import org.redisson.api.RReadWriteLockReactive;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.RedissonReactiveClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的 Redisson 替身：锁状态保存在共享的 {@link Server} 中，多个实例模拟多个节点，并统计发往 Redis 的命令数
+ * <p>
+ * 按 Redisson RedissonLock 的行为建模：每次加锁尝试执行一次加锁脚本；加锁失败时同一节点内对同一把锁只订阅一次解锁频道；
+ * 完全释放锁时执行解锁脚本并发布解锁消息，每个节点收到消息后唤醒一个等待线程重新尝试加锁。
+ * 联锁按传入顺序依次加锁，共用同一个等待时间，失败时释放已获取的锁。
+ * 带过期时间的信号量按许可id记录过期时间，获取许可时先清理过期许可。
+ * 响应式客户端的锁以调用方传入的 threadId 区分持有者。
+ * 读写锁与 RedissonReadWriteLock 一致：多个读锁可以共存，写锁独占，持有写锁的线程可以再获取读锁，释放写锁时唤醒所有等待线程。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/6/1 下午2:10
+ */
+public class InMemoryRedissonClient {
+    private final Server server;
+    private final String id = UUID.randomUUID().toString();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final RedissonClient client;
+    private final RedissonReactiveClient reactiveClient;
+
+    public InMemoryRedissonClient(Server server) {
+        this.server = server;
+        this.server.clients.add(this);
+        this.client = (RedissonClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RedissonClient.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLock":
+                        case "getFairLock":
+                            return lock((String) args[0], Mode.EXCLUSIVE);
+                        case "getReadWriteLock":
+                            return readWriteLock((String) args[0]);
+                        case "getMultiLock":
+                            return multiLock((RLock[]) args[0]);
+                        case "getPermitExpirableSemaphore":
+                            return semaphore((String) args[0]);
+                        case "reactive":
+                            return getReactiveClient();
+                        case "toString":
+                            return "InMemoryRedissonClient";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException("Unsupported method: " + method.getName());
+                    }
+                });
+        this.reactiveClient = (RedissonReactiveClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RedissonReactiveClient.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLock":
+                        case "getFairLock":
+                            return reactiveLock((String) args[0], Mode.EXCLUSIVE);
+                        case "getReadWriteLock":
+                            return reactiveReadWriteLock((String) args[0]);
+                        default:
+                            throw new UnsupportedOperationException("Unsupported method: " + method.getName());
+                    }
+                });
+    }
+
+    public RedissonClient getClient() {
+        return client;
+    }
+
+    public RedissonReactiveClient getReactiveClient() {
+        return reactiveClient;
+    }
+
+    private RReadWriteLock readWriteLock(String name) {
+        return (RReadWriteLock) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RReadWriteLock.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "readLock":
+                    return lock(name, Mode.READ);
+                case "writeLock":
+                    return lock(name, Mode.WRITE);
+                case "getName":
+                    return name;
+                default:
+                    throw new UnsupportedOperationException("Unsupported method: " + method.getName());
+            }
+        });
+    }
+
+    private RReadWriteLockReactive reactiveReadWriteLock(String name) {
+        return (RReadWriteLockReactive) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RReadWriteLockReactive.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "readLock":
+                    return reactiveLock(name, Mode.READ);
+                case "writeLock":
+                    return reactiveLock(name, Mode.WRITE);
+                default:
+                    throw new UnsupportedOperationException("Unsupported method: " + method.getName());
+            }
+        });
+    }
+
+    private RLockReactive reactiveLock(String name, Mode mode) {
+        return (RLockReactive) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RLockReactive.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "tryLock":
+                    if (args != null && args.length == 4) {
+                        long waitNanos = ((TimeUnit) args[2]).toNanos((Long) args[0]);
+                        String owner = id + ":" + args[3];
+                        server.lease(name, (Long) args[1], (TimeUnit) args[2]);
+                        return Mono.fromCallable(() -> tryLock(name, mode, owner, waitNanos)).subscribeOn(Schedulers.boundedElastic());
+                    }
+                    throw new UnsupportedOperationException("Unsupported tryLock signature");
+                case "unlock":
+                    if (args != null && args.length == 1) {
+                        String owner = id + ":" + args[0];
+                        return Mono.fromRunnable(() -> unlock(name, mode, owner));
+                    }
+                    throw new UnsupportedOperationException("Unsupported unlock signature");
+                case "isLocked":
+                    return Mono.fromCallable(() -> server.owners.containsKey(name) || server.readers.containsKey(name));
+                case "getName":
+                    return name;
+                default:
+                    throw new UnsupportedOperationException("Unsupported method: " + method.getName());
+            }
+        });
+    }
+
+    private RPermitExpirableSemaphore semaphore(String name) {
+        return (RPermitExpirableSemaphore) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RPermitExpirableSemaphore.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "trySetPermits":
+                    return server.trySetPermits(name, (Integer) args[0]);
+                case "tryAcquire":
+                    if (args != null && args.length == 3) {
+                        TimeUnit unit = (TimeUnit) args[2];
+                        return server.tryAcquire(name, unit.toNanos((Long) args[0]), unit.toNanos((Long) args[1]));
+                    }
+                    throw new UnsupportedOperationException("Unsupported tryAcquire signature");
+                case "tryRelease":
+                    return server.tryRelease(name, (String) args[0]);
+                case "availablePermits":
+                    return server.availablePermits(name);
+                case "getName":
+                    return name;
+                default:
+                    throw new UnsupportedOperationException("Unsupported method: " + method.getName());
+            }
+        });
+    }
+
+    private RLock multiLock(RLock[] locks) {
+        return (RLock) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RLock.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "tryLock":
+                    long deadline = System.nanoTime() + ((TimeUnit) args[2]).toNanos((Long) args[0]);
+                    for (int i = 0; i < locks.length; i++) {
+                        long remaining = Math.max(0L, deadline - System.nanoTime());
+                        long lease = (Long) args[1] > 0 ? ((TimeUnit) args[2]).toNanos((Long) args[1]) : (Long) args[1];
+                        if (!locks[i].tryLock(remaining, lease, TimeUnit.NANOSECONDS)) {
+                            for (int j = 0; j < i; j++) {
+                                locks[j].unlock();
+                            }
+                            return false;
+                        }
+                        server.multiLockOrder.add(locks[i].getName());
+                    }
+                    return true;
+                case "unlock":
+                    for (RLock lock : locks) {
+                        lock.unlock();
+                    }
+                    return null;
+                case "isHeldByCurrentThread":
+                    for (RLock lock : locks) {
+                        if (!lock.isHeldByCurrentThread()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                default:
+                    throw new UnsupportedOperationException("Unsupported method: " + method.getName());
+            }
+        });
+    }
+
+    private RLock lock(String name, Mode mode) {
+        return (RLock) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RLock.class}, (proxy, method, args) -> invoke(name, mode, method, args));
+    }
+
+    private Object invoke(String name, Mode mode, Method method, Object[] args) throws InterruptedException {
+        switch (method.getName()) {
+            case "tryLock":
+                if (args != null && args.length == 3) {
+                    server.lease(name, (Long) args[1], (TimeUnit) args[2]);
+                    return tryLock(name, mode, owner(), ((TimeUnit) args[2]).toNanos((Long) args[0]));
+                }
+                throw new UnsupportedOperationException("Unsupported tryLock signature");
+            case "unlock":
+                unlock(name, mode, owner());
+                return null;
+            case "isHeldByCurrentThread":
+                return server.isHeldBy(name, mode, owner());
+            case "isLocked":
+                return server.owners.containsKey(name) || server.readers.containsKey(name);
+            case "getName":
+                return name;
+            case "toString":
+                return "RLock(" + name + ")";
+            case "hashCode":
+                return name.hashCode();
+            default:
+                throw new UnsupportedOperationException("Unsupported method: " + method.getName());
+        }
+    }
+
+    private boolean tryLock(String name, Mode mode, String owner, long waitNanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + waitNanos;
+        if (server.acquire(name, mode, owner)) {
+            return true;
+        }
+        Entry entry = entries.computeIfAbsent(name, k -> new Entry());
+        synchronized (entry) {
+            if (entry.waiters++ == 0) {
+                server.command("subscribe");
+            }
+        }
+        server.maxWaiters.accumulateAndGet(server.waiters.incrementAndGet(), Math::max);
+        try {
+            for (; ; ) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !entry.latch.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+                if (server.acquire(name, mode, owner)) {
+                    return true;
+                }
+            }
+        } finally {
+            server.waiters.decrementAndGet();
+            synchronized (entry) {
+                if (--entry.waiters == 0) {
+                    server.command("unsubscribe");
+                }
+            }
+        }
+    }
+
+    private void unlock(String name, Mode mode, String owner) {
+        if (server.release(name, mode, owner)) {
+            for (InMemoryRedissonClient node : server.clients) {
+                Entry entry = node.entries.get(name);
+                if (entry != null) {
+                    entry.latch.release(mode == Mode.WRITE ? Math.max(1, entry.waiters) : 1);
+                }
+            }
+        }
+    }
+
+    private String owner() {
+        return id + ":" + Thread.currentThread().getId();
+    }
+
+    private enum Mode {
+        /**
+         * 互斥锁、公平锁
+         */
+        EXCLUSIVE,
+        /**
+         * 写锁，释放时唤醒节点内所有等待线程
+         */
+        WRITE,
+        /**
+         * 读锁
+         */
+        READ
+    }
+
+    private static final class Entry {
+        private final Semaphore latch = new Semaphore(0);
+        private volatile int waiters;
+    }
+
+    /**
+     * 模拟的 Redis 服务端
+     */
+    public static class Server {
+        private final Map<String, String> owners = new ConcurrentHashMap<>();
+        private final Map<String, Integer> holds = new ConcurrentHashMap<>();
+        private final Map<String, Map<String, Integer>> readers = new ConcurrentHashMap<>();
+        private final List<InMemoryRedissonClient> clients = new CopyOnWriteArrayList<>();
+        private final List<String> multiLockOrder = new CopyOnWriteArrayList<>();
+        private final Map<String, Long> leaseTimes = new ConcurrentHashMap<>();
+        private final Map<String, Integer> semaphorePermits = new HashMap<>();
+        private final Map<String, Map<String, Long>> semaphoreLeases = new HashMap<>();
+        private final AtomicInteger commands = new AtomicInteger();
+        private final Map<String, AtomicInteger> commandCounts = new ConcurrentHashMap<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+        private final AtomicInteger maxWaiters = new AtomicInteger();
+
+        /**
+         * @return 最近一次加锁请求的自动解锁时间（毫秒），-1为看门狗自动续期
+         */
+        public long getLeaseTime(String name) {
+            return leaseTimes.getOrDefault(name, 0L);
+        }
+
+        /**
+         * 模拟锁到达自动解锁时间被 Redis 删除
+         */
+        public synchronized void expire(String name) {
+            owners.remove(name);
+            holds.remove(name);
+            readers.remove(name);
+        }
+
+        /**
+         * 模拟信号量被删除或淘汰
+         */
+        public synchronized void deleteSemaphore(String name) {
+            semaphorePermits.remove(name);
+            semaphoreLeases.remove(name);
+        }
+
+        private void lease(String name, long leaseTime, TimeUnit unit) {
+            leaseTimes.put(name, leaseTime == -1 ? -1L : unit.toMillis(leaseTime));
+        }
+
+        /**
+         * @return 联锁中各锁的获取顺序
+         */
+        public List<String> getMultiLockOrder() {
+            return multiLockOrder;
+        }
+
+        public int getCommands() {
+            return commands.get();
+        }
+
+        /**
+         * @return 所有节点中同时在 Redis 上等待解锁通知的最大线程数
+         */
+        public int getMaxWaiters() {
+            return maxWaiters.get();
+        }
+
+        public int getCommandCount(String name) {
+            AtomicInteger count = commandCounts.get(name);
+            return count == null ? 0 : count.get();
+        }
+
+        private void command(String name) {
+            commands.incrementAndGet();
+            commandCounts.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        private synchronized boolean acquire(String name, Mode mode, String owner) {
+            command("lock");
+            String current = owners.get(name);
+            if (mode == Mode.READ) {
+                if (current != null && !current.equals(owner)) {
+                    return false;
+                }
+                readers.computeIfAbsent(name, k -> new ConcurrentHashMap<>()).merge(owner, 1, Integer::sum);
+                return true;
+            }
+            if (readers.containsKey(name)) {
+                return false;
+            }
+            if (current == null || current.equals(owner)) {
+                owners.put(name, owner);
+                holds.merge(name, 1, Integer::sum);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return 是否完全释放并发布了解锁消息
+         */
+        private synchronized boolean release(String name, Mode mode, String owner) {
+            command("unlock");
+            if (!isHeldBy(name, mode, owner)) {
+                throw new IllegalMonitorStateException("attempt to unlock lock, not locked by current thread");
+            }
+            if (mode == Mode.READ) {
+                Map<String, Integer> holders = readers.get(name);
+                if (holders.merge(owner, -1, Integer::sum) > 0) {
+                    return false;
+                }
+                holders.remove(owner);
+                if (!holders.isEmpty()) {
+                    return false;
+                }
+                readers.remove(name);
+                return !owners.containsKey(name);
+            }
+            int count = holds.merge(name, -1, Integer::sum);
+            if (count > 0) {
+                return false;
+            }
+            holds.remove(name);
+            owners.remove(name);
+            return !readers.containsKey(name);
+        }
+
+        private boolean isHeldBy(String name, Mode mode, String owner) {
+            if (mode == Mode.READ) {
+                Map<String, Integer> holders = readers.get(name);
+                return holders != null && holders.containsKey(owner);
+            }
+            return owner.equals(owners.get(name));
+        }
+
+        private synchronized boolean trySetPermits(String name, int permits) {
+            command("setPermits");
+            return semaphorePermits.putIfAbsent(name, permits) == null;
+        }
+
+        private synchronized String tryAcquire(String name, long waitNanos, long leaseNanos) throws InterruptedException {
+            final long deadline = System.nanoTime() + waitNanos;
+            for (; ; ) {
+                command("acquire");
+                if (availablePermits(name) > 0) {
+                    String permitId = UUID.randomUUID().toString();
+                    semaphoreLeases.computeIfAbsent(name, k -> new HashMap<>()).put(permitId, System.nanoTime() + leaseNanos);
+                    return permitId;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                // 等待许可归还或过期
+                TimeUnit.NANOSECONDS.timedWait(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(5)));
+            }
+        }
+
+        private synchronized boolean tryRelease(String name, String permitId) {
+            command("release");
+            Map<String, Long> leases = semaphoreLeases.get(name);
+            boolean released = leases != null && leases.remove(permitId) != null;
+            notifyAll();
+            return released;
+        }
+
+        private synchronized int availablePermits(String name) {
+            Map<String, Long> leases = semaphoreLeases.getOrDefault(name, new HashMap<>());
+            long now = System.nanoTime();
+            leases.values().removeIf(expireAt -> expireAt - now <= 0);
+            return semaphorePermits.getOrDefault(name, 0) - leases.size();
+        }
+    }
+}
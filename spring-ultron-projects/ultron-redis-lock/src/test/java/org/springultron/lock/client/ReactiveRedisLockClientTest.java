@@ -0,0 +1,104 @@
+package org.springultron.lock.client;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.redisson.api.RedissonClient;
+import org.springultron.lock.InMemoryRedissonClient;
+import org.springultron.lock.annotation.LockType;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 响应式分布式锁测试：锁在 Publisher 的生命周期内持有，完成、出错、取消时释放，获取过程中取消不泄漏锁
+ *
+ * @author brucewuu
+ * @date 2021/6/4 下午2:00
+ */
+public class ReactiveRedisLockClientTest {
+    private RedissonClient redisson;
+    private ReactiveRedisLockClient client;
+
+    @Before
+    public void setUp() {
+        redisson = new InMemoryRedissonClient(new InMemoryRedissonClient.Server()).getClient();
+        client = new ReactiveRedisLockClientImpl(redisson.reactive());
+    }
+
+    @Test
+    public void holdUntilCompleteTest() {
+        Mono<Boolean> mono = client.lock("price:1", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS,
+                () -> Mono.delay(Duration.ofMillis(20)).map(i -> redisson.getLock("price:1").isLocked()));
+        // 订阅前不加锁
+        Assert.assertFalse(redisson.getLock("price:1").isLocked());
+        Assert.assertEquals(Boolean.TRUE, mono.block());
+        Assert.assertFalse(redisson.getLock("price:1").isLocked());
+
+        List<String> skus = client.lockMany(Arrays.asList("sku:2", "sku:1"), LockType.FAIR, 1, 10, TimeUnit.SECONDS,
+                () -> Flux.just("sku:1", "sku:2").filter(sku -> redisson.getLock(sku).isLocked())).collectList().block();
+        Assert.assertEquals(Arrays.asList("sku:1", "sku:2"), skus);
+        Assert.assertFalse(redisson.getLock("sku:1").isLocked());
+    }
+
+    @Test
+    public void releaseOnErrorTest() {
+        Mono<Object> mono = client.lock("price:1", LockType.WRITE, 1, 10, TimeUnit.SECONDS, () -> Mono.error(new IllegalStateException("failed")));
+        try {
+            mono.block();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("failed", e.getMessage());
+        }
+        Assert.assertFalse(redisson.getLock("price:1").isLocked());
+    }
+
+    @Test
+    public void releaseOnCancelTest() throws InterruptedException {
+        Disposable disposable = client.lockMany("price:1", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, Flux::never).subscribe();
+        waitUntil("price:1", true);
+        // 锁被其他订阅持有时获取超时，不执行 Publisher
+        AtomicInteger calls = new AtomicInteger();
+        Assert.assertNull(client.lock("price:1", LockType.REENTRANT, 0, 10, TimeUnit.SECONDS, () -> Mono.fromCallable(calls::incrementAndGet)).block());
+        Assert.assertEquals(0, calls.get());
+        disposable.dispose();
+        waitUntil("price:1", false);
+        Assert.assertEquals(Integer.valueOf(1), client.lock("price:1", LockType.REENTRANT, 0, 10, TimeUnit.SECONDS, () -> Mono.fromCallable(calls::incrementAndGet)).block());
+    }
+
+    @Test
+    public void cancelDuringAcquireTest() throws InterruptedException {
+        Disposable holder = client.lockMany("sku:2", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, Flux::never).subscribe();
+        waitUntil("sku:2", true);
+        // 已获取 sku:1，正在等待 sku:2 时取消
+        AtomicInteger calls = new AtomicInteger();
+        Disposable waiting = client.lockMany(Arrays.asList("sku:1", "sku:2"), LockType.REENTRANT, 5, -1, TimeUnit.SECONDS,
+                () -> Mono.fromCallable(calls::incrementAndGet)).subscribe();
+        waitUntil("sku:1", true);
+        waiting.dispose();
+        // 已获取的锁立即释放
+        waitUntil("sku:1", false);
+
+        // 取消前发出的加锁请求在锁释放后成功，随即被释放，不会一直持有
+        holder.dispose();
+        Thread.sleep(100);
+        waitUntil("sku:2", false);
+        Assert.assertEquals(0, calls.get());
+        Assert.assertEquals(Integer.valueOf(1), client.lockMany(Arrays.asList("sku:1", "sku:2"), LockType.REENTRANT, 0, 10, TimeUnit.SECONDS,
+                () -> Mono.fromCallable(calls::incrementAndGet)).blockLast());
+    }
+
+    private void waitUntil(String lockName, boolean locked) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (redisson.getLock(lockName).isLocked() != locked && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(locked, redisson.getLock(lockName).isLocked());
+    }
+}
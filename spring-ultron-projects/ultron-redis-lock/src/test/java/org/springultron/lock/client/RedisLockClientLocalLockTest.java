@@ -0,0 +1,139 @@
+package org.springultron.lock.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springultron.lock.InMemoryRedissonClient;
+import org.springultron.lock.annotation.LockType;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地预锁测试：同一节点内大量线程竞争同一把锁时，对比开启前后发往 Redis 的命令数及等待线程数，不同锁名互不影响
+ *
+ * @author brucewuu
+ * @date 2021/6/1 下午3:00
+ */
+public class RedisLockClientLocalLockTest {
+    private static final int THREADS = 200;
+
+    @Test
+    public void singleNodeTest() throws InterruptedException {
+        InMemoryRedissonClient.Server without = run(1, false, LockType.REENTRANT);
+        InMemoryRedissonClient.Server with = run(1, true, LockType.REENTRANT);
+        print("single node", without, with);
+        // 节点内只有本地获胜的线程访问 Redis：每次加锁一次成功，无需订阅解锁频道
+        Assert.assertEquals(THREADS, with.getCommandCount("lock"));
+        Assert.assertEquals(0, with.getCommandCount("subscribe"));
+        Assert.assertEquals(0, with.getMaxWaiters());
+        Assert.assertTrue(with.getCommands() < without.getCommands());
+    }
+
+    @Test
+    public void multiNodeTest() throws InterruptedException {
+        // 预锁只合并节点内的竞争，跨节点仍由 Redis 锁保证互斥
+        InMemoryRedissonClient.Server without = run(2, false, LockType.FAIR);
+        InMemoryRedissonClient.Server with = run(2, true, LockType.FAIR);
+        print("two nodes", without, with);
+        // 每个节点最多一个线程在 Redis 上等待，不开启时节点内的所有竞争线程都在 Redis 上等待
+        Assert.assertTrue("max waiters: " + with.getMaxWaiters(), with.getMaxWaiters() <= 2);
+        Assert.assertTrue("max waiters: " + without.getMaxWaiters(), without.getMaxWaiters() > 2);
+        // 每次获取锁至少一次加锁脚本，本地获胜的线程每次最多订阅一次解锁频道
+        Assert.assertTrue(with.getCommandCount("lock") >= THREADS);
+        Assert.assertTrue("subscribe: " + with.getCommandCount("subscribe"), with.getCommandCount("subscribe") <= THREADS);
+    }
+
+    @Test
+    public void independentNamesTest() throws Exception {
+        RedisLockClientImpl client = new RedisLockClientImpl(new InMemoryRedissonClient(new InMemoryRedissonClient.Server()).getClient(), true);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> client.lock("order:1", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> {
+            locked.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        }));
+        holder.start();
+        Assert.assertTrue(locked.await(10, TimeUnit.SECONDS));
+        // 本地锁按锁名创建，其他锁名不会在本地等待
+        for (int i = 2; i < 1000; i++) {
+            Assert.assertTrue(client.tryLock("order:" + i, LockType.REENTRANT, 0, 10, TimeUnit.SECONDS));
+            client.unLock("order:" + i, LockType.REENTRANT);
+        }
+        Assert.assertEquals(1, client.getLocalLockCount());
+        release.countDown();
+        holder.join();
+        // 引用归零后移除
+        Assert.assertEquals(0, client.getLocalLockCount());
+    }
+
+    @Test
+    public void reentrantTest() throws InterruptedException {
+        InMemoryRedissonClient.Server server = new InMemoryRedissonClient.Server();
+        RedisLockClient client = new RedisLockClientImpl(new InMemoryRedissonClient(server).getClient(), true);
+        Assert.assertTrue(client.tryLock("order:1", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS));
+        String nested = client.lock("order:1", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> "nested");
+        Assert.assertEquals("nested", nested);
+        client.unLock("order:1", LockType.REENTRANT);
+        // 完全释放后其他线程可以获取
+        AtomicInteger acquired = new AtomicInteger();
+        Thread thread = new Thread(() -> {
+            Integer value = client.lock("order:1", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, acquired::incrementAndGet);
+            Assert.assertNotNull(value);
+        });
+        thread.start();
+        thread.join();
+        Assert.assertEquals(1, acquired.get());
+    }
+
+    /**
+     * @param nodes     模拟的节点数，线程平均分配到各节点
+     * @param localLock 是否开启本地预锁
+     */
+    private InMemoryRedissonClient.Server run(int nodes, boolean localLock, LockType lockType) throws InterruptedException {
+        InMemoryRedissonClient.Server server = new InMemoryRedissonClient.Server();
+        RedisLockClient[] clients = new RedisLockClient[nodes];
+        for (int i = 0; i < nodes; i++) {
+            clients[i] = new RedisLockClientImpl(new InMemoryRedissonClient(server).getClient(), localLock);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger success = new AtomicInteger();
+        for (int i = 0; i < THREADS; i++) {
+            RedisLockClient client = clients[i % nodes];
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    client.lock("stock:1", lockType, 30, 30, TimeUnit.SECONDS, () -> {
+                        maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                        Thread.sleep(1);
+                        concurrent.decrementAndGet();
+                        return success.incrementAndGet();
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(THREADS, success.get());
+        Assert.assertEquals(1, maxConcurrent.get());
+        return server;
+    }
+
+    private static void print(String scene, InMemoryRedissonClient.Server without, InMemoryRedissonClient.Server with) {
+        System.out.printf("%s, %d threads, without local lock: commands=%d lock=%d subscribe=%d%n", scene, THREADS,
+                without.getCommands(), without.getCommandCount("lock"), without.getCommandCount("subscribe"));
+        System.out.printf("%s, %d threads, with local lock: commands=%d lock=%d subscribe=%d%n", scene, THREADS,
+                with.getCommands(), with.getCommandCount("lock"), with.getCommandCount("subscribe"));
+    }
+}
@@ -0,0 +1,73 @@
+package org.springultron.lock.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springultron.lock.InMemoryRedissonClient;
+import org.springultron.lock.annotation.LockType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 联锁测试：锁名按字典序获取，相反顺序传入的重叠锁集合不会互相死锁
+ *
+ * @author brucewuu
+ * @date 2021/6/2 下午3:30
+ */
+public class RedisLockClientMultiLockTest {
+
+    @Test
+    public void sortedOrderTest() throws InterruptedException {
+        InMemoryRedissonClient.Server server = new InMemoryRedissonClient.Server();
+        RedisLockClient client = new RedisLockClientImpl(new InMemoryRedissonClient(server).getClient());
+        Assert.assertTrue(client.tryLock(Arrays.asList("sku:3", "sku:1", "sku:2", "sku:1"), LockType.REENTRANT, 1, 10, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("sku:1", "sku:2", "sku:3"), server.getMultiLockOrder());
+        client.unLock(Arrays.asList("sku:2", "sku:3", "sku:1"), LockType.REENTRANT);
+        // 全部释放后可再次获取单把锁
+        Assert.assertEquals("ok", client.lock("sku:2", LockType.REENTRANT, 0, 10, TimeUnit.SECONDS, () -> "ok"));
+    }
+
+    @Test
+    public void noDeadlockTest() throws InterruptedException {
+        InMemoryRedissonClient.Server server = new InMemoryRedissonClient.Server();
+        RedisLockClient[] clients = {
+                new RedisLockClientImpl(new InMemoryRedissonClient(server).getClient()),
+                new RedisLockClientImpl(new InMemoryRedissonClient(server).getClient())
+        };
+        List<String> cart1 = Arrays.asList("sku:1", "sku:2", "sku:3");
+        List<String> cart2 = Arrays.asList("sku:3", "sku:2", "sku:1");
+        int threads = 16;
+        int rounds = 20;
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger success = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            RedisLockClient client = clients[i % 2];
+            List<String> cart = i % 2 == 0 ? cart1 : cart2;
+            executor.execute(() -> {
+                try {
+                    for (int r = 0; r < rounds; r++) {
+                        client.lock(cart, LockType.FAIR, 10, 10, TimeUnit.SECONDS, () -> {
+                            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                            concurrent.decrementAndGet();
+                            return success.incrementAndGet();
+                        });
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(threads * rounds, success.get());
+        Assert.assertEquals(1, maxConcurrent.get());
+    }
+}
@@ -0,0 +1,119 @@
+package org.springultron.lock.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springultron.lock.InMemoryRedissonClient;
+import org.springultron.lock.annotation.LockType;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写锁测试：读锁并行，写锁与读锁、写锁互斥，不同锁名的读写锁嵌套，分别验证开启和不开启本地预锁
+ *
+ * @author brucewuu
+ * @date 2021/6/2 上午10:20
+ */
+public class RedisLockClientReadWriteLockTest {
+    private static final int THREADS = 8;
+
+    @Test
+    public void concurrentReadTest() throws InterruptedException {
+        concurrentRead(false);
+        concurrentRead(true);
+    }
+
+    @Test
+    public void exclusiveWriteTest() throws InterruptedException {
+        exclusiveWrite(false);
+        exclusiveWrite(true);
+    }
+
+    @Test
+    public void downgradeTest() {
+        RedisLockClient client = newClient(new InMemoryRedissonClient.Server(), true);
+        // 持有写锁时可以再获取读锁
+        String value = client.writeLock("price:1", 1, 10, () -> client.readLock("price:1", 1, 10, () -> "price"));
+        Assert.assertEquals("price", value);
+    }
+
+    @Test
+    public void nestedDifferentNamesTest() {
+        RedisLockClientImpl client = new RedisLockClientImpl(new InMemoryRedissonClient(new InMemoryRedissonClient.Server()).getClient(), true);
+        // 同一线程持有 A 的读锁时获取 B 的写锁，本地读写锁按锁名区分，不会自己等待自己
+        for (int i = 0; i < 100; i++) {
+            String other = "price:" + (i + 1);
+            String value = client.readLock("price:0", 1, 10, () -> client.writeLock(other, 1, 10, () -> other));
+            Assert.assertEquals(other, value);
+        }
+        Assert.assertEquals(0, client.getLocalLockCount());
+    }
+
+    /**
+     * 所有读线程必须同时持有读锁才能通过屏障
+     */
+    private void concurrentRead(boolean localLock) throws InterruptedException {
+        RedisLockClient client = newClient(new InMemoryRedissonClient.Server(), localLock);
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        AtomicInteger success = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                try {
+                    client.readLock("price:1", 5, 10, () -> barrier.await(5, TimeUnit.SECONDS));
+                    success.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(THREADS, success.get());
+    }
+
+    private void exclusiveWrite(boolean localLock) throws InterruptedException {
+        InMemoryRedissonClient.Server server = new InMemoryRedissonClient.Server();
+        RedisLockClient[] clients = {newClient(server, localLock), newClient(server, localLock)};
+        AtomicInteger readers = new AtomicInteger();
+        AtomicInteger writers = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+        AtomicInteger success = new AtomicInteger();
+        int threads = THREADS * 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            RedisLockClient client = clients[i % 2];
+            LockType lockType = i % 4 == 0 ? LockType.WRITE : LockType.READ;
+            executor.execute(() -> {
+                try {
+                    client.lock("price:1", lockType, 10, 10, TimeUnit.SECONDS, () -> {
+                        AtomicInteger own = lockType == LockType.WRITE ? writers : readers;
+                        own.incrementAndGet();
+                        if (writers.get() > 1 || (writers.get() == 1 && readers.get() > 0)) {
+                            violations.incrementAndGet();
+                        }
+                        Thread.sleep(2);
+                        own.decrementAndGet();
+                        return success.incrementAndGet();
+                    });
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(threads, success.get());
+        Assert.assertEquals(0, violations.get());
+    }
+
+    private static RedisLockClient newClient(InMemoryRedissonClient.Server server, boolean localLock) {
+        return new RedisLockClientImpl(new InMemoryRedissonClient(server).getClient(), localLock);
+    }
+}
@@ -0,0 +1,131 @@
+package org.springultron.lock.client;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.redisson.api.RedissonClient;
+import org.springultron.lock.InMemoryRedissonClient;
+import org.springultron.lock.annotation.LockType;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁客户端测试：执行结果、只释放已持有的锁、看门狗自动续期、中断标志
+ *
+ * @author brucewuu
+ * @date 2021/6/7 下午2:00
+ */
+public class RedisLockClientTest {
+    private InMemoryRedissonClient.Server server;
+    private RedissonClient redisson;
+    private RedisLockClient client;
+
+    @Before
+    public void setUp() {
+        server = new InMemoryRedissonClient.Server();
+        redisson = new InMemoryRedissonClient(server).getClient();
+        client = new RedisLockClientImpl(redisson);
+    }
+
+    @Test
+    public void notAcquiredTest() throws InterruptedException {
+        holdInOtherThread("order:1");
+        // 未获取到锁时不执行方法，也不释放其他线程持有的锁
+        LockResult<String> result = client.execute("order:1", LockType.REENTRANT, 0, 10, TimeUnit.SECONDS, () -> "called");
+        Assert.assertFalse(result.isAcquired());
+        Assert.assertNull(result.getValue());
+        Assert.assertEquals("fallback", result.orElse("fallback"));
+        Assert.assertNull(client.lock("order:1", LockType.REENTRANT, 0, 10, TimeUnit.SECONDS, () -> "called"));
+        Assert.assertNull(client.lock(Arrays.asList("order:1", "order:2"), LockType.REENTRANT, 0, 10, TimeUnit.SECONDS, () -> "called"));
+        Assert.assertTrue(redisson.getLock("order:1").isLocked());
+        Assert.assertFalse(redisson.getLock("order:2").isLocked());
+    }
+
+    @Test
+    public void acquiredTest() {
+        LockResult<String> result = client.execute("order:1", LockType.FAIR, 1, 10, TimeUnit.SECONDS, () -> null);
+        // 业务方法返回 null 与未获取到锁可以区分
+        Assert.assertTrue(result.isAcquired());
+        Assert.assertNull(result.orElse("fallback"));
+        Assert.assertFalse(redisson.getLock("order:1").isLocked());
+        try {
+            client.execute("order:1", LockType.FAIR, 1, 10, TimeUnit.SECONDS, () -> {
+                throw new IllegalStateException("business");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("business", e.getMessage());
+        }
+        Assert.assertFalse(redisson.getLock("order:1").isLocked());
+    }
+
+    @Test
+    public void expiredLeaseTest() {
+        // 方法执行期间锁已过期，释放时不抛出异常，不覆盖业务结果
+        LockResult<String> result = client.execute("order:1", LockType.REENTRANT, 1, 10, TimeUnit.MILLISECONDS, () -> {
+            server.expire("order:1");
+            return "done";
+        });
+        Assert.assertEquals("done", result.getValue());
+        client.unLock("order:1", LockType.REENTRANT);
+    }
+
+    @Test
+    public void watchdogTest() throws InterruptedException {
+        client.lock("order:1", LockType.REENTRANT, 1, RedisLockClient.WATCHDOG_LEASE_TIME, TimeUnit.SECONDS, () -> "ok");
+        Assert.assertEquals(-1L, server.getLeaseTime("order:1"));
+        client.lock("order:2", LockType.WRITE, 1, 0, TimeUnit.SECONDS, () -> "ok");
+        Assert.assertEquals(-1L, server.getLeaseTime("order:2"));
+        client.lock("order:3", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> "ok");
+        Assert.assertEquals(10000L, server.getLeaseTime("order:3"));
+
+        RedisLockClient localClient = new RedisLockClientImpl(redisson, true);
+        Assert.assertTrue(localClient.tryLock("order:4", LockType.FAIR, 1, -1, TimeUnit.SECONDS));
+        Assert.assertEquals(-1L, server.getLeaseTime("order:4"));
+        localClient.unLock("order:4", LockType.FAIR);
+
+        ReactiveRedisLockClient reactiveClient = new ReactiveRedisLockClientImpl(redisson.reactive());
+        reactiveClient.lock("order:5", LockType.REENTRANT, 1, RedisLockClient.WATCHDOG_LEASE_TIME, TimeUnit.SECONDS, () -> Mono.just("ok")).block();
+        Assert.assertEquals(-1L, server.getLeaseTime("order:5"));
+    }
+
+    @Test
+    public void interruptedTest() throws InterruptedException {
+        holdInOtherThread("order:1");
+        // 等待锁时被中断，抛出异常后仍保留中断标志
+        Thread.currentThread().interrupt();
+        try {
+            client.execute("order:1", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> "called");
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof InterruptedException);
+        }
+        Assert.assertTrue(Thread.interrupted());
+
+        // 业务方法抛出 InterruptedException 时同样保留中断标志，并释放锁
+        try {
+            client.execute("order:2", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> {
+                throw new InterruptedException();
+            });
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof InterruptedException);
+        }
+        Assert.assertTrue(Thread.interrupted());
+        Assert.assertFalse(redisson.getLock("order:2").isLocked());
+    }
+
+    private void holdInOtherThread(String lockName) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                client.tryLock(lockName, LockType.REENTRANT, 1, 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        thread.join();
+    }
+}
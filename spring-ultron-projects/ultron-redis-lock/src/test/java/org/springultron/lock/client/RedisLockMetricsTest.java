@@ -0,0 +1,95 @@
+package org.springultron.lock.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.redisson.api.RedissonClient;
+import org.springultron.lock.InMemoryRedissonClient;
+import org.springultron.lock.annotation.LockType;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁指标测试：按锁名模板记录加锁耗时、加锁结果及持有时长
+ *
+ * @author brucewuu
+ * @date 2021/6/5 下午2:00
+ */
+public class RedisLockMetricsTest {
+    private MeterRegistry registry;
+    private RedisLockMonitor monitor;
+    private RedissonClient redisson;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        // 阈值设为1纳秒，覆盖慢日志分支
+        monitor = new RedisLockMonitor(new MicrometerRedisLockMetrics(registry), Duration.ofNanos(1), Duration.ofNanos(1));
+        redisson = new InMemoryRedissonClient(new InMemoryRedissonClient.Server()).getClient();
+    }
+
+    @Test
+    public void templateTest() {
+        monitor.registerTemplate("order:submit");
+        Assert.assertEquals("order:submit", monitor.template("order:submit"));
+        Assert.assertEquals("order:submit", monitor.template("order:submit:1001"));
+        Assert.assertEquals("order:submit", monitor.template("order:submit:1001:sku-1"));
+        Assert.assertEquals("stock", monitor.template("stock:1"));
+        Assert.assertEquals("stock", monitor.template("stock"));
+        // 未注册的多段动态锁名只取第一段，不随参数产生新的模板
+        Assert.assertEquals("order", monitor.template("order:123:item:456"));
+        Assert.assertEquals("order", monitor.template("order:124:item:457"));
+        Assert.assertEquals("order", monitor.template("order:submit2:1001"));
+    }
+
+    @Test
+    public void clientMetricsTest() throws InterruptedException {
+        RedisLockClient client = new RedisLockClientImpl(redisson, true, monitor);
+        Assert.assertEquals("ok", client.lock("stock:1", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> "ok"));
+        Assert.assertEquals("ok", client.lock("stock:2", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> "ok"));
+        Assert.assertEquals("ok", client.lock(Arrays.asList("stock:3", "stock:4"), LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> "ok"));
+        // 其他线程持有锁时等待超时
+        Thread holder = new Thread(() -> {
+            try {
+                client.tryLock("stock:1", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        holder.join();
+        Assert.assertFalse(client.tryLock("stock:1", LockType.REENTRANT, 0, 10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(4L, acquireCount("stock", "reentrant", "acquired"));
+        Assert.assertEquals(1L, acquireCount("stock", "reentrant", "timeout"));
+        // tryLock 不记录持有时长
+        Assert.assertEquals(3L, registry.get(MicrometerRedisLockMetrics.HOLD_TIMER).tag("lock", "stock").tag("type", "reentrant").timer().count());
+
+        // 多段动态锁名聚合到同一个模板
+        Assert.assertEquals("ok", client.lock("order:123:item:456", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> "ok"));
+        Assert.assertEquals("ok", client.lock("order:124:item:457", LockType.REENTRANT, 1, 10, TimeUnit.SECONDS, () -> "ok"));
+        Assert.assertEquals(2L, acquireCount("order", "reentrant", "acquired"));
+        Set<String> templates = new HashSet<>();
+        registry.find(MicrometerRedisLockMetrics.HOLD_TIMER).timers().forEach(timer -> templates.add(timer.getId().getTag("lock")));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("stock", "order")), templates);
+    }
+
+    @Test
+    public void reactiveMetricsTest() {
+        ReactiveRedisLockClient client = new ReactiveRedisLockClientImpl(redisson.reactive(), monitor);
+        Assert.assertEquals("ok", client.lock("price:1", LockType.READ, 1, 10, TimeUnit.SECONDS, () -> Mono.just("ok")).block());
+        Assert.assertEquals(1L, acquireCount("price", "read", "acquired"));
+        Assert.assertEquals(1L, registry.get(MicrometerRedisLockMetrics.HOLD_TIMER).tag("lock", "price").timer().count());
+    }
+
+    private long acquireCount(String template, String type, String result) {
+        return registry.get(MicrometerRedisLockMetrics.ACQUIRE_TIMER).tag("lock", template).tag("type", type).tag("result", result).timer().count();
+    }
+}
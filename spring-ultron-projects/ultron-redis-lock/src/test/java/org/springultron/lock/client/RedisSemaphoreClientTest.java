@@ -0,0 +1,99 @@
+package org.springultron.lock.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springultron.lock.InMemoryRedissonClient;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分布式信号量测试：跨节点并发数不超过许可总数，过期许可自动归还，信号量被删除后重新初始化
+ *
+ * @author brucewuu
+ * @date 2021/6/3 下午2:00
+ */
+public class RedisSemaphoreClientTest {
+
+    @Test
+    public void concurrencyLimitTest() throws InterruptedException {
+        InMemoryRedissonClient.Server server = new InMemoryRedissonClient.Server();
+        RedisSemaphoreClient[] clients = {
+                new RedisSemaphoreClientImpl(new InMemoryRedissonClient(server).getClient()),
+                new RedisSemaphoreClientImpl(new InMemoryRedissonClient(server).getClient())
+        };
+        int threads = 32;
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger success = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            RedisSemaphoreClient client = clients[i % 2];
+            executor.execute(() -> {
+                try {
+                    client.acquire("downstream", 3, 10, 10, TimeUnit.SECONDS, () -> {
+                        maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                        Thread.sleep(5);
+                        concurrent.decrementAndGet();
+                        return success.incrementAndGet();
+                    });
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(threads, success.get());
+        Assert.assertTrue(maxConcurrent.get() <= 3);
+        Assert.assertEquals(3, clients[0].availablePermits("downstream"));
+        // 许可总数只在节点首次使用时初始化，不随每次获取许可访问 Redis
+        Assert.assertTrue(server.getCommandCount("setPermits") < threads);
+    }
+
+    @Test
+    public void expiredPermitTest() throws InterruptedException {
+        InMemoryRedissonClient.Server server = new InMemoryRedissonClient.Server();
+        RedisSemaphoreClient client = new RedisSemaphoreClientImpl(new InMemoryRedissonClient(server).getClient());
+        String permitId = client.tryAcquire("report", 1, 0, 50, TimeUnit.MILLISECONDS);
+        Assert.assertNotNull(permitId);
+        Assert.assertNull(client.tryAcquire("report", 1, 0, 50, TimeUnit.MILLISECONDS));
+        AtomicBoolean called = new AtomicBoolean();
+        try {
+            client.acquire("report", 1, 0, 50, TimeUnit.MILLISECONDS, () -> called.getAndSet(true));
+            Assert.fail("expected SemaphoreAcquireException");
+        } catch (SemaphoreAcquireException e) {
+            Assert.assertEquals("report", e.getName());
+        }
+        Assert.assertFalse(called.get());
+        // 持有方未归还，许可过期后可再次获取
+        Assert.assertNotNull(client.tryAcquire("report", 1, 1, 50, TimeUnit.SECONDS));
+        Assert.assertFalse(client.release("report", permitId));
+    }
+
+    @Test
+    public void reinitializeTest() throws InterruptedException {
+        InMemoryRedissonClient.Server server = new InMemoryRedissonClient.Server();
+        RedisSemaphoreClient client = new RedisSemaphoreClientImpl(new InMemoryRedissonClient(server).getClient());
+        Assert.assertEquals("first", client.acquire("export", 2, 0, 10, TimeUnit.SECONDS, () -> "first"));
+        Assert.assertEquals(1, server.getCommandCount("setPermits"));
+
+        // 信号量在 Redis 中被删除后，获取超时时重新初始化许可总数
+        server.deleteSemaphore("export");
+        Assert.assertEquals("second", client.acquire("export", 2, 0, 10, TimeUnit.SECONDS, () -> "second"));
+        Assert.assertEquals(2, server.getCommandCount("setPermits"));
+        Assert.assertEquals(2, client.availablePermits("export"));
+
+        // 许可用完时重新初始化不会覆盖已有的许可总数
+        String permitId = client.tryAcquire("export", 2, 0, 10, TimeUnit.SECONDS);
+        Assert.assertNotNull(client.tryAcquire("export", 2, 0, 10, TimeUnit.SECONDS));
+        Assert.assertNull(client.tryAcquire("export", 5, 0, 10, TimeUnit.SECONDS));
+        Assert.assertTrue(client.release("export", permitId));
+        Assert.assertEquals(1, client.availablePermits("export"));
+    }
+}
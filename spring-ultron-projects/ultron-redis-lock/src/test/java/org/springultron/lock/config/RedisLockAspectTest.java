@@ -0,0 +1,131 @@
+package org.springultron.lock.config;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RedissonClient;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springultron.core.utils.SpringUtils;
+import org.springultron.lock.InMemoryRedissonClient;
+import org.springultron.lock.annotation.LockType;
+import org.springultron.lock.annotation.RedisLock;
+import org.springultron.lock.annotation.RedisSemaphore;
+import org.springultron.lock.client.ReactiveRedisLockClientImpl;
+import org.springultron.lock.client.RedisLockClientImpl;
+import org.springultron.lock.client.RedisSemaphoreClientImpl;
+import org.springultron.lock.client.SemaphoreAcquireException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分布式锁、信号量注解切面测试
+ *
+ * @author brucewuu
+ * @date 2021/6/2 下午4:10
+ */
+public class RedisLockAspectTest {
+    private static final AtomicInteger EXPORTS = new AtomicInteger();
+    private static InMemoryRedissonClient.Server server;
+    private static RedissonClient redisson;
+    private static OrderService orderService;
+
+    @BeforeClass
+    public static void setUp() {
+        new SpringUtils().setApplicationContext(new StaticApplicationContext());
+        server = new InMemoryRedissonClient.Server();
+        redisson = new InMemoryRedissonClient(server).getClient();
+        AspectJProxyFactory factory = new AspectJProxyFactory(new OrderService());
+        factory.addAspect(new RedisLockAspect(new RedisLockClientImpl(redisson), new ReactiveRedisLockClientImpl(redisson.reactive())));
+        factory.addAspect(new RedisSemaphoreAspect(new RedisSemaphoreClientImpl(redisson)));
+        orderService = factory.getProxy();
+    }
+
+    @Test
+    public void multiLockTest() {
+        server.getMultiLockOrder().clear();
+        Assert.assertTrue(orderService.submit(7, Arrays.asList("b", "c", "a")));
+        Assert.assertEquals(Arrays.asList("order:7:a", "order:7:b", "order:7:c"), server.getMultiLockOrder());
+        Assert.assertFalse(redisson.getLock("order:7:a").isLocked());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyKeysTest() {
+        orderService.submit(7, Arrays.asList());
+    }
+
+    @Test
+    public void reactiveTest() {
+        Mono<Boolean> mono = orderService.price("p1");
+        // 方法返回时尚未订阅，不持有锁
+        Assert.assertFalse(redisson.getLock("price:p1").isLocked());
+        Assert.assertEquals(Boolean.TRUE, mono.block());
+        Assert.assertFalse(redisson.getLock("price:p1").isLocked());
+        Assert.assertEquals(Arrays.asList("a", "b"), orderService.skus(Arrays.asList("b", "a")).collectList().block());
+        Assert.assertFalse(redisson.getLock("stock:a").isLocked());
+    }
+
+    @Test
+    public void semaphoreTest() {
+        Assert.assertEquals(Integer.valueOf(1), orderService.report("daily"));
+        Assert.assertEquals(2, redisson.getPermitExpirableSemaphore("report:daily").availablePermits());
+    }
+
+    @Test
+    public void semaphoreNotAcquiredTest() throws InterruptedException {
+        RPermitExpirableSemaphore semaphore = redisson.getPermitExpirableSemaphore("export:monthly");
+        semaphore.trySetPermits(1);
+        String permitId = semaphore.tryAcquire(0, 10, TimeUnit.SECONDS);
+        Assert.assertNotNull(permitId);
+        // 未获取到许可时抛出异常，基本类型返回值不会因返回null变成 AopInvocationException
+        try {
+            orderService.export("monthly");
+            Assert.fail("expected SemaphoreAcquireException");
+        } catch (SemaphoreAcquireException e) {
+            Assert.assertEquals("export:monthly", e.getName());
+        }
+        Assert.assertEquals(0, EXPORTS.get());
+        Assert.assertTrue(semaphore.tryRelease(permitId));
+        Assert.assertEquals(1, orderService.export("monthly"));
+    }
+
+    public static class OrderService {
+
+        @RedisSemaphore(key = "export", params = "#type", permits = 1, waitTime = 0)
+        public int export(String type) {
+            return EXPORTS.incrementAndGet();
+        }
+
+        @RedisLock(key = "price", params = "#id", type = LockType.REENTRANT)
+        public Mono<Boolean> price(String id) {
+            return Mono.fromCallable(() -> redisson.getLock("price:" + id).isLocked());
+        }
+
+        @RedisLock(key = "stock", multiParams = "#skus", type = LockType.REENTRANT)
+        public Flux<String> skus(List<String> skus) {
+            return Flux.fromIterable(skus).filter(sku -> redisson.getLock("stock:" + sku).isLocked()).sort();
+        }
+
+        @RedisSemaphore(key = "report", params = "#type", permits = 2, waitTime = 1)
+        public Integer report(String type) {
+            return redisson.getPermitExpirableSemaphore("report:" + type).availablePermits();
+        }
+
+        @RedisLock(key = "order", params = "#userId", multiParams = "#skus", type = LockType.REENTRANT)
+        public boolean submit(long userId, List<String> skus) {
+            for (String sku : skus) {
+                if (!redisson.getLock("order:" + userId + ":" + sku).isHeldByCurrentThread()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
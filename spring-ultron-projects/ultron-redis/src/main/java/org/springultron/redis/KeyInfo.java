@@ -0,0 +1,66 @@
+package org.springultron.redis;
+
+import org.springframework.data.redis.connection.DataType;
+
+import java.io.Serializable;
+
+/**
+ * key的类型、元素数量及内存占用快照，用于排查大key
+ *
+ * @author brucewuu
+ * @date 2021/5/26 上午10:20
+ */
+public class KeyInfo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String key;
+    private final DataType type;
+    /**
+     * 元素数量：hash/set/zset/list/stream 为元素个数，string 为字节长度
+     */
+    private final long size;
+    /**
+     * MEMORY USAGE 估算的内存占用（字节），集合类型为抽样估算值
+     */
+    private final long memoryBytes;
+
+    public KeyInfo(String key, DataType type, long size, long memoryBytes) {
+        this.key = key;
+        this.type = type;
+        this.size = size;
+        this.memoryBytes = memoryBytes;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public DataType getType() {
+        return type;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * key是否存在
+     */
+    public boolean exists() {
+        return type != DataType.NONE;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyInfo{" +
+                "key='" + key + '\'' +
+                ", type=" + type +
+                ", size=" + size +
+                ", memoryBytes=" + memoryBytes +
+                '}';
+    }
+}
@@ -3,12 +3,21 @@ package org.springultron.redis;
 import org.reactivestreams.Publisher;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.lang.Nullable;
+import org.springframework.util.CollectionUtils;
+import org.springultron.redis.hotkey.HotKeyDetector;
+import org.springultron.redis.script.RedisScriptRegistry;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,10 +29,29 @@ import java.util.Map;
 public class ReactiveRedisClient {
     private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
     private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    /**
+     * 热点key探测，为null时不开启
+     */
+    @Nullable
+    private final HotKeyDetector hotKeyDetector;
+    /**
+     * Lua 脚本注册中心
+     */
+    private final RedisScriptRegistry scriptRegistry;
 
     public ReactiveRedisClient(ReactiveStringRedisTemplate reactiveStringRedisTemplate, ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
+        this(reactiveStringRedisTemplate, reactiveRedisTemplate, null);
+    }
+
+    public ReactiveRedisClient(ReactiveStringRedisTemplate reactiveStringRedisTemplate, ReactiveRedisTemplate<String, Object> reactiveRedisTemplate, @Nullable HotKeyDetector hotKeyDetector) {
+        this(reactiveStringRedisTemplate, reactiveRedisTemplate, hotKeyDetector, new RedisScriptRegistry());
+    }
+
+    public ReactiveRedisClient(ReactiveStringRedisTemplate reactiveStringRedisTemplate, ReactiveRedisTemplate<String, Object> reactiveRedisTemplate, @Nullable HotKeyDetector hotKeyDetector, RedisScriptRegistry scriptRegistry) {
         this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
         this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.hotKeyDetector = hotKeyDetector;
+        this.scriptRegistry = scriptRegistry;
     }
 
     public ReactiveStringRedisTemplate getReactiveStringRedisTemplate() {
@@ -34,6 +62,15 @@ public class ReactiveRedisClient {
         return reactiveRedisTemplate;
     }
 
+    @Nullable
+    public HotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    public RedisScriptRegistry getScriptRegistry() {
+        return scriptRegistry;
+    }
+
     /**
      * 生成缓存key，以英文冒号隔开
      *
@@ -51,7 +88,7 @@ public class ReactiveRedisClient {
      * @param value 值
      */
     public Mono<Boolean> setString(String key, String value) {
-        return reactiveStringRedisTemplate.opsForValue().set(key, value);
+        return reactiveStringRedisTemplate.opsForValue().set(key, value).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -62,7 +99,7 @@ public class ReactiveRedisClient {
      * @param timeout 缓存过期时间
      */
     public Mono<Boolean> setString(String key, String value, Duration timeout) {
-        return reactiveStringRedisTemplate.opsForValue().set(key, value, timeout);
+        return reactiveStringRedisTemplate.opsForValue().set(key, value, timeout).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -73,7 +110,7 @@ public class ReactiveRedisClient {
      * @return 是否设置成功
      */
     public Mono<Boolean> setStringIfAbsent(String key, String value) {
-        return reactiveStringRedisTemplate.opsForValue().setIfAbsent(key, value);
+        return reactiveStringRedisTemplate.opsForValue().setIfAbsent(key, value).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -85,7 +122,7 @@ public class ReactiveRedisClient {
      * @return 是否设置成功
      */
     public Mono<Boolean> setStringIfAbsent(String key, String value, Duration timeout) {
-        return reactiveStringRedisTemplate.opsForValue().setIfAbsent(key, value, timeout);
+        return reactiveStringRedisTemplate.opsForValue().setIfAbsent(key, value, timeout).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -96,7 +133,7 @@ public class ReactiveRedisClient {
      * @return 是否设置成功
      */
     public Mono<Boolean> setStringIfPresent(String key, String value) {
-        return reactiveStringRedisTemplate.opsForValue().setIfPresent(key, value);
+        return reactiveStringRedisTemplate.opsForValue().setIfPresent(key, value).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -108,7 +145,7 @@ public class ReactiveRedisClient {
      * @return 是否设置成功
      */
     public Mono<Boolean> setStringIfPresent(String key, String value, Duration timeout) {
-        return reactiveStringRedisTemplate.opsForValue().setIfPresent(key, value, timeout);
+        return reactiveStringRedisTemplate.opsForValue().setIfPresent(key, value, timeout).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -129,7 +166,7 @@ public class ReactiveRedisClient {
      * @return 旧值
      */
     public Mono<String> getStringAndSet(String key, String newValue) {
-        return reactiveStringRedisTemplate.opsForValue().getAndSet(key, newValue);
+        return reactiveStringRedisTemplate.opsForValue().getAndSet(key, newValue).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -139,7 +176,7 @@ public class ReactiveRedisClient {
      * @param value 值
      */
     public Mono<Boolean> set(String key, Object value) {
-        return reactiveRedisTemplate.opsForValue().set(key, value);
+        return reactiveRedisTemplate.opsForValue().set(key, value).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -150,7 +187,7 @@ public class ReactiveRedisClient {
      * @param timeout 缓存过期时间
      */
     public Mono<Boolean> set(String key, Object value, Duration timeout) {
-        return reactiveRedisTemplate.opsForValue().set(key, value, timeout);
+        return reactiveRedisTemplate.opsForValue().set(key, value, timeout).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -161,7 +198,7 @@ public class ReactiveRedisClient {
      * @return 是否设置成功
      */
     public Mono<Boolean> setIfAbsent(String key, Object value) {
-        return reactiveRedisTemplate.opsForValue().setIfAbsent(key, value);
+        return reactiveRedisTemplate.opsForValue().setIfAbsent(key, value).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -173,7 +210,7 @@ public class ReactiveRedisClient {
      * @return 是否设置成功
      */
     public Mono<Boolean> setIfAbsent(String key, Object value, Duration timeout) {
-        return reactiveRedisTemplate.opsForValue().setIfAbsent(key, value, timeout);
+        return reactiveRedisTemplate.opsForValue().setIfAbsent(key, value, timeout).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -184,7 +221,7 @@ public class ReactiveRedisClient {
      * @return 是否设置成功
      */
     public Mono<Boolean> setIfPresent(String key, Object value) {
-        return reactiveRedisTemplate.opsForValue().setIfPresent(key, value);
+        return reactiveRedisTemplate.opsForValue().setIfPresent(key, value).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -196,11 +233,11 @@ public class ReactiveRedisClient {
      * @return 是否设置成功
      */
     public Mono<Boolean> setIfPresent(String key, Object value, Duration timeout) {
-        return reactiveRedisTemplate.opsForValue().setIfPresent(key, value, timeout);
+        return reactiveRedisTemplate.opsForValue().setIfPresent(key, value, timeout).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
-     * 读取缓存
+     * 读取缓存，开启热点key探测时热点key在短时间内优先读取本地副本
      *
      * @param key 缓存key
      * @param <V> 缓存泛型
@@ -208,7 +245,8 @@ public class ReactiveRedisClient {
      */
     public <V> Mono<V> get(String key) {
         //noinspection unchecked
-        return (Mono<V>) reactiveRedisTemplate.opsForValue().get(key);
+        Mono<V> value = (Mono<V>) reactiveRedisTemplate.opsForValue().get(key);
+        return hotKeyDetector == null ? value : hotKeyDetector.get(key, value);
     }
 
     /**
@@ -221,7 +259,7 @@ public class ReactiveRedisClient {
      */
     public <V> Mono<V> getAndSet(String key, Object newValue) {
         //noinspection unchecked
-        return (Mono<V>) reactiveRedisTemplate.opsForValue().getAndSet(key, newValue);
+        return (Mono<V>) reactiveRedisTemplate.opsForValue().getAndSet(key, newValue).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -231,7 +269,7 @@ public class ReactiveRedisClient {
      * @return 自增后的值
      */
     public Mono<Long> increment(String key) {
-        return reactiveStringRedisTemplate.opsForValue().increment(key);
+        return reactiveStringRedisTemplate.opsForValue().increment(key).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -245,7 +283,7 @@ public class ReactiveRedisClient {
         if (delta < 0) {
             throw new IllegalArgumentException("递增因子必须大于0");
         }
-        return reactiveStringRedisTemplate.opsForValue().increment(key, delta);
+        return reactiveStringRedisTemplate.opsForValue().increment(key, delta).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -255,7 +293,7 @@ public class ReactiveRedisClient {
      * @return 自减后的值
      */
     public Mono<Long> decrement(String key) {
-        return reactiveStringRedisTemplate.opsForValue().decrement(key);
+        return reactiveStringRedisTemplate.opsForValue().decrement(key).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -269,7 +307,7 @@ public class ReactiveRedisClient {
         if (delta < 0) {
             throw new IllegalArgumentException("递减因子必须大于0");
         }
-        return reactiveStringRedisTemplate.opsForValue().decrement(key, delta);
+        return reactiveStringRedisTemplate.opsForValue().decrement(key, delta).doOnSuccess(result -> invalidateHotKey(key));
     }
 
     /**
@@ -548,7 +586,11 @@ public class ReactiveRedisClient {
      * @param keys 缓存 key数组
      */
     public Mono<Long> delete(String... keys) {
-        return reactiveRedisTemplate.delete(keys);
+        return reactiveRedisTemplate.delete(keys).doOnSuccess(result -> {
+            for (String key : keys) {
+                invalidateHotKey(key);
+            }
+        });
     }
 
     /**
@@ -557,15 +599,158 @@ public class ReactiveRedisClient {
      * @param keys 缓存 key流
      */
     public Mono<Long> delete(Publisher<String> keys) {
-        return reactiveRedisTemplate.delete(keys);
+        if (hotKeyDetector == null) {
+            return reactiveRedisTemplate.delete(keys);
+        }
+        return Mono.defer(() -> {
+            List<String> deleted = Collections.synchronizedList(new ArrayList<>());
+            return reactiveRedisTemplate.delete(Flux.from(keys).doOnNext(deleted::add))
+                    .doOnSuccess(result -> deleted.forEach(this::invalidateHotKey));
+        });
+    }
+
+    /**
+     * 基于 SCAN 游标迭代匹配的key，代替会阻塞 Redis 的 KEYS 命令
+     *
+     * @param pattern 匹配的前缀
+     * @param count   SCAN 命令的 COUNT 值
+     * @return key流
+     */
+    public Flux<String> scan(String pattern, long count) {
+        return reactiveRedisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(count).build());
     }
 
     /**
-     * 模糊匹配批量删除
+     * 模糊匹配批量删除，基于 SCAN 迭代并分批 UNLINK，不会阻塞 Redis
      *
      * @param pattern 匹配的前缀
+     * @return 删除的key数量
      */
     public Mono<Long> deleteByPattern(String pattern) {
-        return reactiveRedisTemplate.delete(reactiveRedisTemplate.keys(pattern));
+        return deleteByPattern(pattern, Long.MAX_VALUE);
+    }
+
+    /**
+     * 模糊匹配批量删除，基于 SCAN 迭代并按 {@link RedisClient#BATCH_SIZE} 分批 UNLINK，不会阻塞 Redis
+     *
+     * @param pattern 匹配的前缀
+     * @param maxKeys 单次调用最多删除的key数量
+     * @return 删除的key数量
+     */
+    public Mono<Long> deleteByPattern(String pattern, long maxKeys) {
+        return scan(pattern, RedisClient.SCAN_COUNT)
+                .take(maxKeys)
+                .buffer(RedisClient.BATCH_SIZE)
+                .concatMap(keys -> reactiveRedisTemplate.unlink(keys.toArray(new String[0])).doOnSuccess(result -> keys.forEach(this::invalidateHotKey)))
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * 批量读取缓存（MGET），按 {@link RedisClient#BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param keys 缓存 key集合
+     * @param <V>  缓存值泛型
+     * @return 缓存值列表，与keys顺序一致，不存在的key对应null
+     */
+    public <V> Mono<List<V>> multiGet(Collection<String> keys) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return Mono.just(Collections.emptyList());
+        }
+        return Flux.fromIterable(keys)
+                .buffer(RedisClient.BATCH_SIZE)
+                .concatMap(batch -> reactiveRedisTemplate.opsForValue().multiGet(batch))
+                .collect(() -> new ArrayList<V>(keys.size()), (values, list) -> {
+                    //noinspection unchecked
+                    values.addAll((List<V>) list);
+                });
+    }
+
+    /**
+     * 批量设置缓存（MSET），按 {@link RedisClient#BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param map 缓存键值对
+     * @return 是否全部设置成功
+     */
+    public Mono<Boolean> multiSet(Map<String, ?> map) {
+        if (CollectionUtils.isEmpty(map)) {
+            return Mono.just(Boolean.TRUE);
+        }
+        return Flux.fromIterable(map.keySet())
+                .buffer(RedisClient.BATCH_SIZE)
+                .concatMap(batch -> {
+                    Map<String, Object> batchMap = new LinkedHashMap<>(batch.size());
+                    batch.forEach(key -> batchMap.put(key, map.get(key)));
+                    return reactiveRedisTemplate.opsForValue().multiSet(batchMap).doOnSuccess(result -> batch.forEach(this::invalidateHotKey));
+                })
+                .all(Boolean.TRUE::equals);
+    }
+
+    /**
+     * 批量设置缓存并指定过期时间，MSET不支持过期时间，因此逐个key执行 SET PX；
+     * 命令并发发出、由连接自动 pipeline，最多 {@link RedisClient#BATCH_SIZE} 个命令同时等待响应，
+     * 每个key单独执行，集群模式下无需位于同一slot
+     *
+     * @param map     缓存键值对
+     * @param timeout 缓存过期时间
+     * @return 设置的key数量
+     */
+    public Mono<Long> multiSet(Map<String, ?> map, Duration timeout) {
+        if (CollectionUtils.isEmpty(map)) {
+            return Mono.just(0L);
+        }
+        return Flux.fromIterable(map.entrySet())
+                .flatMap(entry -> set(entry.getKey(), entry.getValue(), timeout), RedisClient.BATCH_SIZE)
+                .filter(Boolean.TRUE::equals)
+                .count();
+    }
+
+    /**
+     * 批量删除缓存（DEL），按 {@link RedisClient#BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param keys 缓存 key集合
+     * @return 删除的key数量
+     */
+    public Mono<Long> multiDelete(Collection<String> keys) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return Mono.just(0L);
+        }
+        return Flux.fromIterable(keys)
+                .buffer(RedisClient.BATCH_SIZE)
+                .concatMap(batch -> delete(batch.toArray(new String[0])))
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * 执行已注册的 Lua 脚本（EVALSHA，NOSCRIPT 时加载一次后重试）
+     *
+     * @param name       脚本名称
+     * @param resultType 结果类型
+     * @param keys       KEYS
+     * @param args       ARGV，按字符串传递
+     * @param <T>        结果泛型
+     * @return 脚本结果
+     */
+    public <T> Mono<T> executeScript(String name, Class<T> resultType, List<String> keys, Object... args) {
+        return scriptRegistry.execute(reactiveStringRedisTemplate, name, resultType, keys, args);
+    }
+
+    /**
+     * 对多组 key 执行同一已注册的 Lua 脚本，命令在同一连接上连续发送
+     *
+     * @param name       脚本名称
+     * @param resultType 结果类型
+     * @param keySets    每次执行的 KEYS
+     * @param args       每次执行共用的 ARGV，按字符串传递
+     * @param <T>        结果泛型
+     * @return 脚本结果，与 keySets 顺序一致
+     */
+    public <T> Mono<List<T>> executeScriptBatch(String name, Class<T> resultType, List<List<String>> keySets, Object... args) {
+        return scriptRegistry.executeBatch(reactiveStringRedisTemplate, name, resultType, keySets, args);
+    }
+
+    private void invalidateHotKey(String key) {
+        if (hotKeyDetector != null) {
+            hotKeyDetector.invalidate(key);
+        }
     }
 }
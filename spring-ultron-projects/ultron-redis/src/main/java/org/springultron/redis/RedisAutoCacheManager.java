@@ -1,48 +1,80 @@
 package org.springultron.redis;
 
-import org.springframework.boot.convert.DurationStyle;
 import org.springframework.data.redis.cache.RedisCache;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
-import org.springultron.core.utils.StringUtils;
+import org.springultron.redis.cache.RedisCacheSpec;
+import org.springultron.redis.cache.UltronRedisCache;
+import org.springultron.redis.config.UltronRedisProperties;
 
 import java.time.Duration;
-import java.time.temporal.ChronoUnit;
 import java.util.Map;
 
 /**
  * Redis Cache扩展扩展cache name
- * 支持 # 号分隔 cache name 和 超时 ttl(默认单位秒)。
+ * 支持 # 号分隔 cache name 和 超时 ttl(默认单位秒)，以及 ttl 之后 # 号分隔的可选项，详见 {@link RedisCacheSpec}。
  *
  * @author brucewuu
  * @date 2019/11/10 18:05
  */
 public class RedisAutoCacheManager extends RedisCacheManager {
+    private final RedisCacheWriter cacheWriter;
+    private final RedisCacheConfiguration defaultCacheConfiguration;
+    private final UltronRedisProperties.Cache cacheProperties;
+    @Nullable
+    private final RedisTemplate<String, Object> redisTemplate;
 
     public RedisAutoCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfiguration, Map<String, RedisCacheConfiguration> initialCacheConfigurations, boolean allowInFlightCacheCreation) {
+        this(cacheWriter, defaultCacheConfiguration, initialCacheConfigurations, allowInFlightCacheCreation, new UltronRedisProperties.Cache(), null);
+    }
+
+    public RedisAutoCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfiguration, Map<String, RedisCacheConfiguration> initialCacheConfigurations, boolean allowInFlightCacheCreation, UltronRedisProperties.Cache cacheProperties, @Nullable RedisTemplate<String, Object> redisTemplate) {
         super(cacheWriter, defaultCacheConfiguration, initialCacheConfigurations, allowInFlightCacheCreation);
+        this.cacheWriter = cacheWriter;
+        this.defaultCacheConfiguration = defaultCacheConfiguration;
+        this.cacheProperties = cacheProperties;
+        this.redisTemplate = redisTemplate;
     }
 
     @NonNull
     @Override
     protected RedisCache createRedisCache(@NonNull String name, @Nullable RedisCacheConfiguration cacheConfig) {
-        String cacheName = name;
-        System.err.println("--createRedisCache: " + cacheName);
-        if (StringUtils.isNotEmpty(name) && name.contains("#")) {
-            String[] array = name.split("#");
-            if (array.length > 1) {
-                cacheName = array[0].trim();
-                // 转换时间，支持时间单位例如：300ms，默认单位秒
-                Duration ttl = DurationStyle.detectAndParse(array[1].trim(), ChronoUnit.SECONDS);
-                if (cacheConfig != null && cacheConfig.getTtl().compareTo(ttl) != 0) {
-                    cacheConfig = cacheConfig.entryTtl(ttl);
-                }
-            }
+        RedisCacheSpec spec = RedisCacheSpec.parse(name, cacheProperties.getStampede().getBeta(), cacheProperties.getOptions());
+        if (cacheConfig == null) {
+            cacheConfig = defaultCacheConfiguration;
+        }
+        Duration ttl = spec.getTtl();
+        if (ttl != null && cacheConfig.getTtl().compareTo(ttl) != 0) {
+            cacheConfig = cacheConfig.entryTtl(ttl);
         }
-        System.err.println("--createRedisCache22: " + cacheName);
-        return super.createRedisCache(cacheName, cacheConfig);
+        return createRedisCache(spec, cacheConfig);
+    }
+
+    /**
+     * 根据解析后的 cache name 创建缓存
+     *
+     * @param spec        解析后的 cache name
+     * @param cacheConfig 缓存配置
+     * @return RedisCache
+     */
+    protected RedisCache createRedisCache(RedisCacheSpec spec, RedisCacheConfiguration cacheConfig) {
+        return new UltronRedisCache(spec.getName(), cacheWriter, cacheConfig, spec, cacheProperties, redisTemplate);
+    }
+
+    protected RedisCacheWriter getCacheWriter() {
+        return cacheWriter;
+    }
+
+    protected UltronRedisProperties.Cache getCacheProperties() {
+        return cacheProperties;
+    }
+
+    @Nullable
+    protected RedisTemplate<String, Object> getRedisTemplate() {
+        return redisTemplate;
     }
-}
\ No newline at end of file
+}
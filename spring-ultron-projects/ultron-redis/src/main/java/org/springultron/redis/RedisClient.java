@@ -1,13 +1,37 @@
 package org.springultron.redis;
 
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.ConvertingCursor;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.TimeoutUtils;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springultron.core.exception.Exceptions;
+import org.springultron.redis.hotkey.HotKeyDetector;
+import org.springultron.redis.script.RedisScriptRegistry;
+import org.springultron.redis.tracking.RedisNearCache;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Redis操作客户端
@@ -16,12 +40,67 @@ import java.util.concurrent.TimeUnit;
  * @date 2019-05-31 14:26
  */
 public class RedisClient {
+    /**
+     * 批量操作每批次的key数量：
+     * 超过该数量时拆分为多次 MGET/MSET/DEL 或多个 pipeline，每批次一次网络往返，避免单条命令过大阻塞 Redis
+     */
+    public static final int BATCH_SIZE = 500;
+    /**
+     * SCAN 命令默认的 COUNT 值，即每次迭代 Redis 单次扫描的槽位数量
+     */
+    public static final long SCAN_COUNT = 1000L;
+    /**
+     * 查询key类型、元素数量及内存占用的脚本，KEYS[1]为key，ARGV[1]为 MEMORY USAGE 的 SAMPLES 值
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> KEY_INFO_SCRIPT = new DefaultRedisScript<>(
+            "local t = redis.call('TYPE', KEYS[1]).ok\n" +
+                    "if t == 'none' then return {t, 0, 0} end\n" +
+                    "local size = 0\n" +
+                    "if t == 'hash' then size = redis.call('HLEN', KEYS[1])\n" +
+                    "elseif t == 'set' then size = redis.call('SCARD', KEYS[1])\n" +
+                    "elseif t == 'zset' then size = redis.call('ZCARD', KEYS[1])\n" +
+                    "elseif t == 'list' then size = redis.call('LLEN', KEYS[1])\n" +
+                    "elseif t == 'string' then size = redis.call('STRLEN', KEYS[1])\n" +
+                    "elseif t == 'stream' then size = redis.call('XLEN', KEYS[1]) end\n" +
+                    "local mem = redis.call('MEMORY', 'USAGE', KEYS[1], 'SAMPLES', ARGV[1]) or 0\n" +
+                    "return {t, size, mem}", List.class);
+
     private final StringRedisTemplate stringRedisTemplate;
     private final RedisTemplate<String, Object> redisTemplate;
+    /**
+     * 近端缓存，为null时不开启
+     */
+    @Nullable
+    private final RedisNearCache nearCache;
+    /**
+     * 热点key探测，为null时不开启
+     */
+    @Nullable
+    private final HotKeyDetector hotKeyDetector;
+    /**
+     * Lua 脚本注册中心
+     */
+    private final RedisScriptRegistry scriptRegistry;
 
     public RedisClient(StringRedisTemplate stringRedisTemplate, RedisTemplate<String, Object> redisTemplate) {
+        this(stringRedisTemplate, redisTemplate, null, null);
+    }
+
+    public RedisClient(StringRedisTemplate stringRedisTemplate, RedisTemplate<String, Object> redisTemplate, @Nullable RedisNearCache nearCache) {
+        this(stringRedisTemplate, redisTemplate, nearCache, null);
+    }
+
+    public RedisClient(StringRedisTemplate stringRedisTemplate, RedisTemplate<String, Object> redisTemplate, @Nullable RedisNearCache nearCache, @Nullable HotKeyDetector hotKeyDetector) {
+        this(stringRedisTemplate, redisTemplate, nearCache, hotKeyDetector, new RedisScriptRegistry());
+    }
+
+    public RedisClient(StringRedisTemplate stringRedisTemplate, RedisTemplate<String, Object> redisTemplate, @Nullable RedisNearCache nearCache, @Nullable HotKeyDetector hotKeyDetector, RedisScriptRegistry scriptRegistry) {
         this.stringRedisTemplate = stringRedisTemplate;
         this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.hotKeyDetector = hotKeyDetector;
+        this.scriptRegistry = scriptRegistry;
     }
 
     public StringRedisTemplate getStringRedisTemplate() {
@@ -32,6 +111,20 @@ public class RedisClient {
         return redisTemplate;
     }
 
+    @Nullable
+    public RedisNearCache getNearCache() {
+        return nearCache;
+    }
+
+    @Nullable
+    public HotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    public RedisScriptRegistry getScriptRegistry() {
+        return scriptRegistry;
+    }
+
     /**
      * 生成缓存key，以英文冒号隔开
      *
@@ -50,6 +143,7 @@ public class RedisClient {
      */
     public void setString(String key, String value) {
         stringRedisTemplate.opsForValue().set(key, value);
+        invalidateLocal(key);
     }
 
     /**
@@ -61,6 +155,7 @@ public class RedisClient {
      */
     public void setString(String key, String value, Duration timeout) {
         stringRedisTemplate.opsForValue().set(key, value, timeout);
+        invalidateLocal(key);
     }
 
     /**
@@ -71,7 +166,9 @@ public class RedisClient {
      * @return 是否设置成功
      */
     public boolean setStringIfAbsent(String key, String value) {
-        return Optional.ofNullable(stringRedisTemplate.opsForValue().setIfAbsent(key, value)).orElse(Boolean.FALSE);
+        boolean result = Optional.ofNullable(stringRedisTemplate.opsForValue().setIfAbsent(key, value)).orElse(Boolean.FALSE);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -83,7 +180,9 @@ public class RedisClient {
      * @return 是否设置成功
      */
     public boolean setStringIfAbsent(String key, String value, Duration timeout) {
-        return Optional.ofNullable(stringRedisTemplate.opsForValue().setIfAbsent(key, value, timeout)).orElse(Boolean.FALSE);
+        boolean result = Optional.ofNullable(stringRedisTemplate.opsForValue().setIfAbsent(key, value, timeout)).orElse(Boolean.FALSE);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -94,7 +193,9 @@ public class RedisClient {
      * @return 是否设置成功
      */
     public boolean setStringIfPresent(String key, String value) {
-        return Optional.ofNullable(stringRedisTemplate.opsForValue().setIfPresent(key, value)).orElse(Boolean.FALSE);
+        boolean result = Optional.ofNullable(stringRedisTemplate.opsForValue().setIfPresent(key, value)).orElse(Boolean.FALSE);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -106,7 +207,9 @@ public class RedisClient {
      * @return 是否设置成功
      */
     public boolean setStringIfPresent(String key, String value, Duration timeout) {
-        return Optional.ofNullable(stringRedisTemplate.opsForValue().setIfPresent(key, value, timeout)).orElse(Boolean.FALSE);
+        boolean result = Optional.ofNullable(stringRedisTemplate.opsForValue().setIfPresent(key, value, timeout)).orElse(Boolean.FALSE);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -127,7 +230,9 @@ public class RedisClient {
      * @return 旧值
      */
     public String getStringAndSet(String key, String newValue) {
-        return stringRedisTemplate.opsForValue().getAndSet(key, newValue);
+        String result = stringRedisTemplate.opsForValue().getAndSet(key, newValue);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -138,6 +243,7 @@ public class RedisClient {
      */
     public void set(String key, Object value) {
         redisTemplate.opsForValue().set(key, value);
+        invalidateLocal(key);
     }
 
     /**
@@ -149,6 +255,7 @@ public class RedisClient {
      */
     public void set(String key, Object value, Duration timeout) {
         redisTemplate.opsForValue().set(key, value, timeout);
+        invalidateLocal(key);
     }
 
     /**
@@ -159,7 +266,9 @@ public class RedisClient {
      * @return 是否设置成功
      */
     public boolean setIfAbsent(String key, Object value) {
-        return Optional.ofNullable(redisTemplate.opsForValue().setIfAbsent(key, value)).orElse(Boolean.FALSE);
+        boolean result = Optional.ofNullable(redisTemplate.opsForValue().setIfAbsent(key, value)).orElse(Boolean.FALSE);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -171,7 +280,9 @@ public class RedisClient {
      * @return 是否设置成功
      */
     public boolean setIfAbsent(String key, Object value, Duration timeout) {
-        return Optional.ofNullable(redisTemplate.opsForValue().setIfAbsent(key, value, timeout)).orElse(Boolean.FALSE);
+        boolean result = Optional.ofNullable(redisTemplate.opsForValue().setIfAbsent(key, value, timeout)).orElse(Boolean.FALSE);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -182,7 +293,9 @@ public class RedisClient {
      * @return 是否设置成功
      */
     public boolean setIfPresent(String key, Object value) {
-        return Optional.ofNullable(redisTemplate.opsForValue().setIfPresent(key, value)).orElse(Boolean.FALSE);
+        boolean result = Optional.ofNullable(redisTemplate.opsForValue().setIfPresent(key, value)).orElse(Boolean.FALSE);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -194,17 +307,34 @@ public class RedisClient {
      * @return 是否设置成功
      */
     public boolean setIfPresent(String key, Object value, Duration timeout) {
-        return Optional.ofNullable(redisTemplate.opsForValue().setIfPresent(key, value, timeout)).orElse(Boolean.FALSE);
+        boolean result = Optional.ofNullable(redisTemplate.opsForValue().setIfPresent(key, value, timeout)).orElse(Boolean.FALSE);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
      * 读取缓存
+     * <p>
+     * 开启近端缓存且key匹配追踪前缀时优先读取本地副本，本地副本由 Redis 推送的失效消息及本节点的写入移除；
+     * 开启热点key探测时，热点key在短时间内优先读取本地副本
+     * </p>
      *
      * @param key 缓存key
      * @param <V> 缓存泛型
      * @return 缓存值
      */
     public <V> V get(String key) {
+        if (hotKeyDetector != null) {
+            return hotKeyDetector.get(key, () -> doGet(key));
+        }
+        return doGet(key);
+    }
+
+    private <V> V doGet(String key) {
+        if (nearCache != null) {
+            //noinspection unchecked
+            return nearCache.get(key, () -> (V) redisTemplate.opsForValue().get(key));
+        }
         //noinspection unchecked
         return (V) redisTemplate.opsForValue().get(key);
     }
@@ -219,7 +349,9 @@ public class RedisClient {
      */
     public <V> V getAndSet(String key, Object newValue) {
         //noinspection unchecked
-        return (V) redisTemplate.opsForValue().getAndSet(key, newValue);
+        V result = (V) redisTemplate.opsForValue().getAndSet(key, newValue);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -229,7 +361,9 @@ public class RedisClient {
      * @return 自增后的值
      */
     public Long increment(String key) {
-        return stringRedisTemplate.opsForValue().increment(key);
+        Long result = stringRedisTemplate.opsForValue().increment(key);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -243,7 +377,9 @@ public class RedisClient {
         if (delta < 0) {
             throw new IllegalArgumentException("递增因子必须大于0");
         }
-        return stringRedisTemplate.opsForValue().increment(key, delta);
+        Long result = stringRedisTemplate.opsForValue().increment(key, delta);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -253,7 +389,9 @@ public class RedisClient {
      * @return 自减后的值
      */
     public Long decrement(String key) {
-        return stringRedisTemplate.opsForValue().decrement(key);
+        Long result = stringRedisTemplate.opsForValue().decrement(key);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -267,7 +405,9 @@ public class RedisClient {
         if (delta < 0) {
             throw new IllegalArgumentException("递减因子必须大于0");
         }
-        return stringRedisTemplate.opsForValue().decrement(key, delta);
+        Long result = stringRedisTemplate.opsForValue().decrement(key, delta);
+        invalidateLocal(key);
+        return result;
     }
 
     /**
@@ -553,19 +693,612 @@ public class RedisClient {
                 result = true;
             }
         }
+        for (String key : keys) {
+            invalidateLocal(key);
+        }
         return null == result ? false : result;
     }
 
     /**
-     * 模糊匹配批量删除
+     * 模糊匹配批量删除，基于 SCAN 迭代并分批 UNLINK，不会阻塞 Redis
      *
      * @param pattern 匹配的前缀
+     * @return 没有匹配的key或删除成功返回true
      */
     public boolean deleteByPattern(String pattern) {
-        Set<String> keys = redisTemplate.keys(pattern);
+        long[] result = unlinkByPattern(pattern, SCAN_COUNT, Long.MAX_VALUE);
+        return result[0] == 0 || result[1] > 0;
+    }
+
+    /**
+     * 模糊匹配批量删除，基于 SCAN 迭代并按 {@link #BATCH_SIZE} 分批 UNLINK，不会阻塞 Redis
+     *
+     * @param pattern 匹配的前缀
+     * @param maxKeys 单次调用最多删除的key数量
+     * @return 删除的key数量
+     */
+    public long deleteByPattern(String pattern, long maxKeys) {
+        return unlinkByPattern(pattern, SCAN_COUNT, maxKeys)[1];
+    }
+
+    /**
+     * 基于 SCAN 游标迭代匹配的key，代替会阻塞 Redis 的 KEYS 命令
+     * <p>
+     * 游标会独占一个连接，使用完毕后必须关闭，建议使用 try-with-resources；
+     * 集群模式下 SCAN 只能在单个节点上执行，依次迭代各主节点
+     * </p>
+     *
+     * @param pattern 匹配的前缀
+     * @param count   SCAN 命令的 COUNT 值
+     * @return key游标
+     */
+    public Cursor<String> scan(String pattern, long count) {
+        final ScanOptions options = ScanOptions.scanOptions().match(pattern).count(count).build();
+        //noinspection unchecked
+        final RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        return redisTemplate.executeWithStickyConnection(connection -> new ConvertingCursor<>(scanKeys(connection, options), keySerializer::deserialize));
+    }
+
+    private static Cursor<byte[]> scanKeys(RedisConnection connection, ScanOptions options) {
+        if (!(connection instanceof RedisClusterConnection)) {
+            return connection.scan(options);
+        }
+        RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+        List<RedisClusterNode> masters = new ArrayList<>();
+        for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+            if (node.isMaster()) {
+                masters.add(node);
+            }
+        }
+        return new ClusterScanCursor(clusterConnection, masters, options);
+    }
+
+    /**
+     * 基于 SCAN 游标迭代匹配的key，迭代完成后自动关闭游标
+     *
+     * @param pattern  匹配的前缀
+     * @param count    SCAN 命令的 COUNT 值
+     * @param consumer key消费者
+     */
+    public void scan(String pattern, long count, Consumer<String> consumer) {
+        try (Cursor<String> cursor = scan(pattern, count)) {
+            cursor.forEachRemaining(consumer);
+        } catch (IOException e) {
+            throw Exceptions.unchecked(e);
+        }
+    }
+
+    /**
+     * 基于 HSCAN 游标迭代Hash表的item项，代替会阻塞 Redis 的 HGETALL
+     * <p>
+     * 游标会独占一个连接，使用完毕后必须关闭，建议使用 try-with-resources
+     * </p>
+     *
+     * @param key     缓存 key
+     * @param pattern item匹配规则，为null时匹配全部
+     * @param count   HSCAN 命令的 COUNT 值，即每批次返回的大致数量
+     * @return item项游标
+     */
+    public Cursor<Map.Entry<Object, Object>> hscan(String key, @Nullable String pattern, long count) {
+        return redisTemplate.opsForHash().scan(key, scanOptions(pattern, count));
+    }
+
+    /**
+     * 基于 HSCAN 游标迭代Hash表的item项，迭代完成后自动关闭游标
+     *
+     * @param key      缓存 key
+     * @param pattern  item匹配规则，为null时匹配全部
+     * @param count    HSCAN 命令的 COUNT 值
+     * @param consumer item项消费者
+     */
+    public void hscan(String key, @Nullable String pattern, long count, Consumer<Map.Entry<Object, Object>> consumer) {
+        consume(hscan(key, pattern, count), consumer);
+    }
+
+    /**
+     * 基于 SSCAN 游标迭代Set集合的元素，代替会阻塞 Redis 的 SMEMBERS
+     * <p>
+     * 游标会独占一个连接，使用完毕后必须关闭，建议使用 try-with-resources
+     * </p>
+     *
+     * @param key     缓存 key
+     * @param pattern 元素匹配规则，为null时匹配全部
+     * @param count   SSCAN 命令的 COUNT 值，即每批次返回的大致数量
+     * @return 元素游标
+     */
+    public Cursor<Object> sscan(String key, @Nullable String pattern, long count) {
+        return redisTemplate.opsForSet().scan(key, scanOptions(pattern, count));
+    }
+
+    /**
+     * 基于 SSCAN 游标迭代Set集合的元素，迭代完成后自动关闭游标
+     *
+     * @param key      缓存 key
+     * @param pattern  元素匹配规则，为null时匹配全部
+     * @param count    SSCAN 命令的 COUNT 值
+     * @param consumer 元素消费者
+     */
+    public void sscan(String key, @Nullable String pattern, long count, Consumer<Object> consumer) {
+        consume(sscan(key, pattern, count), consumer);
+    }
+
+    /**
+     * 基于 ZSCAN 游标迭代ZSet有序集合的元素及分值，代替会阻塞 Redis 的全量 ZRANGE
+     * <p>
+     * 游标会独占一个连接，使用完毕后必须关闭，建议使用 try-with-resources；ZSCAN 不保证按分值顺序返回
+     * </p>
+     *
+     * @param key     缓存 key
+     * @param pattern 元素匹配规则，为null时匹配全部
+     * @param count   ZSCAN 命令的 COUNT 值，即每批次返回的大致数量
+     * @return 元素游标
+     */
+    public Cursor<ZSetOperations.TypedTuple<Object>> zscan(String key, @Nullable String pattern, long count) {
+        return redisTemplate.opsForZSet().scan(key, scanOptions(pattern, count));
+    }
+
+    /**
+     * 基于 ZSCAN 游标迭代ZSet有序集合的元素及分值，迭代完成后自动关闭游标
+     *
+     * @param key      缓存 key
+     * @param pattern  元素匹配规则，为null时匹配全部
+     * @param count    ZSCAN 命令的 COUNT 值
+     * @param consumer 元素消费者
+     */
+    public void zscan(String key, @Nullable String pattern, long count, Consumer<ZSetOperations.TypedTuple<Object>> consumer) {
+        consume(zscan(key, pattern, count), consumer);
+    }
+
+    /**
+     * 渐进式删除大key，按 {@link #BATCH_SIZE} 分批删除元素后再 UNLINK
+     *
+     * @param key 缓存 key
+     * @return 分批删除的元素数量
+     * @see #deleteBigKey(String, int)
+     */
+    public long deleteBigKey(String key) {
+        return deleteBigKey(key, BATCH_SIZE);
+    }
+
+    /**
+     * 渐进式删除大key
+     * <p>
+     * 直接 DEL 一个包含百万元素的集合会阻塞 Redis 数百毫秒，这里按类型分批删除元素，每批一条命令：
+     * hash 使用 HSCAN + HDEL，set 使用 SSCAN + SREM，zset 使用 ZREMRANGEBYRANK，list 使用 LTRIM，
+     * 最后再 UNLINK 剩余的空key（或 string 等非集合类型的key）。删除期间其他客户端仍可能读到部分元素。
+     * </p>
+     *
+     * @param key       缓存 key
+     * @param batchSize 每批删除的元素数量
+     * @return 分批删除的元素数量
+     */
+    public long deleteBigKey(String key, int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        //noinspection unchecked
+        final byte[] rawKey = ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+        Long removed = redisTemplate.execute((RedisCallback<Long>) connection -> {
+            long count = 0L;
+            DataType type = connection.type(rawKey);
+            if (type == DataType.HASH) {
+                count = scanAndRemove(connection.hScan(rawKey, scanOptions(null, batchSize)), Map.Entry::getKey, batchSize,
+                        fields -> connection.hDel(rawKey, fields));
+            } else if (type == DataType.SET) {
+                count = scanAndRemove(connection.sScan(rawKey, scanOptions(null, batchSize)), member -> member, batchSize,
+                        members -> connection.sRem(rawKey, members));
+            } else if (type == DataType.ZSET) {
+                Long n;
+                while ((n = connection.zRemRange(rawKey, 0, batchSize - 1)) != null && n > 0) {
+                    count += n;
+                }
+            } else if (type == DataType.LIST) {
+                Long length = connection.lLen(rawKey);
+                for (long remaining = length == null ? 0L : length; remaining > 0; remaining -= batchSize) {
+                    // 每次裁掉尾部 batchSize 个元素
+                    connection.lTrim(rawKey, 0, -batchSize - 1);
+                    count += Math.min(remaining, batchSize);
+                }
+            }
+            connection.unlink(rawKey);
+            return count;
+        });
+        invalidateLocal(key);
+        return removed == null ? 0L : removed;
+    }
+
+    /**
+     * 查询key的类型、元素数量及内存占用，一次网络往返（Lua 脚本中执行 TYPE、长度命令及 MEMORY USAGE）
+     * <p>
+     * 集合类型的内存占用由 Redis 抽样 {@code samples} 个元素估算，0 表示全部采样（大key上会较慢）
+     * </p>
+     *
+     * @param key     缓存 key
+     * @param samples MEMORY USAGE 的 SAMPLES 值
+     * @return key信息，key不存在时类型为 {@link DataType#NONE}
+     */
+    public KeyInfo keyInfo(String key, int samples) {
+        //noinspection unchecked
+        List<Object> result = (List<Object>) stringRedisTemplate.execute(KEY_INFO_SCRIPT, Collections.singletonList(key), String.valueOf(samples));
+        if (CollectionUtils.isEmpty(result)) {
+            return new KeyInfo(key, DataType.NONE, 0L, 0L);
+        }
+        return new KeyInfo(key, DataType.fromCode(String.valueOf(result.get(0))), toLong(result.get(1)), toLong(result.get(2)));
+    }
+
+    /**
+     * 查询key的类型、元素数量及内存占用，MEMORY USAGE 使用 Redis 默认的抽样数量(5)
+     *
+     * @param key 缓存 key
+     * @return key信息
+     */
+    public KeyInfo keyInfo(String key) {
+        return keyInfo(key, 5);
+    }
+
+    private static ScanOptions scanOptions(@Nullable String pattern, long count) {
+        ScanOptions.ScanOptionsBuilder builder = ScanOptions.scanOptions().count(count);
+        if (pattern != null) {
+            builder.match(pattern);
+        }
+        return builder.build();
+    }
+
+    private static <T> void consume(Cursor<T> cursor, Consumer<? super T> consumer) {
+        try (Cursor<T> c = cursor) {
+            c.forEachRemaining(consumer);
+        } catch (IOException e) {
+            throw Exceptions.unchecked(e);
+        }
+    }
+
+    /**
+     * 游标迭代元素并按批次删除
+     *
+     * @return 删除的元素数量
+     */
+    private static <T> long scanAndRemove(Cursor<T> cursor, Function<T, byte[]> mapper, int batchSize, Function<byte[][], Long> remover) {
+        long count = 0L;
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        try (Cursor<T> c = cursor) {
+            while (c.hasNext()) {
+                batch.add(mapper.apply(c.next()));
+                if (batch.size() >= batchSize) {
+                    count += Optional.ofNullable(remover.apply(batch.toArray(new byte[0][]))).orElse(0L);
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw Exceptions.unchecked(e);
+        }
+        if (!batch.isEmpty()) {
+            count += Optional.ofNullable(remover.apply(batch.toArray(new byte[0][]))).orElse(0L);
+        }
+        return count;
+    }
+
+    private static long toLong(@Nullable Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * 批量读取缓存（MGET），按 {@link #BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param keys 缓存 key集合
+     * @param <V>  缓存值泛型
+     * @return 缓存值列表，与keys顺序一致，不存在的key对应null
+     */
+    public <V> List<V> multiGet(Collection<String> keys) {
         if (CollectionUtils.isEmpty(keys)) {
-            return true;
+            return Collections.emptyList();
+        }
+        List<V> values = new ArrayList<>(keys.size());
+        for (List<String> batch : partition(keys)) {
+            List<Object> list = redisTemplate.opsForValue().multiGet(batch);
+            if (list == null) {
+                values.addAll(Collections.nCopies(batch.size(), null));
+            } else {
+                //noinspection unchecked
+                values.addAll((List<V>) list);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 批量设置缓存（MSET），按 {@link #BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param map 缓存键值对
+     */
+    public void multiSet(Map<String, ?> map) {
+        if (CollectionUtils.isEmpty(map)) {
+            return;
+        }
+        for (List<String> batch : partition(map.keySet())) {
+            Map<String, Object> batchMap = new LinkedHashMap<>(batch.size());
+            batch.forEach(key -> batchMap.put(key, map.get(key)));
+            redisTemplate.opsForValue().multiSet(batchMap);
+            batch.forEach(this::invalidateLocal);
+        }
+    }
+
+    /**
+     * 批量设置缓存并指定过期时间，MSET不支持过期时间，
+     * 因此使用 pipeline 发送 SET EX，按 {@link #BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param map     缓存键值对
+     * @param timeout 缓存过期时间
+     */
+    public void multiSet(Map<String, ?> map, Duration timeout) {
+        if (CollectionUtils.isEmpty(map)) {
+            return;
+        }
+        for (List<String> batch : partition(map.keySet())) {
+            executePipelined(operations -> batch.forEach(key -> operations.opsForValue().set(key, map.get(key), timeout)));
+            batch.forEach(this::invalidateLocal);
+        }
+    }
+
+    /**
+     * 批量读取多个Hash表中同一item项的值（pipeline），按 {@link #BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param keys 缓存 key集合
+     * @param item item 项
+     * @param <V>  值泛型
+     * @return 值列表，与keys顺序一致，不存在的项对应null
+     */
+    public <V> List<V> multiHget(Collection<String> keys, String item) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return Collections.emptyList();
+        }
+        List<V> values = new ArrayList<>(keys.size());
+        for (List<String> batch : partition(keys)) {
+            //noinspection unchecked
+            values.addAll((List<V>) executePipelined(operations -> batch.forEach(key -> operations.opsForHash().get(key, item))));
+        }
+        return values;
+    }
+
+    /**
+     * 批量读取多个Hash表（pipeline），按 {@link #BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param keys 缓存 key集合
+     * @return Hash数据结构列表，与keys顺序一致，不存在的key对应空Map
+     */
+    public List<Map<Object, Object>> multiHget(Collection<String> keys) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return Collections.emptyList();
+        }
+        List<Map<Object, Object>> values = new ArrayList<>(keys.size());
+        for (List<String> batch : partition(keys)) {
+            for (Object value : executePipelined(operations -> batch.forEach(key -> operations.opsForHash().entries(key)))) {
+                //noinspection unchecked
+                values.add(value == null ? Collections.emptyMap() : (Map<Object, Object>) value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 批量设置缓存过期时间（pipeline），按 {@link #BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param keys    缓存 key集合
+     * @param timeout 过期时长
+     * @return 每个key是否设置成功，与keys顺序一致
+     */
+    public List<Boolean> multiExpire(Collection<String> keys, Duration timeout) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return Collections.emptyList();
+        }
+        final long millis = timeout.toMillis();
+        List<Boolean> results = new ArrayList<>(keys.size());
+        for (List<String> batch : partition(keys)) {
+            for (Object result : executePipelined(operations -> batch.forEach(key -> operations.expire(key, millis, TimeUnit.MILLISECONDS)))) {
+                results.add(Boolean.TRUE.equals(result));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 批量删除缓存（DEL），按 {@link #BATCH_SIZE} 分批，每批一次网络往返
+     *
+     * @param keys 缓存 key集合
+     * @return 删除的key数量
+     */
+    public long multiDelete(Collection<String> keys) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return 0L;
+        }
+        long count = 0L;
+        for (List<String> batch : partition(keys)) {
+            count += Optional.ofNullable(redisTemplate.delete(batch)).orElse(0L);
+            batch.forEach(this::invalidateLocal);
+        }
+        return count;
+    }
+
+    /**
+     * 在一个 pipeline 中执行操作，返回结果与命令顺序一致
+     *
+     * @param action 操作
+     * @return 反序列化后的结果
+     */
+    private List<Object> executePipelined(Consumer<RedisOperations<String, Object>> action) {
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(@NonNull RedisOperations<K, V> operations) {
+                //noinspection unchecked
+                action.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * SCAN 迭代匹配的key，并按 {@link #BATCH_SIZE} 分批 UNLINK
+     *
+     * @param pattern 匹配的前缀
+     * @param count   SCAN 命令的 COUNT 值
+     * @param maxKeys 最多删除的key数量
+     * @return [匹配的key数量, 删除的key数量]
+     */
+    private long[] unlinkByPattern(String pattern, long count, long maxKeys) {
+        long matched = 0L;
+        long deleted = 0L;
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try (Cursor<String> cursor = scan(pattern, count)) {
+            while (matched < maxKeys && cursor.hasNext()) {
+                batch.add(cursor.next());
+                matched++;
+                if (batch.size() >= BATCH_SIZE) {
+                    deleted += unlink(batch);
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw Exceptions.unchecked(e);
+        }
+        if (!batch.isEmpty()) {
+            deleted += unlink(batch);
+        }
+        return new long[]{matched, deleted};
+    }
+
+    private long unlink(List<String> keys) {
+        long deleted = Optional.ofNullable(redisTemplate.unlink(keys)).orElse(0L);
+        keys.forEach(this::invalidateLocal);
+        return deleted;
+    }
+
+    /**
+     * 按 {@link #BATCH_SIZE} 拆分集合
+     *
+     * @param keys 缓存 key集合
+     * @return 分批后的key集合
+     */
+    private static List<List<String>> partition(Collection<String> keys) {
+        List<String> list = keys instanceof List ? (List<String>) keys : new ArrayList<>(keys);
+        final int size = list.size();
+        List<List<String>> batches = new ArrayList<>((size + BATCH_SIZE - 1) / BATCH_SIZE);
+        for (int i = 0; i < size; i += BATCH_SIZE) {
+            batches.add(list.subList(i, Math.min(i + BATCH_SIZE, size)));
+        }
+        return batches;
+    }
+
+    /**
+     * 执行已注册的 Lua 脚本（EVALSHA，NOSCRIPT 时加载一次后重试）
+     *
+     * @param name       脚本名称
+     * @param resultType 结果类型
+     * @param keys       KEYS
+     * @param args       ARGV，按字符串传递
+     * @param <T>        结果泛型
+     * @return 脚本结果
+     */
+    public <T> T executeScript(String name, Class<T> resultType, List<String> keys, Object... args) {
+        return scriptRegistry.execute(stringRedisTemplate, name, resultType, keys, args);
+    }
+
+    /**
+     * 在一个 pipeline 中对多组 key 执行同一已注册的 Lua 脚本
+     *
+     * @param name       脚本名称
+     * @param resultType 结果类型
+     * @param keySets    每次执行的 KEYS
+     * @param args       每次执行共用的 ARGV，按字符串传递
+     * @param <T>        结果泛型
+     * @return 脚本结果，与 keySets 顺序一致
+     */
+    public <T> List<T> executeScriptBatch(String name, Class<T> resultType, List<List<String>> keySets, Object... args) {
+        return scriptRegistry.executeBatch(stringRedisTemplate, name, resultType, keySets, args);
+    }
+
+    /**
+     * 写入或删除后移除本节点的本地副本（近端缓存及热点key），保证本节点随后的读取能读到自己的写入
+     *
+     * @param key 缓存key
+     */
+    private void invalidateLocal(String key) {
+        if (nearCache != null) {
+            nearCache.evict(key);
+        }
+        if (hotKeyDetector != null) {
+            hotKeyDetector.invalidate(key);
+        }
+    }
+
+    /**
+     * 集群 SCAN 游标：逐个主节点执行 SCAN，当前节点迭代完毕后再打开下一个节点的游标
+     */
+    private static final class ClusterScanCursor implements Cursor<byte[]> {
+        private final RedisClusterConnection connection;
+        private final Iterator<RedisClusterNode> nodes;
+        private final ScanOptions options;
+        @Nullable
+        private Cursor<byte[]> current;
+        private long position;
+        private boolean closed;
+
+        private ClusterScanCursor(RedisClusterConnection connection, List<RedisClusterNode> nodes, ScanOptions options) {
+            this.connection = connection;
+            this.nodes = nodes.iterator();
+            this.options = options;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!closed && (current == null || !current.hasNext()) && nodes.hasNext()) {
+                closeCurrent();
+                current = connection.scan(nodes.next(), options);
+            }
+            return !closed && current != null && current.hasNext();
+        }
+
+        @Override
+        public byte[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements available for cursor " + getCursorId());
+            }
+            position++;
+            //noinspection ConstantConditions
+            return current.next();
+        }
+
+        @Override
+        public long getCursorId() {
+            return current == null ? 0L : current.getCursorId();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public Cursor<byte[]> open() {
+            return this;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            closeCurrent();
+        }
+
+        private void closeCurrent() {
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    throw Exceptions.unchecked(e);
+                }
+                current = null;
+            }
         }
-        return Optional.ofNullable(redisTemplate.delete(keys)).map(l -> l > 0).orElse(Boolean.FALSE);
     }
-}
\ No newline at end of file
+}
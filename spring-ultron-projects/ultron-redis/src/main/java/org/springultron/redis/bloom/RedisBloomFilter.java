@@ -0,0 +1,263 @@
+package org.springultron.redis.bloom;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springultron.redis.RedisClient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 基于 Redis bitmap 的布隆过滤器，用于防止缓存穿透
+ * <p>
+ * 根据预期元素数量 n 和误判率 p 计算 bit 数 m = -n*ln(p)/(ln2)^2 及 hash 函数个数 k = m/n*ln2，
+ * 使用 MurmurHash3 128位结果做 double hashing 得到 k 个 offset；
+ * 单个元素的 k 次 SETBIT/GETBIT 及批量操作均在一个 pipeline 中完成，按 {@link RedisClient#BATCH_SIZE} 个元素分批
+ * </p>
+ * 注意：布隆过滤器不支持删除元素，判定不存在时一定不存在，判定存在时有 p 的概率误判；
+ * 已有数据导入完成后调用 {@link #markReady()}，就绪标记保存在 bitmap 中 hash 取值范围之外的一位，
+ * bitmap 被删除或丢失时标记随之消失，{@link #isAbsent(Object)} 在未就绪时不做判定
+ *
+ * @author brucewuu
+ * @date 2021/5/17 上午10:30
+ */
+public class RedisBloomFilter<T> {
+    /**
+     * Redis bitmap 最大 2^32 bit（512MB）
+     */
+    private static final long MAX_BITS = 1L << 32;
+
+    private final RedisTemplate<String, ?> redisTemplate;
+    private final String name;
+    private final byte[] rawKey;
+    private final long numBits;
+    private final int numHashFunctions;
+    private final Function<? super T, byte[]> funnel;
+
+    /**
+     * 创建布隆过滤器，元素以 String.valueOf 的 UTF-8 字节计算 hash
+     *
+     * @param redisTemplate      RedisTemplate
+     * @param name               Redis key
+     * @param expectedInsertions 预期元素数量
+     * @param fpp                期望误判率，(0, 1)
+     */
+    public RedisBloomFilter(RedisTemplate<String, ?> redisTemplate, String name, long expectedInsertions, double fpp) {
+        this(redisTemplate, name, expectedInsertions, fpp, element -> String.valueOf(element).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 创建布隆过滤器
+     *
+     * @param redisTemplate      RedisTemplate
+     * @param name               Redis key
+     * @param expectedInsertions 预期元素数量
+     * @param fpp                期望误判率，(0, 1)
+     * @param funnel             元素转换为字节，用于计算 hash
+     */
+    public RedisBloomFilter(RedisTemplate<String, ?> redisTemplate, String name, long expectedInsertions, double fpp, Function<? super T, byte[]> funnel) {
+        Assert.notNull(redisTemplate, "RedisTemplate must not be null");
+        Assert.hasText(name, "BloomFilter name must have length; it must not be null or empty");
+        Assert.isTrue(expectedInsertions > 0, "expectedInsertions must be greater than 0");
+        Assert.isTrue(fpp > 0.0D && fpp < 1.0D, "fpp must be between 0 and 1 (exclusive)");
+        this.redisTemplate = redisTemplate;
+        this.name = name;
+        this.rawKey = RedisSerializer.string().serialize(name);
+        this.numBits = optimalNumOfBits(expectedInsertions, fpp);
+        // 额外一位作为就绪标记
+        Assert.isTrue(numBits < MAX_BITS, "BloomFilter requires " + numBits + " bits, exceeds the redis bitmap limit of 2^32");
+        this.numHashFunctions = optimalNumOfHashFunctions(expectedInsertions, numBits);
+        this.funnel = funnel;
+    }
+
+    /**
+     * 添加元素
+     *
+     * @param element 元素
+     * @return 是否为新元素（有 bit 从0变为1）
+     */
+    public boolean add(T element) {
+        final long[] offsets = offsets(element);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            setBits(connection, offsets);
+            return null;
+        });
+        return results.stream().anyMatch(Boolean.FALSE::equals);
+    }
+
+    /**
+     * 批量添加元素，按 {@link RedisClient#BATCH_SIZE} 个元素分批，每批一次网络往返
+     *
+     * @param elements 元素集合
+     */
+    public void addAll(Collection<? extends T> elements) {
+        if (CollectionUtils.isEmpty(elements)) {
+            return;
+        }
+        for (List<long[]> batch : partition(elements)) {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                batch.forEach(offsets -> setBits(connection, offsets));
+                return null;
+            });
+        }
+    }
+
+    /**
+     * 判断元素是否可能存在
+     *
+     * @param element 元素
+     * @return false 时一定不存在，true 时可能存在
+     */
+    public boolean mightContain(T element) {
+        final long[] offsets = offsets(element);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            getBits(connection, offsets);
+            return null;
+        });
+        return results.stream().allMatch(Boolean.TRUE::equals);
+    }
+
+    /**
+     * 批量判断元素是否可能存在，按 {@link RedisClient#BATCH_SIZE} 个元素分批，每批一次网络往返
+     *
+     * @param elements 元素集合
+     * @return 与 elements 顺序一致的判断结果
+     */
+    public List<Boolean> mightContainAll(Collection<? extends T> elements) {
+        if (CollectionUtils.isEmpty(elements)) {
+            return Collections.emptyList();
+        }
+        List<Boolean> contains = new ArrayList<>(elements.size());
+        for (List<long[]> batch : partition(elements)) {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                batch.forEach(offsets -> getBits(connection, offsets));
+                return null;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                boolean all = true;
+                for (int j = i * numHashFunctions; j < (i + 1) * numHashFunctions; j++) {
+                    if (!Boolean.TRUE.equals(results.get(j))) {
+                        all = false;
+                        break;
+                    }
+                }
+                contains.add(all);
+            }
+        }
+        return contains;
+    }
+
+    /**
+     * 判断元素是否一定不存在，与就绪标记在同一个 pipeline 中查询
+     * <p>
+     * 布隆过滤器未就绪（未调用 {@link #markReady()}、已被删除或丢失）时无法判定，返回 false
+     * </p>
+     *
+     * @param element 元素
+     * @return true 时一定不存在
+     */
+    public boolean isAbsent(T element) {
+        final long[] offsets = offsets(element);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.getBit(rawKey, numBits);
+            getBits(connection, offsets);
+            return null;
+        });
+        return Boolean.TRUE.equals(results.get(0)) && results.stream().skip(1).anyMatch(bit -> !Boolean.TRUE.equals(bit));
+    }
+
+    /**
+     * 标记布隆过滤器已就绪，已有数据通过 {@link #addAll(Collection)} 导入完成后调用
+     */
+    public void markReady() {
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.setBit(rawKey, numBits, true));
+    }
+
+    /**
+     * 是否已就绪，bitmap 被删除或丢失后为 false
+     *
+     * @return boolean
+     */
+    public boolean isReady() {
+        return Boolean.TRUE.equals(redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.getBit(rawKey, numBits)));
+    }
+
+    /**
+     * 删除布隆过滤器
+     *
+     * @return 是否删除成功
+     */
+    public boolean delete() {
+        return Boolean.TRUE.equals(redisTemplate.delete(name));
+    }
+
+    /**
+     * 计算元素的 k 个 bit offset
+     */
+    long[] offsets(T element) {
+        long[] hash = Murmur3.hash128(funnel.apply(element));
+        long combinedHash = hash[0];
+        long[] offsets = new long[numHashFunctions];
+        for (int i = 0; i < numHashFunctions; i++) {
+            offsets[i] = (combinedHash & Long.MAX_VALUE) % numBits;
+            combinedHash += hash[1];
+        }
+        return offsets;
+    }
+
+    private void setBits(RedisConnection connection, long[] offsets) {
+        for (long offset : offsets) {
+            connection.setBit(rawKey, offset, true);
+        }
+    }
+
+    private void getBits(RedisConnection connection, long[] offsets) {
+        for (long offset : offsets) {
+            connection.getBit(rawKey, offset);
+        }
+    }
+
+    private List<List<long[]>> partition(Collection<? extends T> elements) {
+        List<List<long[]>> batches = new ArrayList<>(elements.size() / RedisClient.BATCH_SIZE + 1);
+        List<long[]> batch = new ArrayList<>(Math.min(elements.size(), RedisClient.BATCH_SIZE));
+        for (T element : elements) {
+            batch.add(offsets(element));
+            if (batch.size() >= RedisClient.BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>(RedisClient.BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    static long optimalNumOfBits(long n, double p) {
+        return (long) (-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+    }
+
+    static int optimalNumOfHashFunctions(long n, long m) {
+        return Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+}
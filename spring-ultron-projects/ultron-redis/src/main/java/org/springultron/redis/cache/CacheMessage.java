@@ -0,0 +1,68 @@
+package org.springultron.redis.cache;
+
+import java.io.Serializable;
+
+/**
+ * 两级缓存跨节点失效消息
+ *
+ * @author brucewuu
+ * @date 2021/5/8 上午10:40
+ */
+public class CacheMessage implements Serializable {
+    private static final long serialVersionUID = -3185731905238459267L;
+
+    /**
+     * 发送消息的节点id，节点收到自己发送的消息时忽略
+     */
+    private String sender;
+    /**
+     * 缓存空间名称
+     */
+    private String cacheName;
+    /**
+     * 缓存key（Redis中的完整key），为null时清空整个缓存空间
+     */
+    private String key;
+
+    public CacheMessage() {
+    }
+
+    public CacheMessage(String sender, String cacheName, String key) {
+        this.sender = sender;
+        this.cacheName = cacheName;
+        this.key = key;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public void setSender(String sender) {
+        this.sender = sender;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public void setCacheName(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheMessage{" +
+                "sender='" + sender + '\'' +
+                ", cacheName='" + cacheName + '\'' +
+                ", key='" + key + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,63 @@
+package org.springultron.redis.cache;
+
+import java.util.Map;
+
+/**
+ * 缓存预热加载器 SPI
+ * <p>
+ * 注册为 Spring Bean 后在应用启动完成、对外提供服务之前（或按配置异步）执行，
+ * 加载的数据逐条写入 {@link #getCacheName()} 对应的缓存空间。
+ * </p>
+ *
+ * <pre>
+ * &#64;Bean
+ * public CacheWarmer productCacheWarmer(ProductMapper productMapper) {
+ *     return CacheWarmer.of("product#30m", () -&gt; productMapper.listHot().stream()
+ *             .collect(Collectors.toMap(Product::getId, Function.identity())));
+ * }
+ * </pre>
+ *
+ * @author brucewuu
+ * @date 2021/5/28 上午10:05
+ */
+public interface CacheWarmer {
+
+    /**
+     * 缓存空间名称，与 {@code @Cacheable} 中的 cache name 一致，支持 # 号分隔的 ttl 及可选项
+     */
+    String getCacheName();
+
+    /**
+     * 加载预热数据
+     *
+     * @return 缓存 key 与缓存值
+     * @throws Exception 加载失败，只影响当前缓存空间的预热
+     */
+    Map<?, ?> load() throws Exception;
+
+    /**
+     * 创建缓存预热加载器
+     *
+     * @param cacheName 缓存空间名称
+     * @param loader    数据加载
+     * @return CacheWarmer
+     */
+    static CacheWarmer of(String cacheName, Loader loader) {
+        return new CacheWarmer() {
+            @Override
+            public String getCacheName() {
+                return cacheName;
+            }
+
+            @Override
+            public Map<?, ?> load() throws Exception {
+                return loader.load();
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface Loader {
+        Map<?, ?> load() throws Exception;
+    }
+}
@@ -0,0 +1,67 @@
+package org.springultron.redis.cache;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * 单个缓存空间的预热结果
+ *
+ * @author brucewuu
+ * @date 2021/5/28 上午10:10
+ */
+public class CacheWarmingResult {
+    /**
+     * 缓存空间名称
+     */
+    private final String cacheName;
+    /**
+     * 写入缓存的条数
+     */
+    private final long entries;
+    /**
+     * 加载及写入耗时（毫秒）
+     */
+    private final long durationMillis;
+    /**
+     * 预热失败的异常，成功时为null
+     */
+    @Nullable
+    private final Throwable error;
+
+    public CacheWarmingResult(String cacheName, long entries, long durationMillis, @Nullable Throwable error) {
+        this.cacheName = cacheName;
+        this.entries = entries;
+        this.durationMillis = durationMillis;
+        this.error = error;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheWarmingResult{" +
+                "cacheName='" + cacheName + '\'' +
+                ", entries=" + entries +
+                ", durationMillis=" + durationMillis +
+                ", success=" + isSuccess() +
+                '}';
+    }
+}
@@ -0,0 +1,131 @@
+package org.springultron.redis.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 启动时缓存预热
+ * <p>
+ * 以 ApplicationRunner 的形式执行，同步模式下全部 {@link CacheWarmer} 执行完成（或超时）后应用才进入 ready 状态，
+ * 异步模式下在后台执行、不阻塞启动；加载器之间并行执行，并发数受 concurrency 限制，单个加载器失败不影响其他缓存空间。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/28 上午10:30
+ */
+public class CacheWarmingRunner implements ApplicationRunner, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmingRunner.class);
+
+    private final CacheManager cacheManager;
+    private final List<CacheWarmer> warmers;
+    private final UltronRedisProperties.Warming properties;
+    private final ExecutorService executor;
+    private final List<CacheWarmingResult> results = Collections.synchronizedList(new ArrayList<>());
+
+    public CacheWarmingRunner(CacheManager cacheManager, List<CacheWarmer> warmers, UltronRedisProperties.Warming properties) {
+        this.cacheManager = cacheManager;
+        this.warmers = warmers;
+        this.properties = properties;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getConcurrency()), new CustomizableThreadFactory("ultron-cache-warming-"));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        CompletableFuture<Void> future = warmUp();
+        if (properties.isAsync()) {
+            return;
+        }
+        try {
+            future.get(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("cache warming not finished within {}, continue in background", properties.getTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("cache warming failed", e);
+        }
+    }
+
+    /**
+     * 并行执行全部预热加载器
+     *
+     * @return 全部加载器执行完成的 future
+     */
+    public CompletableFuture<Void> warmUp() {
+        long start = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[warmers.size()];
+        for (int i = 0; i < futures.length; i++) {
+            CacheWarmer warmer = warmers.get(i);
+            futures[i] = CompletableFuture.runAsync(() -> results.add(warm(warmer)), executor);
+        }
+        return CompletableFuture.allOf(futures).whenComplete((v, e) -> {
+            long entries = 0L;
+            synchronized (results) {
+                for (CacheWarmingResult result : results) {
+                    entries += result.getEntries();
+                }
+            }
+            log.info("cache warming finished, caches: {}, entries: {}, cost: {}ms", futures.length, entries, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * 各缓存空间的预热结果，异步模式下只包含已完成的部分
+     */
+    public List<CacheWarmingResult> getResults() {
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    private CacheWarmingResult warm(CacheWarmer warmer) {
+        final String cacheName = warmer.getCacheName();
+        long start = System.nanoTime();
+        long entries = 0L;
+        Throwable error = null;
+        try {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache == null) {
+                throw new IllegalStateException("cache not found: " + cacheName);
+            }
+            Map<?, ?> data = warmer.load();
+            if (data != null) {
+                for (Map.Entry<?, ?> entry : data.entrySet()) {
+                    cache.put(entry.getKey(), entry.getValue());
+                    entries++;
+                }
+            }
+        } catch (Throwable e) {
+            error = e;
+        }
+        CacheWarmingResult result = new CacheWarmingResult(cacheName, entries, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), error);
+        if (error == null) {
+            log.info("cache warmed, cache: {}, entries: {}, cost: {}ms", cacheName, entries, result.getDurationMillis());
+        } else {
+            log.error("cache warming failed, cache: {}, entries: {}, cost: {}ms", cacheName, entries, result.getDurationMillis(), error);
+        }
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,127 @@
+package org.springultron.redis.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.actuate.metrics.cache.RedisCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 cache name 将 Redis 缓存统计绑定到 Micrometer
+ * <p>
+ * 1. cache.gets(result=hit/miss)、cache.puts、cache.removals、cache.lock.duration：复用 Spring Boot 的 {@link RedisCacheMetrics}，
+ * 读取 {@link org.springframework.data.redis.cache.CacheStatisticsCollector} 的累计值，需开启缓存统计
+ * 2. cache.local.gets(result=hit/miss)：两级缓存的本地缓存命中情况
+ * 3. cache.lock.wait：single-flight 等待其他调用方计算缓存值的次数及耗时
+ * 4. cache.redis.get、cache.redis.put：读写耗时，由 {@link TimedRedisCacheWriter} 记录
+ * </p>
+ * <p>
+ * 以上计数类指标均为 Function 类型，只在指标导出时读取统计快照，不增加缓存读写开销；
+ * 运行期间动态创建的缓存空间由定时任务每隔 refreshInterval 发现并绑定。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/31 上午11:00
+ */
+public class RedisCacheMetricsRegistrar implements SmartInitializingSingleton, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(RedisCacheMetricsRegistrar.class);
+
+    private final RedisCacheManager cacheManager;
+    private final MeterRegistry registry;
+    private final String cacheManagerName;
+    private final Duration refreshInterval;
+    private final Set<String> boundCaches = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    public RedisCacheMetricsRegistrar(RedisCacheManager cacheManager, MeterRegistry registry, String cacheManagerName, Duration refreshInterval) {
+        this.cacheManager = cacheManager;
+        this.registry = registry;
+        this.cacheManagerName = cacheManagerName;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        bindAll();
+        long interval = refreshInterval.toMillis();
+        if (interval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ultron-cache-metrics-"));
+            scheduler.scheduleWithFixedDelay(this::bindAllQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 绑定尚未绑定的缓存空间
+     *
+     * @return 本次新绑定的缓存空间数量
+     */
+    public int bindAll() {
+        int count = 0;
+        for (String cacheName : cacheManager.getCacheNames()) {
+            if (boundCaches.contains(cacheName)) {
+                continue;
+            }
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache instanceof RedisCache && boundCaches.add(cacheName)) {
+                bind((RedisCache) cache);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void bind(RedisCache cache) {
+        Tags tags = Tags.of(Tag.of("cacheManager", cacheManagerName));
+        new RedisCacheMetrics(cache, tags).bindTo(registry);
+        Tags cacheTags = tags.and("cache", cache.getName());
+        if (cache instanceof UltronRedisCache) {
+            FunctionTimer.builder("cache.lock.wait", (UltronRedisCache) cache,
+                    UltronRedisCache::getLockWaitCount, c -> c.getLockWaitTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                    .tags(cacheTags)
+                    .description("The time spent waiting for another caller to load the value (single-flight)")
+                    .register(registry);
+        }
+        if (cache instanceof RedisCaffeineCache) {
+            RedisCaffeineCache twoLevelCache = (RedisCaffeineCache) cache;
+            FunctionCounter.builder("cache.local.gets", twoLevelCache, c -> c.getTwoLevelStatistics().getLocalHits())
+                    .tags(cacheTags).tag("result", "hit")
+                    .description("The number of times the local cache returned a value")
+                    .register(registry);
+            FunctionCounter.builder("cache.local.gets", twoLevelCache, c -> c.getTwoLevelStatistics().getLocalMisses())
+                    .tags(cacheTags).tag("result", "miss")
+                    .description("The number of times the local cache missed and Redis was queried")
+                    .register(registry);
+        }
+    }
+
+    private void bindAllQuietly() {
+        try {
+            bindAll();
+        } catch (Exception e) {
+            log.warn("bind redis cache metrics failed", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
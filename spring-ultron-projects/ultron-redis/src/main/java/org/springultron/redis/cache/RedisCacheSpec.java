@@ -0,0 +1,183 @@
+package org.springultron.redis.cache;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.lang.Nullable;
+import org.springultron.core.utils.StringUtils;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * cache name 扩展语法解析：name#ttl#option#option...
+ * <p>
+ * ttl 支持时间单位例如：300ms，默认单位秒；可选项：
+ * 1. lock：开启分布式 single-flight，缓存失效时只有一个调用方重新计算，其他调用方短暂等待或返回旧值，需配合 @Cacheable(sync = true)
+ * 2. early 或 early=1.5：开启 XFetch 概率提前过期，热点key在 ttl 到期前提前刷新，等号后为 beta 值
+ * 3. bloom：开启布隆过滤器防缓存穿透，布隆过滤器就绪后判定不存在的key直接返回null，不再回源
+ * 4. jitter=10：ttl 随机缩短 0~10%，避免同一批写入的缓存在同一时刻集中过期
+ * 5. null=30s：null 及空集合等空结果单独使用的较短 ttl，默认单位秒
+ * </p>
+ * 示例：@Cacheable(value = "product#10m#lock#early", key = "#id", sync = true)、@Cacheable(value = "user#1h#jitter=10#null=30s", key = "#id")
+ *
+ * @author brucewuu
+ * @date 2021/5/10 上午10:20
+ */
+public class RedisCacheSpec {
+    private static final String LOCK = "lock";
+    private static final String EARLY = "early";
+    private static final String BLOOM = "bloom";
+    private static final String JITTER = "jitter";
+    private static final String NULL = "null";
+
+    /**
+     * 缓存空间名称（不含 ttl 和可选项）
+     */
+    private final String name;
+    /**
+     * 缓存过期时间，未配置时为null
+     */
+    @Nullable
+    private Duration ttl;
+    /**
+     * 是否开启分布式 single-flight
+     */
+    private boolean lock;
+    /**
+     * XFetch beta 值，大于1时更倾向于提前刷新，0表示不开启
+     */
+    private double beta;
+    /**
+     * 是否开启布隆过滤器
+     */
+    private boolean bloom;
+    /**
+     * ttl 随机缩短的最大百分比，未配置时为null
+     */
+    @Nullable
+    private Integer jitter;
+    /**
+     * 空结果的 ttl，未配置时为null
+     */
+    @Nullable
+    private Duration nullTtl;
+
+    private RedisCacheSpec(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 解析 cache name
+     *
+     * @param cacheName    cache name，例如：user#300#lock
+     * @param defaultBeta  early 未指定 beta 时的默认值
+     * @param extraOptions 配置文件中按 cache name 配置的可选项，以 # 分隔
+     * @return RedisCacheSpec
+     */
+    public static RedisCacheSpec parse(String cacheName, double defaultBeta, Map<String, String> extraOptions) {
+        if (StringUtils.isEmpty(cacheName) || !cacheName.contains("#")) {
+            RedisCacheSpec spec = new RedisCacheSpec(cacheName);
+            spec.parseOptions(extraOptions.get(cacheName), defaultBeta);
+            return spec;
+        }
+        String[] array = cacheName.split("#");
+        RedisCacheSpec spec = new RedisCacheSpec(array[0].trim());
+        if (array.length > 1 && StringUtils.isNotBlank(array[1])) {
+            // 转换时间，支持时间单位例如：300ms，默认单位秒
+            spec.ttl = DurationStyle.detectAndParse(array[1].trim(), ChronoUnit.SECONDS);
+        }
+        for (int i = 2; i < array.length; i++) {
+            spec.parseOption(array[i].trim(), defaultBeta);
+        }
+        spec.parseOptions(extraOptions.get(spec.name), defaultBeta);
+        return spec;
+    }
+
+    private void parseOptions(@Nullable String options, double defaultBeta) {
+        if (StringUtils.isBlank(options)) {
+            return;
+        }
+        for (String option : options.split("#")) {
+            parseOption(option.trim(), defaultBeta);
+        }
+    }
+
+    private void parseOption(String option, double defaultBeta) {
+        if (option.isEmpty()) {
+            return;
+        }
+        int index = option.indexOf('=');
+        String key = index < 0 ? option : option.substring(0, index).trim();
+        String value = index < 0 ? null : option.substring(index + 1).trim();
+        switch (key) {
+            case LOCK:
+                this.lock = true;
+                break;
+            case BLOOM:
+                this.bloom = true;
+                break;
+            case EARLY:
+                this.beta = value == null ? defaultBeta : Double.parseDouble(value);
+                break;
+            case JITTER:
+                this.jitter = parseJitter(value);
+                break;
+            case NULL:
+                if (StringUtils.isBlank(value)) {
+                    throw new IllegalArgumentException("Cache option 'null' requires a ttl, e.g. null=30s, cache: " + name);
+                }
+                this.nullTtl = DurationStyle.detectAndParse(value, ChronoUnit.SECONDS);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cache option '" + option + "' of cache: " + name);
+        }
+    }
+
+    private int parseJitter(@Nullable String value) {
+        int percent = StringUtils.isBlank(value) ? 0 : Integer.parseInt(value.endsWith("%") ? value.substring(0, value.length() - 1) : value);
+        if (percent < 0 || percent >= 100) {
+            throw new IllegalArgumentException("Cache option 'jitter' must be between 0 and 99, cache: " + name);
+        }
+        return percent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Nullable
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public boolean isLock() {
+        return lock;
+    }
+
+    public boolean isBloom() {
+        return bloom;
+    }
+
+    @Nullable
+    public Integer getJitter() {
+        return jitter;
+    }
+
+    @Nullable
+    public Duration getNullTtl() {
+        return nullTtl;
+    }
+
+    public double getBeta() {
+        return beta;
+    }
+
+    /**
+     * 是否开启了 XFetch 概率提前过期
+     *
+     * @return boolean
+     */
+    public boolean isEarlyRefresh() {
+        return beta > 0;
+    }
+}
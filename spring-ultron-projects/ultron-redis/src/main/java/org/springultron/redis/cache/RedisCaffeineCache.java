@@ -0,0 +1,149 @@
+package org.springultron.redis.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caffeine + Redis 两级缓存
+ * <p>
+ * 读取时先查本地 Caffeine 一级缓存，未命中再查 Redis 二级缓存并回填本地；
+ * 写入和失效时同步更新本地缓存，并通过 Redis pub/sub 通知其他节点失效本地缓存
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/8 上午10:55
+ */
+public class RedisCaffeineCache extends UltronRedisCache {
+    /**
+     * 本地一级缓存，key为 Redis 中的完整缓存key
+     */
+    private final Cache<String, Object> localCache;
+    private final RedisCaffeineCacheManager cacheManager;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder localMisses = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+
+    public RedisCaffeineCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig, RedisCacheSpec spec, UltronRedisProperties.Cache cacheProperties, @Nullable RedisTemplate<String, Object> redisTemplate, Cache<String, Object> localCache, RedisCaffeineCacheManager cacheManager) {
+        super(name, cacheWriter, cacheConfig, spec, cacheProperties, redisTemplate);
+        this.localCache = localCache;
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    protected Object lookup(@NonNull Object key) {
+        String cacheKey = createCacheKey(key);
+        Object value = localCache.getIfPresent(cacheKey);
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        localMisses.increment();
+        value = super.lookup(key);
+        if (value != null) {
+            redisHits.increment();
+            if (!hasNullTtl() || !isEmptyValue(value)) {
+                localCache.put(cacheKey, value);
+            }
+        } else {
+            redisMisses.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+        Object value = localCache.getIfPresent(createCacheKey(key));
+        if (value != null) {
+            localHits.increment();
+            //noinspection unchecked
+            return (T) fromStoreValue(value);
+        }
+        return super.get(key, valueLoader);
+    }
+
+    @Override
+    protected boolean mightExist(Object key) {
+        // 本地缓存命中时无需再查询布隆过滤器
+        return localCache.getIfPresent(createCacheKey(key)) != null || super.mightExist(key);
+    }
+
+    @Override
+    protected void doPut(Object key, @Nullable Object value, long delta) {
+        super.doPut(key, value, delta);
+        String cacheKey = createCacheKey(key);
+        if (hasNullTtl() && isEmptyValue(value)) {
+            // 空结果只缓存在 Redis 中，避免本地缓存比 nullTtl 存活更久
+            localCache.invalidate(cacheKey);
+        } else {
+            localCache.put(cacheKey, toStoreValue(value));
+        }
+        cacheManager.publish(getName(), cacheKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(@NonNull Object key, @Nullable Object value) {
+        ValueWrapper result = super.putIfAbsent(key, value);
+        String cacheKey = createCacheKey(key);
+        localCache.invalidate(cacheKey);
+        if (result == null) {
+            cacheManager.publish(getName(), cacheKey);
+        }
+        return result;
+    }
+
+    @Override
+    public void evict(@NonNull Object key) {
+        super.evict(key);
+        String cacheKey = createCacheKey(key);
+        localCache.invalidate(cacheKey);
+        cacheManager.publish(getName(), cacheKey);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        localCache.invalidateAll();
+        cacheManager.publish(getName(), null);
+    }
+
+    /**
+     * 仅失效本地缓存，由跨节点失效消息触发
+     *
+     * @param cacheKey Redis 中的完整缓存key，为null时清空本地缓存
+     */
+    public void evictLocal(@Nullable String cacheKey) {
+        if (cacheKey == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(cacheKey);
+        }
+    }
+
+    /**
+     * 获取本地一级缓存
+     *
+     * @return Caffeine Cache
+     */
+    public Cache<String, Object> getLocalCache() {
+        return localCache;
+    }
+
+    /**
+     * 获取分层命中统计
+     *
+     * @return 统计快照
+     */
+    public TwoLevelCacheStatistics getTwoLevelStatistics() {
+        return new TwoLevelCacheStatistics(getName(), localHits.sum(), localMisses.sum(), redisHits.sum(), redisMisses.sum());
+    }
+}
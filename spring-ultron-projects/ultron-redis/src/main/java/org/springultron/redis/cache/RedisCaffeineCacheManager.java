@@ -0,0 +1,117 @@
+package org.springultron.redis.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springultron.redis.RedisAutoCacheManager;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Caffeine + Redis 两级缓存管理器
+ * <p>
+ * 保留 {@link RedisAutoCacheManager} 的 cache name # ttl 语法，本地缓存过期时间取配置值与 ttl 中较小的值；
+ * 缓存写入、删除时通过 Redis pub/sub 通知所有节点失效对应的本地缓存
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/8 上午11:20
+ */
+public class RedisCaffeineCacheManager extends RedisAutoCacheManager implements MessageListener {
+    private static final Logger log = LoggerFactory.getLogger(RedisCaffeineCacheManager.class);
+
+    /**
+     * 当前节点id
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+    private final UltronRedisProperties.Local localProperties;
+    private final RedisTemplate<String, Object> redisTemplate;
+    /**
+     * cache name（不含 ttl） -> 两级缓存，同名不同 ttl 的缓存共享 Redis key，需要一起失效
+     */
+    private final ConcurrentMap<String, List<RedisCaffeineCache>> localCaches = new ConcurrentHashMap<>();
+
+    public RedisCaffeineCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfiguration, Map<String, RedisCacheConfiguration> initialCacheConfigurations, boolean allowInFlightCacheCreation, UltronRedisProperties.Cache cacheProperties, RedisTemplate<String, Object> redisTemplate) {
+        super(cacheWriter, defaultCacheConfiguration, initialCacheConfigurations, allowInFlightCacheCreation, cacheProperties, redisTemplate);
+        this.localProperties = cacheProperties.getLocal();
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    protected RedisCache createRedisCache(RedisCacheSpec spec, RedisCacheConfiguration config) {
+        Duration localTtl = localProperties.getExpireAfterWrite();
+        if (!config.getTtl().isZero() && config.getTtl().compareTo(localTtl) < 0) {
+            localTtl = config.getTtl();
+        }
+        Cache<String, Object> localCache = Caffeine.newBuilder()
+                .maximumSize(localProperties.getMaximumSize())
+                .expireAfterWrite(localTtl)
+                .build();
+        RedisCaffeineCache cache = new RedisCaffeineCache(spec.getName(), getCacheWriter(), config, spec, getCacheProperties(), redisTemplate, localCache, this);
+        localCaches.computeIfAbsent(cache.getName(), key -> new CopyOnWriteArrayList<>()).add(cache);
+        return cache;
+    }
+
+    /**
+     * 通知其他节点失效本地缓存
+     *
+     * @param cacheName 缓存空间名称
+     * @param cacheKey  Redis 中的完整缓存key，为null时清空整个缓存空间
+     */
+    void publish(String cacheName, @Nullable String cacheKey) {
+        try {
+            redisTemplate.convertAndSend(localProperties.getTopic(), new CacheMessage(nodeId, cacheName, cacheKey));
+        } catch (Exception e) {
+            log.warn("publish cache evict message failed, cacheName: {}, key: {}", cacheName, cacheKey, e);
+        }
+    }
+
+    /**
+     * 接收跨节点失效消息
+     */
+    @Override
+    public void onMessage(@NonNull Message message, @Nullable byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (!(body instanceof CacheMessage)) {
+            return;
+        }
+        CacheMessage cacheMessage = (CacheMessage) body;
+        if (nodeId.equals(cacheMessage.getSender())) {
+            return;
+        }
+        log.debug("--receive cache evict message: {}", cacheMessage);
+        List<RedisCaffeineCache> caches = localCaches.get(cacheMessage.getCacheName());
+        if (caches != null) {
+            caches.forEach(cache -> cache.evictLocal(cacheMessage.getKey()));
+        }
+    }
+
+    /**
+     * 获取所有两级缓存的分层命中统计
+     *
+     * @return 统计快照
+     */
+    public List<TwoLevelCacheStatistics> getTwoLevelStatistics() {
+        List<TwoLevelCacheStatistics> statistics = new ArrayList<>();
+        localCaches.values().forEach(caches -> caches.forEach(cache -> statistics.add(cache.getTwoLevelStatistics())));
+        return statistics;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
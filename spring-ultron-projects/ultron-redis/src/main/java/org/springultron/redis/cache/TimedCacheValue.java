@@ -0,0 +1,85 @@
+package org.springultron.redis.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带计算耗时和过期时间的缓存值，用于 XFetch 概率提前过期
+ *
+ * @author brucewuu
+ * @date 2021/5/10 上午10:45
+ */
+public class TimedCacheValue implements Serializable {
+    private static final long serialVersionUID = 6153372863905481547L;
+
+    /**
+     * 缓存值
+     */
+    private Object value;
+    /**
+     * 重新计算缓存值的耗时（毫秒）
+     */
+    private long delta;
+    /**
+     * 过期时间戳（毫秒），0表示永不过期
+     */
+    private long expireAt;
+
+    public TimedCacheValue() {
+    }
+
+    public TimedCacheValue(Object value, long delta, long expireAt) {
+        this.value = value;
+        this.delta = delta;
+        this.expireAt = expireAt;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+
+    public void setDelta(long delta) {
+        this.delta = delta;
+    }
+
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(long expireAt) {
+        this.expireAt = expireAt;
+    }
+
+    /**
+     * XFetch：now - delta * beta * ln(random) >= expireAt 时提前过期
+     *
+     * @param beta beta 值
+     * @return 是否需要提前刷新
+     */
+    public boolean shouldRefresh(double beta) {
+        return shouldRefresh(beta, System.currentTimeMillis(), ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * XFetch：now - delta * beta * ln(random) >= expireAt 时提前过期
+     *
+     * @param beta   beta 值
+     * @param now    当前时间戳（毫秒）
+     * @param random (0, 1] 之间的随机数，越小越容易提前刷新
+     * @return 是否需要提前刷新
+     */
+    public boolean shouldRefresh(double beta, long now, double random) {
+        if (expireAt <= 0 || delta <= 0) {
+            return false;
+        }
+        return now - delta * beta * Math.log(Math.max(Double.MIN_VALUE, random)) >= expireAt;
+    }
+}
@@ -0,0 +1,119 @@
+package org.springultron.redis.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录读写耗时的 {@link RedisCacheWriter} 装饰器
+ * <p>
+ * 按 cache name 记录 cache.redis.get 及 cache.redis.put（含 putIfAbsent）Timer，
+ * 每次调用只有一次 nanoTime 差值计算及 Timer 记录，Timer 实例按 cache name 缓存。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/31 上午10:30
+ */
+public class TimedRedisCacheWriter implements RedisCacheWriter {
+    public static final String GET_TIMER = "cache.redis.get";
+    public static final String PUT_TIMER = "cache.redis.put";
+
+    private final RedisCacheWriter delegate;
+    private final MeterRegistry registry;
+    private final String cacheManagerName;
+    private final Map<String, Timer> getTimers;
+    private final Map<String, Timer> putTimers;
+
+    public TimedRedisCacheWriter(RedisCacheWriter delegate, MeterRegistry registry, String cacheManagerName) {
+        this(delegate, registry, cacheManagerName, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    private TimedRedisCacheWriter(RedisCacheWriter delegate, MeterRegistry registry, String cacheManagerName, Map<String, Timer> getTimers, Map<String, Timer> putTimers) {
+        this.delegate = delegate;
+        this.registry = registry;
+        this.cacheManagerName = cacheManagerName;
+        this.getTimers = getTimers;
+        this.putTimers = putTimers;
+    }
+
+    @Override
+    public void put(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @Nullable Duration ttl) {
+        long start = System.nanoTime();
+        try {
+            delegate.put(name, key, value, ttl);
+        } finally {
+            record(putTimers, PUT_TIMER, name, start);
+        }
+    }
+
+    @Override
+    public byte[] get(@NonNull String name, @NonNull byte[] key) {
+        long start = System.nanoTime();
+        try {
+            return delegate.get(name, key);
+        } finally {
+            record(getTimers, GET_TIMER, name, start);
+        }
+    }
+
+    @Override
+    public byte[] putIfAbsent(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @Nullable Duration ttl) {
+        long start = System.nanoTime();
+        try {
+            return delegate.putIfAbsent(name, key, value, ttl);
+        } finally {
+            record(putTimers, PUT_TIMER, name, start);
+        }
+    }
+
+    @Override
+    public void remove(@NonNull String name, @NonNull byte[] key) {
+        delegate.remove(name, key);
+    }
+
+    @Override
+    public void clean(@NonNull String name, @NonNull byte[] pattern) {
+        delegate.clean(name, pattern);
+    }
+
+    @Override
+    public void clearStatistics(@NonNull String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @NonNull
+    @Override
+    public RedisCacheWriter withStatisticsCollector(@NonNull CacheStatisticsCollector cacheStatisticsCollector) {
+        return new TimedRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), registry, cacheManagerName, getTimers, putTimers);
+    }
+
+    @NonNull
+    @Override
+    public CacheStatistics getCacheStatistics(@NonNull String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    /**
+     * 被装饰的 RedisCacheWriter
+     */
+    public RedisCacheWriter getDelegate() {
+        return delegate;
+    }
+
+    private void record(Map<String, Timer> timers, String timerName, String cacheName, long start) {
+        Timer timer = timers.computeIfAbsent(cacheName, name -> Timer.builder(timerName)
+                .tag("cache", name)
+                .tag("cacheManager", cacheManagerName)
+                .register(registry));
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,88 @@
+package org.springultron.redis.cache;
+
+/**
+ * 两级缓存分层命中统计快照
+ *
+ * @author brucewuu
+ * @date 2021/5/8 上午11:05
+ */
+public class TwoLevelCacheStatistics {
+    /**
+     * 缓存空间名称
+     */
+    private final String cacheName;
+    /**
+     * 本地缓存命中次数，即节省的 Redis 调用次数
+     */
+    private final long localHits;
+    /**
+     * 本地缓存未命中次数
+     */
+    private final long localMisses;
+    /**
+     * Redis 缓存命中次数
+     */
+    private final long redisHits;
+    /**
+     * Redis 缓存未命中次数
+     */
+    private final long redisMisses;
+
+    public TwoLevelCacheStatistics(String cacheName, long localHits, long localMisses, long redisHits, long redisMisses) {
+        this.cacheName = cacheName;
+        this.localHits = localHits;
+        this.localMisses = localMisses;
+        this.redisHits = redisHits;
+        this.redisMisses = redisMisses;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public long getLocalHits() {
+        return localHits;
+    }
+
+    public long getLocalMisses() {
+        return localMisses;
+    }
+
+    public long getRedisHits() {
+        return redisHits;
+    }
+
+    public long getRedisMisses() {
+        return redisMisses;
+    }
+
+    /**
+     * 本地缓存节省的 Redis 调用次数
+     *
+     * @return 次数
+     */
+    public long getSavedRedisCalls() {
+        return localHits;
+    }
+
+    /**
+     * 本地缓存命中率
+     *
+     * @return 命中率
+     */
+    public double getLocalHitRate() {
+        long total = localHits + localMisses;
+        return total == 0 ? 0D : (double) localHits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "TwoLevelCacheStatistics{" +
+                "cacheName='" + cacheName + '\'' +
+                ", localHits=" + localHits +
+                ", localMisses=" + localMisses +
+                ", redisHits=" + redisHits +
+                ", redisMisses=" + redisMisses +
+                '}';
+    }
+}
@@ -0,0 +1,496 @@
+package org.springultron.redis.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.util.Assert;
+import org.springultron.redis.bloom.RedisBloomFilter;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis Cache 扩展，支持 {@link RedisCacheSpec} 中的可选项：
+ * <p>
+ * 1. lock：分布式 single-flight，缓存失效时只有获取到 Redis 锁的调用方重新计算，
+ * 其他调用方有旧值时直接返回旧值，否则短暂轮询等待，超时后自行计算；只对 @Cacheable(sync = true) 生效
+ * 2. early：XFetch 概率提前过期，缓存值附带计算耗时和过期时间，越接近过期、计算越慢越容易被提前刷新；
+ * 非 sync 调用时提前过期的值按未命中处理，计算耗时取同一线程未命中到写入之间的时间
+ * 3. bloom：布隆过滤器判定不存在的key直接作为 null 返回，不再查询 Redis 及回源；写入缓存时自动加入布隆过滤器，
+ * 已存在的数据需通过 {@link #getBloomFilter()} 预先导入（元素为 key 的字符串形式）并调用 markReady()；
+ * 布隆过滤器未就绪、为空或丢失时不拦截，照常查询 Redis 及回源，回源结果写入缓存时加入布隆过滤器
+ * 4. jitter：写入时 ttl 随机缩短，配置的 ttl 仍是缓存的最长存活时间
+ * 5. null：null、空集合、空 Map 及空 Optional 使用单独的较短 ttl，防止缓存穿透的同时不会长时间缓存空结果
+ * </p>
+ * 未开启任何可选项时与 {@link RedisCache} 行为一致
+ *
+ * @author brucewuu
+ * @date 2021/5/10 上午11:30
+ */
+public class UltronRedisCache extends RedisCache {
+    private static final Logger log = LoggerFactory.getLogger(UltronRedisCache.class);
+    private static final String LOCK_SUFFIX = ":lock";
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    private final RedisCacheWriter cacheWriter;
+    private final RedisCacheConfiguration cacheConfig;
+    private final RedisCacheSpec spec;
+    private final UltronRedisProperties.Stampede stampede;
+    @Nullable
+    private final RedisTemplate<String, Object> redisTemplate;
+    @Nullable
+    private final RedisBloomFilter<String> bloomFilter;
+    /**
+     * ttl 随机缩短的最大百分比，0 表示不开启
+     */
+    private final int jitter;
+    /**
+     * 空结果的 ttl，为null时与正常结果相同
+     */
+    @Nullable
+    private final Duration nullTtl;
+    /**
+     * 未获取到 single-flight 锁而等待其他调用方计算的次数及累计耗时
+     */
+    private final LongAdder lockWaits = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+    /**
+     * 非 sync 调用时当前线程最近一次未命中的key及时间，写入时据此计算 early 所需的计算耗时，未开启 early 时为null
+     */
+    @Nullable
+    private final ThreadLocal<Miss> lastMiss;
+    /**
+     * 本节点正在计算的key
+     */
+    private final ConcurrentMap<String, CompletableFuture<Object>> loadings = new ConcurrentHashMap<>();
+    private volatile boolean lockWithoutSyncWarned;
+
+    public UltronRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig, RedisCacheSpec spec, UltronRedisProperties.Cache cacheProperties, @Nullable RedisTemplate<String, Object> redisTemplate) {
+        super(name, cacheWriter, cacheConfig);
+        if (spec.isLock()) {
+            Assert.notNull(redisTemplate, "RedisTemplate is required by option 'lock' of cache: " + name);
+        }
+        this.cacheWriter = cacheWriter;
+        this.cacheConfig = cacheConfig;
+        this.spec = spec;
+        this.stampede = cacheProperties.getStampede();
+        this.redisTemplate = redisTemplate;
+        this.jitter = spec.getJitter() != null ? spec.getJitter() : cacheProperties.getTtlJitter();
+        this.nullTtl = spec.getNullTtl() != null ? spec.getNullTtl() : cacheProperties.getNullTtl();
+        this.lastMiss = spec.isEarlyRefresh() ? new ThreadLocal<>() : null;
+        if (spec.isBloom()) {
+            Assert.notNull(redisTemplate, "RedisTemplate is required by option 'bloom' of cache: " + name);
+            UltronRedisProperties.Bloom bloom = cacheProperties.getBloom();
+            this.bloomFilter = new RedisBloomFilter<>(redisTemplate, bloom.getKeyPrefix() + name, bloom.getExpectedInsertions(), bloom.getFpp());
+        } else {
+            this.bloomFilter = null;
+        }
+    }
+
+    @Override
+    public ValueWrapper get(@NonNull Object key) {
+        if (!mightExist(key)) {
+            // 一定不存在，作为缓存的 null 返回，避免回源
+            return new SimpleValueWrapper(null);
+        }
+        warnIfLockWithoutSync();
+        ValueWrapper wrapper = super.get(key);
+        if (wrapper == null) {
+            recordMiss(key);
+        }
+        return wrapper;
+    }
+
+    @Override
+    public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+        if (!mightExist(key)) {
+            return null;
+        }
+        warnIfLockWithoutSync();
+        return super.get(key, type);
+    }
+
+    @Override
+    protected Object lookup(@NonNull Object key) {
+        Object stored = super.lookup(key);
+        if (shouldRefresh(stored)) {
+            // XFetch 提前过期，按未命中处理，由调用方重新计算
+            return null;
+        }
+        return unwrap(stored);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+        if (!mightExist(key)) {
+            return null;
+        }
+        if (!spec.isLock() && !spec.isEarlyRefresh()) {
+            return super.get(key, valueLoader);
+        }
+        Object stored = super.lookup(key);
+        ValueWrapper stale = null;
+        if (stored != null) {
+            if (!shouldRefresh(stored)) {
+                return (T) fromStoreValue(unwrap(stored));
+            }
+            stale = toValueWrapper(unwrap(stored));
+        }
+        // 本地 single-flight：同一节点同一个key只有一个线程回源或竞争分布式锁
+        final String cacheKey = createCacheKey(key);
+        final CompletableFuture<Object> loading = new CompletableFuture<>();
+        final CompletableFuture<Object> existing = loadings.putIfAbsent(cacheKey, loading);
+        if (existing != null) {
+            // 其他线程正在计算，有旧值时直接返回旧值，否则等待其结果
+            if (stale != null) {
+                return (T) stale.get();
+            }
+            return (T) join(existing);
+        }
+        try {
+            T value = doLoad(key, cacheKey, valueLoader, stale);
+            loading.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadings.remove(cacheKey, loading);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T doLoad(Object key, String cacheKey, Callable<T> valueLoader, @Nullable ValueWrapper stale) {
+        if (stale == null) {
+            // 双重检查，上一个计算线程可能刚完成写入
+            Object current = lookup(key);
+            if (current != null) {
+                return (T) fromStoreValue(current);
+            }
+        }
+        if (!spec.isLock()) {
+            return load(key, valueLoader);
+        }
+        final String lockKey = cacheKey + LOCK_SUFFIX;
+        final String token = UUID.randomUUID().toString();
+        if (tryLock(lockKey, token)) {
+            try {
+                if (stale == null) {
+                    // 双重检查，其他节点可能刚完成计算并释放了锁
+                    Object current = lookup(key);
+                    if (current != null) {
+                        return (T) fromStoreValue(current);
+                    }
+                }
+                return load(key, valueLoader);
+            } finally {
+                unlock(lockKey, token);
+            }
+        }
+        // 其他节点正在刷新，有旧值时直接返回旧值
+        if (stale != null) {
+            return (T) stale.get();
+        }
+        final long waitStart = System.nanoTime();
+        final long deadline = waitStart + stampede.getLockWaitTime().toNanos();
+        final long interval = stampede.getPollInterval().toMillis();
+        try {
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(interval);
+                Object current = lookup(key);
+                if (current != null) {
+                    return (T) fromStoreValue(current);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lockWaits.increment();
+            lockWaitNanos.add(System.nanoTime() - waitStart);
+        }
+        log.debug("--wait for cache loading timeout, cache: {}, key: {}", getName(), key);
+        return load(key, valueLoader);
+    }
+
+    @Override
+    public void put(@NonNull Object key, @Nullable Object value) {
+        doPut(key, value, takeLoadTime(key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(@NonNull Object key, @Nullable Object value) {
+        addToBloomFilter(key);
+        if (!spec.isEarlyRefresh() && jitter == 0 && nullTtl == null) {
+            return super.putIfAbsent(key, value);
+        }
+        Object cacheValue = preProcessCacheValue(value);
+        if (!isAllowNullValues() && cacheValue == null) {
+            return get(key);
+        }
+        Duration ttl = resolveTtl(value);
+        Object storeValue = spec.isEarlyRefresh() ? wrap(cacheValue, 0L, ttl) : cacheValue;
+        byte[] result = cacheWriter.putIfAbsent(getName(), serializeCacheKey(createCacheKey(key)), serializeCacheValue(storeValue), ttl);
+        if (result == null) {
+            return null;
+        }
+        return toValueWrapper(unwrap(deserializeCacheValue(result)));
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key   缓存key
+     * @param value 缓存值
+     * @param delta 计算缓存值的耗时（毫秒），未知时为0
+     */
+    protected void doPut(Object key, @Nullable Object value, long delta) {
+        addToBloomFilter(key);
+        if (!spec.isEarlyRefresh() && jitter == 0 && nullTtl == null) {
+            super.put(key, value);
+            return;
+        }
+        Object cacheValue = preProcessCacheValue(value);
+        if (!isAllowNullValues() && cacheValue == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Cache '%s' does not allow 'null' values. Avoid storing null via '@Cacheable(unless=\"#result == null\")' or configure RedisCache to allow 'null' via RedisCacheConfiguration.",
+                    getName()));
+        }
+        Duration ttl = resolveTtl(value);
+        Object storeValue = spec.isEarlyRefresh() ? wrap(cacheValue, delta, ttl) : cacheValue;
+        cacheWriter.put(getName(), serializeCacheKey(createCacheKey(key)), serializeCacheValue(storeValue), ttl);
+    }
+
+    /**
+     * 计算写入的 ttl：空结果使用 nullTtl，其余结果在 [ttl * (1 - jitter%), ttl] 之间随机，最少1毫秒
+     *
+     * @param value 缓存值
+     * @return ttl
+     */
+    protected Duration resolveTtl(@Nullable Object value) {
+        if (nullTtl != null && isEmptyValue(value)) {
+            return nullTtl;
+        }
+        Duration ttl = cacheConfig.getTtl();
+        if (jitter == 0 || ttl.isZero() || ttl.isNegative()) {
+            return ttl;
+        }
+        long millis = ttl.toMillis();
+        long reduce = (long) (millis * ThreadLocalRandom.current().nextDouble() * jitter / 100);
+        // 不足1毫秒的 ttl 按毫秒写入时会变成0，即永不过期
+        return Duration.ofMillis(Math.max(1L, millis - reduce));
+    }
+
+    /**
+     * 是否为空结果：null、空集合、空 Map 或空 Optional
+     *
+     * @param value 缓存值
+     * @return boolean
+     */
+    protected static boolean isEmptyValue(@Nullable Object value) {
+        if (value == null || value instanceof NullValue) {
+            return true;
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).isEmpty();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).isEmpty();
+        }
+        return value instanceof Optional && !((Optional<?>) value).isPresent();
+    }
+
+    /**
+     * 空结果是否使用单独的 ttl
+     */
+    protected boolean hasNullTtl() {
+        return nullTtl != null;
+    }
+
+    /**
+     * 调用 valueLoader 计算缓存值并写入缓存
+     */
+    private <T> T load(Object key, Callable<T> valueLoader) {
+        final long start = System.currentTimeMillis();
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        doPut(key, value, System.currentTimeMillis() - start);
+        return value;
+    }
+
+    /**
+     * 等待本节点其他线程的计算结果，异常原样抛出
+     */
+    private static Object join(CompletableFuture<Object> loading) {
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * key 是否可能存在，未开启布隆过滤器或布隆过滤器未就绪时总是返回 true
+     *
+     * @param key 缓存key
+     * @return false 时一定不存在
+     */
+    protected boolean mightExist(Object key) {
+        return bloomFilter == null || !bloomFilter.isAbsent(convertKey(key));
+    }
+
+    /**
+     * lock 依赖 valueLoader，非 sync 调用无法 single-flight，只提示一次
+     */
+    private void warnIfLockWithoutSync() {
+        if (spec.isLock() && !lockWithoutSyncWarned) {
+            lockWithoutSyncWarned = true;
+            log.warn("--option 'lock' of cache '{}' only takes effect with @Cacheable(sync = true)", getName());
+        }
+    }
+
+    private void recordMiss(Object key) {
+        if (lastMiss != null) {
+            lastMiss.set(new Miss(key, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * 当前线程未命中该key到写入之间的耗时，即非 sync 调用时的计算耗时
+     *
+     * @param key 缓存key
+     * @return 计算耗时（毫秒），未知时为0
+     */
+    private long takeLoadTime(Object key) {
+        if (lastMiss == null) {
+            return 0L;
+        }
+        Miss miss = lastMiss.get();
+        if (miss == null || !miss.key.equals(key)) {
+            return 0L;
+        }
+        lastMiss.remove();
+        return System.currentTimeMillis() - miss.time;
+    }
+
+    /**
+     * 读取到的值是否需要按 XFetch 提前刷新
+     */
+    private boolean shouldRefresh(@Nullable Object stored) {
+        return stored instanceof TimedCacheValue && ((TimedCacheValue) stored).shouldRefresh(spec.getBeta(), System.currentTimeMillis(), nextRandom());
+    }
+
+    /**
+     * XFetch 使用的 (0, 1) 之间的随机数
+     *
+     * @return 随机数
+     */
+    protected double nextRandom() {
+        return ThreadLocalRandom.current().nextDouble();
+    }
+
+    private void addToBloomFilter(Object key) {
+        if (bloomFilter != null) {
+            bloomFilter.add(convertKey(key));
+        }
+    }
+
+    private TimedCacheValue wrap(Object cacheValue, long delta, Duration ttl) {
+        long expireAt = ttl.isZero() || ttl.isNegative() ? 0L : System.currentTimeMillis() + ttl.toMillis();
+        return new TimedCacheValue(cacheValue, delta, expireAt);
+    }
+
+    @Nullable
+    private static Object unwrap(@Nullable Object storeValue) {
+        return storeValue instanceof TimedCacheValue ? ((TimedCacheValue) storeValue).getValue() : storeValue;
+    }
+
+    private boolean tryLock(String lockKey, String token) {
+        //noinspection ConstantConditions
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, token, stampede.getLockLeaseTime()));
+    }
+
+    private void unlock(String lockKey, String token) {
+        try {
+            //noinspection ConstantConditions
+            redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+        } catch (Exception e) {
+            log.warn("release cache lock failed, lockKey: {}", lockKey, e);
+        }
+    }
+
+    /**
+     * 等待其他调用方计算缓存值（single-flight 轮询）的次数
+     */
+    public long getLockWaitCount() {
+        return lockWaits.sum();
+    }
+
+    /**
+     * 等待其他调用方计算缓存值的累计耗时
+     *
+     * @param unit 时间单位
+     * @return 累计耗时
+     */
+    public double getLockWaitTime(TimeUnit unit) {
+        return (double) lockWaitNanos.sum() / unit.toNanos(1);
+    }
+
+    public RedisCacheSpec getSpec() {
+        return spec;
+    }
+
+    /**
+     * 获取布隆过滤器，未开启 bloom 可选项时为null
+     *
+     * @return RedisBloomFilter
+     */
+    @Nullable
+    public RedisBloomFilter<String> getBloomFilter() {
+        return bloomFilter;
+    }
+
+    private static final class Miss {
+        private final Object key;
+        private final long time;
+
+        private Miss(Object key, long time) {
+            this.key = key;
+            this.time = time;
+        }
+    }
+}
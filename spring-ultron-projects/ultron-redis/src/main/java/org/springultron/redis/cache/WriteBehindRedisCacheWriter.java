@@ -0,0 +1,289 @@
+package org.springultron.redis.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 延迟批量写入（write-behind）的 {@link RedisCacheWriter}
+ * <p>
+ * put/remove 先写入本地待写队列，同一个key的多次写入合并为最后一次，每隔 flushInterval 或待写数量达到 batchSize 时
+ * 按批次通过 pipeline 写入 Redis，每批次一次网络往返；应用关闭时同步写入剩余数据。
+ * 当前 JVM 内的读取优先读取待写队列，因此能读到自己的写入；其他节点在写入 Redis 前仍会读到旧值，
+ * 宕机时未写入的数据会丢失，只适合允许短暂不一致的写多读少缓存。
+ * </p>
+ * <p>
+ * putIfAbsent 需要原子语义，遇到该key的待写删除时会先同步写入，clean 会先写入全部待写数据再执行。
+ * </p>
+ * <p>
+ * 两级缓存的跨节点失效消息在 put/evict 时立即发送，早于数据写入 Redis，其他节点可能把旧值重新加载到本地缓存，
+ * 因此开启本地缓存时不使用延迟批量写入。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/27 上午10:40
+ */
+public class WriteBehindRedisCacheWriter implements RedisCacheWriter, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindRedisCacheWriter.class);
+
+    private final RedisConnectionFactory connectionFactory;
+    private final RedisCacheWriter delegate;
+    private final CacheStatisticsCollector statistics;
+    private final int batchSize;
+    private final int maxPending;
+    /**
+     * 待写队列，value 为 null 的写入表示删除
+     */
+    private final Map<ByteBuffer, PendingWrite> pending;
+    /**
+     * 已从待写队列取出、正在写入 Redis 的数据，写入完成前读取仍以它为准
+     */
+    private final Map<ByteBuffer, PendingWrite> flushing;
+    private final ReentrantLock flushLock;
+    private final AtomicBoolean flushScheduled;
+    private final ScheduledExecutorService scheduler;
+
+    public WriteBehindRedisCacheWriter(RedisConnectionFactory connectionFactory, UltronRedisProperties.WriteBehind properties) {
+        this(connectionFactory, properties, CacheStatisticsCollector.none());
+    }
+
+    public WriteBehindRedisCacheWriter(RedisConnectionFactory connectionFactory, UltronRedisProperties.WriteBehind properties, CacheStatisticsCollector statistics) {
+        Assert.isTrue(properties.getBatchSize() > 0, "write-behind batchSize must be positive");
+        this.connectionFactory = connectionFactory;
+        this.delegate = RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory).withStatisticsCollector(statistics);
+        this.statistics = statistics;
+        this.batchSize = properties.getBatchSize();
+        this.maxPending = Math.max(properties.getMaxPending(), properties.getBatchSize());
+        this.pending = new ConcurrentHashMap<>();
+        this.flushing = new ConcurrentHashMap<>();
+        this.flushLock = new ReentrantLock();
+        this.flushScheduled = new AtomicBoolean();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ultron-cache-write-behind-"));
+        long interval = properties.getFlushInterval().toMillis();
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 共享待写队列及写入线程，仅替换统计收集器
+     */
+    private WriteBehindRedisCacheWriter(WriteBehindRedisCacheWriter source, CacheStatisticsCollector statistics) {
+        this.connectionFactory = source.connectionFactory;
+        this.delegate = source.delegate.withStatisticsCollector(statistics);
+        this.statistics = statistics;
+        this.batchSize = source.batchSize;
+        this.maxPending = source.maxPending;
+        this.pending = source.pending;
+        this.flushing = source.flushing;
+        this.flushLock = source.flushLock;
+        this.flushScheduled = source.flushScheduled;
+        this.scheduler = source.scheduler;
+    }
+
+    @Override
+    public void put(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @Nullable Duration ttl) {
+        enqueue(key, new PendingWrite(key, value, ttl));
+        statistics.incPuts(name);
+    }
+
+    @Override
+    public byte[] get(@NonNull String name, @NonNull byte[] key) {
+        PendingWrite write = pendingWrite(key);
+        if (write == null) {
+            return delegate.get(name, key);
+        }
+        statistics.incGets(name);
+        if (write.value == null) {
+            statistics.incMisses(name);
+        } else {
+            statistics.incHits(name);
+        }
+        return write.value;
+    }
+
+    @Override
+    public byte[] putIfAbsent(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @Nullable Duration ttl) {
+        PendingWrite write = pendingWrite(key);
+        if (write != null && write.value != null) {
+            // 待写入的值即为当前值
+            return write.value;
+        }
+        if (write != null) {
+            // 先落地待写的删除，再由 Redis 保证原子性
+            flush();
+        }
+        return delegate.putIfAbsent(name, key, value, ttl);
+    }
+
+    @Override
+    public void remove(@NonNull String name, @NonNull byte[] key) {
+        enqueue(key, new PendingWrite(key, null, null));
+        statistics.incDeletes(name);
+    }
+
+    @Override
+    public void clean(@NonNull String name, @NonNull byte[] pattern) {
+        flush();
+        delegate.clean(name, pattern);
+    }
+
+    @Override
+    public void clearStatistics(@NonNull String name) {
+        statistics.reset(name);
+    }
+
+    @NonNull
+    @Override
+    public RedisCacheWriter withStatisticsCollector(@NonNull CacheStatisticsCollector cacheStatisticsCollector) {
+        return new WriteBehindRedisCacheWriter(this, cacheStatisticsCollector);
+    }
+
+    @NonNull
+    @Override
+    public CacheStatistics getCacheStatistics(@NonNull String cacheName) {
+        return statistics.getCacheStatistics(cacheName);
+    }
+
+    /**
+     * 待写入 Redis 的key数量
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 同步写入全部待写数据，每 batchSize 个key一个 pipeline
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushScheduled.set(false);
+            List<PendingWrite> batch = new ArrayList<>(batchSize);
+            // 只写入当前快照，写入失败重新入队的数据留到下一次
+            for (ByteBuffer key : new ArrayList<>(pending.keySet())) {
+                PendingWrite write;
+                do {
+                    // 先登记为写入中再从待写队列移除，读取在两步之间也不会落到 Redis 读到旧值
+                    write = pending.get(key);
+                    if (write == null) {
+                        break;
+                    }
+                    flushing.put(key, write);
+                } while (!pending.remove(key, write));
+                if (write == null) {
+                    continue;
+                }
+                batch.add(write);
+                if (batch.size() >= batchSize) {
+                    write(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭时同步写入剩余数据
+     */
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    private void enqueue(byte[] key, PendingWrite write) {
+        pending.put(ByteBuffer.wrap(key), write);
+        int size = pending.size();
+        if (size >= maxPending) {
+            // 写入速度超过 Redis 写入速度时由调用线程同步写入，避免待写队列无限增长
+            flush();
+        } else if (size >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    @Nullable
+    private PendingWrite pendingWrite(byte[] key) {
+        ByteBuffer buffer = ByteBuffer.wrap(key);
+        PendingWrite write = pending.get(buffer);
+        return write != null ? write : flushing.get(buffer);
+    }
+
+    private void write(List<PendingWrite> batch) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.openPipeline();
+            for (PendingWrite write : batch) {
+                if (write.value == null) {
+                    connection.del(write.key);
+                } else {
+                    connection.set(write.key, write.value, write.expiration(), RedisStringCommands.SetOption.upsert());
+                }
+            }
+            connection.closePipeline();
+        } catch (Exception e) {
+            log.error("write-behind cache flush failed, {} keys will be retried", batch.size(), e);
+            for (PendingWrite write : batch) {
+                // 失败的写入重新入队，期间的新写入优先
+                pending.putIfAbsent(ByteBuffer.wrap(write.key), write);
+            }
+        } finally {
+            for (PendingWrite write : batch) {
+                flushing.remove(ByteBuffer.wrap(write.key), write);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("write-behind cache flush failed", e);
+        }
+    }
+
+    private static final class PendingWrite {
+        private final byte[] key;
+        @Nullable
+        private final byte[] value;
+        @Nullable
+        private final Duration ttl;
+
+        private PendingWrite(byte[] key, @Nullable byte[] value, @Nullable Duration ttl) {
+            this.key = key;
+            this.value = value;
+            this.ttl = ttl;
+        }
+
+        private Expiration expiration() {
+            return ttl != null && !ttl.isZero() && !ttl.isNegative() ? Expiration.from(ttl.toMillis(), TimeUnit.MILLISECONDS) : Expiration.persistent();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.springultron.redis.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.context.expression.AnnotatedElementKey;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springultron.core.spel.UltronExpressionEvaluator;
+import org.springultron.core.utils.StringUtils;
+import org.springultron.redis.limiter.RateLimit;
+import org.springultron.redis.limiter.RateLimitException;
+import org.springultron.redis.limiter.RedisRateLimiter;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+
+/**
+ * Redis分布式限流注解切面
+ *
+ * @author brucewuu
+ * @date 2021/5/14 上午10:20
+ */
+@Aspect
+public class RateLimitAspect implements BeanFactoryAware {
+    private static final Logger log = LoggerFactory.getLogger(RateLimitAspect.class);
+    /**
+     * spEl 表达式处理
+     */
+    private static final UltronExpressionEvaluator EVALUATOR = new UltronExpressionEvaluator();
+
+    private final RedisRateLimiter redisRateLimiter;
+    /**
+     * 用于 spEl 中 @ 读取 spring bean
+     */
+    @Nullable
+    private BeanFactory beanFactory;
+
+    public RateLimitAspect(RedisRateLimiter redisRateLimiter) {
+        this.redisRateLimiter = redisRateLimiter;
+    }
+
+    @Override
+    public void setBeanFactory(@NonNull BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * AOP 环切 注解 @RateLimit
+     */
+    @Around("@annotation(rateLimit)")
+    public Object aroundRateLimit(ProceedingJoinPoint point, RateLimit rateLimit) throws Throwable {
+        String limitName = rateLimit.key();
+        Assert.hasText(limitName, "@RateLimit key must have length; it must not be null or empty");
+        String limitParams = rateLimit.params();
+        String limitKey;
+        if (StringUtils.isNotBlank(limitParams)) {
+            limitKey = limitName + ":" + evalLimitParam(point, limitParams);
+        } else {
+            limitKey = limitName;
+        }
+        Duration window = Duration.ofMillis(rateLimit.timeUnit().toMillis(rateLimit.window()));
+        if (!redisRateLimiter.tryAcquire(limitKey, rateLimit.type(), rateLimit.max(), window, rateLimit.permits())) {
+            log.debug("--rate limit exceeded, limitKey: {}, type: {}", limitKey, rateLimit.type());
+            throw new RateLimitException(limitKey);
+        }
+        return point.proceed();
+    }
+
+    /**
+     * 计算参数表达式
+     *
+     * @param point      ProceedingJoinPoint
+     * @param limitParam limitParam
+     * @return 结果
+     */
+    private String evalLimitParam(ProceedingJoinPoint point, String limitParam) {
+        MethodSignature ms = (MethodSignature) point.getSignature();
+        Method method = ms.getMethod();
+        Object[] args = point.getArgs();
+        Object target = point.getTarget();
+        Class<?> targetClass = target.getClass();
+        EvaluationContext context = EVALUATOR.createContext(method, args, target, targetClass, beanFactory);
+        AnnotatedElementKey elementKey = new AnnotatedElementKey(method, targetClass);
+        return EVALUATOR.evalAsText(limitParam, elementKey, context);
+    }
+}
@@ -1,11 +1,14 @@
 package org.springultron.redis.config;
 
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.boot.autoconfigure.data.redis.RedisReactiveAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
@@ -13,30 +16,37 @@ import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.ClassUtils;
 import reactor.core.publisher.Flux;
 
 /**
  * 反应式Redis配置
  * <p>
  * 序列化策略：
- * 默认使用Jackson序列化Redis value，当没有依赖Jackson时使用jdk序列化
- * 用户可自定义注入redisSerializer 或 redisTemplate Bean来实现自定义配置
+ * 默认使用与 {@link RedisConfiguration} 相同的Jackson序列化Redis value，保证与阻塞式服务读写的数据互通，
+ * 当没有依赖Jackson时使用jdk序列化
+ * 用户可自定义注入redisSerializer 或 reactiveRedisTemplate Bean来实现自定义配置
  * </p>
+ * 需在 RedisAutoConfiguration 之后加载，否则 ReactiveRedisConnectionFactory 尚未注册，
+ * 会退回到 Spring Boot 默认的 jdk 序列化 reactiveRedisTemplate
  *
  * @author brucewuu
  * @date 2019/11/26 18:26
  */
 @Configuration(proxyBeanMethods = false)
+@AutoConfigureAfter({RedisAutoConfiguration.class, RedisConfiguration.class})
 @AutoConfigureBefore({RedisReactiveAutoConfiguration.class})
 @ConditionalOnClass({ReactiveRedisTemplate.class, Flux.class})
 @ConditionalOnBean({ReactiveRedisConnectionFactory.class})
+@EnableConfigurationProperties({UltronRedisProperties.class})
 public class ReactiveRedisConfiguration {
+    private static final boolean JACKSON_PRESENT = ClassUtils.isPresent("com.fasterxml.jackson.databind.ObjectMapper", ReactiveRedisConfiguration.class.getClassLoader());
 
     @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
     @Bean
     @ConditionalOnMissingBean(name = {"reactiveRedisTemplate"})
-    public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory, ObjectProvider<RedisSerializer<Object>> redisSerializer) {
-        RedisSerializer<Object> valueSerializer = redisSerializer.getIfAvailable(JdkSerializationRedisSerializer::new);
+    public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory, ObjectProvider<RedisSerializer<Object>> redisSerializer, UltronRedisProperties properties) {
+        RedisSerializer<Object> valueSerializer = redisSerializer.getIfAvailable(() -> JACKSON_PRESENT ? RedisConfiguration.createJsonRedisSerializer(properties) : new JdkSerializationRedisSerializer());
         RedisSerializationContext.SerializationPair<String> keySerializationPair = RedisSerializationContext.SerializationPair.fromSerializer(RedisSerializer.string());
         RedisSerializationContext.SerializationPair<Object> valueSerializationPair = RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer);
         RedisSerializationContext.RedisSerializationContextBuilder<String, Object> builder = RedisSerializationContext.newSerializationContext();
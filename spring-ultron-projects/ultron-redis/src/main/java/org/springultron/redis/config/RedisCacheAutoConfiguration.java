@@ -1,5 +1,7 @@
 package org.springultron.redis.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
@@ -8,7 +10,10 @@ import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
 import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizers;
 import org.springframework.boot.autoconfigure.cache.CacheProperties;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.interceptor.CacheAspectSupport;
@@ -20,10 +25,20 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
 import org.springultron.redis.RedisAutoCacheManager;
+import org.springultron.redis.cache.CacheWarmer;
+import org.springultron.redis.cache.CacheWarmingRunner;
+import org.springultron.redis.cache.RedisCacheMetricsRegistrar;
+import org.springultron.redis.cache.RedisCaffeineCacheManager;
+import org.springultron.redis.cache.TimedRedisCacheWriter;
+import org.springultron.redis.cache.WriteBehindRedisCacheWriter;
 
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -39,6 +54,26 @@ import java.util.stream.Collectors;
  * </p>
  *
  * <p>
+ * 开启 ultron.redis.cache.local.enabled 后使用 Caffeine + Redis 两级缓存
+ * </p>
+ *
+ * <p>
+ * 缓存击穿保护示例：@Cacheable(value = "product#10m#lock#early", key = "#id", sync = true)，lock 只对 sync = true 生效
+ * </p>
+ *
+ * <p>
+ * 开启 ultron.redis.cache.write-behind.enabled 后 put/evict 延迟合并、按批次 pipeline 写入 Redis，开启本地缓存时不生效
+ * </p>
+ *
+ * <p>
+ * 注册 {@link CacheWarmer} Bean 后启动时并行预热对应的缓存空间
+ * </p>
+ *
+ * <p>
+ * classpath 中存在 Micrometer 时按 cache name 导出缓存指标，可通过 ultron.redis.cache.metrics.enabled 关闭
+ * </p>
+ *
+ * <p>
  * 需手动开启@EnableCaching注解
  * </p>
  * {@link CacheAutoConfiguration}
@@ -50,8 +85,13 @@ import java.util.stream.Collectors;
 @ConditionalOnBean({CacheAspectSupport.class})
 @AutoConfigureBefore({CacheAutoConfiguration.class})
 @AutoConfigureAfter({RedisAutoConfiguration.class})
-@EnableConfigurationProperties({CacheProperties.class})
+@EnableConfigurationProperties({CacheProperties.class, UltronRedisProperties.class})
 public class RedisCacheAutoConfiguration {
+    /**
+     * 缓存管理器 Bean 名称，与 Spring Boot 缓存指标的 cacheManager 标签一致
+     */
+    private static final String CACHE_MANAGER_BEAN_NAME = "cacheManager";
+    private static final boolean MICROMETER_PRESENT = ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry", RedisCacheAutoConfiguration.class.getClassLoader());
 
     @Bean
     @ConditionalOnMissingBean
@@ -68,8 +108,13 @@ public class RedisCacheAutoConfiguration {
     @Primary
     @Bean
     @SuppressWarnings({"SpringJavaInjectionPointsAutowiringInspection", "JavadocReference"})
-    public RedisCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory, CacheProperties cacheProperties, CacheManagerCustomizers cacheManagerCustomizers, ObjectProvider<RedisCacheConfiguration> redisCacheConfiguration, ObjectProvider<RedisSerializer<Object>> redisSerializer) {
-        RedisCacheWriter redisCacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory);
+    public RedisCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory, CacheProperties cacheProperties, UltronRedisProperties ultronRedisProperties, CacheManagerCustomizers cacheManagerCustomizers, ObjectProvider<RedisCacheConfiguration> redisCacheConfiguration, ObjectProvider<RedisSerializer<Object>> redisSerializer, ObjectProvider<RedisTemplate<String, Object>> redisTemplate, ObjectProvider<WriteBehindRedisCacheWriter> writeBehindCacheWriter, ObjectProvider<RedisCacheWriterCustomizer> cacheWriterCustomizers) {
+        UltronRedisProperties.Cache ultronCacheProperties = ultronRedisProperties.getCache();
+        // 两级缓存的失效消息早于延迟写入落地，其他节点会重新加载到旧值，开启本地缓存时不使用延迟批量写入
+        RedisCacheWriter redisCacheWriter = ultronCacheProperties.getLocal().isEnabled() ? null : writeBehindCacheWriter.getIfAvailable();
+        if (redisCacheWriter == null) {
+            redisCacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory);
+        }
         RedisCacheConfiguration cacheConfiguration = this.determineConfiguration(cacheProperties, redisCacheConfiguration, redisSerializer);
         List<String> cacheNames = cacheProperties.getCacheNames();
         final Map<String, RedisCacheConfiguration> initialCaches = new LinkedHashMap<>(cacheNames.size());
@@ -78,18 +123,75 @@ public class RedisCacheAutoConfiguration {
         }
 
         CacheStatisticsCollector statisticsCollector = CacheStatisticsCollector.none();
-        if (cacheProperties.getRedis().isEnableStatistics()) {
+        if (cacheProperties.getRedis().isEnableStatistics() || (ultronCacheProperties.getMetrics().isEnabled() && MICROMETER_PRESENT)) {
             statisticsCollector = CacheStatisticsCollector.create();
         }
         if (!statisticsCollector.equals(CacheStatisticsCollector.none())) {
             redisCacheWriter = redisCacheWriter.withStatisticsCollector(statisticsCollector);
         }
+        for (RedisCacheWriterCustomizer customizer : cacheWriterCustomizers.orderedStream().collect(Collectors.toList())) {
+            redisCacheWriter = customizer.customize(redisCacheWriter);
+        }
 
-        RedisAutoCacheManager redisCacheManager = new RedisAutoCacheManager(redisCacheWriter, cacheConfiguration, initialCaches, true);
+        RedisAutoCacheManager redisCacheManager;
+        if (ultronCacheProperties.getLocal().isEnabled()) {
+            redisCacheManager = new RedisCaffeineCacheManager(redisCacheWriter, cacheConfiguration, initialCaches, true, ultronCacheProperties, redisTemplate.getObject());
+        } else {
+            redisCacheManager = new RedisAutoCacheManager(redisCacheWriter, cacheConfiguration, initialCaches, true, ultronCacheProperties, redisTemplate.getIfAvailable());
+        }
         redisCacheManager.setTransactionAware(false);
         return cacheManagerCustomizers.customize(redisCacheManager);
     }
 
+    /**
+     * 延迟批量写入的 RedisCacheWriter，注册为 Bean 以便应用关闭时同步写入剩余数据
+     *
+     * @param redisConnectionFactory redis连接工厂
+     * @param ultronRedisProperties  ultron-redis 配置
+     * @return WriteBehindRedisCacheWriter
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnExpression("${ultron.redis.cache.write-behind.enabled:false} && !${ultron.redis.cache.local.enabled:false}")
+    public WriteBehindRedisCacheWriter writeBehindRedisCacheWriter(RedisConnectionFactory redisConnectionFactory, UltronRedisProperties ultronRedisProperties) {
+        return new WriteBehindRedisCacheWriter(redisConnectionFactory, ultronRedisProperties.getCache().getWriteBehind());
+    }
+
+    /**
+     * 启动时缓存预热，应用注册 {@link CacheWarmer} Bean 后生效
+     *
+     * @param cacheManager          缓存管理器
+     * @param cacheWarmers          预热加载器
+     * @param ultronRedisProperties ultron-redis 配置
+     * @return CacheWarmingRunner
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(CacheWarmer.class)
+    @ConditionalOnProperty(prefix = "ultron.redis.cache.warming", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public CacheWarmingRunner cacheWarmingRunner(RedisCacheManager cacheManager, ObjectProvider<CacheWarmer> cacheWarmers, UltronRedisProperties ultronRedisProperties) {
+        return new CacheWarmingRunner(cacheManager, cacheWarmers.orderedStream().collect(Collectors.toList()), ultronRedisProperties.getCache().getWarming());
+    }
+
+    /**
+     * 两级缓存跨节点失效消息监听
+     *
+     * @param redisConnectionFactory redis连接工厂
+     * @param cacheManager           缓存管理器
+     * @param ultronRedisProperties  ultron-redis 配置
+     * @return RedisMessageListenerContainer
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "ultron.redis.cache.local", name = "enabled", havingValue = "true")
+    public RedisMessageListenerContainer cacheMessageListenerContainer(RedisConnectionFactory redisConnectionFactory, RedisCacheManager cacheManager, UltronRedisProperties ultronRedisProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        if (cacheManager instanceof RedisCaffeineCacheManager) {
+            container.addMessageListener((RedisCaffeineCacheManager) cacheManager, new ChannelTopic(ultronRedisProperties.getCache().getLocal().getTopic()));
+        }
+        return container;
+    }
+
     private RedisCacheConfiguration determineConfiguration(CacheProperties cacheProperties, ObjectProvider<RedisCacheConfiguration> redisCacheConfiguration, ObjectProvider<RedisSerializer<Object>> redisSerializer) {
         return redisCacheConfiguration.getIfAvailable(() -> this.createConfiguration(cacheProperties, redisSerializer.getIfAvailable()));
     }
@@ -120,4 +222,25 @@ public class RedisCacheAutoConfiguration {
 
         return config;
     }
-}
\ No newline at end of file
+
+    /**
+     * 按 cache name 导出 Micrometer 指标：命中、未命中、写入、删除、锁等待及读写耗时
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = {"io.micrometer.core.instrument.MeterRegistry", "org.springframework.boot.actuate.metrics.cache.RedisCacheMetrics"})
+    @ConditionalOnProperty(prefix = "ultron.redis.cache.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class CacheMetricsConfiguration {
+
+        @Bean
+        public RedisCacheWriterCustomizer timedRedisCacheWriterCustomizer(ObjectProvider<MeterRegistry> meterRegistry) {
+            return cacheWriter -> new TimedRedisCacheWriter(cacheWriter, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), CACHE_MANAGER_BEAN_NAME);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RedisCacheMetricsRegistrar redisCacheMetricsRegistrar(RedisCacheManager cacheManager, ObjectProvider<MeterRegistry> meterRegistry, UltronRedisProperties ultronRedisProperties) {
+            return new RedisCacheMetricsRegistrar(cacheManager, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), CACHE_MANAGER_BEAN_NAME,
+                    ultronRedisProperties.getCache().getMetrics().getRefreshInterval());
+        }
+    }
+}
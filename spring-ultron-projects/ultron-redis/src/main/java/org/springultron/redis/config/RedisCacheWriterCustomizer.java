@@ -0,0 +1,21 @@
+package org.springultron.redis.config;
+
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+/**
+ * 自定义缓存管理器使用的 {@link RedisCacheWriter}，例如装饰耗时统计，按 Order 顺序依次执行
+ *
+ * @author brucewuu
+ * @date 2021/5/31 上午10:10
+ */
+@FunctionalInterface
+public interface RedisCacheWriterCustomizer {
+
+    /**
+     * 自定义 RedisCacheWriter
+     *
+     * @param cacheWriter 已开启统计的 RedisCacheWriter
+     * @return 自定义后的 RedisCacheWriter
+     */
+    RedisCacheWriter customize(RedisCacheWriter cacheWriter);
+}
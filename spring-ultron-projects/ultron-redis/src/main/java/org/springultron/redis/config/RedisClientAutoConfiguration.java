@@ -1,15 +1,26 @@
 package org.springultron.redis.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springultron.redis.ReactiveRedisClient;
 import org.springultron.redis.RedisClient;
+import org.springultron.redis.hotkey.HotKeyDetector;
+import org.springultron.redis.hotkey.HotKeyEndpoint;
+import org.springultron.redis.script.RedisScriptRegistry;
+import org.springultron.redis.tracking.RedisNearCache;
 
 /**
  * Redis操作客户端自动化配置(懒加载)
@@ -19,14 +30,25 @@ import org.springultron.redis.RedisClient;
  */
 @Lazy
 @Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties({UltronRedisProperties.class})
 public class RedisClientAutoConfiguration {
 
+    /**
+     * Lua 脚本注册中心，启动时从 ultron.redis.script.locations 加载脚本
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisScriptRegistry redisScriptRegistry(UltronRedisProperties properties) {
+        return new RedisScriptRegistry(properties.getScript().getLocations());
+    }
+
     /**
      * 阻塞式Redis操作客户端
      */
     @Bean
-    public RedisClient redisClient(StringRedisTemplate stringRedisTemplate, RedisTemplate<String, Object> redisTemplate) {
-        return new RedisClient(stringRedisTemplate, redisTemplate);
+    public RedisClient redisClient(StringRedisTemplate stringRedisTemplate, RedisTemplate<String, Object> redisTemplate, ObjectProvider<RedisNearCache> nearCache,
+                                   ObjectProvider<HotKeyDetector> hotKeyDetector, RedisScriptRegistry redisScriptRegistry) {
+        return new RedisClient(stringRedisTemplate, redisTemplate, nearCache.getIfAvailable(), hotKeyDetector.getIfAvailable(), redisScriptRegistry);
     }
 
     /**
@@ -34,8 +56,49 @@ public class RedisClientAutoConfiguration {
      */
     @Bean
     @ConditionalOnBean(name = {"reactiveStringRedisTemplate", "reactiveRedisTemplate"})
-    public ReactiveRedisClient reactiveRedisClient(ReactiveStringRedisTemplate reactiveStringRedisTemplate, ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
-        return new ReactiveRedisClient(reactiveStringRedisTemplate, reactiveRedisTemplate);
+    public ReactiveRedisClient reactiveRedisClient(ReactiveStringRedisTemplate reactiveStringRedisTemplate, ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+                                                   ObjectProvider<HotKeyDetector> hotKeyDetector, RedisScriptRegistry redisScriptRegistry) {
+        return new ReactiveRedisClient(reactiveStringRedisTemplate, reactiveRedisTemplate, hotKeyDetector.getIfAvailable(), redisScriptRegistry);
+    }
+
+    /**
+     * 基于 CLIENT TRACKING 的近端缓存，需要 Lettuce、Caffeine 及 Redis 6+
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = {"io.lettuce.core.TrackingArgs", "com.github.benmanes.caffeine.cache.Caffeine"})
+    @ConditionalOnProperty(prefix = "ultron.redis.near-cache", name = "enabled", havingValue = "true")
+    static class NearCacheConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RedisNearCache redisNearCache(RedisConnectionFactory redisConnectionFactory, UltronRedisProperties properties) {
+            return new RedisNearCache(redisConnectionFactory, properties.getNearCache());
+        }
     }
 
+    /**
+     * 热点key探测及本地提升
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "ultron.redis.hot-key", name = "enabled", havingValue = "true")
+    static class HotKeyConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public HotKeyDetector hotKeyDetector(UltronRedisProperties properties) {
+            return new HotKeyDetector(properties.getHotKey());
+        }
+
+        @Configuration(proxyBeanMethods = false)
+        @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+        static class HotKeyEndpointConfiguration {
+
+            @Bean
+            @ConditionalOnMissingBean
+            @ConditionalOnAvailableEndpoint(endpoint = HotKeyEndpoint.class)
+            public HotKeyEndpoint hotKeyEndpoint(HotKeyDetector hotKeyDetector) {
+                return new HotKeyEndpoint(hotKeyDetector);
+            }
+        }
+    }
 }
@@ -10,6 +10,7 @@ import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -17,6 +18,7 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springultron.core.jackson.UltronJavaTimeModule;
+import org.springultron.redis.serializer.CompressingRedisSerializer;
 
 /**
  * Redis配置
@@ -24,6 +26,7 @@ import org.springultron.core.jackson.UltronJavaTimeModule;
  * 序列化策略：
  * 默认使用Jackson序列化Redis value，当没有依赖Jackson时使用jdk序列化
  * 用户可自定义注入redisSerializer 或 redisTemplate Bean来实现自定义配置
+ * 配置 ultron.redis.compression.enabled=true 可开启大 value 透明压缩
  * </p>
  *
  * @author brucewuu
@@ -31,17 +34,29 @@ import org.springultron.core.jackson.UltronJavaTimeModule;
  */
 @Configuration(proxyBeanMethods = false)
 @AutoConfigureBefore({RedisAutoConfiguration.class})
+@EnableConfigurationProperties({UltronRedisProperties.class})
 public class RedisConfiguration {
 
     /**
      * 自定义Redis value序列化方式
      *
+     * @param properties ultron-redis 配置
      * @return RedisSerializer<Object>
      */
     @Bean
     @ConditionalOnClass({ObjectMapper.class})
     @ConditionalOnMissingBean(name = {"redisSerializer"})
-    public RedisSerializer<Object> redisSerializer() {
+    public RedisSerializer<Object> redisSerializer(UltronRedisProperties properties) {
+        return createJsonRedisSerializer(properties);
+    }
+
+    /**
+     * 创建 Jackson 序列化方式，阻塞式与反应式 RedisTemplate 共用，保证两端读写的数据互通
+     *
+     * @param properties ultron-redis 配置
+     * @return RedisSerializer<Object>
+     */
+    static RedisSerializer<Object> createJsonRedisSerializer(UltronRedisProperties properties) {
         ObjectMapper objectMapper = new ObjectMapper();
         // 指定要序列化的域，field,get和set,以及修饰符范围，ANY是都有包括private和public
         objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
@@ -52,7 +67,12 @@ public class RedisConfiguration {
         objectMapper.findAndRegisterModules();
         // 配置java8日期序列化
         objectMapper.registerModule(new UltronJavaTimeModule());
-        return new GenericJackson2JsonRedisSerializer(objectMapper);
+        RedisSerializer<Object> serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        UltronRedisProperties.Compression compression = properties.getCompression();
+        if (compression.isEnabled()) {
+            return new CompressingRedisSerializer<>(serializer, (int) compression.getThreshold().toBytes(), compression.getLevel());
+        }
+        return serializer;
     }
 
     /**
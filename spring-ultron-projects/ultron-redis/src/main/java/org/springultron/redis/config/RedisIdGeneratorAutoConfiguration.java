@@ -0,0 +1,30 @@
+package org.springultron.redis.config;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springultron.redis.id.RedisIdGenerator;
+
+/**
+ * Redis号段ID生成器自动配置
+ *
+ * @author brucewuu
+ * @date 2021/5/24 上午11:20
+ */
+@Configuration(proxyBeanMethods = false)
+@AutoConfigureAfter({RedisAutoConfiguration.class})
+@ConditionalOnBean({StringRedisTemplate.class})
+@EnableConfigurationProperties({UltronRedisProperties.class})
+public class RedisIdGeneratorAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisIdGenerator redisIdGenerator(StringRedisTemplate stringRedisTemplate, UltronRedisProperties properties) {
+        return new RedisIdGenerator(stringRedisTemplate, properties.getIdGenerator());
+    }
+}
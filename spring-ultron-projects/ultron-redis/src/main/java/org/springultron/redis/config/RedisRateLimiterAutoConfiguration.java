@@ -0,0 +1,44 @@
+package org.springultron.redis.config;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springultron.redis.limiter.RedisRateLimiter;
+
+/**
+ * Redis分布式限流自动配置
+ * <p>
+ * 编程式使用 {@link RedisRateLimiter}，声明式使用 {@link org.springultron.redis.limiter.RateLimit} 注解（需依赖 spring-boot-starter-aop）
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/14 上午10:40
+ */
+@Configuration(proxyBeanMethods = false)
+@AutoConfigureAfter({RedisAutoConfiguration.class})
+@ConditionalOnBean({StringRedisTemplate.class})
+public class RedisRateLimiterAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisRateLimiter redisRateLimiter(StringRedisTemplate stringRedisTemplate) {
+        return new RedisRateLimiter(stringRedisTemplate);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass({Aspect.class})
+    static class RateLimitAspectConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RateLimitAspect rateLimitAspect(RedisRateLimiter redisRateLimiter) {
+            return new RateLimitAspect(redisRateLimiter);
+        }
+    }
+}
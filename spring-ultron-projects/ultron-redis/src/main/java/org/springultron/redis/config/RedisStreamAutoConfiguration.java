@@ -0,0 +1,41 @@
+package org.springultron.redis.config;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springultron.redis.stream.RedisStreamClient;
+import org.springultron.redis.stream.RedisStreamListenerContainer;
+
+/**
+ * Redis Stream 消息自动配置
+ * <p>
+ * 发送消息使用 {@link RedisStreamClient}，订阅消息调用 {@link RedisStreamListenerContainer#register} 注册处理器
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/18 下午2:10
+ */
+@Configuration(proxyBeanMethods = false)
+@AutoConfigureAfter({RedisAutoConfiguration.class})
+@ConditionalOnBean({RedisConnectionFactory.class})
+@EnableConfigurationProperties({UltronRedisProperties.class})
+public class RedisStreamAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisStreamClient redisStreamClient(RedisTemplate<String, Object> redisTemplate) {
+        return new RedisStreamClient(redisTemplate);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisStreamListenerContainer redisStreamListenerContainer(RedisTemplate<String, Object> redisTemplate, UltronRedisProperties properties) {
+        return new RedisStreamListenerContainer(redisTemplate, properties.getStream());
+    }
+}
@@ -0,0 +1,756 @@
+package org.springultron.redis.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ultron-redis 扩展配置项
+ *
+ * @author brucewuu
+ * @date 2021/5/8 上午10:12
+ */
+@ConfigurationProperties(prefix = "ultron.redis")
+public class UltronRedisProperties {
+    /**
+     * 缓存配置
+     */
+    private final Cache cache = new Cache();
+    /**
+     * value 压缩配置
+     */
+    private final Compression compression = new Compression();
+    /**
+     * Redis Stream 消费配置
+     */
+    private final Stream stream = new Stream();
+    /**
+     * 基于 Redis 6 客户端缓存（CLIENT TRACKING）的近端缓存配置
+     */
+    private final NearCache nearCache = new NearCache();
+    /**
+     * 热点key探测配置
+     */
+    private final HotKey hotKey = new HotKey();
+    /**
+     * 号段 ID 生成器配置
+     */
+    private final IdGenerator idGenerator = new IdGenerator();
+    /**
+     * Lua 脚本注册配置
+     */
+    private final Script script = new Script();
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public Stream getStream() {
+        return stream;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public HotKey getHotKey() {
+        return hotKey;
+    }
+
+    public IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    public Script getScript() {
+        return script;
+    }
+
+    public static class Script {
+        /**
+         * Lua 脚本的加载路径，脚本名称为去掉 .lua 后缀的文件名，默认：classpath*:redis/scripts/*.lua
+         */
+        private List<String> locations = new ArrayList<>(Collections.singletonList("classpath*:redis/scripts/*.lua"));
+
+        public List<String> getLocations() {
+            return locations;
+        }
+
+        public void setLocations(List<String> locations) {
+            this.locations = locations;
+        }
+    }
+
+    public static class IdGenerator {
+        /**
+         * 序列在 Redis 中的key前缀，默认：ultron:id:
+         */
+        private String keyPrefix = "ultron:id:";
+        /**
+         * 每次 INCRBY 预留的号段长度，默认：1000
+         */
+        private int step = 1000;
+        /**
+         * 按序列名称单独指定号段长度
+         */
+        private Map<String, Integer> steps = new LinkedHashMap<>();
+        /**
+         * 当前号段使用比例达到该值时异步预取下一号段（0-1），默认：0.8
+         */
+        private double prefetchRatio = 0.8D;
+
+        public String getKeyPrefix() {
+            return keyPrefix;
+        }
+
+        public void setKeyPrefix(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+
+        public int getStep() {
+            return step;
+        }
+
+        public void setStep(int step) {
+            this.step = step;
+        }
+
+        public Map<String, Integer> getSteps() {
+            return steps;
+        }
+
+        public void setSteps(Map<String, Integer> steps) {
+            this.steps = steps;
+        }
+
+        public double getPrefetchRatio() {
+            return prefetchRatio;
+        }
+
+        public void setPrefetchRatio(double prefetchRatio) {
+            this.prefetchRatio = prefetchRatio;
+        }
+    }
+
+    public static class HotKey {
+        /**
+         * 是否开启热点key探测及本地提升，默认：false
+         */
+        private boolean enabled = false;
+        /**
+         * 读取采样率（0-1），仅采样的读取计入统计，默认：0.1
+         */
+        private double sampleRate = 0.1D;
+        /**
+         * 热点阈值，单节点估算读取 QPS 超过该值即判定为热点key，默认：1000
+         */
+        private long threshold = 1000L;
+        /**
+         * 统计窗口，每个窗口结束后重新计数，默认：1s
+         */
+        private Duration window = Duration.ofSeconds(1);
+        /**
+         * 热点key本地副本的存活时间，默认：3s
+         */
+        private Duration localTtl = Duration.ofSeconds(3);
+        /**
+         * 本地副本最多缓存的key数量，默认：1000
+         */
+        private int localMaximumSize = 1000;
+        /**
+         * 每个窗口保留的 top-K 候选key数量，默认：100
+         */
+        private int topK = 100;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public long getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(long threshold) {
+            this.threshold = threshold;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public Duration getLocalTtl() {
+            return localTtl;
+        }
+
+        public void setLocalTtl(Duration localTtl) {
+            this.localTtl = localTtl;
+        }
+
+        public int getLocalMaximumSize() {
+            return localMaximumSize;
+        }
+
+        public void setLocalMaximumSize(int localMaximumSize) {
+            this.localMaximumSize = localMaximumSize;
+        }
+
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+    }
+
+    public static class NearCache {
+        /**
+         * 是否开启近端缓存，需要 Redis 6+ 及 Caffeine，且仅支持单机模式，默认：false
+         */
+        private boolean enabled = false;
+        /**
+         * 需要近端缓存的key前缀，仅匹配前缀的key会缓存在本地并由 Redis 广播失效，为空时不缓存任何key
+         */
+        private List<String> prefixes = new ArrayList<>();
+        /**
+         * 本地最多缓存的key数量，超出后淘汰访问频率低的key，默认：10000
+         */
+        private int maximumSize = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getPrefixes() {
+            return prefixes;
+        }
+
+        public void setPrefixes(List<String> prefixes) {
+            this.prefixes = prefixes;
+        }
+
+        public int getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+    }
+
+    public static class Stream {
+        /**
+         * 消费者名称，同一消费组内需唯一，未配置时自动生成
+         */
+        private String consumerName;
+        /**
+         * 单次 XREADGROUP 读取的最大消息数，默认：100
+         */
+        private int batchSize = 100;
+        /**
+         * XREADGROUP 阻塞等待时间，需小于 Redis 命令超时时间，默认：2秒
+         */
+        private Duration pollTimeout = Duration.ofSeconds(2);
+        /**
+         * 消息处理线程数，默认：CPU核数
+         */
+        private int concurrency = Runtime.getRuntime().availableProcessors();
+        /**
+         * 认领 pending 消息的检查间隔，默认：30秒
+         */
+        private Duration claimInterval = Duration.ofSeconds(30);
+        /**
+         * pending 消息空闲超过该时间后可被其他消费者认领，需大于消息处理耗时，默认：60秒
+         */
+        private Duration claimMinIdle = Duration.ofSeconds(60);
+        /**
+         * 最大投递次数，超过后记录错误日志并 ACK 丢弃，默认：5
+         */
+        private long maxDeliveries = 5L;
+
+        public String getConsumerName() {
+            return consumerName;
+        }
+
+        public void setConsumerName(String consumerName) {
+            this.consumerName = consumerName;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getPollTimeout() {
+            return pollTimeout;
+        }
+
+        public void setPollTimeout(Duration pollTimeout) {
+            this.pollTimeout = pollTimeout;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public Duration getClaimInterval() {
+            return claimInterval;
+        }
+
+        public void setClaimInterval(Duration claimInterval) {
+            this.claimInterval = claimInterval;
+        }
+
+        public Duration getClaimMinIdle() {
+            return claimMinIdle;
+        }
+
+        public void setClaimMinIdle(Duration claimMinIdle) {
+            this.claimMinIdle = claimMinIdle;
+        }
+
+        public long getMaxDeliveries() {
+            return maxDeliveries;
+        }
+
+        public void setMaxDeliveries(long maxDeliveries) {
+            this.maxDeliveries = maxDeliveries;
+        }
+    }
+
+    public static class Compression {
+        /**
+         * 是否开启 value 压缩，开启后旧的未压缩数据仍可正常读取，默认：false
+         */
+        private boolean enabled = false;
+        /**
+         * 压缩阈值，序列化后大于该值才压缩，默认：1KB
+         */
+        private DataSize threshold = DataSize.ofKilobytes(1);
+        /**
+         * Deflate 压缩级别（0-9），默认：1（最快）
+         */
+        private int level = 1;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(DataSize threshold) {
+            this.threshold = threshold;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+
+    public static class Cache {
+        /**
+         * 本地一级缓存（Caffeine）配置
+         */
+        private final Local local = new Local();
+        /**
+         * 缓存击穿保护配置
+         */
+        private final Stampede stampede = new Stampede();
+        /**
+         * 布隆过滤器配置，cache name 中配置 bloom 可选项时生效
+         */
+        private final Bloom bloom = new Bloom();
+        /**
+         * 延迟批量写入配置
+         */
+        private final WriteBehind writeBehind = new WriteBehind();
+        /**
+         * 启动预热配置，注册了 CacheWarmer Bean 时生效
+         */
+        private final Warming warming = new Warming();
+        /**
+         * Micrometer 指标配置
+         */
+        private final Metrics metrics = new Metrics();
+        /**
+         * ttl 随机缩短的最大百分比（0~99），避免同一批写入的缓存集中过期，cache name 中的 jitter 可选项优先，默认：0 不开启
+         */
+        private int ttlJitter = 0;
+        /**
+         * null 及空集合等空结果的 ttl，cache name 中的 null 可选项优先，默认：null 与正常结果 ttl 相同
+         */
+        private Duration nullTtl;
+        /**
+         * 按 cache name 配置的可选项，与 cache name 中 # 号后的可选项语法一致，例如：product: lock#early=1.5
+         */
+        private Map<String, String> options = new LinkedHashMap<>();
+
+        public Local getLocal() {
+            return local;
+        }
+
+        public Stampede getStampede() {
+            return stampede;
+        }
+
+        public Bloom getBloom() {
+            return bloom;
+        }
+
+        public WriteBehind getWriteBehind() {
+            return writeBehind;
+        }
+
+        public Warming getWarming() {
+            return warming;
+        }
+
+        public Metrics getMetrics() {
+            return metrics;
+        }
+
+        public int getTtlJitter() {
+            return ttlJitter;
+        }
+
+        public void setTtlJitter(int ttlJitter) {
+            if (ttlJitter < 0 || ttlJitter > 99) {
+                throw new IllegalArgumentException("ultron.redis.cache.ttl-jitter must be between 0 and 99, but was " + ttlJitter);
+            }
+            this.ttlJitter = ttlJitter;
+        }
+
+        public Duration getNullTtl() {
+            return nullTtl;
+        }
+
+        public void setNullTtl(Duration nullTtl) {
+            this.nullTtl = nullTtl;
+        }
+
+        public Map<String, String> getOptions() {
+            return options;
+        }
+
+        public void setOptions(Map<String, String> options) {
+            this.options = options;
+        }
+    }
+
+    public static class Metrics {
+        /**
+         * 是否按 cache name 导出 Micrometer 指标，classpath 中存在 Micrometer 时生效，开启后自动开启缓存统计，默认：true
+         */
+        private boolean enabled = true;
+        /**
+         * 发现并绑定运行期间新建缓存空间的间隔，默认：30秒
+         */
+        private Duration refreshInterval = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
+
+    public static class Warming {
+        /**
+         * 是否开启启动预热，默认：true
+         */
+        private boolean enabled = true;
+        /**
+         * 是否异步预热：false 时预热完成（或超时）后应用才进入 ready 状态，默认：false
+         */
+        private boolean async = false;
+        /**
+         * 并行执行的加载器数量，默认：4
+         */
+        private int concurrency = 4;
+        /**
+         * 同步预热的最长等待时间，超时后剩余加载器在后台继续执行，默认：5分钟
+         */
+        private Duration timeout = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class WriteBehind {
+        /**
+         * 是否开启延迟批量写入：put/evict 先进入本地队列，合并同一个key的写入后按批次 pipeline 写入 Redis，
+         * 开启本地缓存（ultron.redis.cache.local.enabled）时不生效，默认：false
+         */
+        private boolean enabled = false;
+        /**
+         * 定时写入的间隔，即其他节点可能读到旧值的最长时间，默认：100毫秒
+         */
+        private Duration flushInterval = Duration.ofMillis(100);
+        /**
+         * 每个 pipeline 写入的key数量，待写数量达到该值时立即触发写入，默认：500
+         */
+        private int batchSize = 500;
+        /**
+         * 待写队列的最大key数量，超过后由调用线程同步写入，默认：10000
+         */
+        private int maxPending = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+    }
+
+    public static class Bloom {
+        /**
+         * 预期元素数量，默认：1000000
+         */
+        private long expectedInsertions = 1000000L;
+        /**
+         * 期望误判率，默认：0.01
+         */
+        private double fpp = 0.01D;
+        /**
+         * 布隆过滤器 Redis key 前缀，后接 cache name，默认：ultron:bloom:
+         */
+        private String keyPrefix = "ultron:bloom:";
+
+        public long getExpectedInsertions() {
+            return expectedInsertions;
+        }
+
+        public void setExpectedInsertions(long expectedInsertions) {
+            this.expectedInsertions = expectedInsertions;
+        }
+
+        public double getFpp() {
+            return fpp;
+        }
+
+        public void setFpp(double fpp) {
+            this.fpp = fpp;
+        }
+
+        public String getKeyPrefix() {
+            return keyPrefix;
+        }
+
+        public void setKeyPrefix(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+    }
+
+    public static class Stampede {
+        /**
+         * single-flight 分布式锁的自动释放时间，需大于缓存值的计算耗时，默认：10秒
+         */
+        private Duration lockLeaseTime = Duration.ofSeconds(10);
+        /**
+         * 未获取到锁且没有旧值时等待其他节点计算完成的最长时间，超时后自行计算，默认：3秒
+         */
+        private Duration lockWaitTime = Duration.ofSeconds(3);
+        /**
+         * 等待期间轮询缓存的间隔，默认：50毫秒
+         */
+        private Duration pollInterval = Duration.ofMillis(50);
+        /**
+         * XFetch 默认 beta 值，默认：1.0
+         */
+        private double beta = 1.0D;
+
+        public Duration getLockLeaseTime() {
+            return lockLeaseTime;
+        }
+
+        public void setLockLeaseTime(Duration lockLeaseTime) {
+            this.lockLeaseTime = lockLeaseTime;
+        }
+
+        public Duration getLockWaitTime() {
+            return lockWaitTime;
+        }
+
+        public void setLockWaitTime(Duration lockWaitTime) {
+            this.lockWaitTime = lockWaitTime;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public double getBeta() {
+            return beta;
+        }
+
+        public void setBeta(double beta) {
+            this.beta = beta;
+        }
+    }
+
+    public static class Local {
+        /**
+         * 是否开启 Caffeine + Redis 两级缓存，默认：false
+         */
+        private boolean enabled = false;
+        /**
+         * 每个缓存空间本地缓存的最大条数，默认：10000
+         */
+        private long maximumSize = 10000L;
+        /**
+         * 本地缓存写入后的过期时间，取与 Redis 缓存 ttl 中较小的值，默认：5分钟
+         */
+        private Duration expireAfterWrite = Duration.ofMinutes(5);
+        /**
+         * 跨节点失效本地缓存的 Redis pub/sub 频道，默认：ultron:cache:evict
+         */
+        private String topic = "ultron:cache:evict";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getExpireAfterWrite() {
+            return expireAfterWrite;
+        }
+
+        public void setExpireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public void setTopic(String topic) {
+            this.topic = topic;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.springultron.redis.hotkey;
+
+import org.springultron.redis.bloom.Murmur3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 计数最小草图（Count-Min Sketch）
+ * <p>
+ * 固定内存估算 key 的出现次数，估算值只会偏大不会偏小，多线程并发计数无锁；
+ * 各行的下标由 key 的 MurmurHash3 128位结果 h1、h2 按 h1 + i * h2 得到（Kirsch–Mitzenmacher），
+ * String.hashCode 相同的 key 在各行中仍相互独立
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/21 上午10:20
+ */
+class CountMinSketch {
+    /**
+     * 行数
+     */
+    private static final int DEPTH = 4;
+
+    private final int width;
+    private final int mask;
+    private final AtomicLongArray table;
+
+    /**
+     * @param width 每行的计数器数量，向上取整为2的幂
+     */
+    CountMinSketch(int width) {
+        this.width = Integer.highestOneBit((Math.max(16, width) - 1) << 1);
+        this.mask = this.width - 1;
+        this.table = new AtomicLongArray(this.width * DEPTH);
+    }
+
+    /**
+     * 计数加一并返回该 key 的估算次数
+     *
+     * @param key key
+     * @return 估算次数
+     */
+    long increment(String key) {
+        long[] hash = hash(key);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, table.incrementAndGet(index(hash, i)));
+        }
+        return min;
+    }
+
+    /**
+     * 估算 key 的出现次数
+     *
+     * @param key key
+     * @return 估算次数
+     */
+    long estimate(String key) {
+        long[] hash = hash(key);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, table.get(index(hash, i)));
+        }
+        return min;
+    }
+
+    /**
+     * 清空全部计数
+     */
+    void reset() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, 0L);
+        }
+    }
+
+    private static long[] hash(String key) {
+        return Murmur3.hash128(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int index(long[] hash, int row) {
+        long combined = hash[0] + row * hash[1];
+        // 折叠高32位，h2 低位为0时各行仍落在不同位置
+        return row * width + ((int) (combined ^ (combined >>> 32)) & mask);
+    }
+}
@@ -0,0 +1,60 @@
+package org.springultron.redis.hotkey;
+
+import java.io.Serializable;
+
+/**
+ * 热点key统计快照
+ *
+ * @author brucewuu
+ * @date 2021/5/21 上午10:35
+ */
+public class HotKey implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String key;
+    /**
+     * 按采样率还原后的估算读取 QPS
+     */
+    private final long qps;
+    /**
+     * 是否超过热点阈值
+     */
+    private final boolean hot;
+    /**
+     * 当前是否由本地副本提供读取
+     */
+    private final boolean promoted;
+
+    public HotKey(String key, long qps, boolean hot, boolean promoted) {
+        this.key = key;
+        this.qps = qps;
+        this.hot = hot;
+        this.promoted = promoted;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getQps() {
+        return qps;
+    }
+
+    public boolean isHot() {
+        return hot;
+    }
+
+    public boolean isPromoted() {
+        return promoted;
+    }
+
+    @Override
+    public String toString() {
+        return "HotKey{" +
+                "key='" + key + '\'' +
+                ", qps=" + qps +
+                ", hot=" + hot +
+                ", promoted=" + promoted +
+                '}';
+    }
+}
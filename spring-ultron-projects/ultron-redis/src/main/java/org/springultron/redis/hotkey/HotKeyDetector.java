@@ -0,0 +1,299 @@
+package org.springultron.redis.hotkey;
+
+import org.springframework.lang.Nullable;
+import org.springultron.redis.config.UltronRedisProperties;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 热点key探测及本地提升
+ * <p>
+ * 按采样率对读取计数，计数保存在固定大小的 Count-Min Sketch 中，每个统计窗口结束后清零，
+ * 同时保留计数最高的 top-K 个候选key用于展示。
+ * 估算 QPS 超过阈值的key读取后会在本地保存一份短期副本，存活期内的读取不再访问 Redis。
+ * </p>
+ * <p>
+ * 本地副本只在本节点通过 {@link org.springultron.redis.RedisClient} 写入或删除时失效，
+ * 其他节点的修改最多延迟 localTtl 后可见，适合读多写少、可以容忍短暂不一致的热点数据。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/21 上午10:40
+ */
+public class HotKeyDetector {
+    /**
+     * Count-Min Sketch 每行计数器数量，4 行共占用约 128KB
+     */
+    private static final int SKETCH_WIDTH = 4096;
+    /**
+     * 写入版本号分段数量，不同key落在同一分段时只会多放弃一次提升
+     */
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final double sampleRate;
+    private final long threshold;
+    private final long windowNanos;
+    private final long localTtlNanos;
+    private final int localMaximumSize;
+    private final int topK;
+    /**
+     * 单个窗口内采样计数达到该值即判定为热点
+     */
+    private final long thresholdCount;
+    private final LongSupplier ticker;
+
+    private final CountMinSketch sketch = new CountMinSketch(SKETCH_WIDTH);
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+    private volatile long candidateFloor = 0L;
+    private final AtomicLong windowStart;
+    private volatile Map<String, Long> lastWindow = Collections.emptyMap();
+    private final Map<String, LocalCopy> localCopies = new ConcurrentHashMap<>();
+    /**
+     * 按key分段的写入版本号，读取前记录、提升时比较，版本变化说明读取期间key被本节点写入，读到的值可能已过期
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final LongAdder localHits = new LongAdder();
+
+    public HotKeyDetector(UltronRedisProperties.HotKey properties) {
+        this(properties, System::nanoTime);
+    }
+
+    HotKeyDetector(UltronRedisProperties.HotKey properties, LongSupplier ticker) {
+        this.sampleRate = Math.min(1.0D, Math.max(0.0001D, properties.getSampleRate()));
+        this.threshold = properties.getThreshold();
+        this.windowNanos = properties.getWindow().toNanos();
+        this.localTtlNanos = properties.getLocalTtl().toNanos();
+        this.localMaximumSize = properties.getLocalMaximumSize();
+        this.topK = properties.getTopK();
+        this.thresholdCount = Math.max(1L, (long) Math.ceil(threshold * sampleRate * windowNanos / TimeUnit.SECONDS.toNanos(1)));
+        this.ticker = ticker;
+        this.windowStart = new AtomicLong(ticker.getAsLong());
+    }
+
+    /**
+     * 读取key，热点key优先读取本地副本
+     *
+     * @param key    缓存key
+     * @param loader Redis 读取逻辑
+     * @param <V>    值类型
+     * @return 缓存值
+     */
+    public <V> V get(String key, Supplier<V> loader) {
+        boolean hot = record(key);
+        LocalCopy copy = localCopy(key);
+        if (copy != null) {
+            localHits.increment();
+            //noinspection unchecked
+            return (V) copy.value;
+        }
+        final long generation = generation(key);
+        V value = loader.get();
+        if (hot && value != null) {
+            promote(key, value, generation);
+        }
+        return value;
+    }
+
+    /**
+     * 反应式读取key，热点key优先读取本地副本
+     *
+     * @param key    缓存key
+     * @param loader Redis 读取逻辑
+     * @param <V>    值类型
+     * @return 缓存值
+     */
+    public <V> Mono<V> get(String key, Mono<V> loader) {
+        return Mono.defer(() -> {
+            boolean hot = record(key);
+            LocalCopy copy = localCopy(key);
+            if (copy != null) {
+                localHits.increment();
+                //noinspection unchecked
+                return Mono.just((V) copy.value);
+            }
+            if (!hot) {
+                return loader;
+            }
+            final long generation = generation(key);
+            return loader.doOnNext(value -> promote(key, value, generation));
+        });
+    }
+
+    /**
+     * 记录一次读取
+     *
+     * @param key 缓存key
+     * @return 本次读取被采样且key已达到热点阈值时返回true
+     */
+    public boolean record(String key) {
+        rotateIfNecessary(ticker.getAsLong());
+        if (sampleRate < 1.0D && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return false;
+        }
+        long count = sketch.increment(key);
+        offerCandidate(key, count);
+        return count >= thresholdCount;
+    }
+
+    /**
+     * 失效本地副本，本节点写入或删除key时调用
+     *
+     * @param key 缓存key
+     */
+    public void invalidate(String key) {
+        // 先递增版本号再移除，并发读取读到的旧值不会在移除之后再被提升
+        generations.incrementAndGet(stripe(key));
+        localCopies.remove(key);
+    }
+
+    /**
+     * 获取读取量最高的key，统计范围为上一个完整窗口和当前窗口
+     *
+     * @param n 数量
+     * @return 按估算 QPS 降序排列的key
+     */
+    public List<HotKey> topKeys(int n) {
+        rotateIfNecessary(ticker.getAsLong());
+        Map<String, Long> counts = new HashMap<>(lastWindow);
+        candidates.forEach((key, count) -> counts.merge(key, count, Math::max));
+        double windowSeconds = (double) windowNanos / TimeUnit.SECONDS.toNanos(1);
+        List<HotKey> hotKeys = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> hotKeys.add(new HotKey(key, Math.round(count / sampleRate / windowSeconds), count >= thresholdCount, localCopy(key) != null)));
+        hotKeys.sort((a, b) -> Long.compare(b.getQps(), a.getQps()));
+        return hotKeys.size() > n ? new ArrayList<>(hotKeys.subList(0, n)) : hotKeys;
+    }
+
+    /**
+     * 当前本地副本数量
+     */
+    public int getPromotedCount() {
+        return localCopies.size();
+    }
+
+    /**
+     * 本地副本命中次数
+     */
+    public long getLocalHitCount() {
+        return localHits.sum();
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    @Nullable
+    private LocalCopy localCopy(String key) {
+        LocalCopy copy = localCopies.get(key);
+        if (copy == null) {
+            return null;
+        }
+        if (ticker.getAsLong() - copy.expireAt >= 0) {
+            localCopies.remove(key, copy);
+            return null;
+        }
+        return copy;
+    }
+
+    /**
+     * 提升为本地副本
+     *
+     * @param key        缓存key
+     * @param value      读取到的值
+     * @param generation 读取前的写入版本号
+     */
+    private void promote(String key, Object value, long generation) {
+        if (generation(key) != generation) {
+            return;
+        }
+        long now = ticker.getAsLong();
+        if (localCopies.size() >= localMaximumSize) {
+            localCopies.values().removeIf(copy -> now - copy.expireAt >= 0);
+            if (localCopies.size() >= localMaximumSize) {
+                return;
+            }
+        }
+        LocalCopy copy = new LocalCopy(value, now + localTtlNanos);
+        localCopies.put(key, copy);
+        if (generation(key) != generation) {
+            // 写入前的检查与写入之间发生了失效
+            localCopies.remove(key, copy);
+        }
+    }
+
+    private long generation(String key) {
+        return generations.get(stripe(key));
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private void offerCandidate(String key, long count) {
+        if (candidates.size() < topK || candidates.containsKey(key)) {
+            candidates.put(key, count);
+            return;
+        }
+        if (count <= candidateFloor) {
+            return;
+        }
+        synchronized (candidates) {
+            String minKey = null;
+            long minCount = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : candidates.entrySet()) {
+                if (entry.getValue() < minCount) {
+                    minKey = entry.getKey();
+                    minCount = entry.getValue();
+                }
+            }
+            if (minKey != null && count > minCount) {
+                candidates.remove(minKey);
+                candidates.put(key, count);
+            }
+            long floor = Long.MAX_VALUE;
+            for (Long value : candidates.values()) {
+                floor = Math.min(floor, value);
+            }
+            candidateFloor = floor;
+        }
+    }
+
+    private void rotateIfNecessary(long now) {
+        long start = windowStart.get();
+        if (now - start < windowNanos || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        // 超过两个窗口没有读取时，上一个窗口视为空
+        lastWindow = now - start < windowNanos * 2 ? new HashMap<>(candidates) : Collections.emptyMap();
+        candidates.clear();
+        candidateFloor = 0L;
+        sketch.reset();
+    }
+
+    private static final class LocalCopy {
+        private final Object value;
+        private final long expireAt;
+
+        private LocalCopy(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
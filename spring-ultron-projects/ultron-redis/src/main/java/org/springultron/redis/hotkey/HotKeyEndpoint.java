@@ -0,0 +1,36 @@
+package org.springultron.redis.hotkey;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 热点key监控端点：/actuator/hotkeys?top=20
+ *
+ * @author brucewuu
+ * @date 2021/5/21 下午2:10
+ */
+@Endpoint(id = "hotkeys")
+public class HotKeyEndpoint {
+    private static final int DEFAULT_TOP = 20;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    public HotKeyEndpoint(HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    @ReadOperation
+    public Map<String, Object> hotKeys(@Nullable Integer top) {
+        Map<String, Object> result = new LinkedHashMap<>(8);
+        result.put("threshold", hotKeyDetector.getThreshold());
+        result.put("sampleRate", hotKeyDetector.getSampleRate());
+        result.put("promoted", hotKeyDetector.getPromotedCount());
+        result.put("localHits", hotKeyDetector.getLocalHitCount());
+        result.put("keys", hotKeyDetector.topKeys(top == null || top <= 0 ? DEFAULT_TOP : top));
+        return result;
+    }
+}
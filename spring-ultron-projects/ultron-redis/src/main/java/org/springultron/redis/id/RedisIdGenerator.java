@@ -0,0 +1,158 @@
+package org.springultron.redis.id;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于 Redis 号段的 ID 生成器
+ * <p>
+ * 每个序列通过 INCRBY 一次预留 step 个连续 ID，之后直接在内存中分配，平均 step 个 ID 才访问一次 Redis；
+ * 当前号段使用比例达到 prefetchRatio 时异步预取下一号段，号段切换时通常无需等待网络。
+ * 多个实例共享同一个 Redis key，号段互不重叠，因此 ID 全局唯一，单个实例内递增，但多个实例之间不保证有序。
+ * </p>
+ * <p>
+ * 实例重启时未用完的号段会被丢弃，ID 存在空洞，不适用于要求连续编号的场景。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/24 上午10:15
+ */
+public class RedisIdGenerator implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(RedisIdGenerator.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+    private final int defaultStep;
+    private final Map<String, Integer> steps;
+    private final double prefetchRatio;
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+    private final ExecutorService prefetchExecutor = Executors.newCachedThreadPool(new CustomizableThreadFactory("ultron-id-prefetch-"));
+
+    public RedisIdGenerator(StringRedisTemplate redisTemplate) {
+        this(redisTemplate, new UltronRedisProperties.IdGenerator());
+    }
+
+    public RedisIdGenerator(StringRedisTemplate redisTemplate, UltronRedisProperties.IdGenerator properties) {
+        Assert.isTrue(properties.getStep() > 0, "id generator step must be positive");
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = properties.getKeyPrefix();
+        this.defaultStep = properties.getStep();
+        this.steps = properties.getSteps();
+        this.prefetchRatio = Math.min(1.0D, Math.max(0.0D, properties.getPrefetchRatio()));
+    }
+
+    /**
+     * 获取下一个 ID
+     *
+     * @param name 序列名称，如 order
+     * @return ID，从1开始
+     */
+    public long nextId(String name) {
+        return sequences.computeIfAbsent(name, Sequence::new).next();
+    }
+
+    /**
+     * 分配一个号段
+     *
+     * @param name 序列名称
+     * @param step 号段长度
+     * @return 号段
+     */
+    private Segment allocate(String name, int step) {
+        Long max = redisTemplate.opsForValue().increment(keyPrefix + name, step);
+        if (max == null) {
+            throw new IllegalStateException("id generator does not support pipeline or transaction, sequence: " + name);
+        }
+        long start = max - step + 1;
+        long prefetchAt = Math.min(max, start + (long) (step * prefetchRatio));
+        return new Segment(start, max, prefetchAt);
+    }
+
+    @Override
+    public void destroy() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private final class Sequence {
+        private final String name;
+        private final int step;
+        @Nullable
+        private volatile Segment current;
+        /**
+         * 正在预取或已预取完成的下一号段
+         */
+        @Nullable
+        private CompletableFuture<Segment> next;
+
+        private Sequence(String name) {
+            this.name = name;
+            this.step = steps.getOrDefault(name, defaultStep);
+        }
+
+        private long next() {
+            for (; ; ) {
+                Segment segment = current;
+                if (segment != null) {
+                    long id = segment.cursor.getAndIncrement();
+                    if (id <= segment.max) {
+                        // 只有取到 prefetchAt 的线程会触发预取
+                        if (id == segment.prefetchAt) {
+                            prefetch();
+                        }
+                        return id;
+                    }
+                }
+                switchSegment(segment);
+            }
+        }
+
+        private synchronized void prefetch() {
+            if (next == null) {
+                next = CompletableFuture.supplyAsync(() -> allocate(name, step), prefetchExecutor);
+            }
+        }
+
+        private synchronized void switchSegment(@Nullable Segment exhausted) {
+            if (current != exhausted) {
+                // 其他线程已完成切换
+                return;
+            }
+            CompletableFuture<Segment> future = next;
+            next = null;
+            Segment segment = null;
+            if (future != null) {
+                try {
+                    segment = future.join();
+                } catch (Exception e) {
+                    log.warn("prefetch id segment failed, allocate synchronously, sequence: {}", name, e);
+                }
+            }
+            current = segment != null ? segment : allocate(name, step);
+        }
+    }
+
+    private static final class Segment {
+        private final long max;
+        private final long prefetchAt;
+        private final AtomicLong cursor;
+
+        private Segment(long start, long max, long prefetchAt) {
+            this.max = max;
+            this.prefetchAt = prefetchAt;
+            this.cursor = new AtomicLong(start);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.springultron.redis.limiter;
+
+import org.springframework.core.annotation.AliasFor;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis分布式限流注解，超出限制时抛出 {@link RateLimitException}
+ * 支持的限流算法有：
+ * <p>
+ * 1. 固定窗口（Fixed Window）
+ * 2. 滑动窗口（Sliding Window）
+ * 3. 令牌桶（Token Bucket）
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/14 上午9:40
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimit {
+    /**
+     * 限流key，必须保持唯一性
+     *
+     * @return key
+     */
+    @AliasFor("key")
+    String value() default "";
+
+    /**
+     * 限流key，必须保持唯一性
+     *
+     * @return key
+     */
+    @AliasFor("value")
+    String key() default "";
+
+    /**
+     * 限流参数，可选，支持 spring el # 读取方法参数和 @ 读取 spring bean
+     *
+     * @return params
+     */
+    String params() default "";
+
+    /**
+     * 窗口内允许的最大请求数（令牌桶为桶容量）
+     *
+     * @return long
+     */
+    long max();
+
+    /**
+     * 窗口时长，默认1
+     *
+     * @return long
+     */
+    long window() default 1;
+
+    /**
+     * 时间单位，默认:秒
+     *
+     * @return TimeUnit
+     */
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * 每次调用消耗的许可数，默认1
+     *
+     * @return long
+     */
+    long permits() default 1;
+
+    /**
+     * 限流算法，默认:固定窗口
+     *
+     * @return RateLimitType
+     */
+    RateLimitType type() default RateLimitType.FIXED_WINDOW;
+}
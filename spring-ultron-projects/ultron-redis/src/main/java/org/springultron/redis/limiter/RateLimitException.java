@@ -0,0 +1,25 @@
+package org.springultron.redis.limiter;
+
+import org.springultron.core.exception.ApiException;
+import org.springultron.core.result.ResultCode;
+
+/**
+ * 触发限流异常，对应 HTTP 429 Too Many Requests
+ *
+ * @author brucewuu
+ * @date 2021/5/14 上午9:35
+ */
+public class RateLimitException extends ApiException {
+    private static final long serialVersionUID = -3260513296618530466L;
+
+    private final String key;
+
+    public RateLimitException(String key) {
+        super(ResultCode.TOO_MANY_REQUESTS, "Rate limit exceeded: " + key);
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
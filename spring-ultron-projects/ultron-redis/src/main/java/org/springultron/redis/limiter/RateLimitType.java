@@ -0,0 +1,22 @@
+package org.springultron.redis.limiter;
+
+/**
+ * 限流算法
+ *
+ * @author brucewuu
+ * @date 2021/5/14 上午9:30
+ */
+public enum RateLimitType {
+    /**
+     * 固定窗口：窗口内计数，窗口边界处可能出现两倍突发
+     */
+    FIXED_WINDOW,
+    /**
+     * 滑动窗口：基于 ZSET 记录窗口内每次请求，精确但占用内存与请求数成正比
+     */
+    SLIDING_WINDOW,
+    /**
+     * 令牌桶：桶容量为 max，每个窗口匀速补满，允许一定突发
+     */
+    TOKEN_BUCKET
+}
@@ -0,0 +1,172 @@
+package org.springultron.redis.limiter;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.Assert;
+import org.springultron.core.exception.Exceptions;
+import org.springultron.core.function.CheckedSupplier;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Redis分布式限流客户端
+ * <p>
+ * 每次检查只执行一次 EVALSHA（脚本未加载时由 Spring 自动回退 EVAL），
+ * 计数与过期时间在同一个 Lua 脚本中原子完成，不存在 INCR + EXPIRE 两次往返及首次创建 key 时的竞态
+ * </p>
+ * 滑动窗口与令牌桶使用 Redis 服务端 TIME，避免各节点时钟偏差
+ *
+ * @author brucewuu
+ * @date 2021/5/14 上午9:50
+ */
+public class RedisRateLimiter {
+    /**
+     * 限流 key 前缀
+     */
+    public static final String KEY_PREFIX = "ultron:rate-limit:";
+
+    /**
+     * 固定窗口：ARGV[1] 最大请求数，ARGV[2] 本次许可数，ARGV[3] 窗口毫秒数
+     */
+    static final RedisScript<Long> FIXED_WINDOW_SCRIPT = RedisScript.of(
+            "local max = tonumber(ARGV[1]) " +
+            "local permits = tonumber(ARGV[2]) " +
+            "local current = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+            "if current + permits > max then return 0 end " +
+            "if redis.call('INCRBY', KEYS[1], permits) == permits then redis.call('PEXPIRE', KEYS[1], ARGV[3]) end " +
+            "return 1", Long.class);
+
+    /**
+     * 滑动窗口：ARGV[1] 最大请求数，ARGV[2] 本次许可数，ARGV[3] 窗口毫秒数，ARGV[4] 请求唯一标识
+     */
+    static final RedisScript<Long> SLIDING_WINDOW_SCRIPT = RedisScript.of(
+            "redis.replicate_commands() " +
+            "local max = tonumber(ARGV[1]) " +
+            "local permits = tonumber(ARGV[2]) " +
+            "local window = tonumber(ARGV[3]) " +
+            "local time = redis.call('TIME') " +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window) " +
+            "if redis.call('ZCARD', KEYS[1]) + permits > max then return 0 end " +
+            "for i = 1, permits do redis.call('ZADD', KEYS[1], now, ARGV[4] .. ':' .. i) end " +
+            "redis.call('PEXPIRE', KEYS[1], window) " +
+            "return 1", Long.class);
+
+    /**
+     * 令牌桶：ARGV[1] 桶容量，ARGV[2] 本次许可数，ARGV[3] 补满整桶的毫秒数
+     */
+    static final RedisScript<Long> TOKEN_BUCKET_SCRIPT = RedisScript.of(
+            "redis.replicate_commands() " +
+            "local capacity = tonumber(ARGV[1]) " +
+            "local permits = tonumber(ARGV[2]) " +
+            "local window = tonumber(ARGV[3]) " +
+            "local time = redis.call('TIME') " +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+            "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts') " +
+            "local tokens = tonumber(bucket[1]) or capacity " +
+            "local ts = tonumber(bucket[2]) or now " +
+            "tokens = math.min(capacity, tokens + math.max(0, now - ts) * capacity / window) " +
+            "local allowed = 0 " +
+            "if tokens >= permits then tokens = tokens - permits allowed = 1 end " +
+            "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now)) " +
+            "redis.call('PEXPIRE', KEYS[1], window) " +
+            "return allowed", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisRateLimiter(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 尝试获取 1 个许可
+     *
+     * @param key    限流key
+     * @param type   限流算法
+     * @param max    窗口内允许的最大请求数（令牌桶为桶容量）
+     * @param window 窗口时长（令牌桶为补满整桶的时长）
+     * @return 是否允许通过
+     */
+    public boolean tryAcquire(String key, RateLimitType type, long max, Duration window) {
+        return tryAcquire(key, type, max, window, 1L);
+    }
+
+    /**
+     * 尝试获取许可
+     *
+     * @param key     限流key
+     * @param type    限流算法
+     * @param max     窗口内允许的最大请求数（令牌桶为桶容量）
+     * @param window  窗口时长（令牌桶为补满整桶的时长）
+     * @param permits 本次消耗的许可数
+     * @return 是否允许通过
+     */
+    public boolean tryAcquire(String key, RateLimitType type, long max, Duration window, long permits) {
+        Assert.hasText(key, "RateLimit key must have length; it must not be null or empty");
+        Assert.isTrue(max > 0, "RateLimit max must be greater than 0");
+        Assert.isTrue(permits > 0, "RateLimit permits must be greater than 0");
+        long windowMillis = window.toMillis();
+        Assert.isTrue(windowMillis > 0, "RateLimit window must be at least 1 millisecond");
+        String redisKey = getRedisKey(key, type);
+        Long result;
+        switch (type) {
+            case SLIDING_WINDOW:
+                result = redisTemplate.execute(SLIDING_WINDOW_SCRIPT, Collections.singletonList(redisKey),
+                        String.valueOf(max), String.valueOf(permits), String.valueOf(windowMillis), UUID.randomUUID().toString());
+                break;
+            case TOKEN_BUCKET:
+                result = redisTemplate.execute(TOKEN_BUCKET_SCRIPT, Collections.singletonList(redisKey),
+                        String.valueOf(max), String.valueOf(permits), String.valueOf(windowMillis));
+                break;
+            default:
+                result = redisTemplate.execute(FIXED_WINDOW_SCRIPT, Collections.singletonList(redisKey),
+                        String.valueOf(max), String.valueOf(permits), String.valueOf(windowMillis));
+        }
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 获取许可后执行方法，超出限制时抛出 {@link RateLimitException}
+     *
+     * @param key      限流key
+     * @param type     限流算法
+     * @param max      窗口内允许的最大请求数（令牌桶为桶容量）
+     * @param window   窗口时长（令牌桶为补满整桶的时长）
+     * @param permits  本次消耗的许可数
+     * @param supplier 获取许可后的回调
+     * @return 返回的数据
+     */
+    public <T> T execute(String key, RateLimitType type, long max, Duration window, long permits, CheckedSupplier<T> supplier) {
+        if (!tryAcquire(key, type, max, window, permits)) {
+            throw new RateLimitException(key);
+        }
+        try {
+            return supplier.get();
+        } catch (Throwable e) {
+            throw Exceptions.unchecked(e);
+        }
+    }
+
+    /**
+     * 获取 1 个许可后执行方法，超出限制时抛出 {@link RateLimitException}
+     *
+     * @param key      限流key
+     * @param type     限流算法
+     * @param max      窗口内允许的最大请求数（令牌桶为桶容量）
+     * @param window   窗口时长（令牌桶为补满整桶的时长）
+     * @param supplier 获取许可后的回调
+     * @return 返回的数据
+     */
+    public <T> T execute(String key, RateLimitType type, long max, Duration window, CheckedSupplier<T> supplier) {
+        return execute(key, type, max, window, 1L, supplier);
+    }
+
+    /**
+     * 不同算法使用的数据结构不同，key 中带上算法名避免 WRONGTYPE
+     */
+    private static String getRedisKey(String key, RateLimitType type) {
+        return KEY_PREFIX + type.name().toLowerCase() + ":" + key;
+    }
+}
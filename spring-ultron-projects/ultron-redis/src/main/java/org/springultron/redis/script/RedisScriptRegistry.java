@@ -0,0 +1,353 @@
+package org.springultron.redis.script;
+
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.data.redis.connection.ReactiveScriptingCommands;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+import org.springultron.core.exception.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lua 脚本注册中心
+ * <p>
+ * 脚本按名称注册，注册时计算并缓存 SHA1，执行时只发送 EVALSHA；
+ * 服务端返回 NOSCRIPT（重启、故障转移或 SCRIPT FLUSH 后）时执行一次 SCRIPT LOAD 再重试，不会每次发送完整脚本。
+ * </p>
+ * <p>
+ * key 和参数均按字符串以 UTF-8 编码传给脚本，结果按 resultType 转换：
+ * Long/Integer 对应脚本返回的整数，Boolean 对应 true/false，List 对应数组（元素为 String 或 Long），
+ * Void 对应状态回复，其他类型按字符串回复读取后通过 {@link ConversionService} 转换（如 Double、BigDecimal，Lua 中需 tostring 返回）。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/25 上午10:30
+ */
+public class RedisScriptRegistry {
+    private static final String SCRIPT_SUFFIX = ".lua";
+    private static final ConversionService CONVERSION_SERVICE = DefaultConversionService.getSharedInstance();
+
+    private final Map<String, RedisScript<Object>> scripts = new ConcurrentHashMap<>();
+
+    public RedisScriptRegistry() {
+    }
+
+    /**
+     * 从资源路径加载脚本
+     *
+     * @param locations 资源路径，如 classpath*:redis/scripts/*.lua
+     */
+    public RedisScriptRegistry(Collection<String> locations) {
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        for (String location : locations) {
+            try {
+                for (Resource resource : resolver.getResources(location)) {
+                    if (resource.isReadable()) {
+                        register(resource);
+                    }
+                }
+            } catch (IOException e) {
+                throw Exceptions.unchecked(e);
+            }
+        }
+    }
+
+    /**
+     * 注册脚本
+     *
+     * @param name   脚本名称
+     * @param script 脚本内容
+     * @return SHA1
+     */
+    public String register(String name, String script) {
+        Assert.hasText(name, "script name must not be empty");
+        RedisScript<Object> redisScript = RedisScript.of(script);
+        scripts.put(name, redisScript);
+        return redisScript.getSha1();
+    }
+
+    /**
+     * 注册脚本资源，脚本名称为去掉 .lua 后缀的文件名
+     *
+     * @param resource 脚本资源
+     * @return SHA1
+     */
+    public String register(Resource resource) {
+        String filename = resource.getFilename();
+        Assert.hasText(filename, "script resource must have a filename");
+        String name = filename.endsWith(SCRIPT_SUFFIX) ? filename.substring(0, filename.length() - SCRIPT_SUFFIX.length()) : filename;
+        try (InputStream inputStream = resource.getInputStream()) {
+            return register(name, StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw Exceptions.unchecked(e);
+        }
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(scripts.keySet());
+    }
+
+    /**
+     * 获取脚本的 SHA1
+     *
+     * @param name 脚本名称
+     * @return SHA1
+     */
+    public String getSha1(String name) {
+        return getScript(name).getSha1();
+    }
+
+    /**
+     * 获取脚本
+     *
+     * @param name 脚本名称
+     * @return RedisScript
+     */
+    public RedisScript<Object> getScript(String name) {
+        RedisScript<Object> script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("redis script not registered: " + name);
+        }
+        return script;
+    }
+
+    /**
+     * 执行脚本
+     *
+     * @param redisOperations RedisTemplate
+     * @param name            脚本名称
+     * @param resultType      结果类型
+     * @param keys            KEYS
+     * @param args            ARGV
+     * @param <T>             结果泛型
+     * @return 脚本结果
+     */
+    @Nullable
+    public <T> T execute(RedisOperations<String, ?> redisOperations, String name, Class<T> resultType, List<String> keys, Object... args) {
+        RedisScript<Object> script = getScript(name);
+        ReturnType returnType = returnType(resultType);
+        byte[][] keysAndArgs = keysAndArgs(keys, args);
+        Object result = redisOperations.execute((RedisCallback<Object>) connection -> {
+            try {
+                return connection.evalSha(script.getSha1(), returnType, keys.size(), keysAndArgs);
+            } catch (RuntimeException e) {
+                if (!isNoScript(e)) {
+                    throw e;
+                }
+                load(connection, script);
+                return connection.evalSha(script.getSha1(), returnType, keys.size(), keysAndArgs);
+            }
+        });
+        return convert(result, resultType);
+    }
+
+    /**
+     * 在一个 pipeline 中对多组 key 执行同一脚本，结果与 keySets 顺序一致
+     *
+     * @param redisOperations RedisTemplate
+     * @param name            脚本名称
+     * @param resultType      结果类型
+     * @param keySets         每次执行的 KEYS
+     * @param args            每次执行共用的 ARGV
+     * @param <T>             结果泛型
+     * @return 脚本结果
+     */
+    public <T> List<T> executeBatch(RedisOperations<String, ?> redisOperations, String name, Class<T> resultType, List<List<String>> keySets, Object... args) {
+        if (keySets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        RedisScript<Object> script = getScript(name);
+        ReturnType returnType = returnType(resultType);
+        RedisCallback<Object> callback = connection -> {
+            for (List<String> keys : keySets) {
+                connection.evalSha(script.getSha1(), returnType, keys.size(), keysAndArgs(keys, args));
+            }
+            return null;
+        };
+        List<Object> results;
+        try {
+            results = redisOperations.executePipelined(callback, RedisSerializer.byteArray());
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            // 脚本缓存丢失时整个 pipeline 的 EVALSHA 均未执行，加载后重试一次
+            redisOperations.execute((RedisCallback<Object>) connection -> load(connection, script));
+            results = redisOperations.executePipelined(callback, RedisSerializer.byteArray());
+        }
+        List<T> converted = new ArrayList<>(results.size());
+        for (Object result : results) {
+            converted.add(convert(result, resultType));
+        }
+        return converted;
+    }
+
+    /**
+     * 反应式执行脚本
+     *
+     * @param redisOperations ReactiveRedisTemplate
+     * @param name            脚本名称
+     * @param resultType      结果类型
+     * @param keys            KEYS
+     * @param args            ARGV
+     * @param <T>             结果泛型
+     * @return 脚本结果
+     */
+    public <T> Mono<T> execute(ReactiveRedisOperations<String, ?> redisOperations, String name, Class<T> resultType, List<String> keys, Object... args) {
+        RedisScript<Object> script = getScript(name);
+        ReturnType returnType = returnType(resultType);
+        return redisOperations.execute(connection -> evalSha(connection.scriptingCommands(), script, returnType, keys, args))
+                .next()
+                .map(result -> convert(result, resultType));
+    }
+
+    /**
+     * 反应式对多组 key 执行同一脚本，命令在同一连接上连续发送（由 Lettuce 自动 pipeline）
+     *
+     * @param redisOperations ReactiveRedisTemplate
+     * @param name            脚本名称
+     * @param resultType      结果类型
+     * @param keySets         每次执行的 KEYS
+     * @param args            每次执行共用的 ARGV
+     * @param <T>             结果泛型
+     * @return 脚本结果，与 keySets 顺序一致，脚本返回 nil 时对应元素为null
+     */
+    public <T> Mono<List<T>> executeBatch(ReactiveRedisOperations<String, ?> redisOperations, String name, Class<T> resultType, List<List<String>> keySets, Object... args) {
+        RedisScript<Object> script = getScript(name);
+        ReturnType returnType = returnType(resultType);
+        return redisOperations.execute(connection -> Flux.fromIterable(keySets)
+                .flatMapSequential(keys -> evalSha(connection.scriptingCommands(), script, returnType, keys, args)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())))
+                .collectList()
+                .map(results -> {
+                    List<T> converted = new ArrayList<>(results.size());
+                    for (Optional<Object> result : results) {
+                        converted.add(convert(result.orElse(null), resultType));
+                    }
+                    return converted;
+                });
+    }
+
+    private static Mono<Object> evalSha(ReactiveScriptingCommands commands, RedisScript<Object> script, ReturnType returnType, List<String> keys, Object[] args) {
+        Mono<Object> evalSha = Mono.defer(() -> {
+            Flux<Object> result = commands.evalSha(script.getSha1(), returnType, keys.size(), buffers(keysAndArgs(keys, args)));
+            // 数组回复会被拆分为多个元素，需重新合并为 List
+            return returnType == ReturnType.MULTI ? result.collectList().map(Object.class::cast) : result.next();
+        });
+        return evalSha.onErrorResume(RedisScriptRegistry::isNoScript,
+                e -> commands.scriptLoad(ByteBuffer.wrap(script.getScriptAsString().getBytes(StandardCharsets.UTF_8))).then(evalSha));
+    }
+
+    private static String load(RedisConnection connection, RedisScript<Object> script) {
+        return connection.scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static boolean isNoScript(Throwable e) {
+        Throwable current = e;
+        while (current != null) {
+            String message = current.getMessage();
+            if (message != null && message.contains("NOSCRIPT")) {
+                return true;
+            }
+            current = current.getCause() == current ? null : current.getCause();
+        }
+        return false;
+    }
+
+    static ReturnType returnType(Class<?> resultType) {
+        if (resultType == Void.class || resultType == void.class) {
+            return ReturnType.STATUS;
+        }
+        if (resultType == Boolean.class) {
+            return ReturnType.BOOLEAN;
+        }
+        if (resultType == Long.class || resultType == Integer.class || resultType == Short.class) {
+            return ReturnType.INTEGER;
+        }
+        if (Collection.class.isAssignableFrom(resultType)) {
+            return ReturnType.MULTI;
+        }
+        return ReturnType.VALUE;
+    }
+
+    private static byte[][] keysAndArgs(List<String> keys, Object[] args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        int i = 0;
+        for (String key : keys) {
+            keysAndArgs[i++] = key.getBytes(StandardCharsets.UTF_8);
+        }
+        for (Object arg : args) {
+            keysAndArgs[i++] = arg instanceof byte[] ? (byte[]) arg : String.valueOf(arg).getBytes(StandardCharsets.UTF_8);
+        }
+        return keysAndArgs;
+    }
+
+    private static ByteBuffer[] buffers(byte[][] keysAndArgs) {
+        ByteBuffer[] buffers = new ByteBuffer[keysAndArgs.length];
+        for (int i = 0; i < keysAndArgs.length; i++) {
+            buffers[i] = ByteBuffer.wrap(keysAndArgs[i]);
+        }
+        return buffers;
+    }
+
+    /**
+     * 转换脚本结果，二进制回复按 UTF-8 解码为字符串
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static <T> T convert(@Nullable Object result, Class<T> resultType) {
+        Object value = decode(result);
+        if (value == null || resultType == Void.class) {
+            return null;
+        }
+        if (resultType.isInstance(value)) {
+            return (T) value;
+        }
+        return CONVERSION_SERVICE.convert(value, resultType);
+    }
+
+    @Nullable
+    private static Object decode(@Nullable Object result) {
+        if (result instanceof byte[]) {
+            return new String((byte[]) result, StandardCharsets.UTF_8);
+        }
+        if (result instanceof ByteBuffer) {
+            return StandardCharsets.UTF_8.decode(((ByteBuffer) result).duplicate()).toString();
+        }
+        if (result instanceof List) {
+            List<?> list = (List<?>) result;
+            List<Object> decoded = new ArrayList<>(list.size());
+            for (Object element : list) {
+                decoded.add(decode(element));
+            }
+            return decoded;
+        }
+        return result;
+    }
+}
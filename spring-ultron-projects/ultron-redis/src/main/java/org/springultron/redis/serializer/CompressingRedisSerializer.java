@@ -0,0 +1,141 @@
+package org.springultron.redis.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 透明压缩的 Redis 序列化包装器
+ * <p>
+ * 序列化后大于阈值的值使用 Deflate 压缩，并写入标记头：0x00 'U' 'Z' + 原始长度(4字节) + 压缩数据；
+ * 反序列化时根据标记头判断是否需要解压，未压缩的旧数据（JSON、JDK序列化均不会以 0x00 开头）可以照常读取
+ * </p>
+ * 注意：压缩后的值只能由同样配置了该包装器的服务读取
+ *
+ * @author brucewuu
+ * @date 2021/5/12 上午10:05
+ */
+public class CompressingRedisSerializer<T> implements RedisSerializer<T> {
+    /**
+     * 压缩数据标记头
+     */
+    private static final byte[] MAGIC = {0x00, 'U', 'Z'};
+    private static final int HEADER_LENGTH = MAGIC.length + 4;
+
+    private final RedisSerializer<T> delegate;
+    /**
+     * 压缩阈值（字节），序列化后大于该值才压缩
+     */
+    private final int threshold;
+    /**
+     * 压缩级别，0-9
+     */
+    private final int level;
+
+    public CompressingRedisSerializer(RedisSerializer<T> delegate, int threshold) {
+        this(delegate, threshold, Deflater.BEST_SPEED);
+    }
+
+    public CompressingRedisSerializer(RedisSerializer<T> delegate, int threshold, int level) {
+        Assert.notNull(delegate, "delegate RedisSerializer must not be null");
+        Assert.isTrue(threshold >= 0, "threshold must not be negative");
+        Assert.isTrue(level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION, "level must be between 0 and 9");
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    @Override
+    public byte[] serialize(@Nullable T value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes == null || bytes.length <= threshold) {
+            return bytes;
+        }
+        return compress(bytes);
+    }
+
+    @Override
+    public T deserialize(@Nullable byte[] bytes) throws SerializationException {
+        if (isCompressed(bytes)) {
+            return delegate.deserialize(decompress(bytes));
+        }
+        return delegate.deserialize(bytes);
+    }
+
+    /**
+     * 判断是否为压缩数据
+     *
+     * @param bytes 数据
+     * @return 是否压缩
+     */
+    public static boolean isCompressed(@Nullable byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] compress(byte[] bytes) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_LENGTH + bytes.length / 2);
+            out.write(MAGIC, 0, MAGIC.length);
+            out.write(bytes.length >>> 24);
+            out.write(bytes.length >>> 16);
+            out.write(bytes.length >>> 8);
+            out.write(bytes.length);
+            byte[] buffer = new byte[Math.min(bytes.length, 8192)];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            byte[] compressed = out.toByteArray();
+            // 压缩后反而更大时保留原始数据
+            return compressed.length < bytes.length ? compressed : bytes;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] bytes) {
+        int length = ((bytes[3] & 0xFF) << 24) | ((bytes[4] & 0xFF) << 16) | ((bytes[5] & 0xFF) << 8) | (bytes[6] & 0xFF);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                int count = inflater.inflate(result, offset, length - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != length) {
+                throw new SerializationException("Cannot decompress redis value: expected " + length + " bytes but got " + offset);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new SerializationException("Cannot decompress redis value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public RedisSerializer<T> getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,69 @@
+package org.springultron.redis.stream;
+
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+
+/**
+ * Redis Stream 消息发送客户端
+ * <p>
+ * 消息体保存在 {@link #PAYLOAD} 字段中，使用 RedisTemplate 的 hash value 序列化方式，
+ * 与 {@link RedisStreamListenerContainer} 配合使用
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/18 上午10:15
+ */
+public class RedisStreamClient {
+    /**
+     * 消息体字段名
+     */
+    public static final String PAYLOAD = "payload";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public RedisStreamClient(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 发送消息（XADD）
+     *
+     * @param stream  Stream key
+     * @param message 消息体
+     * @return 消息id
+     */
+    public RecordId publish(String stream, Object message) {
+        return redisTemplate.opsForStream().add(createRecord(stream, message));
+    }
+
+    /**
+     * 发送消息并限制 Stream 最大长度（XADD MAXLEN），一次网络往返
+     *
+     * @param stream  Stream key
+     * @param message 消息体
+     * @param maxLen  Stream 最大长度
+     * @return 消息id
+     */
+    public RecordId publish(String stream, Object message, long maxLen) {
+        Assert.isTrue(maxLen > 0, "maxLen must be greater than 0");
+        @SuppressWarnings("unchecked")
+        final MapRecord<byte[], byte[], byte[]> record = createRecord(stream, message).serialize((RedisSerializer<String>) redisTemplate.getKeySerializer(),
+                (RedisSerializer<String>) redisTemplate.getHashKeySerializer(), (RedisSerializer<Object>) redisTemplate.getHashValueSerializer());
+        return redisTemplate.execute((RedisCallback<RecordId>) connection -> connection.streamCommands()
+                .xAdd(record, RedisStreamCommands.XAddOptions.maxlen(maxLen)));
+    }
+
+    private static MapRecord<String, String, Object> createRecord(String stream, Object message) {
+        Assert.hasText(stream, "stream must have length; it must not be null or empty");
+        Assert.notNull(message, "message must not be null");
+        return StreamRecords.newRecord().in(stream).ofMap(Collections.singletonMap(PAYLOAD, message));
+    }
+}
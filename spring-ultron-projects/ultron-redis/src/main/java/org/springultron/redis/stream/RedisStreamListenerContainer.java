@@ -0,0 +1,332 @@
+package org.springultron.redis.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springultron.core.utils.StringUtils;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Redis Stream 消费组监听容器
+ * <p>
+ * 1. 每个订阅一个拉取线程，XREADGROUP 按 batchSize 批量读取，消息交给处理线程池并行处理，整批处理完后一次 XACK 确认成功的消息
+ * 2. 定时 XPENDING 检查空闲超过 claimMinIdle 的消息（宕机消费者遗留或处理失败），XCLAIM 认领后重新处理；
+ * 投递次数超过 maxDeliveries 的消息记录错误日志并 ACK 丢弃
+ * 3. 消费组不存在时自动创建（XGROUP CREATE ... MKSTREAM），从新消息开始消费
+ * </p>
+ * 与 pub/sub 不同，节点宕机期间的消息保留在 Stream 中，恢复后继续消费
+ *
+ * @author brucewuu
+ * @date 2021/5/18 上午10:40
+ */
+public class RedisStreamListenerContainer implements SmartLifecycle, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(RedisStreamListenerContainer.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final UltronRedisProperties.Stream properties;
+    private final String consumerName;
+    private final List<Subscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+    private final Object monitor = new Object();
+    private volatile boolean running = false;
+    @Nullable
+    private ExecutorService pollExecutor;
+    @Nullable
+    private ThreadPoolExecutor handlerExecutor;
+    @Nullable
+    private ScheduledExecutorService claimScheduler;
+
+    public RedisStreamListenerContainer(RedisTemplate<String, Object> redisTemplate, UltronRedisProperties.Stream properties) {
+        Assert.isTrue(properties.getBatchSize() > 0, "batchSize must be greater than 0");
+        Assert.isTrue(properties.getConcurrency() > 0, "concurrency must be greater than 0");
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.consumerName = StringUtils.isBlank(properties.getConsumerName()) ? UUID.randomUUID().toString() : properties.getConsumerName();
+    }
+
+    /**
+     * 订阅 Stream，容器已启动时立即开始消费
+     *
+     * @param stream  Stream key
+     * @param group   消费组
+     * @param handler 消息处理器
+     * @param <T>     消息体泛型
+     */
+    public <T> void register(String stream, String group, StreamMessageHandler<T> handler) {
+        Assert.hasText(stream, "stream must have length; it must not be null or empty");
+        Assert.hasText(group, "group must have length; it must not be null or empty");
+        Assert.notNull(handler, "handler must not be null");
+        Subscription<T> subscription = new Subscription<>(stream, group, handler);
+        synchronized (monitor) {
+            subscriptions.add(subscription);
+            if (running) {
+                startSubscription(subscription);
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        synchronized (monitor) {
+            if (running) {
+                return;
+            }
+            running = true;
+            pollExecutor = Executors.newCachedThreadPool(new CustomizableThreadFactory("ultron-stream-poll-"));
+            int concurrency = properties.getConcurrency();
+            // 有界队列 + CallerRunsPolicy：处理线程满载时由拉取线程处理，形成背压
+            handlerExecutor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(properties.getBatchSize()), new CustomizableThreadFactory("ultron-stream-handler-"),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            claimScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ultron-stream-claim-"));
+            subscriptions.forEach(this::startSubscription);
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (monitor) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            shutdown(claimScheduler);
+            shutdown(pollExecutor);
+            shutdown(handlerExecutor);
+            claimScheduler = null;
+            pollExecutor = null;
+            handlerExecutor = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+    }
+
+    /**
+     * 认领并处理空闲超时的 pending 消息，由定时任务调用，也可手动触发
+     *
+     * @return 认领的消息数量
+     */
+    public int claimPending() {
+        int claimed = 0;
+        for (Subscription<?> subscription : subscriptions) {
+            try {
+                claimed += claimPending(subscription);
+            } catch (Exception e) {
+                log.warn("claim pending messages failed, stream: {}, group: {}", subscription.stream, subscription.group, e);
+            }
+        }
+        return claimed;
+    }
+
+    private void startSubscription(Subscription<?> subscription) {
+        createGroupIfAbsent(subscription);
+        //noinspection ConstantConditions
+        pollExecutor.execute(() -> poll(subscription));
+        long interval = properties.getClaimInterval().toMillis();
+        //noinspection ConstantConditions
+        claimScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                claimPending(subscription);
+            } catch (Exception e) {
+                log.warn("claim pending messages failed, stream: {}, group: {}", subscription.stream, subscription.group, e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void createGroupIfAbsent(Subscription<?> subscription) {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(rawKey(subscription.stream), subscription.group, ReadOffset.latest(), true));
+        } catch (RedisSystemException e) {
+            // BUSYGROUP Consumer Group name already exists
+            log.debug("--stream group already exists, stream: {}, group: {}", subscription.stream, subscription.group);
+        }
+    }
+
+    private void poll(Subscription<?> subscription) {
+        final Consumer consumer = Consumer.from(subscription.group, consumerName);
+        final StreamReadOptions readOptions = StreamReadOptions.empty().count(properties.getBatchSize()).block(properties.getPollTimeout());
+        final StreamOffset<String> offset = StreamOffset.create(subscription.stream, ReadOffset.lastConsumed());
+        while (running) {
+            try {
+                //noinspection unchecked
+                List<MapRecord<String, Object, Object>> records = redisTemplate.<Object, Object>opsForStream().read(consumer, readOptions, offset);
+                if (!CollectionUtils.isEmpty(records)) {
+                    dispatch(subscription, records);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("read stream failed, stream: {}, group: {}", subscription.stream, subscription.group, e);
+                sleep(properties.getPollTimeout());
+                // Stream 或消费组可能被删除（NOGROUP），重新创建
+                try {
+                    createGroupIfAbsent(subscription);
+                } catch (Exception ex) {
+                    log.debug("--recreate stream group failed, stream: {}, group: {}", subscription.stream, subscription.group);
+                }
+            }
+        }
+    }
+
+    /**
+     * 并行处理一批消息，处理完后一次 XACK 确认成功的消息
+     *
+     * @return 处理成功的消息数量
+     */
+    private int dispatch(Subscription<?> subscription, List<MapRecord<String, Object, Object>> records) {
+        final ThreadPoolExecutor executor = handlerExecutor;
+        if (executor == null) {
+            return 0;
+        }
+        List<CompletableFuture<RecordId>> futures = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            futures.add(CompletableFuture.supplyAsync(() -> subscription.handle(record) ? record.getId() : null, executor));
+        }
+        RecordId[] acked = futures.stream()
+                .map(CompletableFuture::join)
+                .filter(id -> id != null)
+                .toArray(RecordId[]::new);
+        if (acked.length > 0) {
+            redisTemplate.opsForStream().acknowledge(subscription.stream, subscription.group, acked);
+        }
+        return acked.length;
+    }
+
+    private int claimPending(Subscription<?> subscription) {
+        final Duration minIdle = properties.getClaimMinIdle();
+        PendingMessages pendingMessages = redisTemplate.opsForStream().pending(subscription.stream, subscription.group, Range.unbounded(), properties.getBatchSize());
+        if (pendingMessages == null || pendingMessages.isEmpty()) {
+            return 0;
+        }
+        List<RecordId> claimable = new ArrayList<>();
+        List<RecordId> dead = new ArrayList<>();
+        for (PendingMessage pendingMessage : pendingMessages) {
+            if (pendingMessage.getElapsedTimeSinceLastDelivery().compareTo(minIdle) < 0) {
+                continue;
+            }
+            if (pendingMessage.getTotalDeliveryCount() >= properties.getMaxDeliveries()) {
+                dead.add(pendingMessage.getId());
+            } else {
+                claimable.add(pendingMessage.getId());
+            }
+        }
+        if (!dead.isEmpty()) {
+            log.error("stream messages exceed max deliveries {} and are dropped, stream: {}, group: {}, ids: {}",
+                    properties.getMaxDeliveries(), subscription.stream, subscription.group, dead);
+            redisTemplate.opsForStream().acknowledge(subscription.stream, subscription.group, dead.toArray(new RecordId[0]));
+        }
+        if (claimable.isEmpty()) {
+            return 0;
+        }
+        final byte[] rawKey = rawKey(subscription.stream);
+        final RecordId[] ids = claimable.toArray(new RecordId[0]);
+        List<ByteRecord> claimed = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection -> connection.streamCommands()
+                .xClaim(rawKey, subscription.group, consumerName, minIdle, ids));
+        if (CollectionUtils.isEmpty(claimed)) {
+            return 0;
+        }
+        log.debug("--claimed {} pending messages, stream: {}, group: {}", claimed.size(), subscription.stream, subscription.group);
+        return dispatch(subscription, claimed.stream().map(this::deserialize).collect(Collectors.toList()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MapRecord<String, Object, Object> deserialize(ByteRecord record) {
+        return record.deserialize((RedisSerializer<String>) redisTemplate.getKeySerializer(),
+                (RedisSerializer<Object>) redisTemplate.getHashKeySerializer(), (RedisSerializer<Object>) redisTemplate.getHashValueSerializer());
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String stream) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(stream);
+    }
+
+    private static void shutdown(@Nullable ExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getConsumerName() {
+        return consumerName;
+    }
+
+    private static final class Subscription<T> {
+        private final String stream;
+        private final String group;
+        private final StreamMessageHandler<T> handler;
+
+        private Subscription(String stream, String group, StreamMessageHandler<T> handler) {
+            this.stream = stream;
+            this.group = group;
+            this.handler = handler;
+        }
+
+        /**
+         * 处理单条消息
+         *
+         * @return 是否处理成功
+         */
+        @SuppressWarnings("unchecked")
+        private boolean handle(MapRecord<String, Object, Object> record) {
+            try {
+                handler.handleMessage((T) record.getValue().get(RedisStreamClient.PAYLOAD), stream);
+                return true;
+            } catch (Exception e) {
+                log.warn("handle stream message failed, stream: {}, group: {}, id: {}", stream, group, record.getId(), e);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.springultron.redis.stream;
+
+/**
+ * Redis Stream 消息处理器
+ * <p>
+ * 正常返回后消息会被批量 ACK；抛出异常时消息保留在 pending 列表中，
+ * 超过空闲时间后由存活的消费者认领重新投递，投递次数超过上限后记录错误日志并丢弃
+ * </p>
+ * 同一条消息可能被投递多次（at-least-once），处理逻辑需保证幂等
+ *
+ * @author brucewuu
+ * @date 2021/5/18 上午10:05
+ */
+@FunctionalInterface
+public interface StreamMessageHandler<T> {
+    /**
+     * handle message
+     *
+     * @param message 消息体
+     * @param stream  Stream key
+     */
+    void handleMessage(T message, String stream);
+}
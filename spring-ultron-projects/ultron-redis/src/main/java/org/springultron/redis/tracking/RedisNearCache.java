@@ -0,0 +1,350 @@
+package org.springultron.redis.tracking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.lettuce.core.resource.ClientResources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 基于 Redis 6 客户端缓存（CLIENT TRACKING）的近端缓存
+ * <p>
+ * 使用一条独立的 RESP3 连接以 BCAST 模式开启 key 前缀追踪，匹配前缀的 key 被修改、删除或过期时由 Redis 主动推送失效消息，
+ * 本地副本不设置 TTL，只在收到失效消息或本节点写入时移除，超出 maximumSize 时由 Caffeine 淘汰访问频率低的key。
+ * </p>
+ * <p>
+ * 连接断开时立即清空本地副本并停止使用近端缓存，读取直接回退到 Redis；
+ * 重连成功后重新开启追踪（追踪状态随连接丢失），再清空一次本地副本后才恢复使用，保证不会读到断线期间被修改的旧值。
+ * 仅支持 Lettuce 单机模式，集群、哨兵或 Redis 6 以下版本时近端缓存不生效，所有读取直接访问 Redis。
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/20 上午11:05
+ */
+public class RedisNearCache implements InitializingBean, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(RedisNearCache.class);
+
+    private final RedisConnectionFactory connectionFactory;
+    private final List<String> prefixes;
+    /**
+     * 本地副本，value 为 {@link CachedValue} 或正在加载的占位对象
+     */
+    private final Cache<String, Object> localCache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private volatile boolean available = false;
+    private volatile boolean closed = false;
+    @Nullable
+    private io.lettuce.core.RedisClient trackingClient;
+    @Nullable
+    private StatefulRedisConnection<String, String> trackingConnection;
+
+    public RedisNearCache(RedisConnectionFactory connectionFactory, UltronRedisProperties.NearCache properties) {
+        this.connectionFactory = connectionFactory;
+        this.prefixes = new ArrayList<>(properties.getPrefixes());
+        this.localCache = Caffeine.newBuilder().maximumSize(properties.getMaximumSize()).build();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (prefixes.isEmpty()) {
+            log.warn("near cache is disabled because no key prefixes are configured");
+            return;
+        }
+        if (!(connectionFactory instanceof LettuceConnectionFactory)) {
+            log.warn("near cache is disabled because it requires lettuce, connection factory: {}", connectionFactory.getClass().getName());
+            return;
+        }
+        LettuceConnectionFactory factory = (LettuceConnectionFactory) connectionFactory;
+        if (factory.isClusterAware() || factory.isRedisSentinelAware()) {
+            log.warn("near cache is disabled because only standalone redis is supported");
+            return;
+        }
+        try {
+            trackingClient = createClient(factory);
+            trackingClient.addListener(new TrackingConnectionListener());
+            trackingConnection = trackingClient.connect(StringCodec.UTF8);
+            trackingConnection.addListener(this::onPushMessage);
+            trackingConnection.sync().clientTracking(trackingArgs());
+            enable();
+        } catch (Exception e) {
+            // Redis 6 以下不支持 RESP3 和 CLIENT TRACKING，此时回退为直接访问 Redis
+            log.warn("near cache is disabled because client tracking can not be enabled", e);
+            shutdown();
+        }
+    }
+
+    /**
+     * 读取近端缓存，未命中时调用 loader 从 Redis 读取并缓存在本地
+     * <p>
+     * key 不匹配追踪前缀或近端缓存不可用时直接调用 loader。
+     * 加载前先写入占位对象，加载期间收到失效消息会移除占位对象，此时本次读取结果不会写入本地，避免缓存旧值。
+     * key 不存在时同样缓存 null，key 被创建时 Redis 也会推送失效消息。
+     * </p>
+     *
+     * @param key    缓存key
+     * @param loader Redis 读取逻辑
+     * @param <V>    值类型
+     * @return 缓存值
+     */
+    public <V> V get(String key, Supplier<V> loader) {
+        if (!available || !matches(key)) {
+            return loader.get();
+        }
+        Object cached = localCache.getIfPresent(key);
+        if (cached instanceof CachedValue) {
+            hits.increment();
+            //noinspection unchecked
+            return (V) ((CachedValue) cached).value;
+        }
+        misses.increment();
+        Object placeholder = null;
+        if (cached == null) {
+            Object loading = new Object();
+            if (localCache.asMap().putIfAbsent(key, loading) == null) {
+                placeholder = loading;
+            }
+        }
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException e) {
+            if (placeholder != null) {
+                localCache.asMap().remove(key, placeholder);
+            }
+            throw e;
+        }
+        if (placeholder != null) {
+            localCache.asMap().replace(key, placeholder, new CachedValue(value));
+        }
+        return value;
+    }
+
+    /**
+     * 移除本节点刚写入或删除的key的本地副本，写入 Redis 后调用，不必等待 Redis 推送的失效消息
+     * <p>
+     * 正在加载的占位对象同样被移除，加载结果不会写入本地
+     * </p>
+     *
+     * @param key 缓存key
+     */
+    public void evict(String key) {
+        if (matches(key)) {
+            localCache.invalidate(key);
+        }
+    }
+
+    /**
+     * key 是否匹配追踪前缀
+     *
+     * @param key 缓存key
+     * @return 是否匹配
+     */
+    public boolean matches(String key) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 近端缓存当前是否可用，追踪连接断开期间为 false
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * 本地缓存的key数量
+     */
+    public int size() {
+        localCache.cleanUp();
+        return (int) localCache.estimatedSize();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * 开始使用近端缓存，开启前清空本地副本
+     */
+    void enable() {
+        localCache.invalidateAll();
+        available = !closed;
+    }
+
+    /**
+     * 停止使用近端缓存并清空本地副本
+     */
+    void disable() {
+        available = false;
+        localCache.invalidateAll();
+    }
+
+    /**
+     * 处理失效消息
+     *
+     * @param keys 失效的key，为null时表示清空全部（如 FLUSHALL 或服务端追踪表溢出）
+     */
+    void invalidate(@Nullable Collection<String> keys) {
+        invalidations.increment();
+        if (keys == null) {
+            localCache.invalidateAll();
+            return;
+        }
+        localCache.invalidateAll(keys);
+    }
+
+    private void onPushMessage(PushMessage message) {
+        if (!"invalidate".equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        Object keys = content.size() > 1 ? content.get(1) : null;
+        if (keys instanceof Collection) {
+            List<String> invalidated = new ArrayList<>(((Collection<?>) keys).size());
+            for (Object key : (Collection<?>) keys) {
+                invalidated.add(String.valueOf(key));
+            }
+            invalidate(invalidated);
+        } else {
+            invalidate(null);
+        }
+    }
+
+    private TrackingArgs trackingArgs() {
+        return TrackingArgs.Builder.enabled().bcast().prefixes(prefixes.toArray(new String[0]));
+    }
+
+    private static io.lettuce.core.RedisClient createClient(LettuceConnectionFactory factory) {
+        RedisStandaloneConfiguration configuration = factory.getStandaloneConfiguration();
+        RedisURI redisUri = RedisURI.builder()
+                .withHost(configuration.getHostName())
+                .withPort(configuration.getPort())
+                .withDatabase(configuration.getDatabase())
+                .withSsl(factory.isUseSsl())
+                .withTimeout(Duration.ofMillis(factory.getTimeout()))
+                .build();
+        if (StringUtils.hasText(configuration.getUsername())) {
+            redisUri.setUsername(configuration.getUsername());
+        }
+        RedisPassword password = configuration.getPassword();
+        if (password.isPresent()) {
+            redisUri.setPassword(password.get());
+        }
+        if (StringUtils.hasText(factory.getClientName())) {
+            redisUri.setClientName(factory.getClientName());
+        }
+        ClientResources clientResources = factory.getClientResources();
+        io.lettuce.core.RedisClient client = clientResources == null
+                ? io.lettuce.core.RedisClient.create(redisUri)
+                : io.lettuce.core.RedisClient.create(clientResources, redisUri);
+        client.setOptions(ClientOptions.builder()
+                .protocolVersion(ProtocolVersion.RESP3)
+                .autoReconnect(true)
+                .build());
+        return client;
+    }
+
+    @Override
+    public void destroy() {
+        closed = true;
+        disable();
+        shutdown();
+    }
+
+    private void shutdown() {
+        if (trackingConnection != null) {
+            trackingConnection.closeAsync();
+            trackingConnection = null;
+        }
+        if (trackingClient != null) {
+            // 共享的 ClientResources 由连接工厂负责关闭
+            trackingClient.shutdownAsync(0, 2, TimeUnit.SECONDS);
+            trackingClient = null;
+        }
+    }
+
+    private class TrackingConnectionListener implements RedisConnectionStateListener {
+
+        @Override
+        public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+            StatefulRedisConnection<String, String> current = trackingConnection;
+            if (current == null || current != connection || closed) {
+                // 首次连接由 afterPropertiesSet 同步开启追踪
+                return;
+            }
+            current.async().clientTracking(trackingArgs()).whenComplete((result, e) -> {
+                if (e != null) {
+                    log.warn("re-enable client tracking failed, near cache stays disabled until next reconnect", e);
+                } else {
+                    log.info("client tracking re-enabled, near cache is available again");
+                    enable();
+                }
+            });
+        }
+
+        @Override
+        public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+            if (available) {
+                log.warn("client tracking connection lost, near cache is disabled and reads fall back to redis");
+            }
+            disable();
+        }
+
+        @Override
+        public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+            // 连接异常后 Lettuce 会断开并自动重连，由 onRedisDisconnected 处理
+        }
+    }
+
+    private static final class CachedValue {
+        @Nullable
+        private final Object value;
+
+        private CachedValue(@Nullable Object value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,993 @@
+package org.springultron.redis;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.DefaultTuple;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.ReactiveKeyCommands;
+import org.springframework.data.redis.connection.ReactiveRedisClusterConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.ReactiveStringCommands;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanCursor;
+import org.springframework.data.redis.core.ScanIteration;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.util.ByteUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 测试用的本地 Redis 替身：数据保存在内存中，并统计网络往返次数
+ * <p>
+ * 非 pipeline 模式下每条命令计一次往返；pipeline 模式下 closePipeline 计一次往返；
+ * 反应式连接转换为同一份数据上的阻塞命令执行，同样计入命令及往返次数
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/6 下午3:20
+ */
+public class InMemoryRedisConnectionFactory implements RedisConnectionFactory, ReactiveRedisConnectionFactory {
+    private static final Set<String> LIFECYCLE_METHODS = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "isPipelined", "isQueueing", "openPipeline", "closePipeline",
+            "getNativeConnection", "getSentinelConnection", "toString", "hashCode", "equals"));
+
+    private final Map<String, Object> store = new ConcurrentHashMap<>();
+    private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+    private final AtomicInteger commands = new AtomicInteger();
+    private final Map<String, AtomicInteger> commandCounts = new ConcurrentHashMap<>();
+    private final List<MessageListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, BiFunction<List<String>, List<byte[]>, Object>> scripts = new ConcurrentHashMap<>();
+    /**
+     * 服务端已缓存的脚本 SHA1，EVALSHA 未命中时返回 NOSCRIPT
+     */
+    private final Set<String> loadedScripts = ConcurrentHashMap.newKeySet();
+    private final Map<String, InMemoryStream> streams = new ConcurrentHashMap<>();
+    /**
+     * 服务端时钟，通过 {@link #advanceTime(Duration)} 推进
+     */
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+    public int getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    public int getCommands() {
+        return commands.get();
+    }
+
+    /**
+     * 获取某个命令（连接方法名，例如 xAck）的执行次数
+     */
+    public int getCommandCount(String name) {
+        AtomicInteger count = commandCounts.get(name);
+        return count == null ? 0 : count.get();
+    }
+
+    public void resetCounters() {
+        roundTrips.set(0);
+        commands.set(0);
+        commandCounts.clear();
+    }
+
+    /**
+     * 获取key的过期时间（毫秒），未设置时返回null
+     */
+    public Long getTtl(String key) {
+        return ttls.get(key);
+    }
+
+    /**
+     * 订阅所有频道，PUBLISH 时同步回调
+     */
+    public void subscribe(MessageListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 注册 Lua 脚本的 Java 实现，EVAL/EVALSHA 时按 SHA1 匹配执行，参数为 keys 和 args
+     */
+    public void registerScript(String script, BiFunction<List<String>, List<byte[]>, Object> function) {
+        scripts.put(sha1(script), function);
+        loadedScripts.add(sha1(script));
+    }
+
+    /**
+     * 注册 Lua 脚本，EVAL/EVALSHA 时由 {@link LuaScriptEvaluator} 解释执行真实脚本，redis.call 直接操作内存数据
+     */
+    public void registerLuaScript(String script) {
+        LuaScriptEvaluator evaluator = new LuaScriptEvaluator(script);
+        registerScript(script, (keys, args) -> evaluator.eval(keys, args, this::luaCall));
+    }
+
+    /**
+     * 服务端当前时间（毫秒），即脚本中 TIME 命令的返回值
+     */
+    public long currentTime() {
+        return clock.get();
+    }
+
+    /**
+     * 推进服务端时钟，剩余 ttl 不超过推进时长的key过期删除
+     */
+    public void advanceTime(Duration duration) {
+        long millis = duration.toMillis();
+        synchronized (store) {
+            clock.addAndGet(millis);
+            for (Map.Entry<String, Long> entry : new ArrayList<>(ttls.entrySet())) {
+                long remaining = entry.getValue() - millis;
+                if (remaining <= 0) {
+                    ttls.remove(entry.getKey());
+                    store.remove(entry.getKey());
+                } else {
+                    ttls.put(entry.getKey(), remaining);
+                }
+            }
+        }
+    }
+
+    /**
+     * 模拟 SCRIPT FLUSH 或 Redis 重启后脚本缓存丢失
+     */
+    public void flushScripts() {
+        loadedScripts.clear();
+    }
+
+    private static String sha1(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(script.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Map<String, Object> getStore() {
+        return store;
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RedisConnection.class}, new ConnectionHandler());
+    }
+
+    @Override
+    public ReactiveRedisConnection getReactiveConnection() {
+        final RedisConnection connection = getConnection();
+        final InvocationHandler commands = new ReactiveCommandsHandler(connection);
+        return (ReactiveRedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ReactiveRedisConnection.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "keyCommands":
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ReactiveKeyCommands.class}, commands);
+                case "stringCommands":
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ReactiveStringCommands.class}, commands);
+                case "close":
+                    connection.close();
+                    return null;
+                case "closeLater":
+                    return Mono.fromRunnable(connection::close);
+                case "toString":
+                    return "InMemoryReactiveRedisConnection";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Override
+    public ReactiveRedisClusterConnection getReactiveClusterConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return true;
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return null;
+    }
+
+    /**
+     * Lua 脚本中 redis.call 的实现，返回 Long、byte[]（bulk）、String（status）、List 或 null，调用方已持有 store 锁
+     */
+    @SuppressWarnings("unchecked")
+    private Object luaCall(List<String> command) {
+        final String name = command.get(0).toUpperCase(Locale.ROOT);
+        final String key = command.size() > 1 ? command.get(1) : null;
+        switch (name) {
+            case "TIME": {
+                long now = clock.get();
+                return Arrays.asList(String.valueOf(now / 1000L).getBytes(StandardCharsets.UTF_8),
+                        String.valueOf(now % 1000L * 1000L).getBytes(StandardCharsets.UTF_8));
+            }
+            case "GET":
+                return luaValue(key, byte[].class);
+            case "SET":
+                store.put(key, command.get(2).getBytes(StandardCharsets.UTF_8));
+                ttls.remove(key);
+                return "OK";
+            case "INCRBY":
+            case "INCR": {
+                byte[] old = luaValue(key, byte[].class);
+                long value = (old == null ? 0L : Long.parseLong(new String(old, StandardCharsets.UTF_8)))
+                        + ("INCR".equals(name) ? 1L : Long.parseLong(command.get(2)));
+                store.put(key, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                return value;
+            }
+            case "EXPIRE":
+            case "PEXPIRE": {
+                if (!store.containsKey(key)) {
+                    return 0L;
+                }
+                long ttl = Long.parseLong(command.get(2));
+                ttls.put(key, "EXPIRE".equals(name) ? ttl * 1000L : ttl);
+                return 1L;
+            }
+            case "PTTL":
+                return store.containsKey(key) ? ttls.getOrDefault(key, -1L) : -2L;
+            case "DEL": {
+                long count = 0L;
+                for (String k : command.subList(1, command.size())) {
+                    ttls.remove(k);
+                    if (store.remove(k) != null) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            case "HSET":
+            case "HMSET": {
+                Map<String, byte[]> hash = luaValue(key, Map.class);
+                if (hash == null) {
+                    hash = new ConcurrentHashMap<>();
+                    store.put(key, hash);
+                }
+                long added = 0L;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    if (hash.put(command.get(i), command.get(i + 1).getBytes(StandardCharsets.UTF_8)) == null) {
+                        added++;
+                    }
+                }
+                return "HMSET".equals(name) ? "OK" : added;
+            }
+            case "HMGET": {
+                Map<String, byte[]> hash = luaValue(key, Map.class);
+                List<Object> values = new ArrayList<>();
+                for (String field : command.subList(2, command.size())) {
+                    values.add(hash == null ? null : hash.get(field));
+                }
+                return values;
+            }
+            case "ZADD": {
+                NavigableMap<String, Double> zset = luaValue(key, NavigableMap.class);
+                if (zset == null) {
+                    zset = new ConcurrentSkipListMap<>();
+                    store.put(key, zset);
+                }
+                long added = 0L;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    if (zset.put(command.get(i + 1), Double.parseDouble(command.get(i))) == null) {
+                        added++;
+                    }
+                }
+                return added;
+            }
+            case "ZCARD": {
+                Map<String, Double> zset = luaValue(key, NavigableMap.class);
+                return zset == null ? 0L : (long) zset.size();
+            }
+            case "ZREMRANGEBYSCORE": {
+                Map<String, Double> zset = luaValue(key, NavigableMap.class);
+                if (zset == null) {
+                    return 0L;
+                }
+                String min = command.get(2);
+                String max = command.get(3);
+                long count = 0L;
+                for (Map.Entry<String, Double> entry : new ArrayList<>(zset.entrySet())) {
+                    if (aboveMin(entry.getValue(), min) && belowMax(entry.getValue(), max)) {
+                        zset.remove(entry.getKey());
+                        count++;
+                    }
+                }
+                if (zset.isEmpty()) {
+                    store.remove(key);
+                    ttls.remove(key);
+                }
+                return count;
+            }
+            default:
+                throw new UnsupportedOperationException("Unsupported script command: " + name);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T luaValue(String key, Class<?> type) {
+        Object value = store.get(key);
+        if (value != null && !type.isInstance(value)) {
+            throw new RedisSystemException("WRONGTYPE Operation against a key holding the wrong kind of value", null);
+        }
+        return (T) value;
+    }
+
+    private static boolean aboveMin(double score, String min) {
+        if ("-inf".equals(min)) {
+            return true;
+        }
+        return min.startsWith("(") ? score > Double.parseDouble(min.substring(1)) : score >= Double.parseDouble(min);
+    }
+
+    private static boolean belowMax(double score, String max) {
+        if ("+inf".equals(max) || "inf".equals(max)) {
+            return true;
+        }
+        return max.startsWith("(") ? score < Double.parseDouble(max.substring(1)) : score <= Double.parseDouble(max);
+    }
+
+    private static String str(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private List<Object> pipeline;
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            final String name = method.getName();
+            switch (name) {
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "isPipelined":
+                    return pipeline != null;
+                case "isQueueing":
+                    return false;
+                case "openPipeline":
+                    if (pipeline == null) {
+                        pipeline = new ArrayList<>();
+                    }
+                    return null;
+                case "closePipeline":
+                    List<Object> results = pipeline == null ? Collections.emptyList() : pipeline;
+                    pipeline = null;
+                    if (!results.isEmpty()) {
+                        roundTrips.incrementAndGet();
+                    }
+                    for (Object result : results) {
+                        if (result instanceof RuntimeException) {
+                            throw new RedisPipelineException((RuntimeException) result, results);
+                        }
+                    }
+                    return results;
+                case "streamCommands":
+                    return proxy;
+                case "toString":
+                    return "InMemoryRedisConnection";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    break;
+            }
+            if (LIFECYCLE_METHODS.contains(name)) {
+                return null;
+            }
+            commands.incrementAndGet();
+            commandCounts.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+            Object result;
+            try {
+                result = execute(name, args == null ? new Object[0] : args);
+            } catch (RuntimeException e) {
+                if (pipeline == null) {
+                    roundTrips.incrementAndGet();
+                    throw e;
+                }
+                result = e;
+            }
+            if (pipeline != null) {
+                pipeline.add(result);
+                return null;
+            }
+            roundTrips.incrementAndGet();
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object execute(String name, Object[] args) {
+            switch (name) {
+                case "get":
+                    return store.get(str((byte[]) args[0]));
+                case "mGet": {
+                    List<byte[]> values = new ArrayList<>();
+                    for (byte[] key : (byte[][]) args[0]) {
+                        values.add((byte[]) store.get(str(key)));
+                    }
+                    return values;
+                }
+                case "set": {
+                    String key = str((byte[]) args[0]);
+                    if (args.length > 3 && args[3] == RedisStringCommands.SetOption.SET_IF_ABSENT && store.containsKey(key)) {
+                        return false;
+                    }
+                    if (args.length > 3 && args[3] == RedisStringCommands.SetOption.SET_IF_PRESENT && !store.containsKey(key)) {
+                        return false;
+                    }
+                    store.put(key, args[1]);
+                    ttls.remove(key);
+                    if (args.length > 2 && args[2] instanceof Expiration && !((Expiration) args[2]).isPersistent()) {
+                        ttls.put(key, ((Expiration) args[2]).getExpirationTimeInMilliseconds());
+                    }
+                    return true;
+                }
+                case "setEx":
+                case "pSetEx": {
+                    String key = str((byte[]) args[0]);
+                    store.put(key, args[2]);
+                    ttls.put(key, "setEx".equals(name) ? (Long) args[1] * 1000L : (Long) args[1]);
+                    return true;
+                }
+                case "setNX": {
+                    String key = str((byte[]) args[0]);
+                    return store.putIfAbsent(key, args[1]) == null;
+                }
+                case "mSet":
+                    ((Map<byte[], byte[]>) args[0]).forEach((key, value) -> {
+                        store.put(str(key), value);
+                        ttls.remove(str(key));
+                    });
+                    return true;
+                case "incrBy":
+                case "incr": {
+                    String key = str((byte[]) args[0]);
+                    long delta = args.length > 1 ? (Long) args[1] : 1L;
+                    synchronized (store) {
+                        byte[] old = (byte[]) store.get(key);
+                        long value = (old == null ? 0L : Long.parseLong(new String(old, StandardCharsets.UTF_8))) + delta;
+                        store.put(key, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                        return value;
+                    }
+                }
+                case "hGet": {
+                    Map<String, byte[]> hash = (Map<String, byte[]>) store.get(str((byte[]) args[0]));
+                    return hash == null ? null : hash.get(str((byte[]) args[1]));
+                }
+                case "hGetAll": {
+                    Map<String, byte[]> hash = (Map<String, byte[]>) store.get(str((byte[]) args[0]));
+                    Map<byte[], byte[]> entries = new LinkedHashMap<>();
+                    if (hash != null) {
+                        hash.forEach((field, value) -> entries.put(bytes(field), value));
+                    }
+                    return entries;
+                }
+                case "hSet": {
+                    Map<String, byte[]> hash = (Map<String, byte[]>) store.computeIfAbsent(str((byte[]) args[0]), k -> new ConcurrentHashMap<>());
+                    return hash.put(str((byte[]) args[1]), (byte[]) args[2]) == null;
+                }
+                case "hMSet": {
+                    Map<String, byte[]> hash = (Map<String, byte[]>) store.computeIfAbsent(str((byte[]) args[0]), k -> new ConcurrentHashMap<>());
+                    ((Map<byte[], byte[]>) args[1]).forEach((field, value) -> hash.put(str(field), value));
+                    return null;
+                }
+                case "expire":
+                case "pExpire": {
+                    String key = str((byte[]) args[0]);
+                    if (!store.containsKey(key)) {
+                        return false;
+                    }
+                    ttls.put(key, "expire".equals(name) ? (Long) args[1] * 1000L : (Long) args[1]);
+                    return true;
+                }
+                case "pTtl": {
+                    String key = str((byte[]) args[0]);
+                    return store.containsKey(key) ? ttls.getOrDefault(key, -1L) : -2L;
+                }
+                case "exists":
+                    if (args[0] instanceof byte[][]) {
+                        return Arrays.stream((byte[][]) args[0]).filter(key -> store.containsKey(str(key))).count();
+                    }
+                    return store.containsKey(str((byte[]) args[0]));
+                case "del":
+                case "unlink": {
+                    long count = 0L;
+                    for (byte[] key : (byte[][]) args[0]) {
+                        ttls.remove(str(key));
+                        if (store.remove(str(key)) != null) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }
+                case "keys": {
+                    String regex = str((byte[]) args[0]).replace("*", ".*").replace("?", ".");
+                    Set<byte[]> keys = new LinkedHashSet<>();
+                    store.keySet().stream().filter(key -> key.matches(regex)).forEach(key -> keys.add(bytes(key)));
+                    return keys;
+                }
+                case "scan": {
+                    List<byte[]> keys = new ArrayList<>();
+                    new TreeSet<>(store.keySet()).forEach(key -> keys.add(bytes(key)));
+                    return scanCursor(keys, (ScanOptions) args[0], InMemoryRedisConnectionFactory::str);
+                }
+                case "publish": {
+                    byte[] channel = (byte[]) args[0];
+                    byte[] message = (byte[]) args[1];
+                    listeners.forEach(listener -> listener.onMessage(new DefaultMessage(channel, message), null));
+                    return (long) listeners.size();
+                }
+                case "scriptLoad": {
+                    String sha = sha1(new String((byte[]) args[0], StandardCharsets.UTF_8));
+                    loadedScripts.add(sha);
+                    return sha;
+                }
+                case "eval":
+                case "evalSha": {
+                    String sha = "eval".equals(name) ? sha1(new String((byte[]) args[0], StandardCharsets.UTF_8))
+                            : args[0] instanceof byte[] ? str((byte[]) args[0]) : (String) args[0];
+                    if ("eval".equals(name)) {
+                        loadedScripts.add(sha);
+                    } else if (!loadedScripts.contains(sha)) {
+                        throw new RedisSystemException("NOSCRIPT No matching script. Please use EVAL.", null);
+                    }
+                    BiFunction<List<String>, List<byte[]>, Object> function = scripts.get(sha);
+                    if (function == null) {
+                        throw new UnsupportedOperationException("Unregistered script: " + sha);
+                    }
+                    int numKeys = (Integer) args[2];
+                    byte[][] keysAndArgs = (byte[][]) args[3];
+                    List<String> keys = new ArrayList<>(numKeys);
+                    for (int i = 0; i < numKeys; i++) {
+                        keys.add(str(keysAndArgs[i]));
+                    }
+                    List<byte[]> scriptArgs = new ArrayList<>(Arrays.asList(keysAndArgs).subList(numKeys, keysAndArgs.length));
+                    synchronized (store) {
+                        return function.apply(keys, scriptArgs);
+                    }
+                }
+                case "setBit": {
+                    BitSet bits = (BitSet) store.computeIfAbsent(str((byte[]) args[0]), k -> new BitSet());
+                    synchronized (bits) {
+                        int offset = Math.toIntExact((Long) args[1]);
+                        boolean old = bits.get(offset);
+                        bits.set(offset, (Boolean) args[2]);
+                        return old;
+                    }
+                }
+                case "getBit": {
+                    BitSet bits = (BitSet) store.get(str((byte[]) args[0]));
+                    if (bits == null) {
+                        return false;
+                    }
+                    synchronized (bits) {
+                        return bits.get(Math.toIntExact((Long) args[1]));
+                    }
+                }
+                case "xAdd": {
+                    MapRecord<byte[], byte[], byte[]> record = (MapRecord<byte[], byte[], byte[]>) args[0];
+                    InMemoryStream stream = streams.computeIfAbsent(str(record.getStream()), k -> new InMemoryStream());
+                    synchronized (stream) {
+                        RecordId id = RecordId.of((++stream.sequence) + "-0");
+                        stream.entries.add(StreamRecords.newRecord().in(record.getStream()).withId(id).ofBytes(record.getValue()));
+                        return id;
+                    }
+                }
+                case "xGroupCreate": {
+                    String key = str((byte[]) args[0]);
+                    InMemoryStream stream = streams.computeIfAbsent(key, k -> new InMemoryStream());
+                    synchronized (stream) {
+                        if (stream.groups.containsKey((String) args[1])) {
+                            throw new RedisSystemException("BUSYGROUP Consumer Group name already exists", null);
+                        }
+                        stream.groups.put((String) args[1], new InMemoryGroup(stream.entries.size()));
+                        return "OK";
+                    }
+                }
+                case "xReadGroup": {
+                    Consumer consumer = (Consumer) args[0];
+                    StreamReadOptions options = (StreamReadOptions) args[1];
+                    StreamOffset<byte[]> offset = ((StreamOffset<byte[]>[]) args[2])[0];
+                    InMemoryStream stream = streams.get(str(offset.getKey()));
+                    List<ByteRecord> records = new ArrayList<>();
+                    if (stream != null) {
+                        synchronized (stream) {
+                            InMemoryGroup group = stream.groups.get(consumer.getGroup());
+                            long count = options.getCount() == null ? Long.MAX_VALUE : options.getCount();
+                            while (group.lastDelivered < stream.entries.size() && records.size() < count) {
+                                ByteRecord record = stream.entries.get(group.lastDelivered++);
+                                group.pending.put(record.getId().getValue(), new InMemoryPending(consumer.getName()));
+                                records.add(record);
+                            }
+                        }
+                    }
+                    if (records.isEmpty() && options.getBlock() != null && options.getBlock() > 0) {
+                        try {
+                            Thread.sleep(Math.min(options.getBlock(), 20L));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return records;
+                }
+                case "xAck": {
+                    InMemoryStream stream = streams.get(str((byte[]) args[0]));
+                    long acked = 0L;
+                    synchronized (stream) {
+                        InMemoryGroup group = stream.groups.get((String) args[1]);
+                        for (Object id : (Object[]) args[2]) {
+                            if (group.pending.remove(id.toString()) != null) {
+                                acked++;
+                            }
+                        }
+                    }
+                    return acked;
+                }
+                case "xPending": {
+                    String groupName = (String) args[1];
+                    InMemoryStream stream = streams.get(str((byte[]) args[0]));
+                    List<PendingMessage> messages = new ArrayList<>();
+                    synchronized (stream) {
+                        long now = System.currentTimeMillis();
+                        long count = args.length > 3 ? (Long) args[3] : Long.MAX_VALUE;
+                        for (Map.Entry<String, InMemoryPending> entry : stream.groups.get(groupName).pending.entrySet()) {
+                            if (messages.size() >= count) {
+                                break;
+                            }
+                            InMemoryPending pending = entry.getValue();
+                            messages.add(new PendingMessage(RecordId.of(entry.getKey()), Consumer.from(groupName, pending.consumer),
+                                    Duration.ofMillis(now - pending.deliveredAt), pending.deliveries));
+                        }
+                    }
+                    return new PendingMessages(groupName, messages);
+                }
+                case "xClaim": {
+                    InMemoryStream stream = streams.get(str((byte[]) args[0]));
+                    Duration minIdle = (Duration) args[3];
+                    List<ByteRecord> claimed = new ArrayList<>();
+                    synchronized (stream) {
+                        InMemoryGroup group = stream.groups.get((String) args[1]);
+                        long now = System.currentTimeMillis();
+                        for (RecordId id : (RecordId[]) args[4]) {
+                            InMemoryPending pending = group.pending.get(id.getValue());
+                            if (pending == null || now - pending.deliveredAt < minIdle.toMillis()) {
+                                continue;
+                            }
+                            pending.consumer = (String) args[2];
+                            pending.deliveredAt = now;
+                            pending.deliveries++;
+                            stream.entries.stream().filter(record -> record.getId().equals(id)).findFirst().ifPresent(claimed::add);
+                        }
+                    }
+                    return claimed;
+                }
+                case "type": {
+                    Object value = store.get(str((byte[]) args[0]));
+                    if (value == null) {
+                        return streams.containsKey(str((byte[]) args[0])) ? DataType.STREAM : DataType.NONE;
+                    }
+                    if (value instanceof NavigableMap) {
+                        return DataType.ZSET;
+                    }
+                    if (value instanceof Map) {
+                        return DataType.HASH;
+                    }
+                    if (value instanceof Set) {
+                        return DataType.SET;
+                    }
+                    return value instanceof List ? DataType.LIST : DataType.STRING;
+                }
+                case "hLen": {
+                    Map<String, byte[]> hash = (Map<String, byte[]>) store.get(str((byte[]) args[0]));
+                    return hash == null ? 0L : (long) hash.size();
+                }
+                case "hDel": {
+                    Map<String, byte[]> hash = (Map<String, byte[]>) store.get(str((byte[]) args[0]));
+                    long count = 0L;
+                    for (byte[] field : (byte[][]) args[1]) {
+                        if (hash != null && hash.remove(str(field)) != null) {
+                            count++;
+                        }
+                    }
+                    removeIfEmpty((byte[]) args[0]);
+                    return count;
+                }
+                case "hScan": {
+                    Map<String, byte[]> hash = (Map<String, byte[]>) store.get(str((byte[]) args[0]));
+                    List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+                    if (hash != null) {
+                        hash.forEach((field, value) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(bytes(field), value)));
+                    }
+                    return scanCursor(entries, (ScanOptions) args[1], entry -> str(entry.getKey()));
+                }
+                case "sAdd": {
+                    Set<String> set = (Set<String>) store.computeIfAbsent(str((byte[]) args[0]), k -> ConcurrentHashMap.newKeySet());
+                    long count = 0L;
+                    for (byte[] member : (byte[][]) args[1]) {
+                        if (set.add(str(member))) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }
+                case "sCard": {
+                    Set<String> set = (Set<String>) store.get(str((byte[]) args[0]));
+                    return set == null ? 0L : (long) set.size();
+                }
+                case "sRem": {
+                    Set<String> set = (Set<String>) store.get(str((byte[]) args[0]));
+                    long count = 0L;
+                    for (byte[] member : (byte[][]) args[1]) {
+                        if (set != null && set.remove(str(member))) {
+                            count++;
+                        }
+                    }
+                    removeIfEmpty((byte[]) args[0]);
+                    return count;
+                }
+                case "sScan": {
+                    Set<String> set = (Set<String>) store.get(str((byte[]) args[0]));
+                    List<byte[]> members = new ArrayList<>();
+                    if (set != null) {
+                        set.forEach(member -> members.add(bytes(member)));
+                    }
+                    return scanCursor(members, (ScanOptions) args[1], InMemoryRedisConnectionFactory::str);
+                }
+                case "zAdd": {
+                    NavigableMap<String, Double> zset = (NavigableMap<String, Double>) store.computeIfAbsent(str((byte[]) args[0]), k -> new ConcurrentSkipListMap<>());
+                    if (args[1] instanceof Set) {
+                        long count = 0L;
+                        for (RedisZSetCommands.Tuple tuple : (Set<RedisZSetCommands.Tuple>) args[1]) {
+                            if (zset.put(str(tuple.getValue()), tuple.getScore()) == null) {
+                                count++;
+                            }
+                        }
+                        return count;
+                    }
+                    return zset.put(str((byte[]) args[2]), (Double) args[1]) == null;
+                }
+                case "zCard": {
+                    Map<String, Double> zset = (Map<String, Double>) store.get(str((byte[]) args[0]));
+                    return zset == null ? 0L : (long) zset.size();
+                }
+                case "zScan": {
+                    Map<String, Double> zset = (Map<String, Double>) store.get(str((byte[]) args[0]));
+                    List<RedisZSetCommands.Tuple> tuples = new ArrayList<>();
+                    if (zset != null) {
+                        zset.forEach((member, score) -> tuples.add(new DefaultTuple(bytes(member), score)));
+                    }
+                    return scanCursor(tuples, (ScanOptions) args[1], tuple -> str(tuple.getValue()));
+                }
+                case "zRemRange": {
+                    NavigableMap<String, Double> zset = (NavigableMap<String, Double>) store.get(str((byte[]) args[0]));
+                    if (zset == null) {
+                        return 0L;
+                    }
+                    // 按分值排序后删除排名区间内的成员
+                    List<String> members = new ArrayList<>(zset.keySet());
+                    members.sort(Comparator.comparing(zset::get));
+                    long start = (Long) args[1];
+                    long end = Math.min((Long) args[2], members.size() - 1L);
+                    long count = 0L;
+                    for (long i = start; i <= end; i++) {
+                        zset.remove(members.get((int) i));
+                        count++;
+                    }
+                    removeIfEmpty((byte[]) args[0]);
+                    return count;
+                }
+                case "rPush": {
+                    List<byte[]> list = (List<byte[]>) store.computeIfAbsent(str((byte[]) args[0]), k -> Collections.synchronizedList(new ArrayList<>()));
+                    list.addAll(Arrays.asList((byte[][]) args[1]));
+                    return (long) list.size();
+                }
+                case "lLen": {
+                    List<byte[]> list = (List<byte[]>) store.get(str((byte[]) args[0]));
+                    return list == null ? 0L : (long) list.size();
+                }
+                case "lTrim": {
+                    List<byte[]> list = (List<byte[]>) store.get(str((byte[]) args[0]));
+                    if (list != null) {
+                        int size = list.size();
+                        long start = (Long) args[1];
+                        long end = (Long) args[2];
+                        int from = (int) Math.max(0, start < 0 ? size + start : start);
+                        int to = (int) Math.min(size - 1, end < 0 ? size + end : end);
+                        List<byte[]> kept = from > to ? new ArrayList<>() : new ArrayList<>(list.subList(from, to + 1));
+                        list.clear();
+                        list.addAll(kept);
+                        removeIfEmpty((byte[]) args[0]);
+                    }
+                    return null;
+                }
+                default:
+                    throw new UnsupportedOperationException("Unsupported command: " + name);
+            }
+        }
+
+        private void removeIfEmpty(byte[] key) {
+            Object value = store.get(str(key));
+            if ((value instanceof Map && ((Map<?, ?>) value).isEmpty())
+                    || (value instanceof Collection && ((Collection<?>) value).isEmpty())) {
+                store.remove(str(key));
+            }
+        }
+
+        /**
+         * 基于快照的 SCAN 游标，游标值为下一个元素的下标，后续每批次计一次往返
+         */
+        private <T> Cursor<T> scanCursor(List<T> snapshot, ScanOptions options, Function<T, String> matcher) {
+            List<T> elements = snapshot;
+            if (options.getPattern() != null) {
+                String regex = options.getPattern().replace("*", ".*").replace("?", ".");
+                elements = new ArrayList<>();
+                for (T element : snapshot) {
+                    if (matcher.apply(element).matches(regex)) {
+                        elements.add(element);
+                    }
+                }
+            }
+            final List<T> matched = elements;
+            return new ScanCursor<T>(options) {
+                @Override
+                protected ScanIteration<T> doScan(long cursorId, ScanOptions scanOptions) {
+                    if (cursorId != 0) {
+                        // 首批随命令本身返回
+                        roundTrips.incrementAndGet();
+                    }
+                    int from = (int) cursorId;
+                    int count = scanOptions.getCount() == null ? 10 : scanOptions.getCount().intValue();
+                    int to = Math.min(matched.size(), from + count);
+                    return new ScanIteration<>(to >= matched.size() ? 0L : to, new ArrayList<>(matched.subList(from, to)));
+                }
+            }.open();
+        }
+    }
+
+    /**
+     * 反应式命令，按参数形式直接执行对应的阻塞命令
+     */
+    private static final class ReactiveCommandsHandler implements InvocationHandler {
+        private final RedisConnection connection;
+
+        private ReactiveCommandsHandler(RedisConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "scan":
+                    return Flux.using(() -> connection.scan((ScanOptions) args[0]), cursor -> Flux.fromIterable(() -> cursor).map(ByteBuffer::wrap), cursor -> {
+                        try {
+                            cursor.close();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                case "get":
+                    return Mono.fromCallable(() -> connection.get(ByteUtils.getBytes((ByteBuffer) args[0]))).map(ByteBuffer::wrap);
+                case "set":
+                    if (args.length == 2) {
+                        return Mono.fromCallable(() -> connection.set(ByteUtils.getBytes((ByteBuffer) args[0]), ByteUtils.getBytes((ByteBuffer) args[1])));
+                    }
+                    return Mono.fromCallable(() -> connection.set(ByteUtils.getBytes((ByteBuffer) args[0]), ByteUtils.getBytes((ByteBuffer) args[1]),
+                            (Expiration) args[2], (RedisStringCommands.SetOption) args[3]));
+                case "setNX":
+                    return Mono.fromCallable(() -> connection.setNX(ByteUtils.getBytes((ByteBuffer) args[0]), ByteUtils.getBytes((ByteBuffer) args[1])));
+                case "mGet":
+                    return Mono.fromCallable(() -> {
+                        List<ByteBuffer> values = new ArrayList<>();
+                        // 与 Lettuce 一致，不存在的key返回空 ByteBuffer
+                        connection.mGet(rawKeys((List<ByteBuffer>) args[0])).forEach(value -> values.add(value == null ? ByteBuffer.allocate(0) : ByteBuffer.wrap(value)));
+                        return values;
+                    });
+                case "mSet":
+                    return Mono.fromCallable(() -> {
+                        Map<byte[], byte[]> tuples = new LinkedHashMap<>();
+                        ((Map<ByteBuffer, ByteBuffer>) args[0]).forEach((key, value) -> tuples.put(ByteUtils.getBytes(key), ByteUtils.getBytes(value)));
+                        return connection.mSet(tuples);
+                    });
+                case "del":
+                    return Mono.fromCallable(() -> connection.del(ByteUtils.getBytes((ByteBuffer) args[0])));
+                case "unlink":
+                    return Mono.fromCallable(() -> connection.unlink(ByteUtils.getBytes((ByteBuffer) args[0])));
+                case "mDel":
+                    return Mono.fromCallable(() -> connection.del(rawKeys((List<ByteBuffer>) args[0])));
+                case "mUnlink":
+                    return Mono.fromCallable(() -> connection.unlink(rawKeys((List<ByteBuffer>) args[0])));
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private static byte[][] rawKeys(List<ByteBuffer> keys) {
+            byte[][] rawKeys = new byte[keys.size()][];
+            for (int i = 0; i < rawKeys.length; i++) {
+                rawKeys[i] = ByteUtils.getBytes(keys.get(i));
+            }
+            return rawKeys;
+        }
+    }
+
+    private static final class InMemoryStream {
+        private final List<ByteRecord> entries = new ArrayList<>();
+        private final Map<String, InMemoryGroup> groups = new HashMap<>();
+        private long sequence;
+    }
+
+    private static final class InMemoryGroup {
+        private final Map<String, InMemoryPending> pending = new LinkedHashMap<>();
+        private int lastDelivered;
+
+        private InMemoryGroup(int lastDelivered) {
+            this.lastDelivered = lastDelivered;
+        }
+    }
+
+    private static final class InMemoryPending {
+        private String consumer;
+        private long deliveredAt = System.currentTimeMillis();
+        private long deliveries = 1L;
+
+        private InMemoryPending(String consumer) {
+            this.consumer = consumer;
+        }
+    }
+}
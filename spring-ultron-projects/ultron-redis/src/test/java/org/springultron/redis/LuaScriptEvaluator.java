@@ -0,0 +1,956 @@
+package org.springultron.redis;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 测试用的 Lua 脚本解释器：支持项目内脚本用到的 Lua 5.1 子集
+ * <p>
+ * KEYS/ARGV 从 1 开始，redis.call 交给 Redis 替身执行，参数及返回值按 Redis 的 Lua 类型转换规则处理，
+ * 脚本中 KEYS/ARGV 下标或时间单位写错时会在测试中暴露，而不是被 Java 替身实现掩盖
+ * </p>
+ * 支持：local、赋值、if/elseif/else、数值 for、while、do、return、break、表构造及下标、
+ * 算术/比较/逻辑/连接运算，内置 tonumber、tostring、type、math.floor/ceil/min/max/abs、redis.call/pcall/replicate_commands
+ *
+ * @author brucewuu
+ * @date 2021/5/14 下午2:30
+ */
+final class LuaScriptEvaluator {
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "and", "break", "do", "else", "elseif", "end", "false", "for", "function", "if", "in",
+            "local", "nil", "not", "or", "repeat", "return", "then", "true", "until", "while"));
+    private static final Pattern NUMBER = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+    private static final Map<String, int[]> BINARY_PRIORITY = new HashMap<>();
+    private static final int UNARY_PRIORITY = 8;
+
+    static {
+        BINARY_PRIORITY.put("or", new int[]{1, 1});
+        BINARY_PRIORITY.put("and", new int[]{2, 2});
+        for (String op : Arrays.asList("<", ">", "<=", ">=", "~=", "==")) {
+            BINARY_PRIORITY.put(op, new int[]{3, 3});
+        }
+        BINARY_PRIORITY.put("..", new int[]{5, 4});
+        BINARY_PRIORITY.put("+", new int[]{6, 6});
+        BINARY_PRIORITY.put("-", new int[]{6, 6});
+        BINARY_PRIORITY.put("*", new int[]{7, 7});
+        BINARY_PRIORITY.put("/", new int[]{7, 7});
+        BINARY_PRIORITY.put("%", new int[]{7, 7});
+        BINARY_PRIORITY.put("^", new int[]{10, 9});
+    }
+
+    private final List<Stat> chunk;
+
+    LuaScriptEvaluator(String script) {
+        Parser parser = new Parser(tokenize(script));
+        this.chunk = parser.block();
+        parser.expect(Token.EOF, null);
+    }
+
+    /**
+     * 执行脚本
+     *
+     * @param keys      KEYS
+     * @param args      ARGV
+     * @param redisCall redis.call 的实现，参数为命令及参数，返回 Long、byte[]（bulk）、String（status）、List 或 null
+     * @return 按 Redis 规则转换后的返回值：Long、byte[]、String、List 或 null
+     */
+    Object eval(List<String> keys, List<byte[]> args, Function<List<String>, Object> redisCall) {
+        Scope globals = new Scope(null);
+        LuaTable keysTable = new LuaTable();
+        for (int i = 0; i < keys.size(); i++) {
+            keysTable.put((double) (i + 1), keys.get(i));
+        }
+        LuaTable argsTable = new LuaTable();
+        for (int i = 0; i < args.size(); i++) {
+            argsTable.put((double) (i + 1), new String(args.get(i), StandardCharsets.UTF_8));
+        }
+        globals.declare("KEYS", keysTable);
+        globals.declare("ARGV", argsTable);
+        LuaTable redis = new LuaTable();
+        redis.put("call", (LuaFunction) params -> toLua(redisCall.apply(toCommand(params))));
+        redis.put("pcall", (LuaFunction) params -> {
+            try {
+                return toLua(redisCall.apply(toCommand(params)));
+            } catch (RuntimeException e) {
+                LuaTable error = new LuaTable();
+                error.put("err", String.valueOf(e.getMessage()));
+                return error;
+            }
+        });
+        redis.put("replicate_commands", (LuaFunction) params -> Boolean.TRUE);
+        globals.declare("redis", redis);
+        LuaTable math = new LuaTable();
+        math.put("floor", (LuaFunction) params -> Math.floor(number(arg(params, 0))));
+        math.put("ceil", (LuaFunction) params -> Math.ceil(number(arg(params, 0))));
+        math.put("abs", (LuaFunction) params -> Math.abs(number(arg(params, 0))));
+        math.put("min", (LuaFunction) params -> params.stream().mapToDouble(LuaScriptEvaluator::number).min()
+                .orElseThrow(() -> new LuaException("bad argument #1 to 'min' (number expected, got no value)")));
+        math.put("max", (LuaFunction) params -> params.stream().mapToDouble(LuaScriptEvaluator::number).max()
+                .orElseThrow(() -> new LuaException("bad argument #1 to 'max' (number expected, got no value)")));
+        math.put("huge", Double.POSITIVE_INFINITY);
+        globals.declare("math", math);
+        globals.declare("tonumber", (LuaFunction) params -> toNumber(arg(params, 0)));
+        globals.declare("tostring", (LuaFunction) params -> tostring(arg(params, 0)));
+        globals.declare("type", (LuaFunction) params -> type(arg(params, 0)));
+        try {
+            execBlock(chunk, new Scope(globals));
+        } catch (ReturnSignal signal) {
+            return fromLua(signal.value);
+        }
+        return null;
+    }
+
+    // ---------------------------------------------------------------- 值转换
+
+    private static List<String> toCommand(List<Object> params) {
+        List<String> command = new ArrayList<>(params.size());
+        for (Object param : params) {
+            if (param instanceof String) {
+                command.add((String) param);
+            } else if (param instanceof Double) {
+                // 与 Redis 一致，数字参数按 %.17g 转为字符串
+                command.add(format((Double) param, 17));
+            } else {
+                throw new LuaException("Lua redis() command arguments must be strings or integers");
+            }
+        }
+        if (command.isEmpty()) {
+            throw new LuaException("Please specify at least one argument for redis.call()");
+        }
+        return command;
+    }
+
+    /**
+     * Redis 返回值转换为 Lua 值：整数转为 number，bulk 转为 string，nil bulk 转为 false，status 转为 {ok = ...}
+     */
+    private static Object toLua(Object reply) {
+        if (reply == null) {
+            return Boolean.FALSE;
+        }
+        if (reply instanceof Long || reply instanceof Integer) {
+            return ((Number) reply).doubleValue();
+        }
+        if (reply instanceof Boolean) {
+            return (Boolean) reply ? 1D : 0D;
+        }
+        if (reply instanceof byte[]) {
+            return new String((byte[]) reply, StandardCharsets.UTF_8);
+        }
+        if (reply instanceof String) {
+            LuaTable status = new LuaTable();
+            status.put("ok", reply);
+            return status;
+        }
+        if (reply instanceof List) {
+            LuaTable table = new LuaTable();
+            int index = 1;
+            for (Object element : (List<?>) reply) {
+                table.put((double) index++, toLua(element));
+            }
+            return table;
+        }
+        throw new LuaException("Unsupported redis reply: " + reply.getClass());
+    }
+
+    /**
+     * Lua 返回值转换为 Redis 返回值：number 截断为整数，true 转为 1，false/nil 转为 nil，表按数组部分转换
+     */
+    private static Object fromLua(Object value) {
+        if (value == null || Boolean.FALSE.equals(value)) {
+            return null;
+        }
+        if (Boolean.TRUE.equals(value)) {
+            return 1L;
+        }
+        if (value instanceof Double) {
+            return (long) (double) (Double) value;
+        }
+        if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8);
+        }
+        if (value instanceof LuaTable) {
+            LuaTable table = (LuaTable) value;
+            if (table.get("err") instanceof String) {
+                throw new LuaException((String) table.get("err"));
+            }
+            if (table.get("ok") instanceof String) {
+                return table.get("ok");
+            }
+            List<Object> list = new ArrayList<>();
+            for (int i = 1; table.get((double) i) != null; i++) {
+                list.add(fromLua(table.get((double) i)));
+            }
+            return list;
+        }
+        throw new LuaException("Unsupported lua return value: " + type(value));
+    }
+
+    private static Object arg(List<Object> params, int index) {
+        return index < params.size() ? params.get(index) : null;
+    }
+
+    private static boolean truthy(Object value) {
+        return value != null && !Boolean.FALSE.equals(value);
+    }
+
+    private static String type(Object value) {
+        if (value == null) {
+            return "nil";
+        }
+        if (value instanceof Boolean) {
+            return "boolean";
+        }
+        if (value instanceof Double) {
+            return "number";
+        }
+        if (value instanceof String) {
+            return "string";
+        }
+        if (value instanceof LuaFunction) {
+            return "function";
+        }
+        return "table";
+    }
+
+    private static Double toNumber(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof String) {
+            String text = ((String) value).trim();
+            if (NUMBER.matcher(text).matches()) {
+                return Double.parseDouble(text);
+            }
+        }
+        return null;
+    }
+
+    private static double number(Object value) {
+        Double number = toNumber(value);
+        if (number == null) {
+            throw new LuaException("attempt to perform arithmetic on a " + type(value) + " value");
+        }
+        return number;
+    }
+
+    private static String tostring(Object value) {
+        if (value == null) {
+            return "nil";
+        }
+        if (value instanceof Double) {
+            return format((Double) value, 14);
+        }
+        if (value instanceof String || value instanceof Boolean) {
+            return value.toString();
+        }
+        return type(value) + ": 0x" + Integer.toHexString(System.identityHashCode(value));
+    }
+
+    /**
+     * 按 %.Ng 格式化数字，整数不带小数部分
+     */
+    private static String format(double value, int precision) {
+        if (Double.isNaN(value)) {
+            return "nan";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "inf" : "-inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return new BigDecimal(value).round(new MathContext(precision)).stripTrailingZeros().toPlainString();
+    }
+
+    private static String concatOperand(Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof Double) {
+            return format((Double) value, 14);
+        }
+        throw new LuaException("attempt to concatenate a " + type(value) + " value");
+    }
+
+    private static boolean luaEquals(Object a, Object b) {
+        if (a instanceof LuaTable || b instanceof LuaTable) {
+            return a == b;
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static boolean lessThan(Object a, Object b) {
+        if (a instanceof Double && b instanceof Double) {
+            return (Double) a < (Double) b;
+        }
+        if (a instanceof String && b instanceof String) {
+            return ((String) a).compareTo((String) b) < 0;
+        }
+        throw new LuaException("attempt to compare " + type(a) + " with " + type(b));
+    }
+
+    private static boolean lessEqual(Object a, Object b) {
+        if (a instanceof Double && b instanceof Double) {
+            return (Double) a <= (Double) b;
+        }
+        if (a instanceof String && b instanceof String) {
+            return ((String) a).compareTo((String) b) <= 0;
+        }
+        throw new LuaException("attempt to compare " + type(a) + " with " + type(b));
+    }
+
+    private static Object binary(String op, Object a, Object b) {
+        switch (op) {
+            case "+":
+                return number(a) + number(b);
+            case "-":
+                return number(a) - number(b);
+            case "*":
+                return number(a) * number(b);
+            case "/":
+                return number(a) / number(b);
+            case "%": {
+                double x = number(a);
+                double y = number(b);
+                return x - Math.floor(x / y) * y;
+            }
+            case "^":
+                return Math.pow(number(a), number(b));
+            case "..":
+                return concatOperand(a) + concatOperand(b);
+            case "==":
+                return luaEquals(a, b);
+            case "~=":
+                return !luaEquals(a, b);
+            case "<":
+                return lessThan(a, b);
+            case ">":
+                return lessThan(b, a);
+            case "<=":
+                return lessEqual(a, b);
+            case ">=":
+                return lessEqual(b, a);
+            default:
+                throw new LuaException("unknown operator " + op);
+        }
+    }
+
+    private static Object index(Object target, Object key) {
+        if (!(target instanceof LuaTable)) {
+            throw new LuaException("attempt to index a " + type(target) + " value");
+        }
+        return ((LuaTable) target).get(key);
+    }
+
+    // ---------------------------------------------------------------- 执行
+
+    private static void execBlock(List<Stat> block, Scope scope) {
+        for (Stat stat : block) {
+            stat.exec(scope);
+        }
+    }
+
+    private interface Stat {
+        void exec(Scope scope);
+    }
+
+    private interface Expr {
+        Object eval(Scope scope);
+    }
+
+    @FunctionalInterface
+    private interface LuaFunction {
+        Object call(List<Object> params);
+    }
+
+    private static final class NameExpr implements Expr {
+        private final String name;
+
+        private NameExpr(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object eval(Scope scope) {
+            return scope.get(name);
+        }
+    }
+
+    private static final class IndexExpr implements Expr {
+        private final Expr target;
+        private final Expr key;
+
+        private IndexExpr(Expr target, Expr key) {
+            this.target = target;
+            this.key = key;
+        }
+
+        @Override
+        public Object eval(Scope scope) {
+            return index(target.eval(scope), key.eval(scope));
+        }
+    }
+
+    private static final class LuaTable {
+        private final Map<Object, Object> entries = new HashMap<>();
+
+        Object get(Object key) {
+            return entries.get(key);
+        }
+
+        void put(Object key, Object value) {
+            if (key == null) {
+                throw new LuaException("table index is nil");
+            }
+            if (value == null) {
+                entries.remove(key);
+            } else {
+                entries.put(key, value);
+            }
+        }
+
+        int length() {
+            int length = 0;
+            while (entries.containsKey((double) (length + 1))) {
+                length++;
+            }
+            return length;
+        }
+    }
+
+    private static final class Scope {
+        private final Scope parent;
+        private final Map<String, Object> variables = new HashMap<>();
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        void declare(String name, Object value) {
+            variables.put(name, value);
+        }
+
+        Object get(String name) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                if (scope.variables.containsKey(name)) {
+                    return scope.variables.get(name);
+                }
+            }
+            return null;
+        }
+
+        void set(String name, Object value) {
+            Scope scope = this;
+            while (scope.parent != null && !scope.variables.containsKey(name)) {
+                scope = scope.parent;
+            }
+            // 未声明的变量写入全局作用域
+            scope.variables.put(name, value);
+        }
+    }
+
+    private static final class ReturnSignal extends RuntimeException {
+        private final transient Object value;
+
+        private ReturnSignal(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+    private static final class BreakSignal extends RuntimeException {
+        private BreakSignal() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * 脚本执行错误
+     */
+    static final class LuaException extends RuntimeException {
+        LuaException(String message) {
+            super("ERR Error running script: " + message);
+        }
+    }
+
+    // ---------------------------------------------------------------- 词法分析
+
+    private static final class Token {
+        static final int NAME = 1;
+        static final int KEYWORD = 2;
+        static final int NUMBER = 3;
+        static final int STRING = 4;
+        static final int OPERATOR = 5;
+        static final int EOF = 6;
+
+        private final int type;
+        private final String text;
+        private final Object value;
+
+        private Token(int type, String text, Object value) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+        }
+
+        boolean is(int type, String text) {
+            return this.type == type && (text == null || text.equals(this.text));
+        }
+    }
+
+    private static List<Token> tokenize(String script) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int n = script.length();
+        while (i < n) {
+            char c = script.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (script.startsWith("--", i)) {
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? n : end;
+            } else if (Character.isLetter(c) || c == '_') {
+                int j = i;
+                while (j < n && (Character.isLetterOrDigit(script.charAt(j)) || script.charAt(j) == '_')) {
+                    j++;
+                }
+                String word = script.substring(i, j);
+                tokens.add(new Token(KEYWORDS.contains(word) ? Token.KEYWORD : Token.NAME, word, null));
+                i = j;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(script.charAt(i + 1)))) {
+                int j = i;
+                while (j < n && Character.isDigit(script.charAt(j))) {
+                    j++;
+                }
+                if (j < n && script.charAt(j) == '.' && !script.startsWith("..", j)) {
+                    j++;
+                    while (j < n && Character.isDigit(script.charAt(j))) {
+                        j++;
+                    }
+                }
+                if (j < n && (script.charAt(j) == 'e' || script.charAt(j) == 'E')) {
+                    j++;
+                    if (j < n && (script.charAt(j) == '+' || script.charAt(j) == '-')) {
+                        j++;
+                    }
+                    while (j < n && Character.isDigit(script.charAt(j))) {
+                        j++;
+                    }
+                }
+                String text = script.substring(i, j);
+                tokens.add(new Token(Token.NUMBER, text, Double.parseDouble(text)));
+                i = j;
+            } else if (c == '\'' || c == '"') {
+                StringBuilder value = new StringBuilder();
+                int j = i + 1;
+                while (j < n && script.charAt(j) != c) {
+                    char ch = script.charAt(j);
+                    if (ch == '\\' && j + 1 < n) {
+                        char escaped = script.charAt(++j);
+                        value.append(escaped == 'n' ? '\n' : escaped == 't' ? '\t' : escaped == 'r' ? '\r' : escaped);
+                    } else if (ch == '\n') {
+                        throw new LuaException("unfinished string");
+                    } else {
+                        value.append(ch);
+                    }
+                    j++;
+                }
+                if (j >= n) {
+                    throw new LuaException("unfinished string");
+                }
+                tokens.add(new Token(Token.STRING, script.substring(i, j + 1), value.toString()));
+                i = j + 1;
+            } else {
+                String op = null;
+                for (String candidate : new String[]{"...", "==", "~=", "<=", ">=", ".."}) {
+                    if (script.startsWith(candidate, i)) {
+                        op = candidate;
+                        break;
+                    }
+                }
+                if (op == null) {
+                    if ("+-*/%^#<>=(){}[];:,.".indexOf(c) < 0) {
+                        throw new LuaException("unexpected symbol near '" + c + "'");
+                    }
+                    op = String.valueOf(c);
+                }
+                tokens.add(new Token(Token.OPERATOR, op, null));
+                i += op.length();
+            }
+        }
+        tokens.add(new Token(Token.EOF, "<eof>", null));
+        return tokens;
+    }
+
+    // ---------------------------------------------------------------- 语法分析
+
+    private static final class Parser {
+        private final List<Token> tokens;
+        private int position;
+
+        private Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        private Token peek() {
+            return tokens.get(position);
+        }
+
+        private Token next() {
+            return tokens.get(position++);
+        }
+
+        private boolean accept(int type, String text) {
+            if (peek().is(type, text)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private Token expect(int type, String text) {
+            if (!peek().is(type, text)) {
+                throw new LuaException("'" + (text == null ? "<name>" : text) + "' expected near '" + peek().text + "'");
+            }
+            return next();
+        }
+
+        private boolean blockEnd() {
+            Token token = peek();
+            return token.type == Token.EOF || token.is(Token.KEYWORD, "end") || token.is(Token.KEYWORD, "else")
+                    || token.is(Token.KEYWORD, "elseif") || token.is(Token.KEYWORD, "until");
+        }
+
+        List<Stat> block() {
+            List<Stat> block = new ArrayList<>();
+            while (!blockEnd()) {
+                if (accept(Token.OPERATOR, ";")) {
+                    continue;
+                }
+                if (peek().is(Token.KEYWORD, "return")) {
+                    next();
+                    Expr value = blockEnd() || peek().is(Token.OPERATOR, ";") ? null : expressions().get(0);
+                    accept(Token.OPERATOR, ";");
+                    block.add(scope -> {
+                        throw new ReturnSignal(value == null ? null : value.eval(scope));
+                    });
+                    break;
+                }
+                block.add(statement());
+            }
+            return block;
+        }
+
+        private Stat statement() {
+            Token token = peek();
+            if (token.is(Token.KEYWORD, "local")) {
+                next();
+                List<String> names = new ArrayList<>();
+                do {
+                    names.add(expect(Token.NAME, null).text);
+                } while (accept(Token.OPERATOR, ","));
+                List<Expr> values = accept(Token.OPERATOR, "=") ? expressions() : Collections.emptyList();
+                return scope -> {
+                    List<Object> results = evalAll(values, scope);
+                    for (int i = 0; i < names.size(); i++) {
+                        scope.declare(names.get(i), i < results.size() ? results.get(i) : null);
+                    }
+                };
+            }
+            if (token.is(Token.KEYWORD, "if")) {
+                next();
+                List<Expr> conditions = new ArrayList<>();
+                List<List<Stat>> branches = new ArrayList<>();
+                conditions.add(expression());
+                expect(Token.KEYWORD, "then");
+                branches.add(block());
+                while (accept(Token.KEYWORD, "elseif")) {
+                    conditions.add(expression());
+                    expect(Token.KEYWORD, "then");
+                    branches.add(block());
+                }
+                List<Stat> otherwise = accept(Token.KEYWORD, "else") ? block() : Collections.emptyList();
+                expect(Token.KEYWORD, "end");
+                return scope -> {
+                    for (int i = 0; i < conditions.size(); i++) {
+                        if (truthy(conditions.get(i).eval(scope))) {
+                            execBlock(branches.get(i), new Scope(scope));
+                            return;
+                        }
+                    }
+                    execBlock(otherwise, new Scope(scope));
+                };
+            }
+            if (token.is(Token.KEYWORD, "for")) {
+                next();
+                String name = expect(Token.NAME, null).text;
+                expect(Token.OPERATOR, "=");
+                Expr from = expression();
+                expect(Token.OPERATOR, ",");
+                Expr to = expression();
+                Expr step = accept(Token.OPERATOR, ",") ? expression() : null;
+                expect(Token.KEYWORD, "do");
+                List<Stat> body = block();
+                expect(Token.KEYWORD, "end");
+                return scope -> {
+                    double start = number(from.eval(scope));
+                    double limit = number(to.eval(scope));
+                    double increment = step == null ? 1D : number(step.eval(scope));
+                    try {
+                        for (double i = start; increment > 0 ? i <= limit : i >= limit; i += increment) {
+                            Scope loop = new Scope(scope);
+                            loop.declare(name, i);
+                            execBlock(body, loop);
+                        }
+                    } catch (BreakSignal ignored) {
+                        // break
+                    }
+                };
+            }
+            if (token.is(Token.KEYWORD, "while")) {
+                next();
+                Expr condition = expression();
+                expect(Token.KEYWORD, "do");
+                List<Stat> body = block();
+                expect(Token.KEYWORD, "end");
+                return scope -> {
+                    try {
+                        while (truthy(condition.eval(scope))) {
+                            execBlock(body, new Scope(scope));
+                        }
+                    } catch (BreakSignal ignored) {
+                        // break
+                    }
+                };
+            }
+            if (token.is(Token.KEYWORD, "do")) {
+                next();
+                List<Stat> body = block();
+                expect(Token.KEYWORD, "end");
+                return scope -> execBlock(body, new Scope(scope));
+            }
+            if (token.is(Token.KEYWORD, "break")) {
+                next();
+                return scope -> {
+                    throw new BreakSignal();
+                };
+            }
+            Expr expr = suffixedExpression();
+            if (peek().is(Token.OPERATOR, "=") || peek().is(Token.OPERATOR, ",")) {
+                List<Expr> targets = new ArrayList<>();
+                targets.add(expr);
+                while (accept(Token.OPERATOR, ",")) {
+                    targets.add(suffixedExpression());
+                }
+                expect(Token.OPERATOR, "=");
+                List<Expr> values = expressions();
+                for (Expr target : targets) {
+                    if (!(target instanceof NameExpr) && !(target instanceof IndexExpr)) {
+                        throw new LuaException("syntax error near '='");
+                    }
+                }
+                return scope -> {
+                    List<Object> results = evalAll(values, scope);
+                    for (int i = 0; i < targets.size(); i++) {
+                        assign(targets.get(i), i < results.size() ? results.get(i) : null, scope);
+                    }
+                };
+            }
+            return expr::eval;
+        }
+
+        private void assign(Expr target, Object value, Scope scope) {
+            if (target instanceof NameExpr) {
+                scope.set(((NameExpr) target).name, value);
+            } else {
+                IndexExpr index = (IndexExpr) target;
+                Object table = index.target.eval(scope);
+                if (!(table instanceof LuaTable)) {
+                    throw new LuaException("attempt to index a " + type(table) + " value");
+                }
+                ((LuaTable) table).put(index.key.eval(scope), value);
+            }
+        }
+
+        private List<Object> evalAll(List<Expr> exprs, Scope scope) {
+            List<Object> results = new ArrayList<>(exprs.size());
+            for (Expr expr : exprs) {
+                results.add(expr.eval(scope));
+            }
+            return results;
+        }
+
+        private List<Expr> expressions() {
+            List<Expr> exprs = new ArrayList<>();
+            do {
+                exprs.add(expression());
+            } while (accept(Token.OPERATOR, ","));
+            return exprs;
+        }
+
+        private Expr expression() {
+            return subExpression(0);
+        }
+
+        private Expr subExpression(int limit) {
+            Expr left;
+            Token token = peek();
+            if (token.is(Token.KEYWORD, "not") || token.is(Token.OPERATOR, "-") || token.is(Token.OPERATOR, "#")) {
+                next();
+                Expr operand = subExpression(UNARY_PRIORITY);
+                String op = token.text;
+                left = scope -> {
+                    Object value = operand.eval(scope);
+                    if ("not".equals(op)) {
+                        return !truthy(value);
+                    }
+                    if ("-".equals(op)) {
+                        return -number(value);
+                    }
+                    if (value instanceof String) {
+                        return (double) ((String) value).getBytes(StandardCharsets.UTF_8).length;
+                    }
+                    if (value instanceof LuaTable) {
+                        return (double) ((LuaTable) value).length();
+                    }
+                    throw new LuaException("attempt to get length of a " + type(value) + " value");
+                };
+            } else {
+                left = simpleExpression();
+            }
+            while (true) {
+                Token op = peek();
+                int[] priority = op.type == Token.OPERATOR || op.type == Token.KEYWORD ? BINARY_PRIORITY.get(op.text) : null;
+                if (priority == null || priority[0] <= limit) {
+                    return left;
+                }
+                next();
+                Expr a = left;
+                Expr b = subExpression(priority[1]);
+                if ("and".equals(op.text)) {
+                    left = scope -> {
+                        Object value = a.eval(scope);
+                        return truthy(value) ? b.eval(scope) : value;
+                    };
+                } else if ("or".equals(op.text)) {
+                    left = scope -> {
+                        Object value = a.eval(scope);
+                        return truthy(value) ? value : b.eval(scope);
+                    };
+                } else {
+                    left = scope -> binary(op.text, a.eval(scope), b.eval(scope));
+                }
+            }
+        }
+
+        private Expr simpleExpression() {
+            Token token = peek();
+            if (token.type == Token.NUMBER || token.type == Token.STRING) {
+                next();
+                Object value = token.value;
+                return scope -> value;
+            }
+            if (token.is(Token.KEYWORD, "nil")) {
+                next();
+                return scope -> null;
+            }
+            if (token.is(Token.KEYWORD, "true") || token.is(Token.KEYWORD, "false")) {
+                next();
+                Boolean value = "true".equals(token.text);
+                return scope -> value;
+            }
+            if (token.is(Token.OPERATOR, "{")) {
+                return table();
+            }
+            return suffixedExpression();
+        }
+
+        private Expr table() {
+            expect(Token.OPERATOR, "{");
+            List<Expr> keys = new ArrayList<>();
+            List<Expr> values = new ArrayList<>();
+            int arrayIndex = 1;
+            while (!accept(Token.OPERATOR, "}")) {
+                if (peek().type == Token.NAME && tokens.get(position + 1).is(Token.OPERATOR, "=")) {
+                    String name = next().text;
+                    next();
+                    keys.add(scope -> name);
+                } else if (accept(Token.OPERATOR, "[")) {
+                    keys.add(expression());
+                    expect(Token.OPERATOR, "]");
+                    expect(Token.OPERATOR, "=");
+                } else {
+                    double index = arrayIndex++;
+                    keys.add(scope -> index);
+                }
+                values.add(expression());
+                if (!accept(Token.OPERATOR, ",") && !accept(Token.OPERATOR, ";")) {
+                    expect(Token.OPERATOR, "}");
+                    break;
+                }
+            }
+            return scope -> {
+                LuaTable table = new LuaTable();
+                for (int i = 0; i < keys.size(); i++) {
+                    table.put(keys.get(i).eval(scope), values.get(i).eval(scope));
+                }
+                return table;
+            };
+        }
+
+        private Expr suffixedExpression() {
+            Expr expr;
+            Token token = next();
+            if (token.type == Token.NAME) {
+                expr = new NameExpr(token.text);
+            } else if (token.is(Token.OPERATOR, "(")) {
+                Expr inner = expression();
+                expect(Token.OPERATOR, ")");
+                // 括号内的表达式不能作为赋值目标
+                expr = inner::eval;
+            } else {
+                throw new LuaException("unexpected symbol near '" + token.text + "'");
+            }
+            while (true) {
+                if (accept(Token.OPERATOR, ".")) {
+                    String name = expect(Token.NAME, null).text;
+                    expr = new IndexExpr(expr, scope -> name);
+                } else if (accept(Token.OPERATOR, "[")) {
+                    Expr key = expression();
+                    expect(Token.OPERATOR, "]");
+                    expr = new IndexExpr(expr, key);
+                } else if (peek().is(Token.OPERATOR, "(")) {
+                    expr = call(expr, null);
+                } else if (accept(Token.OPERATOR, ":")) {
+                    String name = expect(Token.NAME, null).text;
+                    expr = call(expr, name);
+                } else {
+                    return expr;
+                }
+            }
+        }
+
+        private Expr call(Expr callee, String method) {
+            expect(Token.OPERATOR, "(");
+            List<Expr> args = peek().is(Token.OPERATOR, ")") ? Collections.emptyList() : expressions();
+            expect(Token.OPERATOR, ")");
+            return scope -> {
+                Object target = callee.eval(scope);
+                Object function = method == null ? target : index(target, method);
+                if (!(function instanceof LuaFunction)) {
+                    throw new LuaException("attempt to call a " + type(function) + " value");
+                }
+                List<Object> params = new ArrayList<>();
+                if (method != null) {
+                    params.add(target);
+                }
+                params.addAll(evalAll(args, scope));
+                return ((LuaFunction) function).call(params);
+            };
+        }
+    }
+}
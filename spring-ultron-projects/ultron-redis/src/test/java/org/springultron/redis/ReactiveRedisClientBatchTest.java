@@ -0,0 +1,98 @@
+package org.springultron.redis;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * ReactiveRedisClient 批量操作测试：MGET/MSET/DEL 分批及带过期时间的逐key SET PX
+ *
+ * @author brucewuu
+ * @date 2021/5/13 下午3:10
+ */
+public class ReactiveRedisClientBatchTest {
+    private static final int SIZE = 1200;
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private ReactiveRedisClient reactiveRedisClient;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        RedisSerializationContext<String, Object> context = RedisSerializationContext.<String, Object>newSerializationContext(serializer)
+                .key(RedisSerializer.string())
+                .hashKey(RedisSerializer.string())
+                .build();
+        reactiveRedisClient = new ReactiveRedisClient(new ReactiveStringRedisTemplate(connectionFactory), new ReactiveRedisTemplate<>(connectionFactory, context));
+    }
+
+    private static Map<String, Object> sessions() {
+        Map<String, Object> map = new LinkedHashMap<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            map.put("session:" + i, "user-" + i);
+        }
+        return map;
+    }
+
+    @Test
+    public void multiGetTest() {
+        Map<String, Object> sessions = sessions();
+        Assert.assertEquals(Boolean.TRUE, reactiveRedisClient.multiSet(sessions).block());
+        Assert.assertEquals(3, connectionFactory.getCommandCount("mSet"));
+
+        List<String> keys = new ArrayList<>(sessions.keySet());
+        keys.add(500, "session:missing");
+        connectionFactory.resetCounters();
+        List<Object> values = reactiveRedisClient.multiGet(keys).block();
+        Assert.assertNotNull(values);
+        Assert.assertEquals(keys.size(), values.size());
+        Assert.assertNull(values.get(500));
+        Assert.assertEquals("user-0", values.get(0));
+        Assert.assertEquals("user-" + (SIZE - 1), values.get(keys.size() - 1));
+        // 按 BATCH_SIZE 分批，每批一次 MGET
+        Assert.assertEquals(3, connectionFactory.getCommandCount("mGet"));
+
+        Assert.assertEquals(Collections.emptyList(), reactiveRedisClient.multiGet(Collections.emptyList()).block());
+    }
+
+    @Test
+    public void multiSetWithTimeoutTest() {
+        Map<String, Object> sessions = sessions();
+        Assert.assertEquals(Long.valueOf(SIZE), reactiveRedisClient.multiSet(sessions, Duration.ofMinutes(10)).block());
+        // 逐key SET PX，不使用跨key的 Lua 脚本，集群模式下不会 CROSSSLOT
+        Assert.assertEquals(SIZE, connectionFactory.getCommandCount("set"));
+        Assert.assertEquals(0, connectionFactory.getCommandCount("eval") + connectionFactory.getCommandCount("evalSha"));
+        for (String key : sessions.keySet()) {
+            Assert.assertEquals(Long.valueOf(600_000L), connectionFactory.getTtl(key));
+        }
+        List<Object> values = reactiveRedisClient.multiGet(sessions.keySet()).block();
+        Assert.assertEquals(new ArrayList<>(sessions.values()), values);
+
+        Assert.assertEquals(Long.valueOf(0L), reactiveRedisClient.multiSet(Collections.emptyMap(), Duration.ofMinutes(10)).block());
+    }
+
+    @Test
+    public void multiDeleteTest() {
+        Map<String, Object> sessions = sessions();
+        reactiveRedisClient.multiSet(sessions).block();
+        List<String> keys = new ArrayList<>(sessions.keySet());
+        keys.add("session:missing");
+
+        connectionFactory.resetCounters();
+        Assert.assertEquals(Long.valueOf(SIZE), reactiveRedisClient.multiDelete(keys).block());
+        Assert.assertTrue(connectionFactory.getStore().isEmpty());
+        Assert.assertEquals(3, connectionFactory.getCommandCount("del"));
+
+        Assert.assertEquals(Long.valueOf(0L), reactiveRedisClient.multiDelete(Collections.emptyList()).block());
+    }
+}
@@ -0,0 +1,147 @@
+package org.springultron.redis;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * RedisClient 批量操作测试：对比 pipeline/MGET 与逐条访问的网络往返次数
+ *
+ * @author brucewuu
+ * @date 2021/5/6 下午3:40
+ */
+public class RedisClientBatchTest {
+    private static final int SIZE = 1200;
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private RedisClient redisClient;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        redisTemplate.setDefaultSerializer(serializer);
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.setHashValueSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+        redisClient = new RedisClient(new StringRedisTemplate(connectionFactory), redisTemplate);
+    }
+
+    private static Map<String, Object> sessions() {
+        Map<String, Object> map = new LinkedHashMap<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            map.put("session:" + i, "user-" + i);
+        }
+        return map;
+    }
+
+    @Test
+    public void multiGetTest() {
+        Map<String, Object> sessions = sessions();
+        redisClient.multiSet(sessions);
+        Assert.assertEquals(3, connectionFactory.getRoundTrips());
+
+        List<String> keys = new ArrayList<>(sessions.keySet());
+        keys.add(500, "session:missing");
+
+        connectionFactory.resetCounters();
+        List<Object> sequential = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            sequential.add(redisClient.get(key));
+        }
+        int sequentialRoundTrips = connectionFactory.getRoundTrips();
+
+        connectionFactory.resetCounters();
+        List<Object> batch = redisClient.multiGet(keys);
+        int batchRoundTrips = connectionFactory.getRoundTrips();
+
+        System.out.println("multiGet " + keys.size() + " keys, sequential round trips: " + sequentialRoundTrips + ", batch round trips: " + batchRoundTrips);
+        Assert.assertEquals(keys.size(), sequentialRoundTrips);
+        Assert.assertEquals(3, batchRoundTrips);
+        Assert.assertEquals(sequential, batch);
+        Assert.assertNull(batch.get(500));
+        Assert.assertEquals("user-500", batch.get(501));
+    }
+
+    @Test
+    public void multiSetWithTimeoutTest() {
+        Map<String, Object> sessions = sessions();
+        for (Map.Entry<String, Object> entry : sessions.entrySet()) {
+            redisClient.set(entry.getKey(), entry.getValue(), Duration.ofMinutes(30));
+        }
+        int sequentialRoundTrips = connectionFactory.getRoundTrips();
+
+        connectionFactory.resetCounters();
+        redisClient.multiSet(sessions, Duration.ofMinutes(30));
+        int batchRoundTrips = connectionFactory.getRoundTrips();
+
+        System.out.println("multiSet " + SIZE + " keys, sequential round trips: " + sequentialRoundTrips + ", pipelined round trips: " + batchRoundTrips);
+        Assert.assertEquals(SIZE, sequentialRoundTrips);
+        Assert.assertEquals(3, batchRoundTrips);
+        Assert.assertEquals(SIZE, connectionFactory.getCommands());
+        Assert.assertEquals(Long.valueOf(Duration.ofMinutes(30).toMillis()), connectionFactory.getTtl("session:1199"));
+        Assert.assertEquals("user-1199", redisClient.get("session:1199"));
+    }
+
+    @Test
+    public void multiHgetTest() {
+        List<String> keys = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            String key = "user:" + i;
+            keys.add(key);
+            if (i % 2 == 0) {
+                Map<String, Object> hash = new HashMap<>(2);
+                hash.put("name", "name-" + i);
+                hash.put("age", i);
+                redisClient.hset(key, hash);
+            }
+        }
+
+        connectionFactory.resetCounters();
+        List<String> names = redisClient.multiHget(keys, "name");
+        Assert.assertEquals(3, connectionFactory.getRoundTrips());
+        Assert.assertEquals(SIZE, names.size());
+        Assert.assertEquals("name-0", names.get(0));
+        Assert.assertNull(names.get(1));
+        Assert.assertEquals("name-1198", names.get(1198));
+
+        connectionFactory.resetCounters();
+        List<Map<Object, Object>> entries = redisClient.multiHget(keys);
+        Assert.assertEquals(3, connectionFactory.getRoundTrips());
+        Assert.assertEquals(1198, entries.get(1198).get("age"));
+        Assert.assertTrue(entries.get(1199).isEmpty());
+    }
+
+    @Test
+    public void multiExpireAndDeleteTest() {
+        Map<String, Object> sessions = sessions();
+        redisClient.multiSet(sessions);
+        List<String> keys = new ArrayList<>(sessions.keySet());
+        keys.add("session:missing");
+
+        connectionFactory.resetCounters();
+        List<Boolean> results = redisClient.multiExpire(keys, Duration.ofSeconds(60));
+        Assert.assertEquals(3, connectionFactory.getRoundTrips());
+        Assert.assertEquals(keys.size(), results.size());
+        Assert.assertTrue(results.get(0));
+        Assert.assertFalse(results.get(SIZE));
+        Assert.assertEquals(Long.valueOf(60000L), connectionFactory.getTtl("session:0"));
+
+        connectionFactory.resetCounters();
+        Assert.assertEquals(SIZE, redisClient.multiDelete(keys));
+        Assert.assertEquals(3, connectionFactory.getRoundTrips());
+        Assert.assertTrue(connectionFactory.getStore().isEmpty());
+    }
+}
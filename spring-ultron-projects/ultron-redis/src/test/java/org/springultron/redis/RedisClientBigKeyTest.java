@@ -0,0 +1,160 @@
+package org.springultron.redis;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大key渐进式操作测试：HSCAN/SSCAN/ZSCAN 分批迭代、分批删除及key信息查询
+ *
+ * @author brucewuu
+ * @date 2021/5/26 下午2:15
+ */
+public class RedisClientBigKeyTest {
+    private static final int SIZE = 2300;
+    private static final int BATCH = 500;
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private RedisTemplate<String, Object> redisTemplate;
+    private RedisClient redisClient;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        redisTemplate.setDefaultSerializer(serializer);
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.setHashValueSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+        redisClient = new RedisClient(new StringRedisTemplate(connectionFactory), redisTemplate);
+    }
+
+    private void bigHash(String key) {
+        Map<String, Object> map = new LinkedHashMap<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            map.put("field:" + i, i);
+        }
+        redisClient.hset(key, map);
+    }
+
+    @Test
+    public void hscanTest() {
+        bigHash("big:hash");
+        connectionFactory.resetCounters();
+        Set<Object> fields = new HashSet<>();
+        redisClient.hscan("big:hash", null, BATCH, entry -> fields.add(entry.getKey()));
+        Assert.assertEquals(SIZE, fields.size());
+        // 每批次一次网络往返
+        Assert.assertEquals((SIZE + BATCH - 1) / BATCH, connectionFactory.getRoundTrips());
+
+        AtomicInteger matched = new AtomicInteger();
+        redisClient.hscan("big:hash", "field:1??", BATCH, entry -> matched.incrementAndGet());
+        Assert.assertEquals(100, matched.get());
+    }
+
+    @Test
+    public void sscanAndZscanTest() {
+        Object[] members = new Object[SIZE];
+        Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>();
+        for (int i = 0; i < SIZE; i++) {
+            members[i] = "member:" + i;
+            tuples.add(new DefaultTypedTuple<>("member:" + i, (double) i));
+        }
+        redisTemplate.opsForSet().add("big:set", members);
+        redisTemplate.opsForZSet().add("big:zset", tuples);
+
+        Set<Object> setMembers = new HashSet<>();
+        redisClient.sscan("big:set", null, BATCH, setMembers::add);
+        Assert.assertEquals(SIZE, setMembers.size());
+
+        double[] scoreSum = new double[1];
+        redisClient.zscan("big:zset", null, BATCH, tuple -> scoreSum[0] += tuple.getScore());
+        Assert.assertEquals(SIZE * (SIZE - 1) / 2.0D, scoreSum[0], 0.0D);
+    }
+
+    @Test
+    public void deleteBigHashTest() {
+        bigHash("big:hash");
+        connectionFactory.resetCounters();
+        Assert.assertEquals(SIZE, redisClient.deleteBigKey("big:hash", BATCH));
+        Assert.assertFalse(redisClient.exists("big:hash"));
+        // 按批次 HDEL，单条命令最多删除 BATCH 个元素
+        Assert.assertEquals((SIZE + BATCH - 1) / BATCH, connectionFactory.getCommandCount("hDel"));
+        Assert.assertEquals(0, connectionFactory.getCommandCount("del"));
+    }
+
+    @Test
+    public void deleteBigCollectionsTest() {
+        Object[] members = new Object[SIZE];
+        Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>();
+        for (int i = 0; i < SIZE; i++) {
+            members[i] = "member:" + i;
+            tuples.add(new DefaultTypedTuple<>("member:" + i, (double) i));
+        }
+        redisTemplate.opsForSet().add("big:set", members);
+        redisTemplate.opsForZSet().add("big:zset", tuples);
+        redisClient.rightPushAll("big:list", members);
+        redisClient.setString("small:string", "value");
+        connectionFactory.resetCounters();
+
+        Assert.assertEquals(SIZE, redisClient.deleteBigKey("big:set", BATCH));
+        Assert.assertEquals(SIZE, redisClient.deleteBigKey("big:zset", BATCH));
+        Assert.assertEquals(SIZE, redisClient.deleteBigKey("big:list", BATCH));
+        Assert.assertEquals(0L, redisClient.deleteBigKey("small:string", BATCH));
+        Assert.assertTrue(connectionFactory.getStore().isEmpty());
+
+        int batches = (SIZE + BATCH - 1) / BATCH;
+        Assert.assertEquals(batches, connectionFactory.getCommandCount("sRem"));
+        // 最后一次 ZREMRANGEBYRANK 返回0后结束
+        Assert.assertEquals(batches + 1, connectionFactory.getCommandCount("zRemRange"));
+        Assert.assertEquals(batches, connectionFactory.getCommandCount("lTrim"));
+    }
+
+    @Test
+    public void keyInfoTest() {
+        connectionFactory.registerScript(RedisClient.KEY_INFO_SCRIPT.getScriptAsString(), (keys, args) -> {
+            Object value = connectionFactory.getStore().get(keys.get(0));
+            if (value == null) {
+                return Arrays.asList(bytes("none"), 0L, 0L);
+            }
+            // 以 key 与元素字节数之和模拟 MEMORY USAGE
+            Map<?, ?> hash = (Map<?, ?>) value;
+            long memory = keys.get(0).length();
+            for (Map.Entry<?, ?> entry : hash.entrySet()) {
+                memory += entry.getKey().toString().length() + ((byte[]) entry.getValue()).length;
+            }
+            return Arrays.asList(bytes("hash"), (long) hash.size(), memory);
+        });
+        bigHash("big:hash");
+        connectionFactory.resetCounters();
+
+        KeyInfo info = redisClient.keyInfo("big:hash");
+        Assert.assertTrue(info.exists());
+        Assert.assertEquals(DataType.HASH, info.getType());
+        Assert.assertEquals(SIZE, info.getSize());
+        Assert.assertTrue(info.getMemoryBytes() > SIZE);
+        Assert.assertEquals(1, connectionFactory.getRoundTrips());
+
+        Assert.assertFalse(redisClient.keyInfo("missing").exists());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,220 @@
+package org.springultron.redis;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * SCAN 迭代测试：游标分批迭代、COUNT 设置、删除数量上限、集群按主节点迭代及反应式 key流
+ *
+ * @author brucewuu
+ * @date 2021/5/7 上午11:20
+ */
+public class RedisClientScanTest {
+    private static final int SIZE = 2300;
+    private static final int OTHERS = 100;
+    private static final int COUNT = 500;
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private RedisClient redisClient;
+    private ReactiveRedisClient reactiveRedisClient;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        redisClient = new RedisClient(new StringRedisTemplate(connectionFactory), redisTemplate(connectionFactory));
+        RedisSerializationContext<String, Object> context = RedisSerializationContext.<String, Object>newSerializationContext(serializer)
+                .key(RedisSerializer.string())
+                .hashKey(RedisSerializer.string())
+                .build();
+        reactiveRedisClient = new ReactiveRedisClient(new ReactiveStringRedisTemplate(connectionFactory), new ReactiveRedisTemplate<>(connectionFactory, context));
+
+        Map<String, Object> map = new LinkedHashMap<>(SIZE + OTHERS);
+        for (int i = 0; i < SIZE; i++) {
+            map.put("user:" + i, i);
+        }
+        for (int i = 0; i < OTHERS; i++) {
+            map.put("order:" + i, i);
+        }
+        redisClient.multiSet(map);
+        connectionFactory.resetCounters();
+    }
+
+    private static RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        redisTemplate.setDefaultSerializer(serializer);
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.setHashValueSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+        return redisTemplate;
+    }
+
+    private long count(String prefix) {
+        return connectionFactory.getStore().keySet().stream().filter(key -> key.startsWith(prefix)).count();
+    }
+
+    @Test
+    public void scanCursorTest() throws IOException {
+        Set<String> keys = new HashSet<>();
+        try (Cursor<String> cursor = redisClient.scan("user:*", COUNT)) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+            }
+        }
+        Assert.assertEquals(SIZE, keys.size());
+        Assert.assertTrue(keys.stream().allMatch(key -> key.startsWith("user:")));
+        // 每批次 COUNT 个，游标迭代到 0 结束
+        Assert.assertEquals((SIZE + COUNT - 1) / COUNT, connectionFactory.getRoundTrips());
+        Assert.assertEquals(0, connectionFactory.getCommandCount("keys"));
+
+        connectionFactory.resetCounters();
+        List<String> consumed = new ArrayList<>();
+        redisClient.scan("order:*", 10, consumed::add);
+        Assert.assertEquals(OTHERS, consumed.size());
+        Assert.assertEquals(OTHERS / 10, connectionFactory.getRoundTrips());
+    }
+
+    @Test
+    public void deleteByPatternTest() {
+        Assert.assertEquals(1000L, redisClient.deleteByPattern("user:*", 1000L));
+        Assert.assertEquals(SIZE - 1000, count("user:"));
+        // 按 BATCH_SIZE 分批 UNLINK
+        Assert.assertEquals(1000 / RedisClient.BATCH_SIZE, connectionFactory.getCommandCount("unlink"));
+        Assert.assertEquals(0, connectionFactory.getCommandCount("del"));
+
+        Assert.assertTrue(redisClient.deleteByPattern("user:*"));
+        Assert.assertEquals(0, count("user:"));
+        Assert.assertEquals(OTHERS, count("order:"));
+        // 没有匹配的key
+        Assert.assertTrue(redisClient.deleteByPattern("user:*"));
+    }
+
+    @Test
+    public void clusterScanTest() throws IOException {
+        // 两个主节点各自保存一半的key，副本节点不参与 SCAN
+        RedisClusterNode master1 = RedisClusterNode.newRedisClusterNode().listeningAt("127.0.0.1", 7000).withId("m1").promotedAs(RedisNode.NodeType.MASTER).build();
+        RedisClusterNode master2 = RedisClusterNode.newRedisClusterNode().listeningAt("127.0.0.1", 7001).withId("m2").promotedAs(RedisNode.NodeType.MASTER).build();
+        RedisClusterNode replica = RedisClusterNode.newRedisClusterNode().listeningAt("127.0.0.1", 7002).withId("r1").promotedAs(RedisNode.NodeType.SLAVE).replicaOf("m1").build();
+        Map<RedisClusterNode, InMemoryRedisConnectionFactory> nodes = new LinkedHashMap<>();
+        nodes.put(master1, new InMemoryRedisConnectionFactory());
+        nodes.put(master2, new InMemoryRedisConnectionFactory());
+        for (int i = 0; i < 100; i++) {
+            InMemoryRedisConnectionFactory node = i % 2 == 0 ? nodes.get(master1) : nodes.get(master2);
+            node.getStore().put("user:" + i, String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+            node.getStore().put("order:" + i, String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+        }
+        List<RedisClusterNode> scanned = new ArrayList<>();
+        RedisConnectionFactory clusterConnectionFactory = clusterConnectionFactory(nodes, replica, scanned);
+        RedisClient clusterClient = new RedisClient(new StringRedisTemplate(clusterConnectionFactory), redisTemplate(clusterConnectionFactory));
+
+        Set<String> keys = new HashSet<>();
+        try (Cursor<String> cursor = clusterClient.scan("user:*", 10)) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+            }
+            Assert.assertEquals(100L, cursor.getPosition());
+        }
+        Assert.assertEquals(100, keys.size());
+        Assert.assertEquals(Arrays.asList(master1, master2), scanned);
+
+        Assert.assertEquals(30L, clusterClient.deleteByPattern("user:*", 30L));
+        Assert.assertTrue(clusterClient.deleteByPattern("user:*"));
+        for (InMemoryRedisConnectionFactory node : nodes.values()) {
+            Assert.assertTrue(node.getStore().keySet().stream().noneMatch(key -> key.startsWith("user:")));
+            Assert.assertEquals(50L, node.getStore().keySet().stream().filter(key -> key.startsWith("order:")).count());
+        }
+    }
+
+    /**
+     * 集群连接替身：与 Lettuce 一致不支持跨节点的 SCAN，按节点 SCAN 及 UNLINK 转发给各节点的 Redis 替身
+     */
+    private static RedisConnectionFactory clusterConnectionFactory(Map<RedisClusterNode, InMemoryRedisConnectionFactory> nodes,
+                                                                   RedisClusterNode replica, List<RedisClusterNode> scanned) {
+        InvocationHandler connection = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "clusterGetNodes": {
+                    List<RedisClusterNode> clusterNodes = new ArrayList<>(nodes.keySet());
+                    clusterNodes.add(replica);
+                    return clusterNodes;
+                }
+                case "scan":
+                    if (args.length == 1) {
+                        throw new InvalidDataAccessApiUsageException("Scan is not supported across multiple nodes within a cluster");
+                    }
+                    scanned.add((RedisClusterNode) args[0]);
+                    return nodes.get((RedisClusterNode) args[0]).getConnection().scan((ScanOptions) args[1]);
+                case "unlink": {
+                    long count = 0L;
+                    for (InMemoryRedisConnectionFactory node : nodes.values()) {
+                        count += node.getConnection().unlink((byte[][]) args[0]);
+                    }
+                    return count;
+                }
+                case "close":
+                    return null;
+                case "isClosed":
+                case "isPipelined":
+                case "isQueueing":
+                    return false;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        };
+        return (RedisConnectionFactory) Proxy.newProxyInstance(RedisClientScanTest.class.getClassLoader(), new Class<?>[]{RedisConnectionFactory.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConnection":
+                case "getClusterConnection":
+                    return Proxy.newProxyInstance(RedisClientScanTest.class.getClassLoader(), new Class<?>[]{RedisClusterConnection.class}, connection);
+                case "getConvertPipelineAndTxResults":
+                    return true;
+                case "translateExceptionIfPossible":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    public void reactiveScanTest() {
+        List<String> keys = reactiveRedisClient.scan("user:*", COUNT).collectList().block();
+        Assert.assertNotNull(keys);
+        Assert.assertEquals(SIZE, new HashSet<>(keys).size());
+        Assert.assertEquals((SIZE + COUNT - 1) / COUNT, connectionFactory.getRoundTrips());
+
+        connectionFactory.resetCounters();
+        Assert.assertEquals(Long.valueOf(1000L), reactiveRedisClient.deleteByPattern("user:*", 1000L).block());
+        Assert.assertEquals(SIZE - 1000, count("user:"));
+        Assert.assertEquals(1000 / RedisClient.BATCH_SIZE, connectionFactory.getCommandCount("unlink"));
+
+        Assert.assertEquals(Long.valueOf(SIZE - 1000), reactiveRedisClient.deleteByPattern("user:*").block());
+        Assert.assertEquals(0, count("user:"));
+        Assert.assertEquals(OTHERS, count("order:"));
+    }
+}
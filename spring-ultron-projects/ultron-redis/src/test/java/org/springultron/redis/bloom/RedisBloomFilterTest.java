@@ -0,0 +1,139 @@
+package org.springultron.redis.bloom;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.RedisAutoCacheManager;
+import org.springultron.redis.cache.UltronRedisCache;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 布隆过滤器测试：实测误判率、批量操作网络往返次数及缓存穿透保护
+ *
+ * @author brucewuu
+ * @date 2021/5/17 下午2:10
+ */
+public class RedisBloomFilterTest {
+    private static final int INSERTIONS = 10000;
+    private static final double FPP = 0.01D;
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setDefaultSerializer(new RedisConfiguration().redisSerializer(new UltronRedisProperties()));
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @Test
+    public void measuredFalsePositiveRateMatchesTarget() {
+        RedisBloomFilter<Long> bloomFilter = new RedisBloomFilter<>(redisTemplate, "bloom:user", INSERTIONS, FPP);
+        List<Long> members = new ArrayList<>(INSERTIONS);
+        for (long i = 0; i < INSERTIONS; i++) {
+            members.add(i);
+        }
+        connectionFactory.resetCounters();
+        bloomFilter.addAll(members);
+        Assert.assertEquals(INSERTIONS / 500, connectionFactory.getRoundTrips());
+
+        // 不允许漏判
+        Assert.assertFalse(bloomFilter.mightContainAll(members).contains(Boolean.FALSE));
+
+        int probes = INSERTIONS * 5;
+        List<Long> absent = new ArrayList<>(probes);
+        for (long i = 0; i < probes; i++) {
+            absent.add(1000000L + i);
+        }
+        long falsePositives = bloomFilter.mightContainAll(absent).stream().filter(Boolean::booleanValue).count();
+        double measured = (double) falsePositives / probes;
+        System.out.printf("bits=%d hashes=%d target fpp=%.4f measured fpp=%.4f%n",
+                bloomFilter.getNumBits(), bloomFilter.getNumHashFunctions(), FPP, measured);
+        // 统计波动留 50% 余量
+        Assert.assertTrue("measured fpp " + measured + " exceeds target " + FPP, measured <= FPP * 1.5);
+    }
+
+    @Test
+    public void singleElementUsesOneRoundTrip() {
+        RedisBloomFilter<String> bloomFilter = new RedisBloomFilter<>(redisTemplate, "bloom:order", 1000, 0.001D);
+        connectionFactory.resetCounters();
+        Assert.assertTrue(bloomFilter.add("order-1"));
+        Assert.assertFalse(bloomFilter.add("order-1"));
+        Assert.assertTrue(bloomFilter.mightContain("order-1"));
+        Assert.assertEquals(3, connectionFactory.getRoundTrips());
+        Assert.assertEquals(bloomFilter.getNumHashFunctions() * 3, connectionFactory.getCommands());
+    }
+
+    private Cache bloomCache() {
+        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new RedisConfiguration().redisSerializer(new UltronRedisProperties())));
+        RedisAutoCacheManager cacheManager = new RedisAutoCacheManager(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                config, Collections.emptyMap(), true, new UltronRedisProperties.Cache(), redisTemplate);
+        cacheManager.setTransactionAware(false);
+        cacheManager.afterPropertiesSet();
+        Cache cache = cacheManager.getCache("user#1h#bloom");
+        Assert.assertNotNull(cache);
+        return cache;
+    }
+
+    @Test
+    public void cacheGuardSkipsLoaderForAbsentKeys() {
+        Cache cache = bloomCache();
+        RedisBloomFilter<String> bloomFilter = ((UltronRedisCache) cache).getBloomFilter();
+        Assert.assertNotNull(bloomFilter);
+        bloomFilter.addAll(Collections.singletonList("1"));
+        bloomFilter.markReady();
+
+        AtomicInteger loads = new AtomicInteger();
+        Assert.assertNull(cache.get(404L, () -> "user-" + loads.incrementAndGet()));
+        Cache.ValueWrapper wrapper = cache.get(404L);
+        Assert.assertNotNull(wrapper);
+        Assert.assertNull(wrapper.get());
+        Assert.assertEquals(0, loads.get());
+
+        Assert.assertEquals("user-1", cache.get(1L, () -> "user-" + loads.incrementAndGet()));
+        Assert.assertEquals("user-1", cache.get(1L, String.class));
+        cache.put(2L, "user-2");
+        Assert.assertEquals("user-2", cache.get(2L, String.class));
+    }
+
+    @Test
+    public void cacheGuardFailsOpenWhenFilterNotReady() {
+        Cache cache = bloomCache();
+        RedisBloomFilter<String> bloomFilter = ((UltronRedisCache) cache).getBloomFilter();
+        Assert.assertNotNull(bloomFilter);
+        // 未导入数据的布隆过滤器不拦截，照常回源并把回源的key加入布隆过滤器
+        AtomicInteger loads = new AtomicInteger();
+        Assert.assertFalse(bloomFilter.isReady());
+        Assert.assertEquals("user-1", cache.get(1L, () -> "user-" + loads.incrementAndGet()));
+        Assert.assertEquals(1, loads.get());
+        Assert.assertTrue(bloomFilter.mightContain("1"));
+
+        bloomFilter.markReady();
+        Assert.assertNull(cache.get(404L, () -> "user-" + loads.incrementAndGet()));
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals("user-1", cache.get(1L, String.class));
+
+        // 布隆过滤器丢失后恢复回源
+        Assert.assertTrue(bloomFilter.delete());
+        Assert.assertEquals("user-2", cache.get(404L, () -> "user-" + loads.incrementAndGet()));
+        Assert.assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,68 @@
+package org.springultron.redis.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存预热测试：并发上限、失败隔离及预热结果
+ *
+ * @author brucewuu
+ * @date 2021/5/28 下午2:40
+ */
+public class CacheWarmingRunnerTest {
+
+    @Test
+    public void warmUpTest() {
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CacheWarmer> warmers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final String cacheName = "cache" + i;
+            warmers.add(CacheWarmer.of(cacheName, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(50);
+                running.decrementAndGet();
+                Map<String, String> data = new HashMap<>();
+                for (int j = 0; j < 100; j++) {
+                    data.put(cacheName + ":" + j, "value" + j);
+                }
+                return data;
+            }));
+        }
+        warmers.add(CacheWarmer.of("broken", () -> {
+            throw new IllegalStateException("database unavailable");
+        }));
+
+        UltronRedisProperties.Warming properties = new UltronRedisProperties.Warming();
+        properties.setConcurrency(3);
+        CacheWarmingRunner runner = new CacheWarmingRunner(cacheManager, warmers, properties);
+        runner.run(new DefaultApplicationArguments());
+
+        // 同步模式下 run 返回时预热已完成
+        List<CacheWarmingResult> results = runner.getResults();
+        Assert.assertEquals(9, results.size());
+        Assert.assertTrue("max running: " + maxRunning.get(), maxRunning.get() <= 3);
+        for (CacheWarmingResult result : results) {
+            if ("broken".equals(result.getCacheName())) {
+                Assert.assertFalse(result.isSuccess());
+                Assert.assertEquals(0L, result.getEntries());
+            } else {
+                Assert.assertTrue(result.isSuccess());
+                Assert.assertEquals(100L, result.getEntries());
+                Assert.assertTrue(result.getDurationMillis() >= 50L);
+            }
+        }
+        Assert.assertEquals("value7", cacheManager.getCache("cache3").get("cache3:7", String.class));
+        runner.destroy();
+    }
+}
@@ -0,0 +1,84 @@
+package org.springultron.redis.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.RedisAutoCacheManager;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * 缓存 Micrometer 指标测试：指标值与实际缓存操作一致，运行期间新建的缓存空间可被发现
+ *
+ * @author brucewuu
+ * @date 2021/5/31 下午2:30
+ */
+public class RedisCacheMetricsRegistrarTest {
+    private MeterRegistry registry;
+    private RedisAutoCacheManager cacheManager;
+    private RedisCacheMetricsRegistrar registrar;
+
+    @Before
+    public void setUp() {
+        InMemoryRedisConnectionFactory connectionFactory = new InMemoryRedisConnectionFactory();
+        registry = new SimpleMeterRegistry();
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+        RedisCacheWriter cacheWriter = new TimedRedisCacheWriter(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory), registry, "cacheManager")
+                .withStatisticsCollector(CacheStatisticsCollector.create());
+        cacheManager = new RedisAutoCacheManager(cacheWriter, config, Collections.emptyMap(), true);
+        cacheManager.setTransactionAware(false);
+        cacheManager.afterPropertiesSet();
+        registrar = new RedisCacheMetricsRegistrar(cacheManager, registry, "cacheManager", Duration.ZERO);
+    }
+
+    @Test
+    public void metricsTest() {
+        Cache cache = cacheManager.getCache("product#10m");
+        Assert.assertNotNull(cache);
+        registrar.afterSingletonsInstantiated();
+
+        cache.put(1, "p1");
+        cache.put(2, "p2");
+        cache.put(3, "p3");
+        Assert.assertEquals("p1", cache.get(1, String.class));
+        Assert.assertEquals("p2", cache.get(2, String.class));
+        Assert.assertNull(cache.get(4));
+        cache.evict(3);
+
+        Assert.assertEquals(2.0D, counter("cache.gets", "product", "hit"), 0);
+        Assert.assertEquals(1.0D, counter("cache.gets", "product", "miss"), 0);
+        Assert.assertEquals(3.0D, registry.get("cache.puts").tag("cache", "product").functionCounter().count(), 0);
+        Assert.assertEquals(1.0D, registry.get("cache.removals").tag("cache", "product").functionCounter().count(), 0);
+        Assert.assertEquals(3L, registry.get(TimedRedisCacheWriter.GET_TIMER).tag("cache", "product").timer().count());
+        Assert.assertEquals(3L, registry.get(TimedRedisCacheWriter.PUT_TIMER).tag("cache", "product").timer().count());
+        Assert.assertEquals(0L, (long) registry.get("cache.lock.wait").tag("cache", "product").functionTimer().count());
+        Assert.assertNotNull(registry.get("cache.lock.duration").tag("cache", "product").timeGauge());
+
+        // 运行期间新建的缓存空间在下一次刷新时绑定
+        Cache user = cacheManager.getCache("user");
+        Assert.assertNotNull(user);
+        user.get("missing");
+        Assert.assertEquals(1, registrar.bindAll());
+        Assert.assertEquals(0, registrar.bindAll());
+        Assert.assertEquals(1.0D, counter("cache.gets", "user", "miss"), 0);
+        registrar.destroy();
+    }
+
+    private double counter(String name, String cache, String result) {
+        return registry.get(name).tag("cache", cache).tag("result", result).functionCounter().count();
+    }
+}
@@ -0,0 +1,81 @@
+package org.springultron.redis.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * cache name 扩展语法及 XFetch 提前过期测试
+ *
+ * @author brucewuu
+ * @date 2021/5/10 下午3:15
+ */
+public class RedisCacheSpecTest {
+
+    @Test
+    public void parseTest() {
+        Map<String, String> none = Collections.emptyMap();
+        RedisCacheSpec plain = RedisCacheSpec.parse("user", 1.0, none);
+        Assert.assertEquals("user", plain.getName());
+        Assert.assertNull(plain.getTtl());
+        Assert.assertFalse(plain.isLock());
+        Assert.assertFalse(plain.isEarlyRefresh());
+
+        RedisCacheSpec ttl = RedisCacheSpec.parse("user#300", 1.0, none);
+        Assert.assertEquals("user", ttl.getName());
+        Assert.assertEquals(Duration.ofSeconds(300), ttl.getTtl());
+
+        RedisCacheSpec options = RedisCacheSpec.parse("product#10m#lock#early", 1.0, none);
+        Assert.assertEquals("product", options.getName());
+        Assert.assertEquals(Duration.ofMinutes(10), options.getTtl());
+        Assert.assertTrue(options.isLock());
+        Assert.assertEquals(1.0, options.getBeta(), 0);
+
+        RedisCacheSpec fromProperties = RedisCacheSpec.parse("product#10m", 1.0, Collections.singletonMap("product", "early=2.5"));
+        Assert.assertFalse(fromProperties.isLock());
+        Assert.assertEquals(2.5, fromProperties.getBeta(), 0);
+
+        RedisCacheSpec ttlOptions = RedisCacheSpec.parse("user#1h#jitter=10#null=30", 1.0, none);
+        Assert.assertEquals(Integer.valueOf(10), ttlOptions.getJitter());
+        Assert.assertEquals(Duration.ofSeconds(30), ttlOptions.getNullTtl());
+        Assert.assertNull(plain.getJitter());
+        Assert.assertNull(plain.getNullTtl());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidJitterTest() {
+        RedisCacheSpec.parse("user#300#jitter=100", 1.0, Collections.emptyMap());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTtlJitterPropertyTest() {
+        new UltronRedisProperties.Cache().setTtlJitter(100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownOptionTest() {
+        RedisCacheSpec.parse("user#300#unknown", 1.0, Collections.emptyMap());
+    }
+
+    @Test
+    public void earlyRefreshTest() {
+        // 未知计算耗时的值不会提前刷新
+        TimedCacheValue unknown = new TimedCacheValue("v", 0L, 10_000L);
+        Assert.assertFalse(unknown.shouldRefresh(1.0, 9_990L, 0.0));
+        // 计算耗时 100ms，距离过期还有 1 小时，即使随机数取到最小值也不会提前刷新
+        TimedCacheValue fresh = new TimedCacheValue("v", 100L, 3600_000L);
+        Assert.assertFalse(fresh.shouldRefresh(1.0, 0L, 0.0));
+        // 固定随机数：-ln(random) * delta * beta 达到剩余 ttl 时刷新
+        TimedCacheValue value = new TimedCacheValue("v", 100L, 10_000L);
+        Assert.assertFalse(value.shouldRefresh(1.0, 9_000L, 1.0));
+        Assert.assertTrue(value.shouldRefresh(1.0, 10_000L, 1.0));
+        Assert.assertFalse(value.shouldRefresh(1.0, 9_000L, Math.exp(-9.9)));
+        Assert.assertTrue(value.shouldRefresh(1.0, 9_000L, Math.exp(-10.1)));
+        Assert.assertTrue(value.shouldRefresh(2.0, 9_000L, Math.exp(-5.1)));
+        Assert.assertTrue(value.shouldRefresh(1.0, 0L, 0.0));
+    }
+}
@@ -0,0 +1,105 @@
+package org.springultron.redis.cache;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * Caffeine + Redis 两级缓存测试
+ *
+ * @author brucewuu
+ * @date 2021/5/8 下午2:10
+ */
+public class RedisCaffeineCacheManagerTest {
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private RedisCaffeineCacheManager nodeA;
+    private RedisCaffeineCacheManager nodeB;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        nodeA = createCacheManager();
+        nodeB = createCacheManager();
+        connectionFactory.subscribe(nodeA);
+        connectionFactory.subscribe(nodeB);
+    }
+
+    private RedisCaffeineCacheManager createCacheManager() {
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setDefaultSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+        RedisCaffeineCacheManager cacheManager = new RedisCaffeineCacheManager(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                config, Collections.emptyMap(), true, new UltronRedisProperties.Cache(), redisTemplate);
+        cacheManager.setTransactionAware(false);
+        cacheManager.afterPropertiesSet();
+        return cacheManager;
+    }
+
+    @Test
+    public void localCacheSavesRedisCallsTest() {
+        Cache cacheA = nodeA.getCache("dict#300");
+        Cache cacheB = nodeB.getCache("dict#300");
+        Assert.assertNotNull(cacheA);
+        Assert.assertNotNull(cacheB);
+        Assert.assertEquals("dict", cacheA.getName());
+        Assert.assertEquals(Duration.ofSeconds(300), ((RedisCaffeineCache) cacheA).getCacheConfiguration().getTtl());
+
+        cacheA.put("gender", "male");
+        connectionFactory.resetCounters();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("male", cacheB.get("gender", String.class));
+        }
+        Assert.assertEquals(1, connectionFactory.getRoundTrips());
+
+        TwoLevelCacheStatistics statistics = ((RedisCaffeineCache) cacheB).getTwoLevelStatistics();
+        System.out.println(statistics);
+        Assert.assertEquals(999, statistics.getLocalHits());
+        Assert.assertEquals(999, statistics.getSavedRedisCalls());
+        Assert.assertEquals(1, statistics.getLocalMisses());
+        Assert.assertEquals(1, statistics.getRedisHits());
+        Assert.assertEquals(0, statistics.getRedisMisses());
+    }
+
+    @Test
+    public void crossNodeInvalidationTest() {
+        Cache cacheA = nodeA.getCache("config#5m");
+        Cache cacheB = nodeB.getCache("config#5m");
+        Assert.assertNotNull(cacheA);
+        Assert.assertNotNull(cacheB);
+
+        cacheA.put("switch", "on");
+        Assert.assertEquals("on", cacheB.get("switch", String.class));
+        Assert.assertEquals("on", ((RedisCaffeineCache) cacheB).getLocalCache().getIfPresent("config::switch"));
+
+        cacheA.put("switch", "off");
+        Assert.assertNull(((RedisCaffeineCache) cacheB).getLocalCache().getIfPresent("config::switch"));
+        Assert.assertEquals("off", ((RedisCaffeineCache) cacheA).getLocalCache().getIfPresent("config::switch"));
+        Assert.assertEquals("off", cacheB.get("switch", String.class));
+
+        cacheB.evict("switch");
+        Assert.assertNull(((RedisCaffeineCache) cacheA).getLocalCache().getIfPresent("config::switch"));
+        Assert.assertNull(cacheA.get("switch"));
+
+        cacheA.put("a", 1);
+        cacheB.get("a");
+        cacheA.clear();
+        Assert.assertEquals(0, ((RedisCaffeineCache) cacheB).getLocalCache().estimatedSize());
+    }
+}
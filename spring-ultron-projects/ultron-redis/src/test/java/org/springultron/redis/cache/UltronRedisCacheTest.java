@@ -0,0 +1,244 @@
+package org.springultron.redis.cache;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.RedisAutoCacheManager;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 缓存击穿保护测试：分布式 single-flight、非 sync 调用的提前过期；ttl 随机化及空结果 ttl
+ *
+ * @author brucewuu
+ * @date 2021/5/10 下午3:40
+ */
+public class UltronRedisCacheTest {
+    private static final String UNLOCK_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        connectionFactory.registerScript(UNLOCK_SCRIPT, (keys, args) -> {
+            Object value = connectionFactory.getStore().get(keys.get(0));
+            if (value instanceof byte[] && new String((byte[]) value, StandardCharsets.UTF_8).equals(new String(args.get(0), StandardCharsets.UTF_8))) {
+                connectionFactory.getStore().remove(keys.get(0));
+                return 1L;
+            }
+            return 0L;
+        });
+    }
+
+    private static RedisCacheConfiguration cacheConfig() {
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+    }
+
+    private RedisTemplate<String, Object> redisTemplate() {
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setDefaultSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+        return redisTemplate;
+    }
+
+    private RedisAutoCacheManager createCacheManager() {
+        RedisTemplate<String, Object> redisTemplate = redisTemplate();
+        RedisCacheConfiguration config = cacheConfig();
+        RedisAutoCacheManager cacheManager = new RedisAutoCacheManager(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                config, Collections.emptyMap(), true, new UltronRedisProperties.Cache(), redisTemplate);
+        cacheManager.setTransactionAware(false);
+        cacheManager.afterPropertiesSet();
+        return cacheManager;
+    }
+
+    @Test
+    public void singleFlightTest() throws Exception {
+        // 模拟 4 个节点同时加载同一个热点key
+        List<Cache> caches = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            caches.add(createCacheManager().getCache("product#10m#lock#early"));
+        }
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            Cache cache = caches.get(i % caches.size());
+            futures.add(executor.submit(() -> {
+                start.await();
+                return cache.get("hot", () -> {
+                    loads.incrementAndGet();
+                    Thread.sleep(200);
+                    return "value";
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<String> future : futures) {
+            Assert.assertEquals("value", future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        Assert.assertEquals(1, loads.get());
+        Assert.assertFalse(connectionFactory.getStore().containsKey("product::hot:lock"));
+
+        Cache.ValueWrapper wrapper = caches.get(0).get("hot");
+        Assert.assertNotNull(wrapper);
+        Assert.assertEquals("value", wrapper.get());
+    }
+
+    @Test
+    public void earlyRefreshWithoutSyncTest() throws Exception {
+        AtomicReference<Double> random = new AtomicReference<>(1.0D);
+        RedisCacheSpec spec = RedisCacheSpec.parse("product#10s#early", 1.0D, Collections.emptyMap());
+        Cache cache = new UltronRedisCache("product", RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                cacheConfig().entryTtl(spec.getTtl()), spec, new UltronRedisProperties.Cache(), null) {
+            @Override
+            protected double nextRandom() {
+                return random.get();
+            }
+        };
+        // 非 sync 的 @Cacheable：未命中后计算再写入，计算耗时取未命中到写入之间的时间
+        Assert.assertNull(cache.get("slow"));
+        Thread.sleep(50);
+        cache.put("slow", "value");
+        // 未记录计算耗时的值不会提前过期
+        cache.put("unknown", "value");
+        Cache.ValueWrapper wrapper = cache.get("slow");
+        Assert.assertNotNull(wrapper);
+        Assert.assertEquals("value", wrapper.get());
+
+        // -ln(Double.MIN_VALUE) ≈ 744，乘以计算耗时（>= 50ms）超过剩余 ttl 时提前过期，按未命中处理
+        random.set(Double.MIN_VALUE);
+        Assert.assertNull(cache.get("slow"));
+        wrapper = cache.get("unknown");
+        Assert.assertNotNull(wrapper);
+        Assert.assertEquals("value", wrapper.get());
+    }
+
+    @Test
+    public void localSingleFlightTest() throws Exception {
+        // 未开启 lock 时同一节点内仍只有一个线程回源
+        Cache cache = createCacheManager().getCache("product#10m#early");
+        AtomicInteger loads = new AtomicInteger();
+        for (String result : concurrentGet(cache, "hot", loads, "value")) {
+            Assert.assertEquals("value", result);
+        }
+        Assert.assertEquals(1, loads.get());
+
+        // 提前刷新时只有一个线程重新计算，其余线程返回旧值
+        AtomicReference<Double> random = new AtomicReference<>(1.0D);
+        RedisCacheSpec spec = RedisCacheSpec.parse("item#10s#early", 1.0D, Collections.emptyMap());
+        Cache early = new UltronRedisCache("item", RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                cacheConfig().entryTtl(spec.getTtl()), spec, new UltronRedisProperties.Cache(), null) {
+            @Override
+            protected double nextRandom() {
+                return random.get();
+            }
+        };
+        early.get("hot", () -> {
+            Thread.sleep(50);
+            return "old";
+        });
+        random.set(Double.MIN_VALUE);
+        loads.set(0);
+        for (String result : concurrentGet(early, "hot", loads, "new")) {
+            Assert.assertTrue(result, "old".equals(result) || "new".equals(result));
+        }
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void lockWaitTimeoutTest() throws Exception {
+        UltronRedisProperties.Cache properties = new UltronRedisProperties.Cache();
+        properties.getStampede().setLockWaitTime(Duration.ofMillis(200));
+        properties.getStampede().setPollInterval(Duration.ofMillis(20));
+        RedisCacheSpec spec = RedisCacheSpec.parse("product#10m#lock", 1.0D, Collections.emptyMap());
+        Cache cache = new UltronRedisCache("product", RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                cacheConfig().entryTtl(spec.getTtl()), spec, properties, redisTemplate());
+        // 其他节点持有锁且迟迟未写入，等待超时后同一节点只有一个线程回源
+        connectionFactory.getStore().put("product::hot:lock", "other".getBytes(StandardCharsets.UTF_8));
+        AtomicInteger loads = new AtomicInteger();
+        for (String result : concurrentGet(cache, "hot", loads, "value")) {
+            Assert.assertEquals("value", result);
+        }
+        Assert.assertEquals(1, loads.get());
+    }
+
+    /**
+     * 32 个线程同时通过 valueLoader 读取同一个key
+     */
+    private static List<String> concurrentGet(Cache cache, String key, AtomicInteger loads, String value) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return cache.get(key, () -> {
+                    loads.incrementAndGet();
+                    Thread.sleep(200);
+                    return value;
+                });
+            }));
+        }
+        start.countDown();
+        List<String> results = new ArrayList<>();
+        for (Future<String> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    @Test
+    public void ttlJitterAndNullTtlTest() {
+        Cache cache = createCacheManager().getCache("user#100s#jitter=20#null=5s");
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 200; i++) {
+            cache.put(i, "user" + i);
+            long ttl = connectionFactory.getTtl("user::" + i);
+            min = Math.min(min, ttl);
+            max = Math.max(max, ttl);
+        }
+        // ttl 在 [80s, 100s] 之间随机分布，不超过配置的 ttl
+        Assert.assertTrue("min ttl: " + min, min >= 80_000L);
+        Assert.assertTrue("max ttl: " + max, max <= 100_000L);
+        Assert.assertTrue("ttl spread: " + (max - min), max - min > 10_000L);
+
+        // 不足1毫秒的 ttl 至少写入1毫秒，不会变成永不过期
+        Cache tiny = createCacheManager().getCache("tiny#500us#jitter=10");
+        tiny.put("key", "value");
+        Assert.assertEquals(Long.valueOf(1L), connectionFactory.getTtl("tiny::key"));
+
+        cache.put("missing", null);
+        cache.put("empty", Collections.emptyList());
+        Assert.assertEquals(Long.valueOf(5_000L), connectionFactory.getTtl("user::missing"));
+        Assert.assertEquals(Long.valueOf(5_000L), connectionFactory.getTtl("user::empty"));
+        Cache.ValueWrapper wrapper = cache.get("missing");
+        Assert.assertNotNull(wrapper);
+        Assert.assertNull(wrapper.get());
+    }
+}
@@ -0,0 +1,132 @@
+package org.springultron.redis.cache;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟批量写入测试：写入合并、读取自己的写入、写入过程中的读取、按批次 pipeline 写入及关闭时同步写入
+ *
+ * @author brucewuu
+ * @date 2021/5/27 下午3:20
+ */
+public class WriteBehindRedisCacheWriterTest {
+    private static final String CACHE = "product";
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private WriteBehindRedisCacheWriter cacheWriter;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        UltronRedisProperties.WriteBehind properties = new UltronRedisProperties.WriteBehind();
+        // 测试中手动触发写入
+        properties.setFlushInterval(Duration.ofHours(1));
+        properties.setBatchSize(500);
+        properties.setMaxPending(100000);
+        cacheWriter = new WriteBehindRedisCacheWriter(connectionFactory, properties);
+    }
+
+    @After
+    public void tearDown() {
+        cacheWriter.destroy();
+    }
+
+    @Test
+    public void coalesceTest() {
+        for (int i = 0; i < 1000; i++) {
+            cacheWriter.put(CACHE, bytes("product:" + i % 10), bytes("v" + i), Duration.ofMinutes(5));
+        }
+        Assert.assertEquals(10, cacheWriter.getPendingCount());
+        Assert.assertEquals(0, connectionFactory.getRoundTrips());
+
+        cacheWriter.flush();
+        // 同一个key的1000次写入合并为10条 SET，一次网络往返
+        Assert.assertEquals(10, connectionFactory.getCommandCount("set"));
+        Assert.assertEquals(1, connectionFactory.getRoundTrips());
+        Assert.assertArrayEquals(bytes("v999"), (byte[]) connectionFactory.getStore().get("product:9"));
+    }
+
+    @Test
+    public void readYourWritesTest() {
+        cacheWriter.put(CACHE, bytes("product:1"), bytes("v1"), Duration.ZERO);
+        Assert.assertArrayEquals(bytes("v1"), cacheWriter.get(CACHE, bytes("product:1")));
+        Assert.assertArrayEquals(bytes("v1"), cacheWriter.putIfAbsent(CACHE, bytes("product:1"), bytes("v2"), Duration.ZERO));
+        Assert.assertEquals(0, connectionFactory.getRoundTrips());
+
+        cacheWriter.flush();
+        cacheWriter.remove(CACHE, bytes("product:1"));
+        Assert.assertNull(cacheWriter.get(CACHE, bytes("product:1")));
+        Assert.assertTrue(connectionFactory.getStore().containsKey("product:1"));
+
+        // 待写删除时 putIfAbsent 先落地删除再写入
+        Assert.assertNull(cacheWriter.putIfAbsent(CACHE, bytes("product:1"), bytes("v3"), Duration.ZERO));
+        Assert.assertArrayEquals(bytes("v3"), cacheWriter.get(CACHE, bytes("product:1")));
+    }
+
+    @Test
+    public void readDuringSlowFlushTest() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryRedisConnectionFactory slowConnectionFactory = new InMemoryRedisConnectionFactory() {
+            @Override
+            public RedisConnection getConnection() {
+                flushing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getConnection();
+            }
+        };
+        UltronRedisProperties.WriteBehind properties = new UltronRedisProperties.WriteBehind();
+        properties.setFlushInterval(Duration.ofHours(1));
+        WriteBehindRedisCacheWriter slowCacheWriter = new WriteBehindRedisCacheWriter(slowConnectionFactory, properties);
+        slowCacheWriter.put(CACHE, bytes("product:1"), bytes("v1"), Duration.ZERO);
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(slowCacheWriter::flush);
+        Assert.assertTrue(flushing.await(10, TimeUnit.SECONDS));
+
+        // 已取出待写队列、尚未写入 Redis 时仍读到自己的写入，不会读到 Redis 中的旧值
+        Assert.assertEquals(0, slowCacheWriter.getPendingCount());
+        Assert.assertArrayEquals(bytes("v1"), slowCacheWriter.get(CACHE, bytes("product:1")));
+        // 写入过程中的新写入优先
+        slowCacheWriter.put(CACHE, bytes("product:1"), bytes("v2"), Duration.ZERO);
+        Assert.assertArrayEquals(bytes("v2"), slowCacheWriter.get(CACHE, bytes("product:1")));
+
+        release.countDown();
+        flush.get(10, TimeUnit.SECONDS);
+        Assert.assertArrayEquals(bytes("v1"), (byte[]) slowConnectionFactory.getStore().get("product:1"));
+        Assert.assertArrayEquals(bytes("v2"), slowCacheWriter.get(CACHE, bytes("product:1")));
+        slowCacheWriter.destroy();
+        Assert.assertArrayEquals(bytes("v2"), (byte[]) slowConnectionFactory.getStore().get("product:1"));
+    }
+
+    @Test
+    public void batchAndShutdownFlushTest() {
+        for (int i = 0; i < 1200; i++) {
+            cacheWriter.put(CACHE, bytes("product:" + i), bytes("v" + i), Duration.ofMinutes(5));
+        }
+        cacheWriter.remove(CACHE, bytes("product:0"));
+        cacheWriter.destroy();
+        Assert.assertEquals(0, cacheWriter.getPendingCount());
+        Assert.assertEquals(1199, connectionFactory.getStore().size());
+        Assert.assertFalse(connectionFactory.getStore().containsKey("product:0"));
+        // 后台写入与关闭时的同步写入都是最多 500 个key一个 pipeline，远少于逐条写入的 1201 次往返
+        Assert.assertTrue("round trips: " + connectionFactory.getRoundTrips(), connectionFactory.getRoundTrips() < 10);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+package org.springultron.redis.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 反应式 RedisTemplate 序列化测试：与阻塞式 RedisTemplate 读写的数据互通
+ *
+ * @author brucewuu
+ * @date 2021/5/13 下午2:30
+ */
+public class ReactiveRedisConfigurationTest {
+
+    @Test
+    public void reactiveTemplateUsesJsonSerializerWhenNoBeanPresent() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        ReactiveRedisConnectionFactory connectionFactory = (ReactiveRedisConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{ReactiveRedisConnectionFactory.class}, (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        ReactiveRedisTemplate<String, Object> template = new ReactiveRedisConfiguration().reactiveRedisTemplate(connectionFactory,
+                beanFactory.getBeanProvider(ResolvableType.forClassWithGenerics(RedisSerializer.class, Object.class)), new UltronRedisProperties());
+        RedisSerializationContext.SerializationPair<Object> valuePair = template.getSerializationContext().getValueSerializationPair();
+        RedisSerializer<Object> blocking = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+
+        List<Object> value = new ArrayList<>();
+        value.add("ultron");
+        value.add(LocalDateTime.of(2021, 5, 13, 14, 30));
+        // 阻塞式写入，反应式读取
+        Assert.assertEquals(value, valuePair.read(ByteBuffer.wrap(blocking.serialize(value))));
+        // 反应式写入，阻塞式读取
+        ByteBuffer buffer = valuePair.write(value);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        Assert.assertEquals(value, blocking.deserialize(bytes));
+    }
+}
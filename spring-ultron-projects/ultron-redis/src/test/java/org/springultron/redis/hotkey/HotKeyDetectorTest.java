@@ -0,0 +1,214 @@
+package org.springultron.redis.hotkey;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.ReactiveRedisClient;
+import org.springultron.redis.RedisClient;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 热点key探测测试：达到阈值后本地提升、写入失效、读取期间失效不提升、副本过期、计数草图 hash 独立性以及 top-K 统计
+ *
+ * @author brucewuu
+ * @date 2021/5/21 下午3:20
+ */
+public class HotKeyDetectorTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private HotKeyDetector hotKeyDetector;
+    private RedisClient redisClient;
+    private ReactiveRedisClient reactiveRedisClient;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        redisTemplate.setDefaultSerializer(serializer);
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+
+        UltronRedisProperties.HotKey properties = new UltronRedisProperties.HotKey();
+        properties.setSampleRate(1.0D);
+        properties.setThreshold(100L);
+        properties.setTopK(10);
+        hotKeyDetector = new HotKeyDetector(properties, ticker::get);
+        redisClient = new RedisClient(new StringRedisTemplate(connectionFactory), redisTemplate, null, hotKeyDetector);
+        RedisSerializationContext<String, Object> context = RedisSerializationContext.<String, Object>newSerializationContext(serializer)
+                .key(RedisSerializer.string())
+                .hashKey(RedisSerializer.string())
+                .build();
+        reactiveRedisClient = new ReactiveRedisClient(new ReactiveStringRedisTemplate(connectionFactory), new ReactiveRedisTemplate<>(connectionFactory, context), hotKeyDetector);
+    }
+
+    private void promote(String key) {
+        for (int i = 0; i < 200; i++) {
+            redisClient.get(key);
+        }
+        Assert.assertEquals(1, hotKeyDetector.getPromotedCount());
+    }
+
+    @Test
+    public void promoteTest() {
+        redisClient.set("product:1", "viral");
+        redisClient.set("product:2", "cold");
+        connectionFactory.resetCounters();
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals("viral", redisClient.get("product:1"));
+        }
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("cold", redisClient.get("product:2"));
+        }
+        // 达到阈值前的 100 次读取访问 Redis，之后由本地副本提供
+        Assert.assertEquals(110, connectionFactory.getRoundTrips());
+        Assert.assertEquals(9900, hotKeyDetector.getLocalHitCount());
+
+        // 本节点写入后立即失效本地副本
+        redisClient.set("product:1", "sold out");
+        Assert.assertEquals("sold out", redisClient.get("product:1"));
+    }
+
+    @Test
+    public void sketchHashCollisionTest() {
+        // String.hashCode 相同的 key 各行下标相互独立，不会共享计数
+        Assert.assertEquals("AaAa".hashCode(), "BBBB".hashCode());
+        Assert.assertEquals("AaAa".hashCode(), "AaBB".hashCode());
+        CountMinSketch sketch = new CountMinSketch(1024);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("AaAa");
+        }
+        Assert.assertEquals(100L, sketch.estimate("AaAa"));
+        Assert.assertEquals(0L, sketch.estimate("BBBB"));
+        Assert.assertEquals(0L, sketch.estimate("AaBB"));
+        Assert.assertEquals(0L, sketch.estimate("BBAa"));
+        sketch.reset();
+        Assert.assertEquals(0L, sketch.estimate("AaAa"));
+    }
+
+    @Test
+    public void localTtlTest() {
+        redisClient.set("product:1", "viral");
+        for (int i = 0; i < 200; i++) {
+            redisClient.get("product:1");
+        }
+        Assert.assertEquals(1, hotKeyDetector.getPromotedCount());
+
+        // 其他节点的修改在副本过期后可见
+        redisClient.getRedisTemplate().opsForValue().set("product:1", "changed");
+        Assert.assertEquals("viral", redisClient.get("product:1"));
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        Assert.assertEquals("changed", redisClient.get("product:1"));
+    }
+
+    @Test
+    public void topKeysTest() {
+        redisClient.set("product:1", "viral");
+        for (int i = 0; i < 500; i++) {
+            redisClient.get("product:1");
+        }
+        // 大量冷key不会把热点key挤出 top-K
+        for (int i = 0; i < 5000; i++) {
+            hotKeyDetector.record("cold:" + i);
+        }
+        List<HotKey> hotKeys = hotKeyDetector.topKeys(3);
+        Assert.assertEquals(3, hotKeys.size());
+        Assert.assertEquals("product:1", hotKeys.get(0).getKey());
+        Assert.assertEquals(500, hotKeys.get(0).getQps());
+        Assert.assertTrue(hotKeys.get(0).isHot());
+        Assert.assertTrue(hotKeys.get(0).isPromoted());
+        Assert.assertFalse(hotKeys.get(1).isHot());
+
+        // 窗口切换后仍可看到上一个窗口的统计，超过两个窗口没有读取则清空
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        Assert.assertEquals("product:1", hotKeyDetector.topKeys(1).get(0).getKey());
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        Assert.assertTrue(hotKeyDetector.topKeys(1).isEmpty());
+    }
+
+    @Test
+    public void reactiveTest() {
+        AtomicInteger loads = new AtomicInteger();
+        Mono<String> loader = Mono.fromCallable(() -> {
+            loads.incrementAndGet();
+            return "viral";
+        });
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("viral", hotKeyDetector.get("product:1", loader).block(Duration.ofSeconds(1)));
+        }
+        Assert.assertEquals(100, loads.get());
+    }
+
+    @Test
+    public void invalidateDuringLoadTest() {
+        for (int i = 0; i < 99; i++) {
+            hotKeyDetector.get("product:1", () -> "viral");
+        }
+        // 达到阈值后的读取过程中本节点写入，读到的旧值不能被提升为本地副本
+        String value = hotKeyDetector.get("product:1", () -> {
+            hotKeyDetector.invalidate("product:1");
+            return "stale";
+        });
+        Assert.assertEquals("stale", value);
+        Assert.assertEquals(0, hotKeyDetector.getPromotedCount());
+        Assert.assertEquals("fresh", hotKeyDetector.get("product:1", () -> "fresh"));
+        Assert.assertEquals(1, hotKeyDetector.getPromotedCount());
+
+        hotKeyDetector.invalidate("product:1");
+        Mono<String> loader = Mono.fromCallable(() -> {
+            hotKeyDetector.invalidate("product:1");
+            return "stale";
+        });
+        Assert.assertEquals("stale", hotKeyDetector.get("product:1", loader).block(Duration.ofSeconds(1)));
+        Assert.assertEquals(0, hotKeyDetector.getPromotedCount());
+    }
+
+    @Test
+    public void writePathsInvalidateTest() {
+        redisClient.set("product:1", "viral");
+        promote("product:1");
+        Assert.assertTrue(redisClient.setIfPresent("product:1", "v2"));
+        Assert.assertEquals("v2", redisClient.get("product:1"));
+
+        promote("product:1");
+        redisClient.multiSet(Collections.singletonMap("product:1", "v3"));
+        Assert.assertEquals("v3", redisClient.get("product:1"));
+
+        promote("product:1");
+        redisClient.multiDelete(Collections.singletonList("product:1"));
+        Assert.assertNull(redisClient.get("product:1"));
+
+        redisClient.set("product:1", "v4");
+        promote("product:1");
+        redisClient.deleteByPattern("product:*");
+        Assert.assertNull(redisClient.get("product:1"));
+
+        redisClient.set("product:1", "v5");
+        promote("product:1");
+        reactiveRedisClient.setIfPresent("product:1", "v6").block();
+        Assert.assertEquals("v6", redisClient.get("product:1"));
+
+        promote("product:1");
+        reactiveRedisClient.deleteByPattern("product:*").block();
+        Assert.assertNull(redisClient.get("product:1"));
+    }
+}
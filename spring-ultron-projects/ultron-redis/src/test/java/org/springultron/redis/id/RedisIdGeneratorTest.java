@@ -0,0 +1,107 @@
+package org.springultron.redis.id;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 号段ID生成器测试：多线程、多实例下的唯一性以及 Redis 访问次数
+ *
+ * @author brucewuu
+ * @date 2021/5/24 下午2:00
+ */
+public class RedisIdGeneratorTest {
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 20000;
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private UltronRedisProperties.IdGenerator properties;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        properties = new UltronRedisProperties.IdGenerator();
+        properties.setStep(1000);
+    }
+
+    private RedisIdGenerator newGenerator() {
+        return new RedisIdGenerator(new StringRedisTemplate(connectionFactory), properties);
+    }
+
+    @Test
+    public void sequentialTest() {
+        RedisIdGenerator generator = newGenerator();
+        for (long i = 1; i <= 2500; i++) {
+            Assert.assertEquals(i, generator.nextId("order"));
+        }
+        // 不同序列互不影响
+        Assert.assertEquals(1L, generator.nextId("user"));
+        // 2500 个ID使用3个号段（第3个号段尚未用到预取点），另有 user 序列1个号段
+        Assert.assertEquals(4, connectionFactory.getCommandCount("incrBy"));
+        generator.destroy();
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        RedisIdGenerator generator = newGenerator();
+        Set<Long> ids = generate(new RedisIdGenerator[]{generator});
+        Assert.assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+        int allocations = connectionFactory.getCommandCount("incrBy");
+        Assert.assertTrue("allocations: " + allocations, allocations <= THREADS * IDS_PER_THREAD / 1000 + 1);
+        System.out.printf("single instance: %d ids, %d INCRBY%n", ids.size(), allocations);
+        generator.destroy();
+    }
+
+    @Test
+    public void multiInstanceTest() throws Exception {
+        RedisIdGenerator[] generators = new RedisIdGenerator[4];
+        for (int i = 0; i < generators.length; i++) {
+            generators[i] = newGenerator();
+        }
+        Set<Long> ids = generate(generators);
+        Assert.assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+        System.out.printf("%d instances: %d ids, %d INCRBY%n", generators.length, ids.size(), connectionFactory.getCommandCount("incrBy"));
+        for (RedisIdGenerator generator : generators) {
+            generator.destroy();
+        }
+    }
+
+    private static Set<Long> generate(RedisIdGenerator[] generators) throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            RedisIdGenerator generator = generators[t % generators.length];
+            futures.add(executor.submit(() -> {
+                start.await();
+                int duplicates = 0;
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    if (!ids.add(generator.nextId("order"))) {
+                        duplicates++;
+                    }
+                }
+                return duplicates;
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> future : futures) {
+            Assert.assertEquals(Integer.valueOf(0), future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        return ids;
+    }
+}
@@ -0,0 +1,173 @@
+package org.springultron.redis.limiter;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.config.RateLimitAspect;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Redis分布式限流测试：三种算法的 Lua 脚本由 Redis 替身解释执行，校验每次检查只有一次网络往返，
+ * 以及窗口边界、令牌补充、突发流量和 ttl 单位
+ *
+ * @author brucewuu
+ * @date 2021/5/14 上午11:10
+ */
+public class RedisRateLimiterTest {
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private RedisRateLimiter rateLimiter;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        connectionFactory.registerLuaScript(RedisRateLimiter.FIXED_WINDOW_SCRIPT.getScriptAsString());
+        connectionFactory.registerLuaScript(RedisRateLimiter.SLIDING_WINDOW_SCRIPT.getScriptAsString());
+        connectionFactory.registerLuaScript(RedisRateLimiter.TOKEN_BUCKET_SCRIPT.getScriptAsString());
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        rateLimiter = new RedisRateLimiter(redisTemplate);
+    }
+
+    @Test
+    public void fixedWindowRejectsAfterMaxWithSingleRoundTripPerCheck() {
+        connectionFactory.resetCounters();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(rateLimiter.tryAcquire("login", RateLimitType.FIXED_WINDOW, 5, Duration.ofMinutes(1)));
+        }
+        Assert.assertFalse(rateLimiter.tryAcquire("login", RateLimitType.FIXED_WINDOW, 5, Duration.ofMinutes(1)));
+        Assert.assertEquals(6, connectionFactory.getRoundTrips());
+        Assert.assertTrue(rateLimiter.tryAcquire("other", RateLimitType.FIXED_WINDOW, 5, Duration.ofMinutes(1), 5));
+        Assert.assertFalse(rateLimiter.tryAcquire("other", RateLimitType.FIXED_WINDOW, 5, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void fixedWindowExpiresWithWindow() {
+        String key = RedisRateLimiter.KEY_PREFIX + "fixed_window:order";
+        Assert.assertTrue(rateLimiter.tryAcquire("order", RateLimitType.FIXED_WINDOW, 2, Duration.ofSeconds(1)));
+        // 只在窗口内第一次计数时设置过期时间，单位为毫秒
+        Assert.assertEquals(Long.valueOf(1000L), connectionFactory.getTtl(key));
+        connectionFactory.advanceTime(Duration.ofMillis(400));
+        Assert.assertTrue(rateLimiter.tryAcquire("order", RateLimitType.FIXED_WINDOW, 2, Duration.ofSeconds(1)));
+        Assert.assertEquals(Long.valueOf(600L), connectionFactory.getTtl(key));
+        Assert.assertFalse(rateLimiter.tryAcquire("order", RateLimitType.FIXED_WINDOW, 2, Duration.ofSeconds(1)));
+        // 超出限制的请求不计数，许可数超过上限的请求直接拒绝
+        Assert.assertEquals("2", new String((byte[]) connectionFactory.getStore().get(key), StandardCharsets.UTF_8));
+        Assert.assertFalse(rateLimiter.tryAcquire("batch", RateLimitType.FIXED_WINDOW, 2, Duration.ofSeconds(1), 3));
+
+        connectionFactory.advanceTime(Duration.ofMillis(600));
+        Assert.assertNull(connectionFactory.getStore().get(key));
+        Assert.assertTrue(rateLimiter.tryAcquire("order", RateLimitType.FIXED_WINDOW, 2, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    public void slidingWindowBoundaryAndBurst() {
+        String key = RedisRateLimiter.KEY_PREFIX + "sliding_window:search";
+        Duration window = Duration.ofSeconds(1);
+        connectionFactory.resetCounters();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(rateLimiter.tryAcquire("search", RateLimitType.SLIDING_WINDOW, 3, window));
+        }
+        Assert.assertFalse(rateLimiter.tryAcquire("search", RateLimitType.SLIDING_WINDOW, 3, window));
+        Assert.assertEquals(4, connectionFactory.getRoundTrips());
+        Assert.assertEquals(Long.valueOf(1000L), connectionFactory.getTtl(key));
+
+        // 窗口内：第一批请求仍在窗口中
+        connectionFactory.advanceTime(Duration.ofMillis(500));
+        Assert.assertFalse(rateLimiter.tryAcquire("search", RateLimitType.SLIDING_WINDOW, 3, window));
+        connectionFactory.advanceTime(Duration.ofMillis(499));
+        Assert.assertFalse(rateLimiter.tryAcquire("search", RateLimitType.SLIDING_WINDOW, 3, window));
+        // 恰好经过一个窗口，第一批请求滑出窗口
+        connectionFactory.advanceTime(Duration.ofMillis(1));
+        Assert.assertTrue(rateLimiter.tryAcquire("search", RateLimitType.SLIDING_WINDOW, 3, window, 2));
+        Assert.assertEquals(2, ((Map<?, ?>) connectionFactory.getStore().get(key)).size());
+        // 剩余 1 个许可时，一次申请 2 个被拒绝且不占用许可
+        Assert.assertFalse(rateLimiter.tryAcquire("search", RateLimitType.SLIDING_WINDOW, 3, window, 2));
+        Assert.assertTrue(rateLimiter.tryAcquire("search", RateLimitType.SLIDING_WINDOW, 3, window));
+        Assert.assertFalse(rateLimiter.tryAcquire("search", RateLimitType.SLIDING_WINDOW, 3, window));
+        Assert.assertEquals(3, ((Map<?, ?>) connectionFactory.getStore().get(key)).size());
+
+        // 整个窗口没有请求，key 随 ttl 过期
+        connectionFactory.advanceTime(window);
+        Assert.assertNull(connectionFactory.getStore().get(key));
+        Assert.assertTrue(rateLimiter.tryAcquire("search", RateLimitType.SLIDING_WINDOW, 3, window, 3));
+    }
+
+    @Test
+    public void tokenBucketRefillAndBurst() {
+        String key = RedisRateLimiter.KEY_PREFIX + "token_bucket:upload";
+        // 桶容量 10，每秒补满整桶，即每 100ms 补充 1 个令牌
+        Duration window = Duration.ofSeconds(1);
+        connectionFactory.resetCounters();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window));
+        }
+        Assert.assertFalse(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window));
+        Assert.assertEquals(11, connectionFactory.getRoundTrips());
+        Assert.assertEquals(Long.valueOf(1000L), connectionFactory.getTtl(key));
+
+        connectionFactory.advanceTime(Duration.ofMillis(99));
+        Assert.assertFalse(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window));
+        connectionFactory.advanceTime(Duration.ofMillis(1));
+        Assert.assertTrue(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window));
+        Assert.assertFalse(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window));
+
+        // 250ms 补充 2.5 个令牌：申请 3 个被拒绝，申请 2 个通过，剩余的半个令牌保留
+        connectionFactory.advanceTime(Duration.ofMillis(250));
+        Assert.assertFalse(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window, 3));
+        Assert.assertTrue(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window, 2));
+        connectionFactory.advanceTime(Duration.ofMillis(50));
+        Assert.assertTrue(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window));
+        Assert.assertFalse(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window));
+
+        // 900ms 补充 9 个令牌，ttl 按毫秒剩余 100ms
+        connectionFactory.advanceTime(Duration.ofMillis(900));
+        Assert.assertEquals(Long.valueOf(100L), connectionFactory.getTtl(key));
+        Assert.assertFalse(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window, 10));
+        Assert.assertTrue(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window, 5));
+        // 剩余 4 个，800ms 后最多补满整桶，超过容量的申请始终被拒绝
+        connectionFactory.advanceTime(Duration.ofMillis(800));
+        Assert.assertFalse(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window, 11));
+        Assert.assertTrue(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window, 10));
+        Assert.assertFalse(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window));
+
+        // key 过期后按满桶重新开始
+        connectionFactory.advanceTime(Duration.ofSeconds(5));
+        Assert.assertNull(connectionFactory.getStore().get(key));
+        Assert.assertTrue(rateLimiter.tryAcquire("upload", RateLimitType.TOKEN_BUCKET, 10, window, 10));
+    }
+
+    @Test(expected = RateLimitException.class)
+    public void executeThrowsWhenLimited() {
+        Assert.assertEquals("ok", rateLimiter.execute("api", RateLimitType.FIXED_WINDOW, 1, Duration.ofSeconds(1), () -> "ok"));
+        rateLimiter.execute("api", RateLimitType.FIXED_WINDOW, 1, Duration.ofSeconds(1), () -> "ok");
+    }
+
+    @Test
+    public void annotationEvaluatesSpelKey() {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new SmsService());
+        proxyFactory.addAspect(new RateLimitAspect(rateLimiter));
+        SmsService service = proxyFactory.getProxy();
+        Assert.assertEquals("sent", service.send("13800000000"));
+        Assert.assertEquals("sent", service.send("13800000000"));
+        Assert.assertEquals("sent", service.send("13900000000"));
+        try {
+            service.send("13800000000");
+            Assert.fail("expected RateLimitException");
+        } catch (RateLimitException e) {
+            Assert.assertEquals("sms:13800000000", e.getKey());
+        }
+    }
+
+    public static class SmsService {
+
+        @RateLimit(key = "sms", params = "#phone", max = 2, window = 1)
+        public String send(String phone) {
+            return "sent";
+        }
+    }
+}
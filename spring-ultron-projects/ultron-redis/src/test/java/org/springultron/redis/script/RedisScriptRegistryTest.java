@@ -0,0 +1,109 @@
+package org.springultron.redis.script;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.RedisClient;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lua 脚本注册中心测试：classpath 加载、EVALSHA、NOSCRIPT 重新加载、pipeline 批量执行及结果转换
+ *
+ * @author brucewuu
+ * @date 2021/5/25 下午3:10
+ */
+public class RedisScriptRegistryTest {
+    private static final String STOCK_DEDUCT = "stock_deduct";
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private RedisScriptRegistry scriptRegistry;
+    private RedisClient redisClient;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        scriptRegistry = new RedisScriptRegistry(Collections.singletonList("classpath*:redis/scripts/*.lua"));
+        // 以 Java 实现模拟 stock_deduct.lua
+        connectionFactory.registerScript(scriptRegistry.getScript(STOCK_DEDUCT).getScriptAsString(), (keys, args) -> {
+            byte[] value = (byte[]) connectionFactory.getStore().get(keys.get(0));
+            long stock = value == null ? -1L : Long.parseLong(new String(value, StandardCharsets.UTF_8));
+            long quantity = Long.parseLong(new String(args.get(0), StandardCharsets.UTF_8));
+            if (stock < quantity) {
+                return -1L;
+            }
+            connectionFactory.getStore().put(keys.get(0), String.valueOf(stock - quantity).getBytes(StandardCharsets.UTF_8));
+            return stock - quantity;
+        });
+        redisClient = new RedisClient(new StringRedisTemplate(connectionFactory), new RedisTemplate<>(), null, null, scriptRegistry);
+    }
+
+    @Test
+    public void loadFromClasspathTest() {
+        Assert.assertTrue(scriptRegistry.getNames().contains(STOCK_DEDUCT));
+        Assert.assertEquals(40, scriptRegistry.getSha1(STOCK_DEDUCT).length());
+    }
+
+    @Test
+    public void executeTest() {
+        redisClient.setString("stock:1", "10");
+        Assert.assertEquals(Long.valueOf(7), redisClient.executeScript(STOCK_DEDUCT, Long.class, Collections.singletonList("stock:1"), 3));
+        Assert.assertEquals(Long.valueOf(-1), redisClient.executeScript(STOCK_DEDUCT, Long.class, Collections.singletonList("stock:1"), 8));
+        Assert.assertEquals(2, connectionFactory.getCommandCount("evalSha"));
+        Assert.assertEquals(0, connectionFactory.getCommandCount("eval"));
+    }
+
+    @Test
+    public void noScriptReloadTest() {
+        redisClient.setString("stock:1", "10");
+        connectionFactory.flushScripts();
+        Assert.assertEquals(Long.valueOf(9), redisClient.executeScript(STOCK_DEDUCT, Long.class, Collections.singletonList("stock:1"), 1));
+        // NOSCRIPT 后加载一次并重试，之后直接 EVALSHA 命中
+        Assert.assertEquals(Long.valueOf(8), redisClient.executeScript(STOCK_DEDUCT, Long.class, Collections.singletonList("stock:1"), 1));
+        Assert.assertEquals(1, connectionFactory.getCommandCount("scriptLoad"));
+        Assert.assertEquals(3, connectionFactory.getCommandCount("evalSha"));
+        Assert.assertEquals(0, connectionFactory.getCommandCount("eval"));
+    }
+
+    @Test
+    public void executeBatchTest() {
+        List<List<String>> keySets = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            redisClient.setString("stock:" + i, String.valueOf(i));
+            keySets.add(Collections.singletonList("stock:" + i));
+        }
+        connectionFactory.flushScripts();
+        connectionFactory.resetCounters();
+        List<Long> results = redisClient.executeScriptBatch(STOCK_DEDUCT, Long.class, keySets, 50);
+        Assert.assertEquals(100, results.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(Long.valueOf(i < 50 ? -1L : i - 50L), results.get(i));
+        }
+        // 失败的 pipeline、SCRIPT LOAD、重试的 pipeline
+        Assert.assertEquals(3, connectionFactory.getRoundTrips());
+
+        connectionFactory.resetCounters();
+        redisClient.executeScriptBatch(STOCK_DEDUCT, Long.class, keySets, 0);
+        Assert.assertEquals(1, connectionFactory.getRoundTrips());
+    }
+
+    @Test
+    public void convertTest() {
+        Assert.assertEquals(ReturnType.INTEGER, RedisScriptRegistry.returnType(Long.class));
+        Assert.assertEquals(ReturnType.MULTI, RedisScriptRegistry.returnType(List.class));
+        Assert.assertEquals(ReturnType.VALUE, RedisScriptRegistry.returnType(BigDecimal.class));
+        Assert.assertEquals(new BigDecimal("3.25"), RedisScriptRegistry.convert("3.25".getBytes(StandardCharsets.UTF_8), BigDecimal.class));
+        Assert.assertEquals(Integer.valueOf(5), RedisScriptRegistry.convert(5L, Integer.class));
+        Assert.assertEquals(Arrays.asList("a", 1L), RedisScriptRegistry.convert(Arrays.asList("a".getBytes(StandardCharsets.UTF_8), 1L), List.class));
+        Assert.assertNull(RedisScriptRegistry.convert(null, String.class));
+    }
+}
@@ -0,0 +1,129 @@
+package org.springultron.redis.serializer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * value 压缩序列化测试：兼容性、压缩率及吞吐量
+ *
+ * @author brucewuu
+ * @date 2021/5/12 上午11:20
+ */
+public class CompressingRedisSerializerTest {
+    private static final int THRESHOLD = 1024;
+    private static final int ROUNDS = 2000;
+
+    private RedisSerializer<Object> plain;
+    private RedisSerializer<Object> compressing;
+
+    @Before
+    public void setUp() {
+        plain = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        compressing = new CompressingRedisSerializer<>(plain, THRESHOLD);
+    }
+
+    @Test
+    public void smallValueIsNotCompressed() {
+        Item item = new Item(1L, "small", "short description");
+        byte[] bytes = compressing.serialize(item);
+        Assert.assertArrayEquals(plain.serialize(item), bytes);
+        Assert.assertFalse(CompressingRedisSerializer.isCompressed(bytes));
+        Assert.assertEquals(item, compressing.deserialize(bytes));
+    }
+
+    @Test
+    public void largeValueIsCompressedAndRoundTrips() {
+        List<Item> items = items(200);
+        byte[] bytes = compressing.serialize(items);
+        Assert.assertTrue(CompressingRedisSerializer.isCompressed(bytes));
+        Assert.assertTrue(bytes.length < plain.serialize(items).length);
+        Assert.assertEquals(items, compressing.deserialize(bytes));
+    }
+
+    @Test
+    public void legacyUncompressedValueIsReadable() {
+        List<Item> items = items(200);
+        byte[] legacy = plain.serialize(items);
+        Assert.assertFalse(CompressingRedisSerializer.isCompressed(legacy));
+        Assert.assertEquals(items, compressing.deserialize(legacy));
+        Assert.assertNull(compressing.deserialize(null));
+        Assert.assertEquals(0, compressing.serialize(null).length);
+    }
+
+    @Test
+    public void measureSizeAndThroughput() {
+        int[] sizes = {5, 50, 500};
+        for (int size : sizes) {
+            List<Item> items = items(size);
+            byte[] raw = plain.serialize(items);
+            byte[] compressed = compressing.serialize(items);
+            long plainNanos = measure(plain, items);
+            long compressingNanos = measure(compressing, items);
+            System.out.printf("items=%d raw=%dB compressed=%dB ratio=%.2f plain=%.1fus/op compressing=%.1fus/op%n",
+                    size, raw.length, compressed.length, (double) compressed.length / raw.length,
+                    plainNanos / 1000.0 / ROUNDS, compressingNanos / 1000.0 / ROUNDS);
+            Assert.assertTrue(compressed.length <= raw.length);
+        }
+    }
+
+    private static long measure(RedisSerializer<Object> serializer, Object value) {
+        // 预热
+        for (int i = 0; i < ROUNDS / 4; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static List<Item> items(int size) {
+        List<Item> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new Item((long) i, "product-" + i, "a representative product description used to measure compression #" + (i % 10)));
+        }
+        return items;
+    }
+
+    public static class Item implements Serializable {
+        private Long id;
+        private String name;
+        private String description;
+
+        public Item() {
+        }
+
+        Item(Long id, String name, String description) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Item)) {
+                return false;
+            }
+            Item item = (Item) o;
+            return Objects.equals(id, item.id) && Objects.equals(name, item.name) && Objects.equals(description, item.description);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name, description);
+        }
+    }
+}
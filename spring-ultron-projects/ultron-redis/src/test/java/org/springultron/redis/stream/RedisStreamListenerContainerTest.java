@@ -0,0 +1,142 @@
+package org.springultron.redis.stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Redis Stream 消费组测试：批量读取与批量 ACK、认领宕机消费者遗留的消息、超过最大投递次数丢弃
+ *
+ * @author brucewuu
+ * @date 2021/5/18 下午3:30
+ */
+public class RedisStreamListenerContainerTest {
+    private static final String STREAM = "order-events";
+    private static final String GROUP = "order-service";
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private RedisTemplate<String, Object> redisTemplate;
+    private RedisStreamClient streamClient;
+    private final List<RedisStreamListenerContainer> containers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        redisTemplate.setDefaultSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+        streamClient = new RedisStreamClient(redisTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        containers.forEach(RedisStreamListenerContainer::stop);
+    }
+
+    @Test
+    public void consumesInBatchesAndAcknowledgesPerBatch() {
+        Set<String> handled = ConcurrentHashMap.newKeySet();
+        RedisStreamListenerContainer container = createContainer("consumer-1", Duration.ofMinutes(1));
+        container.register(STREAM, GROUP, (String message, String stream) -> handled.add(message));
+        container.start();
+        connectionFactory.resetCounters();
+        for (int i = 0; i < 250; i++) {
+            streamClient.publish(STREAM, "order-" + i);
+        }
+        waitUntil(() -> handled.size() == 250 && pendingCount() == 0);
+        // 250 条消息最多 3 批读取，每批一次 XACK
+        Assert.assertTrue(connectionFactory.getCommandCount("xAck") <= connectionFactory.getCommandCount("xReadGroup"));
+        Assert.assertTrue(connectionFactory.getCommandCount("xAck") < 250);
+    }
+
+    @Test
+    public void claimsPendingMessagesOfDeadConsumer() {
+        RedisStreamListenerContainer dead = createContainer("consumer-dead", Duration.ofMinutes(1));
+        dead.register(STREAM, GROUP, (String message, String stream) -> {
+            throw new IllegalStateException("node is going down");
+        });
+        dead.start();
+        for (int i = 0; i < 10; i++) {
+            streamClient.publish(STREAM, "order-" + i);
+        }
+        waitUntil(() -> pendingCount() == 10);
+        dead.stop();
+
+        Set<String> handled = ConcurrentHashMap.newKeySet();
+        RedisStreamListenerContainer alive = createContainer("consumer-alive", Duration.ZERO);
+        alive.register(STREAM, GROUP, (String message, String stream) -> handled.add(message));
+        alive.start();
+        Assert.assertEquals(10, alive.claimPending());
+        Assert.assertEquals(10, handled.size());
+        Assert.assertEquals(0, pendingCount());
+    }
+
+    @Test
+    public void dropsMessagesExceedingMaxDeliveries() {
+        RedisStreamListenerContainer container = createContainer("consumer-1", Duration.ZERO);
+        container.register(STREAM, GROUP, (String message, String stream) -> {
+            throw new IllegalStateException("poison message");
+        });
+        container.start();
+        streamClient.publish(STREAM, "poison");
+        waitUntil(() -> pendingCount() == 1);
+        // 第1次投递 + 认领重投 2 次后达到上限 3
+        container.claimPending();
+        container.claimPending();
+        Assert.assertEquals(1, pendingCount());
+        container.claimPending();
+        Assert.assertEquals(0, pendingCount());
+    }
+
+    private RedisStreamListenerContainer createContainer(String consumerName, Duration claimMinIdle) {
+        UltronRedisProperties.Stream properties = new UltronRedisProperties.Stream();
+        properties.setConsumerName(consumerName);
+        properties.setBatchSize(100);
+        properties.setConcurrency(4);
+        properties.setPollTimeout(Duration.ofMillis(50));
+        properties.setClaimInterval(Duration.ofHours(1));
+        properties.setClaimMinIdle(claimMinIdle);
+        properties.setMaxDeliveries(3);
+        RedisStreamListenerContainer container = new RedisStreamListenerContainer(redisTemplate, properties);
+        containers.add(container);
+        return container;
+    }
+
+    private int pendingCount() {
+        //noinspection ConstantConditions
+        return redisTemplate.opsForStream().pending(STREAM, GROUP, Range.unbounded(), 1000L).size();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("condition not met within 5 seconds");
+            }
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
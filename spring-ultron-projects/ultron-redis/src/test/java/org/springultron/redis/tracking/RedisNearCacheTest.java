@@ -0,0 +1,139 @@
+package org.springultron.redis.tracking;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springultron.redis.InMemoryRedisConnectionFactory;
+import org.springultron.redis.RedisClient;
+import org.springultron.redis.config.RedisConfiguration;
+import org.springultron.redis.config.UltronRedisProperties;
+
+import java.util.Collections;
+
+/**
+ * 近端缓存测试：本地命中、失效消息、本节点写入失效、加载期间失效、容量淘汰以及连接断开回退
+ * <p>
+ * 失效消息和连接状态通过包内方法模拟，不依赖真实的 Redis 6 服务端
+ * </p>
+ *
+ * @author brucewuu
+ * @date 2021/5/20 下午2:30
+ */
+public class RedisNearCacheTest {
+
+    private InMemoryRedisConnectionFactory connectionFactory;
+    private RedisNearCache nearCache;
+    private RedisClient redisClient;
+
+    @Before
+    public void setUp() {
+        connectionFactory = new InMemoryRedisConnectionFactory();
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        RedisSerializer<Object> serializer = new RedisConfiguration().redisSerializer(new UltronRedisProperties());
+        redisTemplate.setDefaultSerializer(serializer);
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+
+        UltronRedisProperties.NearCache properties = new UltronRedisProperties.NearCache();
+        properties.setPrefixes(Collections.singletonList("config:"));
+        properties.setMaximumSize(2);
+        nearCache = new RedisNearCache(connectionFactory, properties);
+        nearCache.enable();
+        redisClient = new RedisClient(new StringRedisTemplate(connectionFactory), redisTemplate, nearCache);
+    }
+
+    @Test
+    public void localHitTest() {
+        redisClient.set("config:switch", "on");
+        connectionFactory.resetCounters();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("on", redisClient.get("config:switch"));
+        }
+        Assert.assertEquals(1, connectionFactory.getRoundTrips());
+        Assert.assertEquals(999, nearCache.getHitCount());
+
+        // 不匹配前缀的key始终访问 Redis
+        redisClient.set("order:1", "paid");
+        connectionFactory.resetCounters();
+        redisClient.get("order:1");
+        redisClient.get("order:1");
+        Assert.assertEquals(2, connectionFactory.getRoundTrips());
+    }
+
+    @Test
+    public void invalidateTest() {
+        redisClient.set("config:switch", "on");
+        Assert.assertEquals("on", redisClient.get("config:switch"));
+        // 其他节点写入：服务端推送失效消息前，本地仍为旧值
+        redisClient.getRedisTemplate().opsForValue().set("config:switch", "off");
+        Assert.assertEquals("on", redisClient.get("config:switch"));
+        nearCache.invalidate(Collections.singletonList("config:switch"));
+        Assert.assertEquals("off", redisClient.get("config:switch"));
+
+        // 本节点写入及删除立即移除本地副本，无需等待失效消息
+        redisClient.set("config:switch", "on");
+        Assert.assertEquals("on", redisClient.get("config:switch"));
+        redisClient.delete("config:switch");
+        Assert.assertNull(redisClient.get("config:switch"));
+
+        nearCache.invalidate(null);
+        Assert.assertEquals(0, nearCache.size());
+    }
+
+    @Test
+    public void invalidateWhileLoadingTest() {
+        redisClient.set("config:switch", "on");
+        Object value = nearCache.get("config:switch", () -> {
+            // 读取返回后、写入本地前收到失效消息，本次结果不能被缓存
+            nearCache.invalidate(Collections.singletonList("config:switch"));
+            return redisClient.getRedisTemplate().opsForValue().get("config:switch");
+        });
+        Assert.assertEquals("on", value);
+        Assert.assertEquals(0, nearCache.size());
+    }
+
+    @Test
+    public void disconnectFallbackTest() {
+        redisClient.set("config:switch", "on");
+        redisClient.get("config:switch");
+        Assert.assertEquals(1, nearCache.size());
+
+        nearCache.disable();
+        Assert.assertFalse(nearCache.isAvailable());
+        Assert.assertEquals(0, nearCache.size());
+        redisClient.set("config:switch", "off");
+        connectionFactory.resetCounters();
+        Assert.assertEquals("off", redisClient.get("config:switch"));
+        Assert.assertEquals("off", redisClient.get("config:switch"));
+        Assert.assertEquals(2, connectionFactory.getRoundTrips());
+        Assert.assertEquals(0, nearCache.size());
+
+        // 重连并重新开启追踪后恢复使用
+        nearCache.enable();
+        redisClient.get("config:switch");
+        Assert.assertEquals(1, nearCache.size());
+    }
+
+    @Test
+    public void maximumSizeTest() {
+        for (int i = 0; i < 5; i++) {
+            redisClient.set("config:" + i, i);
+            redisClient.get("config:" + i);
+        }
+        Assert.assertTrue(nearCache.size() <= 2);
+
+        // 达到上限后淘汰旧key，新的热点key仍能缓存在本地
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(4, (int) redisClient.get("config:4"));
+        }
+        connectionFactory.resetCounters();
+        Assert.assertEquals(4, (int) redisClient.get("config:4"));
+        Assert.assertEquals(0, connectionFactory.getRoundTrips());
+        Assert.assertTrue(nearCache.size() <= 2);
+    }
+}
@@ -0,0 +1,7 @@
+-- 扣减库存：库存不足时返回 -1，否则返回扣减后的库存
+local stock = tonumber(redis.call('GET', KEYS[1]) or '-1')
+local quantity = tonumber(ARGV[1])
+if stock < quantity then
+    return -1
+end
+return redis.call('DECRBY', KEYS[1], quantity)